@@ -139,6 +139,22 @@ class RecordsExtensionsTest {
         assertEquals("1:01", result.last().duration)
     }
 
+    @Test
+    fun sort_by_loudness_puts_not_analysed_records_last() {
+        val analysed = listOf(
+            records[0].copy(loudness = -23.0),
+            records[1],
+            records[2].copy(loudness = -14.0),
+            records[3].copy(loudness = -30.0),
+        )
+
+        val loudest = analysed.sort(SortOrder.LoudnessLoudest)
+        assertEquals(listOf(-14.0, -23.0, -30.0, null), loudest.map { it.loudness })
+
+        val quietest = analysed.sort(SortOrder.LoudnessQuietest)
+        assertEquals(listOf(-30.0, -23.0, -14.0, null), quietest.map { it.loudness })
+    }
+
     @Test
     fun addRecordToMap_adds_record_to_existing_group_and_maintains_sort() {
         // 1. Setup: A new record for an existing date (June 20, 2025 - same as Name1)
@@ -146,6 +146,28 @@ class PrefsV2ImplTest {
         assertEquals(!DefaultValues.IS_KEEP_SCREEN_ON, prefs.isKeepScreenOn)
     }
 
+    @Test
+    fun test_isRecordCompressedCopy() {
+        assertEquals(DefaultValues.IS_RECORD_COMPRESSED_COPY, prefs.isRecordCompressedCopy)
+
+        prefs.isRecordCompressedCopy = !DefaultValues.IS_RECORD_COMPRESSED_COPY
+        assertEquals(!DefaultValues.IS_RECORD_COMPRESSED_COPY, prefs.isRecordCompressedCopy)
+    }
+
+    @Test
+    fun test_silenceSkipping() {
+        assertEquals(DefaultValues.IS_SKIP_SILENCE, prefs.isSkipSilence)
+        assertEquals(DefaultValues.SILENCE_SKIP_THRESHOLD, prefs.silenceSkipThreshold)
+        assertEquals(DefaultValues.SILENCE_SKIP_HANGOVER_MILLS, prefs.silenceSkipHangoverMills)
+
+        prefs.isSkipSilence = !DefaultValues.IS_SKIP_SILENCE
+        prefs.silenceSkipThreshold = 500
+        prefs.silenceSkipHangoverMills = 3000
+        assertEquals(!DefaultValues.IS_SKIP_SILENCE, prefs.isSkipSilence)
+        assertEquals(500, prefs.silenceSkipThreshold)
+        assertEquals(3000, prefs.silenceSkipHangoverMills)
+    }
+
     @Test
     fun test_recordsSortOrder() {
         assertEquals(DefaultValues.DefaultSortOrder, prefs.recordsSortOrder)
@@ -0,0 +1,116 @@
+package com.dimowner.audiorecorder.v2.data.room
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import androidx.room.Room
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class AmpsMigrationTest {
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+
+    @Before
+    fun setUp() {
+        context.deleteDatabase(TEST_DB)
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(TEST_DB)
+    }
+
+    private fun ampsOf(id: Long): IntArray = IntArray((id % 7).toInt() * 100) { (it * id % 181).toInt() }
+
+    /** Creates the records table as it was in version 5, with amps as comma separated text. */
+    private fun createVersion5Database(recordCount: Int) {
+        val configuration = SupportSQLiteOpenHelper.Configuration.builder(context)
+            .name(TEST_DB)
+            .callback(object : SupportSQLiteOpenHelper.Callback(5) {
+                override fun onCreate(db: SupportSQLiteDatabase) {
+                    db.execSQL(
+                        "CREATE TABLE records (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                            "name TEXT NOT NULL, duration INTEGER NOT NULL, created INTEGER NOT NULL, " +
+                            "added INTEGER NOT NULL, removed INTEGER NOT NULL, path TEXT NOT NULL, " +
+                            "format TEXT NOT NULL, size INTEGER NOT NULL, sampleRate INTEGER NOT NULL, " +
+                            "channelCount INTEGER NOT NULL, bitrate INTEGER NOT NULL, " +
+                            "isBookmarked INTEGER NOT NULL, isWaveformProcessed INTEGER NOT NULL, " +
+                            "isMovedToRecycle INTEGER NOT NULL, amps TEXT NOT NULL, " +
+                            "description TEXT NOT NULL DEFAULT '', " +
+                            "linkedRecordId INTEGER NOT NULL DEFAULT -1, " +
+                            "keptSegments TEXT NOT NULL DEFAULT '', loudness REAL, loudnessRange REAL, " +
+                            "truePeak REAL, clippedSamples INTEGER)"
+                    )
+                }
+
+                override fun onUpgrade(db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) {}
+            })
+            .build()
+        FrameworkSQLiteOpenHelperFactory().create(configuration).use { helper ->
+            val db = helper.writableDatabase
+            for (i in 1..recordCount) {
+                val id = i.toLong()
+                val values = ContentValues().apply {
+                    put("id", id)
+                    put("name", "Record $id")
+                    put("duration", 1000L)
+                    put("created", id)
+                    put("added", id)
+                    put("removed", 0L)
+                    put("path", "path/to/record$id")
+                    put("format", "m4a")
+                    put("size", 1024L)
+                    put("sampleRate", 44100)
+                    put("channelCount", 2)
+                    put("bitrate", 128000)
+                    put("isBookmarked", 0)
+                    put("isWaveformProcessed", 1)
+                    put("isMovedToRecycle", 0)
+                    put("amps", ampsOf(id).joinToString(separator = ","))
+                    put("keptSegments", "0,500")
+                    put("loudness", -23.0)
+                }
+                db.insert("records", SQLiteDatabase.CONFLICT_NONE, values)
+            }
+        }
+    }
+
+    @Test
+    fun migration_converts_amps_of_every_batch() {
+        // More than two batches, the last one partial.
+        createVersion5Database(recordCount = 123)
+
+        val db = Room.databaseBuilder(context, AppDatabase::class.java, TEST_DB)
+            .addMigrations(MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8)
+            .allowMainThreadQueries()
+            .build()
+        try {
+            val records = db.recordDao().getAllRecords()
+            assertEquals(123, records.size)
+            for (record in records) {
+                assertArrayEquals(ampsOf(record.id), record.amps)
+                assertArrayEquals(intArrayOf(0, 500), record.keptSegments)
+                assertEquals(-23.0, record.loudness!!, 0.0)
+            }
+            val inserted = db.recordDao().insertRecord(records[0].copy(id = 0))
+            assertEquals(124L, inserted)
+        } finally {
+            db.close()
+        }
+    }
+
+    private companion object {
+        const val TEST_DB = "amps-migration-test"
+    }
+}
@@ -21,8 +21,12 @@ import androidx.room.Room
 import androidx.sqlite.db.SimpleSQLiteQuery
 import androidx.test.core.app.ApplicationProvider
 import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.dimowner.audiorecorder.v2.app.records.models.RecordsFilter
+import com.dimowner.audiorecorder.v2.data.buildRecordsSearchQuery
+import com.dimowner.audiorecorder.v2.data.extensions.toFtsPrefixQuery
 import junit.framework.TestCase.assertEquals
 import junit.framework.TestCase.assertNull
+import junit.framework.TestCase.assertTrue
 import kotlinx.coroutines.runBlocking
 import org.junit.After
 import org.junit.Assert.assertNotEquals
@@ -385,7 +389,7 @@ class RecordDaoTest {
     }
 
     @Test
-    fun test_getMovedToRecycleRecordsByPage_firstPage() {
+    fun test_getMovedToRecycleRecordsFirstPage() {
         // Move 25 records to recycle with distinct removed timestamps so ordering is deterministic
         for (i in 1..25) {
             val record = recordDao.getRecordById(i.toLong())
@@ -395,7 +399,7 @@ class RecordDaoTest {
         }
 
         // Page 1 — should return items with highest removed timestamp (ids 25..16)
-        val page1 = recordDao.getMovedToRecycleRecordsByPage(pageSize = 10, offset = 0)
+        val page1 = recordDao.getMovedToRecycleRecordsFirstPage(pageSize = 10)
         assertEquals(10, page1.size)
         // Sorted by removed DESC: id 25 first, id 16 last
         assertEquals(25L, page1[0].id)
@@ -403,7 +407,7 @@ class RecordDaoTest {
     }
 
     @Test
-    fun test_getMovedToRecycleRecordsByPage_secondPage() {
+    fun test_getMovedToRecycleRecordsAfter_secondPage() {
         for (i in 1..25) {
             val record = recordDao.getRecordById(i.toLong())
             record?.copy(isMovedToRecycle = true, removed = i.toLong() * 1000L)?.let {
@@ -411,15 +415,15 @@ class RecordDaoTest {
             }
         }
 
-        // Page 2 — offset 10 → items 15..6
-        val page2 = recordDao.getMovedToRecycleRecordsByPage(pageSize = 10, offset = 10)
+        // Page 2 — after the last record of page 1 (id 16) → items 15..6
+        val page2 = recordDao.getMovedToRecycleRecordsAfter(removed = 16000L, id = 16L, pageSize = 10)
         assertEquals(10, page2.size)
         assertEquals(15L, page2[0].id)
         assertEquals(6L, page2[9].id)
     }
 
     @Test
-    fun test_getMovedToRecycleRecordsByPage_partialLastPage() {
+    fun test_getMovedToRecycleRecordsAfter_partialLastPage() {
         for (i in 1..25) {
             val record = recordDao.getRecordById(i.toLong())
             record?.copy(isMovedToRecycle = true, removed = i.toLong() * 1000L)?.let {
@@ -427,21 +431,21 @@ class RecordDaoTest {
             }
         }
 
-        // Page 3 — offset 20 → only 5 items left (ids 5..1)
-        val page3 = recordDao.getMovedToRecycleRecordsByPage(pageSize = 10, offset = 20)
+        // Page 3 — after the last record of page 2 (id 6) → only 5 items left (ids 5..1)
+        val page3 = recordDao.getMovedToRecycleRecordsAfter(removed = 6000L, id = 6L, pageSize = 10)
         assertEquals(5, page3.size)
         assertEquals(5L, page3[0].id)
         assertEquals(1L, page3[4].id)
     }
 
     @Test
-    fun test_getMovedToRecycleRecordsByPage_emptyWhenNoneInRecycle() {
-        val page = recordDao.getMovedToRecycleRecordsByPage(pageSize = 10, offset = 0)
+    fun test_getMovedToRecycleRecordsFirstPage_emptyWhenNoneInRecycle() {
+        val page = recordDao.getMovedToRecycleRecordsFirstPage(pageSize = 10)
         assertEquals(0, page.size)
     }
 
     @Test
-    fun test_getMovedToRecycleRecordsByPage_offsetBeyondTotalReturnsEmpty() {
+    fun test_getMovedToRecycleRecordsAfter_lastRecordReturnsEmpty() {
         for (i in 1..5) {
             val record = recordDao.getRecordById(i.toLong())
             record?.copy(isMovedToRecycle = true, removed = i.toLong() * 1000L)?.let {
@@ -449,23 +453,41 @@ class RecordDaoTest {
             }
         }
 
-        val page = recordDao.getMovedToRecycleRecordsByPage(pageSize = 10, offset = 100)
+        val page = recordDao.getMovedToRecycleRecordsAfter(removed = 1000L, id = 1L, pageSize = 10)
         assertEquals(0, page.size)
     }
 
     @Test
-    fun test_getMovedToRecycleRecordsByPage_doesNotIncludeNonRecycleRecords() {
+    fun test_getMovedToRecycleRecordsFirstPage_doesNotIncludeNonRecycleRecords() {
         // Only move record 1 to recycle
         val record = recordDao.getRecordById(1L)
         record?.copy(isMovedToRecycle = true, removed = 5000L)?.let {
             recordDao.updateRecord(it)
         }
 
-        val page = recordDao.getMovedToRecycleRecordsByPage(pageSize = 10, offset = 0)
+        val page = recordDao.getMovedToRecycleRecordsFirstPage(pageSize = 10)
         assertEquals(1, page.size)
         assertEquals(1L, page[0].id)
     }
 
+    @Test
+    fun test_getMovedToRecycleRecordsAfter_sameRemovedTime_ordersById() {
+        for (i in 1..5) {
+            val record = recordDao.getRecordById(i.toLong())
+            record?.copy(isMovedToRecycle = true, removed = 1000L)?.let {
+                recordDao.updateRecord(it)
+            }
+        }
+
+        val page1 = recordDao.getMovedToRecycleRecordsFirstPage(pageSize = 2)
+        val page2 = recordDao.getMovedToRecycleRecordsAfter(removed = 1000L, id = page1[1].id, pageSize = 2)
+        val page3 = recordDao.getMovedToRecycleRecordsAfter(removed = 1000L, id = page2[1].id, pageSize = 2)
+
+        assertEquals(listOf(5L, 4L), page1.map { it.id })
+        assertEquals(listOf(3L, 2L), page2.map { it.id })
+        assertEquals(listOf(1L), page3.map { it.id })
+    }
+
     @Test
     fun test_getMovedToRecycleRecordsCount() {
         val count = recordDao.getMovedToRecycleRecordsCount()
@@ -534,6 +556,83 @@ class RecordDaoTest {
         assertEquals(bookmarkedRecord?.copy(id = 101L), records3[0])
     }
 
+    // ==================== full-text search ====================
+
+    private fun searchIds(text: String, filter: RecordsFilter = RecordsFilter()): List<Long> {
+        val query = buildRecordsSearchQuery(text.toFtsPrefixQuery(), false, filter)
+        return recordDao.searchRecordsRawQuery(query).map { it.id }.sorted()
+    }
+
+    @Test
+    fun test_searchRecordsRawQuery_matchesWordPrefixes() {
+        // "Record 4" and "Record 40".."Record 49" have ids 5 and 41..50.
+        assertEquals(listOf(5L) + (41L..50L), searchIds("rec 4"))
+        assertEquals(listOf(46L), searchIds("RECORD 45"))
+        assertEquals(emptyList<Long>(), searchIds("ord"))
+    }
+
+    @Test
+    fun test_searchRecordsRawQuery_followsUpdatesAndDeletes() {
+        val record = recordDao.getRecordById(1L)!!
+        recordDao.updateRecord(record.copy(name = "Lecture notes", description = "Історія, семінар"))
+        recordDao.deleteRecordById(46L)
+
+        assertEquals(listOf(1L), searchIds("lec"))
+        assertEquals(listOf(1L), searchIds("істор"))
+        assertEquals(emptyList<Long>(), searchIds("record 0"))
+        assertEquals(listOf(5L) + (41L..45L) + (47L..50L), searchIds("record 4"))
+    }
+
+    @Test
+    fun test_searchRecordsRawQuery_afterConflictingInsert() {
+        val record = recordDao.getRecordById(1L)!!
+        recordDao.insertRecord(record.copy(name = "Interview"))
+        recordDao.insertRecords(
+            listOf(
+                recordDao.getRecordById(2L)!!.copy(name = "Interview 2"),
+                record.copy(id = 0, name = "Interview 3"),
+            )
+        )
+
+        assertEquals(101L, recordDao.getRecordsCount().toLong())
+        assertEquals(listOf(1L, 2L, 101L), searchIds("interview"))
+        assertEquals(emptyList<Long>(), searchIds("record 0"))
+        assertEquals((11L..20L).toList(), searchIds("record 1"))
+    }
+
+    @Test
+    fun test_searchRecordsRawQuery_skipsRecycleAndAppliesFilter() {
+        val inRecycle = recordDao.getRecordById(5L)!!
+        recordDao.updateRecord(inRecycle.copy(isMovedToRecycle = true, removed = 1000L))
+        val wav = recordDao.getRecordById(41L)!!
+        recordDao.updateRecord(wav.copy(format = "wav"))
+
+        assertEquals((41L..50L).toList(), searchIds("record 4"))
+        assertEquals(listOf(41L), searchIds("record 4", RecordsFilter(formats = setOf("wav"))))
+    }
+
+    @Test
+    fun test_searchRecordsRawQuery_ranksNameAboveDescription() {
+        val inDescription = recordDao.getRecordById(1L)!!
+        recordDao.updateRecord(inDescription.copy(description = "Interview"))
+        val inName = recordDao.getRecordById(2L)!!
+        recordDao.updateRecord(inName.copy(name = "Interview"))
+
+        val query = buildRecordsSearchQuery("inter".toFtsPrefixQuery(), false, RecordsFilter())
+        val matches = recordDao.searchRecordsRawQuery(query).associateBy { it.id }
+
+        assertEquals(setOf(1L, 2L), matches.keys)
+        assertTrue(matches.getValue(2L).rank() > matches.getValue(1L).rank())
+    }
+
+    @Test
+    fun test_getRecordListRowsByIds() {
+        val rows = recordDao.getRecordListRowsByIds(listOf(3L, 7L))
+
+        assertEquals(listOf(3L, 7L), rows.map { it.id }.sorted())
+        assertEquals("Record 2", rows.first { it.id == 3L }.name)
+    }
+
     // ==================== distinct filter options ====================
 
     /**
@@ -0,0 +1,291 @@
+package com.dimowner.audiorecorder.v2.data.room
+
+import android.content.Context
+import androidx.room.Room
+import androidx.room.RoomDatabase
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.dimowner.audiorecorder.v2.app.records.models.RecordsFilter
+import com.dimowner.audiorecorder.v2.data.buildRecordsPageQuery
+import com.dimowner.audiorecorder.v2.data.buildRecordsSearchQuery
+import com.dimowner.audiorecorder.v2.data.extensions.toRecordsSortColumnName
+import com.dimowner.audiorecorder.v2.data.model.RecordsCursor
+import com.dimowner.audiorecorder.v2.data.model.SortOrder
+import org.junit.After
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.Executor
+
+/**
+ * Runs the DAO queries and checks their `EXPLAIN QUERY PLAN` so that a query which falls back
+ * to a full table scan, or sorts every row of the table, is caught when the schema changes.
+ */
+@RunWith(AndroidJUnit4::class)
+class RecordQueryPlanTest {
+
+    private lateinit var db: AppDatabase
+    private lateinit var recordDao: RecordDao
+
+    private val statements = mutableListOf<Pair<String, List<Any?>>>()
+
+    @Volatile
+    private var isCapturing = false
+
+    @Before
+    fun createDb() {
+        val context: Context = ApplicationProvider.getApplicationContext()
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase::class.java)
+            .allowMainThreadQueries()
+            .setQueryCallback(
+                RoomDatabase.QueryCallback { sql, args ->
+                    if (isCapturing) statements.add(sql to args.toList())
+                },
+                Executor { it.run() }
+            )
+            .build()
+        recordDao = db.recordDao()
+        for (i in 1..20) {
+            recordDao.insertRecord(
+                RecordEntity(
+                    0, "Record $i", 1000L * i, i.toLong(), i.toLong(), 0L, "path/to/record$i",
+                    "mp3", 1024, 44100, 2, 128, i % 3 == 0, true, i % 4 == 0, IntArray(10),
+                    loudness = -20.0 - i, clippedSamples = (i % 5).toLong(),
+                )
+            )
+        }
+    }
+
+    @After
+    fun closeDb() {
+        db.close()
+    }
+
+    /** Runs [block] and returns the query plan of every statement it ran on the records table. */
+    private fun queryPlans(block: () -> Unit): Map<String, List<String>> {
+        statements.clear()
+        isCapturing = true
+        try {
+            block()
+        } finally {
+            isCapturing = false
+        }
+        return statements
+            .filter { RECORDS_STATEMENT.containsMatchIn(it.first) }
+            .associate { (sql, args) -> sql to explain(sql, args) }
+    }
+
+    private fun explain(sql: String, args: List<Any?>): List<String> {
+        val query = SimpleSQLiteQuery("EXPLAIN QUERY PLAN $sql", args.toTypedArray())
+        return db.openHelper.readableDatabase.query(query).use { cursor ->
+            val detail = cursor.getColumnIndexOrThrow("detail")
+            val plan = mutableListOf<String>()
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail))
+            }
+            plan
+        }
+    }
+
+    /**
+     * Fails if any plan reads the whole table, or, unless [allowSort] is set, sorts the
+     * selected rows in a temporary B-tree instead of reading them in index order.
+     */
+    private fun assertIndexed(plans: Map<String, List<String>>, allowSort: Boolean = false) {
+        assertTrue("No statement on records was run", plans.isNotEmpty())
+        for ((sql, plan) in plans) {
+            for (detail in plan) {
+                assertFalse("Full table scan in '$sql': $plan", FULL_SCAN.matches(detail))
+                if (!allowSort) {
+                    assertFalse("Sort without index in '$sql': $plan", SORT.containsMatchIn(detail))
+                }
+            }
+        }
+    }
+
+    private fun assertUsesIndex(plans: Map<String, List<String>>, index: String) {
+        for ((sql, plan) in plans) {
+            assertTrue("'$sql' doesn't use $index: $plan", plan.any { it.contains(index) })
+        }
+    }
+
+    @Test
+    fun test_queriesById() {
+        val plans = queryPlans {
+            val record = recordDao.getRecordById(1)!!
+            recordDao.getRecordsByIds(listOf(1L, 2L))
+            recordDao.updateRecord(record.copy(name = "Renamed"))
+            recordDao.getTrashRecordById(4)
+            recordDao.deleteRecord(record)
+            recordDao.deleteRecordById(2)
+        }
+        assertIndexed(plans)
+    }
+
+    @Test
+    fun test_recordsListQueries() {
+        val plans = queryPlans {
+            recordDao.getRecordsCount()
+            recordDao.getRecordTotalDuration()
+            recordDao.getRecordsByPage(pageSize = 10, offset = 10)
+            recordDao.getAllRecords()
+            recordDao.getAllRecordIds()
+            recordDao.getRecordsDurations()
+        }
+        assertIndexed(plans)
+    }
+
+    @Test
+    fun test_trashQueries() {
+        val plans = queryPlans {
+            recordDao.getMovedToRecycleRecords()
+            recordDao.getMovedToRecycleRecordsFirstPage(pageSize = 10)
+            recordDao.getMovedToRecycleRecordsAfter(removed = 5000L, id = 10L, pageSize = 10)
+            recordDao.getMovedToRecycleRecordIds()
+            recordDao.getMovedToRecycleRecordsCount()
+            recordDao.deleteAllTrashRecords()
+        }
+        assertIndexed(plans)
+        assertUsesIndex(plans, "index_records_isMovedToRecycle_removed")
+    }
+
+    @Test
+    fun test_findRecordByPath_usesPathIndex() {
+        val plans = queryPlans { recordDao.findRecordByPath("path/to/record3") }
+        assertIndexed(plans)
+        assertUsesIndex(plans, "index_records_path")
+    }
+
+    @Test
+    fun test_pathLikeQueries() {
+        // A LIKE with a leading wildcard can't use the path index, it reads the records
+        // that are not in the trash.
+        val plans = queryPlans {
+            recordDao.findRecordsByPathLike("record")
+            recordDao.countRecordsByPathLike("record")
+        }
+        assertIndexed(plans)
+    }
+
+    @Test
+    fun test_getBrokenRecords() {
+        val plans = queryPlans { recordDao.getBrokenRecords() }
+        assertIndexed(plans)
+        assertUsesIndex(plans, "index_records_isMovedToRecycle_duration")
+    }
+
+    @Test
+    fun test_filterOptionQueries() {
+        // DISTINCT values are collected in a temporary B-tree, there are only a few of them.
+        val plans = queryPlans {
+            recordDao.getDistinctFormats()
+            recordDao.getDistinctSampleRates()
+            recordDao.getDistinctChannelCounts()
+            recordDao.getDistinctBitrates()
+            recordDao.hasClippedRecords()
+        }
+        assertIndexed(plans, allowSort = true)
+    }
+
+    @Test
+    fun test_hasClippedRecords_usesClippedSamplesIndex() {
+        val plans = queryPlans { recordDao.hasClippedRecords() }
+        assertIndexed(plans)
+        assertUsesIndex(plans, "index_records_isMovedToRecycle_clippedSamples")
+    }
+
+    @Test
+    fun test_getBookmarkedRecords() {
+        // Legacy v1 query ordered by creation date, only the bookmarked records are sorted.
+        val plans = queryPlans { recordDao.getBookmarkedRecords() }
+        assertIndexed(plans, allowSort = true)
+    }
+
+    @Test
+    fun test_recordsPages_everySortOrderAndFilter() {
+        val filters = listOf(
+            RecordsFilter(),
+            RecordsFilter(
+                formats = setOf("mp3", "wav"),
+                sampleRates = setOf(44100),
+                channelCounts = setOf(1, 2),
+                bitrates = setOf(128),
+            ),
+        )
+        val cursor = RecordsCursor(10L, 10000L, "Record 10", 10000L, -30.0, 0L)
+        for (sortOrder in SortOrder.entries) {
+            for (isBookmarked in listOf(false, true)) {
+                for (filter in filters) {
+                    for (after in listOf(null, cursor)) {
+                        val plans = queryPlans {
+                            recordDao.getRecordListRawQuery(
+                                buildRecordsPageQuery(after, 10, sortOrder, isBookmarked, filter)
+                            )
+                        }
+                        assertIndexed(plans)
+                        assertUsesIndex(plans, "index_records_isMovedToRecycle_${sortOrder.toRecordsSortColumnName()}")
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    fun test_recordsPages_notAnalysedRange_usesLoudnessIndex() {
+        val notAnalysed = RecordsCursor(10L, 10000L, "Record 10", 10000L, null, 0L)
+        for (sortOrder in listOf(SortOrder.LoudnessLoudest, SortOrder.LoudnessQuietest)) {
+            for (after in listOf(null, notAnalysed)) {
+                val plans = queryPlans {
+                    recordDao.getRecordListRawQuery(
+                        buildRecordsPageQuery(after, 10, sortOrder, false, RecordsFilter(), notAnalysed = true)
+                    )
+                }
+                assertIndexed(plans)
+                assertUsesIndex(plans, "index_records_isMovedToRecycle_loudness")
+            }
+        }
+    }
+
+    @Test
+    fun test_recordsPages_onlyClipped_usesClippedSamplesIndex() {
+        // Clipped records are few, they are found by the index and then sorted.
+        for (sortOrder in SortOrder.entries) {
+            val plans = queryPlans {
+                recordDao.getRecordListRawQuery(
+                    buildRecordsPageQuery(null, 10, sortOrder, false, RecordsFilter(onlyClipped = true))
+                )
+            }
+            assertIndexed(plans, allowSort = true)
+            assertUsesIndex(plans, "index_records_isMovedToRecycle_clippedSamples")
+        }
+    }
+
+    @Test
+    fun test_searchRecords_readsFullTextIndexFirst() {
+        val filter = RecordsFilter(formats = setOf("mp3"), onlyClipped = true)
+        for (isBookmarked in listOf(false, true)) {
+            val plans = queryPlans {
+                recordDao.searchRecordsRawQuery(buildRecordsSearchQuery("\"rec*\" \"1*\"", isBookmarked, filter))
+                recordDao.getRecordListRowsByIds(listOf(1L, 2L))
+            }
+            assertIndexed(plans)
+            for ((sql, plan) in plans.filterKeys { it.contains("records_fts") }) {
+                assertTrue("'$sql' doesn't start from the full-text index: $plan", FTS_SCAN.containsMatchIn(plan[0]))
+            }
+        }
+    }
+
+    private companion object {
+        val RECORDS_STATEMENT = Regex("^\\s*(SELECT|UPDATE|DELETE)\\b.*\\brecords\\b", RegexOption.IGNORE_CASE)
+
+        /** A table scan, as opposed to a scan of an index: "SCAN TABLE records" or "SCAN records". */
+        val FULL_SCAN = Regex("SCAN (TABLE )?records")
+
+        val SORT = Regex("TEMP B-TREE FOR .*ORDER BY")
+
+        val FTS_SCAN = Regex("SCAN (TABLE )?records_fts VIRTUAL TABLE")
+    }
+}
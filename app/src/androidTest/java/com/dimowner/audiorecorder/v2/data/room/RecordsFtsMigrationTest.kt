@@ -0,0 +1,125 @@
+package com.dimowner.audiorecorder.v2.data.room
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import androidx.room.Room
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.dimowner.audiorecorder.v2.app.records.models.RecordsFilter
+import com.dimowner.audiorecorder.v2.data.buildRecordsSearchQuery
+import com.dimowner.audiorecorder.v2.data.extensions.toFtsPrefixQuery
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class RecordsFtsMigrationTest {
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+
+    @Before
+    fun setUp() {
+        context.deleteDatabase(TEST_DB)
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(TEST_DB)
+    }
+
+    /** Creates the records table and its indexes as they were in version 7. */
+    private fun createVersion7Database(names: List<String>) {
+        val configuration = SupportSQLiteOpenHelper.Configuration.builder(context)
+            .name(TEST_DB)
+            .callback(object : SupportSQLiteOpenHelper.Callback(7) {
+                override fun onCreate(db: SupportSQLiteDatabase) {
+                    db.execSQL(
+                        "CREATE TABLE records (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                            "name TEXT NOT NULL, duration INTEGER NOT NULL, created INTEGER NOT NULL, " +
+                            "added INTEGER NOT NULL, removed INTEGER NOT NULL, path TEXT NOT NULL, " +
+                            "format TEXT NOT NULL, size INTEGER NOT NULL, sampleRate INTEGER NOT NULL, " +
+                            "channelCount INTEGER NOT NULL, bitrate INTEGER NOT NULL, " +
+                            "isBookmarked INTEGER NOT NULL, isWaveformProcessed INTEGER NOT NULL, " +
+                            "isMovedToRecycle INTEGER NOT NULL, amps BLOB NOT NULL, " +
+                            "description TEXT NOT NULL DEFAULT '', " +
+                            "linkedRecordId INTEGER NOT NULL DEFAULT -1, " +
+                            "keptSegments TEXT NOT NULL DEFAULT '', loudness REAL, loudnessRange REAL, " +
+                            "truePeak REAL, clippedSamples INTEGER)"
+                    )
+                    for (column in listOf("added", "name", "duration", "loudness", "removed", "clippedSamples")) {
+                        db.execSQL(
+                            "CREATE INDEX index_records_isMovedToRecycle_$column " +
+                                "ON records (isMovedToRecycle, $column)"
+                        )
+                    }
+                    db.execSQL("CREATE INDEX index_records_path ON records (path)")
+                }
+
+                override fun onUpgrade(db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) {}
+            })
+            .build()
+        FrameworkSQLiteOpenHelperFactory().create(configuration).use { helper ->
+            val db = helper.writableDatabase
+            names.forEachIndexed { index, name ->
+                val id = index + 1L
+                val values = ContentValues().apply {
+                    put("id", id)
+                    put("name", name)
+                    put("duration", 1000L)
+                    put("created", id)
+                    put("added", id)
+                    put("removed", 0L)
+                    put("path", "path/to/record$id")
+                    put("format", "m4a")
+                    put("size", 1024L)
+                    put("sampleRate", 44100)
+                    put("channelCount", 2)
+                    put("bitrate", 128000)
+                    put("isBookmarked", 0)
+                    put("isWaveformProcessed", 1)
+                    put("isMovedToRecycle", 0)
+                    put("amps", ByteArray(0))
+                    put("description", "Note $id")
+                }
+                db.insert("records", SQLiteDatabase.CONFLICT_NONE, values)
+            }
+        }
+    }
+
+    private fun AppDatabase.searchIds(text: String): List<Long> {
+        val query = buildRecordsSearchQuery(text.toFtsPrefixQuery(), false, RecordsFilter())
+        return recordDao().searchRecordsRawQuery(query).map { it.id }.sorted()
+    }
+
+    @Test
+    fun migration_indexes_existing_records_and_keeps_index_in_sync() {
+        createVersion7Database(listOf("Morning walk", "Lecture 1", "Lecture 2"))
+
+        val db = Room.databaseBuilder(context, AppDatabase::class.java, TEST_DB)
+            .addMigrations(MIGRATION_7_8)
+            .allowMainThreadQueries()
+            .build()
+        try {
+            assertEquals(listOf(2L, 3L), db.searchIds("lect"))
+            assertEquals(listOf(1L), db.searchIds("walk note"))
+
+            val record = db.recordDao().getRecordById(1L)!!
+            db.recordDao().insertRecord(record.copy(id = 0, name = "Lecture 3"))
+            db.recordDao().deleteRecordById(2L)
+
+            assertEquals(listOf(3L, 4L), db.searchIds("lect"))
+        } finally {
+            db.close()
+        }
+    }
+
+    private companion object {
+        const val TEST_DB = "records-fts-migration-test"
+    }
+}
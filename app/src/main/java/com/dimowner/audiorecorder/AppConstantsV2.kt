@@ -10,4 +10,10 @@ object AppConstantsV2 {
     const val DEFAULT_MAX_RECORDING_DURATION_MS = 120 * 60 * 1000 //120 minutes
 
     const val RECORD_DESCRIPTION_MAX_LENGTH = 500
+
+    /** Directory in app files where decoded waveform pyramids are kept, one file per record id. */
+    const val WAVEFORMS_DIR = "waveforms"
+
+    /** Directory in app files where results of decode analyzers are kept, one file per record id. */
+    const val ANALYSIS_DIR = "analysis"
 }
@@ -38,17 +38,29 @@ import androidx.core.app.NotificationCompat
 import androidx.core.app.NotificationManagerCompat
 import com.dimowner.audiorecorder.ARApplication
 import com.dimowner.audiorecorder.AppConstants
-import com.dimowner.audiorecorder.AppConstants.DECODE_DURATION
 import com.dimowner.audiorecorder.AppConstants.PENDING_INTENT_FLAGS
 import com.dimowner.audiorecorder.BackgroundQueue
 import com.dimowner.audiorecorder.ColorMap
 import com.dimowner.audiorecorder.R
 import com.dimowner.audiorecorder.app.main.MainActivity
+import com.dimowner.audiorecorder.audio.AudioAnalysis
+import com.dimowner.audiorecorder.audio.AudioDecoder
 import com.dimowner.audiorecorder.audio.AudioDecodingListener
-import com.dimowner.audiorecorder.audio.AudioWaveformVisualization
+import com.dimowner.audiorecorder.audio.ClippingAnalyzer
+import com.dimowner.audiorecorder.audio.DecodeJob
+import com.dimowner.audiorecorder.audio.DecodeOutcome
+import com.dimowner.audiorecorder.audio.DecodeTask
+import com.dimowner.audiorecorder.audio.LevelAnalyzer
+import com.dimowner.audiorecorder.audio.LoudnessAnalyzer
+import com.dimowner.audiorecorder.audio.PcmAnalyzer
+import com.dimowner.audiorecorder.audio.SilenceAnalyzer
+import com.dimowner.audiorecorder.audio.WaveformDecodeScheduler
+import com.dimowner.audiorecorder.audio.WaveformPyramid
 import com.dimowner.audiorecorder.data.database.LocalRepository
 import com.dimowner.audiorecorder.data.database.Record
 import com.dimowner.audiorecorder.util.isUsingNightModeResources
+import com.dimowner.audiorecorder.v2.data.FileDataSource
+import com.dimowner.audiorecorder.v2.data.PrefsV2
 import com.dimowner.audiorecorder.v2.data.RecordsDataSource
 import com.dimowner.audiorecorder.v2.di.qualifiers.IoDispatcher
 import com.dimowner.audiorecorder.v2.di.qualifiers.MainDispatcher
@@ -60,6 +72,9 @@ import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withContext
 import timber.log.Timber
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
 import javax.inject.Inject
 
 /**
@@ -80,6 +95,20 @@ class DecodeService : Service() {
 		const val EXTRAS_KEY_DECODE_RECORD_PATH = "key_decode_decode_record_path"
 		private const val NOTIF_ID = 104
 
+		/** Upper bound of parallel decodes, each one holds a codec and up to 2 MB of bins. */
+		private const val MAX_DECODE_WORKERS = 4
+		private const val PRIORITY_DEFAULT = 0
+		/** Record shown on the home screen, the user is waiting for its waveform. */
+		private const val PRIORITY_ACTIVE_RECORD = 10
+		/** Previews are quick and replace a blank waveform, they go first. */
+		private const val PRIORITY_PREVIEW = 20
+		/** Full decode of a record that already has a preview. */
+		private const val PRIORITY_BACKGROUND = -10
+		/** Shorter records are decoded in full right away, a preview would not save much. */
+		private const val PREVIEW_MIN_DURATION_MILLS = 5 * 60 * 1000L
+		/** About one window per pixel of a phone-wide waveform. */
+		private const val PREVIEW_WINDOW_COUNT = 600
+
 		fun startNotification(context: Context, recordId: Long) {
 			val intent = Intent(context, DecodeService::class.java)
 			intent.action = ACTION_START_DECODING_SERVICE
@@ -100,6 +129,12 @@ class DecodeService : Service() {
     @Inject
     lateinit var recordsDataSource: RecordsDataSource
 
+    @Inject
+    lateinit var fileDataSource: FileDataSource
+
+    @Inject
+    lateinit var prefs: PrefsV2
+
     @Inject
     @IoDispatcher
     lateinit var ioDispatcher: CoroutineDispatcher
@@ -118,12 +153,15 @@ class DecodeService : Service() {
 	lateinit var remoteViewsSmall: RemoteViews
 	lateinit var remoteViewsBig: RemoteViews
 	lateinit var contentPendingIntent: PendingIntent
-	lateinit var processingTasks: BackgroundQueue
 	lateinit var recordingsTasks: BackgroundQueue
 	lateinit var localRepository: LocalRepository
-	lateinit var waveformVisualization: AudioWaveformVisualization
 	lateinit var colorMap: ColorMap
-	private var isCancel = false
+	private val decodeWorkers = ArrayList<BackgroundQueue>()
+	private lateinit var scheduler: WaveformDecodeScheduler
+	/** Last reported progress of every running decode, by job key. */
+	private val jobsProgress = ConcurrentHashMap<String, Int>()
+	private var isForeground = false
+	private var prevNotificationTime = 0L
 
 	override fun onBind(intent: Intent): IBinder? {
 		return binder
@@ -132,10 +170,33 @@ class DecodeService : Service() {
 	override fun onCreate() {
 		super.onCreate()
 		colorMap = ARApplication.injector.provideColorMap(applicationContext)
-		processingTasks = ARApplication.injector.provideProcessingTasksQueue()
 		recordingsTasks = ARApplication.injector.provideRecordingTasksQueue()
 		localRepository = ARApplication.injector.provideLocalRepository(applicationContext)
-		waveformVisualization = ARApplication.injector.provideAudioWaveformVisualization()
+		// Leave a core for the UI and recording.
+		val workerCount = (Runtime.getRuntime().availableProcessors() - 1).coerceIn(1, MAX_DECODE_WORKERS)
+		repeat(workerCount) {
+			decodeWorkers.add(BackgroundQueue("WaveformDecode-$it"))
+		}
+		scheduler = WaveformDecodeScheduler(
+			workers = decodeWorkers.map { queue -> Executor { queue.postRunnable(it) } },
+			onJobMetrics = { metrics ->
+				Timber.d("Waveform decode %s: %s, priority %d, waited %d ms, ran %d ms", metrics.key,
+					metrics.outcome, metrics.priority, metrics.waitMills, metrics.runMills)
+			},
+			onIdle = {
+				serviceScope.launch(mainDispatcher) {
+					if (scheduler.isIdle()) stopService()
+				}
+			}
+		)
+		// The record opened on the home screen may change while its decode is still queued.
+		serviceScope.launch {
+			prefs.activeRecordIdFlow.collect { recordId ->
+				if (recordId >= 0) {
+					scheduler.prioritize(recordId.toString(), PRIORITY_ACTIVE_RECORD)
+				}
+			}
+		}
 	}
 
 	override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
@@ -147,9 +208,9 @@ class DecodeService : Service() {
 						if (intent.hasExtra(EXTRAS_KEY_DECODE_RECORD_PATH)) {
 							val recordId = intent.getLongExtra(EXTRAS_KEY_DECODE_INFO, -1)
 							val path = intent.getStringExtra(EXTRAS_KEY_DECODE_RECORD_PATH)
-							val duration = intent.getLongExtra(EXTRAS_KEY_DECODE_RECORD_DURATION, 0)
+							val durationMills = intent.getLongExtra(EXTRAS_KEY_DECODE_RECORD_DURATION, 0)
 							path?.let {
-								startDecodeV2(recordId, path, duration)
+								startDecodeV2(recordId, path, durationMills)
 							}
 						} else if (intent.hasExtra(EXTRAS_KEY_DECODE_INFO)) {
 							val id = intent.getLongExtra(EXTRAS_KEY_DECODE_INFO, -1)
@@ -160,8 +221,12 @@ class DecodeService : Service() {
 					}
 					ACTION_STOP_DECODING_SERVICE -> stopService()
 					ACTION_CANCEL_DECODE -> {
-						isCancel = true
-						stopService()
+						if (intent.hasExtra(EXTRAS_KEY_DECODE_INFO)) {
+							cancelDecode(intent.getLongExtra(EXTRAS_KEY_DECODE_INFO, -1))
+						} else {
+							Toast.makeText(applicationContext, R.string.processing_canceled, Toast.LENGTH_LONG).show()
+							scheduler.cancelAll()
+						}
 					}
 				}
 			}
@@ -171,39 +236,76 @@ class DecodeService : Service() {
 
     override fun onDestroy() {
         super.onDestroy()
+        scheduler.cancelAll()
+        decodeWorkers.forEach { it.close() }
         serviceJob.cancel()
     }
 
-	private fun startDecode(id: Long) {
-		isCancel = false
-		startNotification()
-		processingTasks.postRunnable {
-			var prevTime: Long = 0
-			val rec = localRepository.getRecord(id.toInt())
-			if (rec != null && rec.duration / 1000 < DECODE_DURATION) {
-				waveformVisualization.decodeRecordWaveform(rec.path, object : AudioDecodingListener {
-					override fun isCanceled(): Boolean {
-						return isCancel
-					}
+	/** Cancels the decode of a v2 record without touching the other queued decodes. */
+	fun cancelDecode(recordId: Long) {
+		scheduler.cancel("preview_$recordId")
+		scheduler.cancel(recordId.toString())
+	}
 
-					override fun onStartProcessing(duration: Long, channelsCount: Int, sampleRate: Int) {
-						decodeListener?.onStartProcessing()
-					}
+	/**
+	 * Listener of one scheduled decode: reports progress to the shared notification and
+	 * releases the job worker when decoding ends.
+	 */
+	private abstract inner class JobDecodingListener(
+		protected val job: DecodeJob,
+		private val recordId: Long,
+	) : AudioDecodingListener {
 
-					override fun onProcessingProgress(percent: Int) {
-						val curTime = System.currentTimeMillis()
-						if (percent == 100 || curTime > prevTime + 200) {
-							updateNotification(percent)
-							prevTime = curTime
-						}
-					}
+		override fun isCanceled(): Boolean {
+			return job.isCanceled
+		}
 
-					override fun onProcessingCancel() {
-						Toast.makeText(applicationContext, R.string.processing_canceled, Toast.LENGTH_LONG).show()
-						decodeListener?.onFinishProcessing(id,intArrayOf())
-						stopService()
-					}
+		override fun onStartProcessing(duration: Long, channelsCount: Int, sampleRate: Int) {
+			decodeListener?.onStartProcessing()
+		}
+
+		override fun onProcessingProgress(percent: Int) {
+			jobsProgress[job.key] = percent
+			updateNotification()
+		}
+
+		override fun isPartialPyramidWanted(): Boolean {
+			return decodeListener?.isPartialWaveformWanted(recordId) ?: false
+		}
+
+		override fun onPartialPyramid(pyramid: WaveformPyramid) {
+			decodeListener?.onPartialWaveform(recordId, pyramid)
+		}
 
+		override fun onProcessingCancel() {
+			jobsProgress.remove(job.key)
+			decodeListener?.onFinishProcessing(recordId, intArrayOf())
+			job.finish(DecodeOutcome.CANCELED)
+		}
+
+		override fun onError(exception: Exception) {
+			Timber.e(exception)
+			jobsProgress.remove(job.key)
+			decodeListener?.onFinishProcessing(recordId, intArrayOf())
+			job.finish(DecodeOutcome.ERROR)
+		}
+
+		protected fun finishSuccessfully() {
+			finishJob(DecodeOutcome.SUCCESS)
+		}
+
+		protected fun finishJob(outcome: DecodeOutcome) {
+			jobsProgress.remove(job.key)
+			job.finish(outcome)
+		}
+	}
+
+	private fun startDecode(id: Long) {
+		val isActive = ARApplication.injector.providePrefs(applicationContext).activeRecord == id
+		submitDecode("v1_$id", if (isActive) PRIORITY_ACTIVE_RECORD else PRIORITY_DEFAULT, onDecodeCanceled(id)) { job ->
+			val rec = localRepository.getRecord(id.toInt())
+			if (rec != null) {
+				AudioDecoder.decode(rec.path, checkpointFile(job.key), object : JobDecodingListener(job, id) {
 					override fun onFinishProcessing(data: IntArray, duration: Long) {
 						recordingsTasks.postRunnable {
 							val rec1 = localRepository.getRecord(id.toInt())
@@ -227,78 +329,128 @@ class DecodeService : Service() {
 								localRepository.updateRecord(decodedRecord)
 							}
 							decodeListener?.onFinishProcessing(id, data)
-							stopService()
+							finishSuccessfully()
 						}
 					}
-
-					override fun onError(exception: Exception) {
-						Timber.e(exception)
-						decodeListener?.onFinishProcessing(id,intArrayOf())
-						stopService()
-					}
 				})
 			} else {
-				stopService()
+				job.finish(DecodeOutcome.ERROR)
 			}
 		}
 	}
 
+	/** Tells the listener about a decode canceled before it started, as [JobDecodingListener] does. */
+	private fun onDecodeCanceled(recordId: Long): () -> Unit = {
+		decodeListener?.onFinishProcessing(recordId, intArrayOf())
+	}
+
+	/** Queues a decode under [key], a repeated request for a queued or running key is merged. */
+	private fun submitDecode(key: String, priority: Int, onCanceled: () -> Unit = {}, task: DecodeTask) {
+		if (!isForeground) {
+			startNotification()
+			isForeground = true
+		}
+		if (!scheduler.submit(key, priority, task, onCanceled)) {
+			Timber.d("Waveform decode %s is already scheduled", key)
+		}
+	}
+
+	/** Decoding state of a record, kept in cache so an interrupted decode can be resumed. */
+	private fun checkpointFile(key: String): File {
+		return File(cacheDir, "waveform_checkpoint_$key")
+	}
+
 	private fun startDecodeV2(recordId: Long, path: String, durationMills: Long) {
-		isCancel = false
-		startNotification()
-		processingTasks.postRunnable {
-			var prevTime: Long = 0
-			if (durationMills < DECODE_DURATION) {
-				waveformVisualization.decodeRecordWaveform(path, object : AudioDecodingListener {
-					override fun isCanceled(): Boolean {
-						return isCancel
-					}
+		val key = recordId.toString()
+		val isActive = recordId == prefs.activeRecordId
+		val withPreview = durationMills >= PREVIEW_MIN_DURATION_MILLS
+				&& !path.lowercase().endsWith("." + AppConstants.FORMAT_WAV)
+				&& !scheduler.isQueuedOrRunning(key)
+		if (withPreview) {
+			startPreviewV2(recordId, path)
+		}
+		val priority = when {
+			withPreview -> PRIORITY_BACKGROUND
+			isActive -> PRIORITY_ACTIVE_RECORD
+			else -> PRIORITY_DEFAULT
+		}
+		submitDecode(key, priority, onDecodeCanceled(recordId)) { job ->
+			AudioDecoder.decode(path, checkpointFile(key), object : JobDecodingListener(job, recordId) {
+				private var pyramid: WaveformPyramid? = null
+				private var analysis: AudioAnalysis? = null
 
-					override fun onStartProcessing(duration: Long, channelsCount: Int, sampleRate: Int) {
-						decodeListener?.onStartProcessing()
-					}
+				override fun createAnalyzers(): List<PcmAnalyzer> {
+					return listOf(LevelAnalyzer(), ClippingAnalyzer(), SilenceAnalyzer(), LoudnessAnalyzer())
+				}
 
-					override fun onProcessingProgress(percent: Int) {
-						val curTime = System.currentTimeMillis()
-						if (percent == 100 || curTime > prevTime + 200) {
-							updateNotification(percent)
-							prevTime = curTime
-						}
-					}
+				override fun onFinishAnalysis(analysis: AudioAnalysis) {
+					this.analysis = analysis
+				}
 
-					override fun onProcessingCancel() {
-						Toast.makeText(applicationContext, R.string.processing_canceled, Toast.LENGTH_LONG).show()
-						decodeListener?.onFinishProcessing(recordId, intArrayOf())
-						stopService()
-					}
+				override fun onFinishPyramid(pyramid: WaveformPyramid) {
+					this.pyramid = pyramid
+				}
 
-					override fun onFinishProcessing(data: IntArray, duration: Long) {
-						serviceScope.launch(ioDispatcher) {
-							if (recordId < 0) return@launch
+				override fun onFinishProcessing(data: IntArray, duration: Long) {
+					val decodedPyramid = pyramid
+					val decodedAnalysis = analysis
+					serviceScope.launch(ioDispatcher) {
+						if (recordId >= 0) {
+							decodedPyramid?.let { fileDataSource.saveWaveformPyramid(recordId, it) }
+							decodedAnalysis?.let { fileDataSource.saveAudioAnalysis(recordId, it) }
 							recordsDataSource.getRecord(recordId)?.let { record ->
+								// A decode resumed from a checkpoint has no analysis, keep the stored one.
 								recordsDataSource.updateRecord(
 									record.copy(
 										amps = data,
-										isWaveformProcessed = true
+										isWaveformProcessed = true,
+										loudness = decodedAnalysis?.getValue(LoudnessAnalyzer.KEY_INTEGRATED_LUFS)
+												?: record.loudness,
+										loudnessRange = decodedAnalysis?.getValue(LoudnessAnalyzer.KEY_LOUDNESS_RANGE_LU)
+												?: record.loudnessRange,
+										truePeak = decodedAnalysis?.getValue(LoudnessAnalyzer.KEY_TRUE_PEAK_DBTP)
+												?: record.truePeak,
+										clippedSamples = decodedAnalysis?.getValue(ClippingAnalyzer.KEY_CLIPPED_SAMPLES)
+												?.toLong() ?: record.clippedSamples,
 									)
 								)
 							}
-							withContext(mainDispatcher) {
-								decodeListener?.onFinishProcessing(recordId, data)
-								stopService()
-							}
+						}
+						withContext(mainDispatcher) {
+							decodeListener?.onFinishProcessing(recordId, data)
+							finishSuccessfully()
 						}
 					}
+				}
+			})
+		}
+	}
 
-					override fun onError(exception: Exception) {
-						Timber.e(exception)
-						decodeListener?.onFinishProcessing(recordId, intArrayOf())
-						stopService()
-					}
-				})
-			} else {
-				stopService()
-			}
+	/**
+	 * Decodes a sparse approximate waveform of a long record, shown until the full decode
+	 * of the same record replaces it. WAV files are read fast enough without one.
+	 */
+	private fun startPreviewV2(recordId: Long, path: String) {
+		submitDecode("preview_$recordId", PRIORITY_PREVIEW) { job ->
+			AudioDecoder.decodePreview(path, PREVIEW_WINDOW_COUNT, object : JobDecodingListener(job, recordId) {
+				override fun onFinishPyramid(pyramid: WaveformPyramid) {
+					decodeListener?.onPreviewWaveform(recordId, pyramid)
+				}
+
+				override fun onFinishProcessing(data: IntArray, duration: Long) {
+					finishSuccessfully()
+				}
+
+				override fun onProcessingCancel() {
+					finishJob(DecodeOutcome.CANCELED)
+				}
+
+				override fun onError(exception: Exception) {
+					// The full decode still runs, no need to tell the listener.
+					Timber.e(exception)
+					finishJob(DecodeOutcome.ERROR)
+				}
+			})
 		}
 	}
 
@@ -400,6 +552,7 @@ class DecodeService : Service() {
 	}
 
 	fun stopService() {
+		isForeground = false
 		if (Build.VERSION.SDK_INT>Build.VERSION_CODES.S_V2) {
 			stopForeground(STOP_FOREGROUND_REMOVE)
 		}else {
@@ -444,7 +597,14 @@ class DecodeService : Service() {
 		}
 	}
 
-	private fun updateNotification(percent: Int) {
+	/** Shows the mean progress of the running decodes, at most every 200 ms. */
+	@Synchronized
+	private fun updateNotification() {
+		val curTime = System.currentTimeMillis()
+		val progress = jobsProgress.values
+		if (!isForeground || progress.isEmpty() || curTime < prevNotificationTime + 200) return
+		prevNotificationTime = curTime
+		val percent = progress.sum() / progress.size
 		remoteViewsSmall.setProgressBar(R.id.progress, 100, percent, false)
 		remoteViewsBig.setProgressBar(R.id.progress, 100, percent, false)
 		notificationManager.notify(NOTIF_ID, buildNotification())
@@ -470,4 +630,10 @@ class DecodeService : Service() {
 interface DecodeServiceListener {
 	fun onStartProcessing()
 	fun onFinishProcessing(recordId: Long, decodedData: IntArray)
+	/** Whether [onPartialWaveform] is shown for [recordId], called from a decode worker thread. */
+	fun isPartialWaveformWanted(recordId: Long): Boolean = false
+	/** Waveform decoded so far, called from a decode worker thread. */
+	fun onPartialWaveform(recordId: Long, pyramid: WaveformPyramid) {}
+	/** Approximate waveform of the whole record, called from a decode worker thread. */
+	fun onPreviewWaveform(recordId: Long, pyramid: WaveformPyramid) {}
 }
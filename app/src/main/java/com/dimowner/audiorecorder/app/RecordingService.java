@@ -133,7 +133,7 @@ public class RecordingService extends Service {
 				updateNotificationResume();
 			}
 			@Override public void onRecordingStopped(@NonNull File file, @NonNull Record rec) {
-				if (rec != null && rec.getDuration()/1000 < AppConstants.DECODE_DURATION && !rec.isWaveformProcessed()) {
+				if (rec != null && !rec.isWaveformProcessed()) {
 					DecodeService.Companion.startNotification(getApplicationContext(), rec.getId());
 				}
 				stopForegroundService();
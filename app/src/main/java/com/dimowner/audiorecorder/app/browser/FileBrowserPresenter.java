@@ -20,7 +20,6 @@ import android.content.Context;
 import android.os.Build;
 import androidx.annotation.NonNull;
 import com.dimowner.audiorecorder.ARApplication;
-import com.dimowner.audiorecorder.AppConstants;
 import com.dimowner.audiorecorder.BackgroundQueue;
 import com.dimowner.audiorecorder.R;
 import com.dimowner.audiorecorder.app.AppRecorder;
@@ -241,7 +240,7 @@ public class FileBrowserPresenter implements FileBrowserContract.UserActionsList
 								view.onImportedRecord(info.getLocation());
 							}
 						});
-						if (view != null && !rec.isWaveformProcessed() && rec.getDuration() / 1000 < AppConstants.DECODE_DURATION) {
+						if (view != null && !rec.isWaveformProcessed()) {
 							view.decodeRecord(rec.getId());
 						}
 					}
@@ -528,7 +528,7 @@ public class MainPresenter implements MainContract.UserActionsListener {
 	public void decodeRecord(long id) {
 		loadingTasks.postRunnable(() -> {
 			final Record rec = localRepository.getRecord((int) prefs.getActiveRecord());
-			if (view != null && rec != null && rec.getDuration()/1000 < AppConstants.DECODE_DURATION && !rec.isWaveformProcessed()) {
+			if (view != null && rec != null && !rec.isWaveformProcessed()) {
 				view.decodeRecord(rec.getId());
 			}
 		});
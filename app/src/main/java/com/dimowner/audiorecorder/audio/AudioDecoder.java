@@ -22,9 +22,10 @@ import android.media.MediaFormat;
 
 import com.dimowner.audiorecorder.ARApplication;
 import com.dimowner.audiorecorder.AppConstants;
-import com.dimowner.audiorecorder.IntArrayList;
 import com.dimowner.audiorecorder.app.info.RecordInfo;
 import com.dimowner.audiorecorder.util.FileUtil;
+import com.dimowner.audiorecorder.v2.audio.WavFileInfo;
+import com.dimowner.audiorecorder.v2.audio.WavHeaderParser;
 
 import java.io.File;
 import java.io.IOException;
@@ -33,6 +34,7 @@ import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import timber.log.Timber;
 
 import static com.dimowner.audiorecorder.AppConstants.SUPPORTED_EXT;
@@ -44,23 +46,40 @@ import static com.dimowner.audiorecorder.AppConstants.SUPPORTED_EXT;
 public class AudioDecoder {
 	private static final int QUEUE_INPUT_BUFFER_EFFECTIVE = 1; // Most effective and fastest
 	private static final int QUEUE_INPUT_BUFFER_SIMPLE = 2;	// Less effective and slower
-
-	private float dpPerSec = AppConstants.SHORT_RECORD_DP_PER_SECOND;
+	private static final long PREVIEW_DEQUEUE_TIMEOUT_US = 10000;
+	/** Empty dequeues after the end of input before a preview window is given up. */
+	private static final int PREVIEW_MAX_IDLE_DEQUEUES = 20;
 
 	private int sampleRate;
 	private int channelCount;
-	private int[] oneFrameAmps;
-	private int frameIndex = 0;
+	private WaveformPyramidBuilder pyramidBuilder;
+	/** Analyzers of the listener, fed with the same PCM as [pyramidBuilder]. */
+	@Nullable
+	private PcmAnalyzerChain analyzers;
 
 	private long duration;
 	private static final String TRASH_EXT = "del";
 
-	private IntArrayList gains;
+	/** Where decoding state is saved to survive a killed process, null to not save it. */
+	@Nullable
+	private final File checkpointFile;
+	/** Frame to continue from when resumed from a checkpoint, 0 otherwise. */
+	private long resumeFrame = 0;
 
-	private AudioDecoder() {
+	private AudioDecoder(@Nullable File checkpointFile) {
+		this.checkpointFile = checkpointFile;
 	}
 
 	public static void decode(@NonNull String fileName, @NonNull AudioDecodingListener decodeListener) {
+		decode(fileName, null, decodeListener);
+	}
+
+	/**
+	 * Decodes the waveform of a file. With a [checkpointFile] an interrupted decode of the
+	 * same file continues from the last saved state, the file is deleted once finished.
+	 */
+	public static void decode(@NonNull String fileName, @Nullable File checkpointFile,
+									  @NonNull AudioDecodingListener decodeListener) {
 		try {
 			File file = new File(fileName);
 			if (!file.exists()) {
@@ -74,20 +93,138 @@ public class AudioDecoder {
 			if (!Arrays.asList(SUPPORTED_EXT).contains(components[components.length - 1])) {
 				throw new IOException();
 			}
-			AudioDecoder decoder = new AudioDecoder();
+			AudioDecoder decoder = new AudioDecoder(checkpointFile);
 			decoder.decodeFile(file, decodeListener, QUEUE_INPUT_BUFFER_EFFECTIVE);
 		} catch (Exception e) {
+			WaveformCheckpoint.delete(checkpointFile);
 			decodeListener.onError(e);
 		}
 	}
 
-	private int calculateSamplesPerFrame() {
-		return (int)(sampleRate / dpPerSec);
+	/**
+	 * Decodes an approximate waveform from [windowCount] short windows at evenly spaced
+	 * positions, seeking between them instead of decoding the whole file. Reports the
+	 * result to [decodeListener] like [decode], without a checkpoint.
+	 */
+	public static void decodePreview(@NonNull String fileName, int windowCount,
+											  @NonNull AudioDecodingListener decodeListener) {
+		MediaExtractor extractor = null;
+		MediaCodec codec = null;
+		try {
+			File file = new File(fileName);
+			if (!file.exists()) {
+				throw new java.io.FileNotFoundException(fileName);
+			}
+			extractor = new MediaExtractor();
+			extractor.setDataSource(file.getPath());
+			MediaFormat format = selectAudioTrack(extractor);
+			if (format == null) {
+				throw new IOException("No audio track found in " + file);
+			}
+			int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+			int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+			long duration = format.getLong(MediaFormat.KEY_DURATION);
+			WaveformPreviewBuilder builder = new WaveformPreviewBuilder(duration / 1000, windowCount, sampleRate, channelCount);
+
+			codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+			codec.configure(format, null, null, 0);
+			codec.start();
+			decodeListener.onStartProcessing(duration, channelCount, sampleRate);
+			MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+			int percent = 0;
+			for (int w = 0; w < builder.getWindowCount(); w++) {
+				if (decodeListener.isCanceled()) {
+					decodeListener.onProcessingCancel();
+					return;
+				}
+				long startUs = builder.windowStartUs(w);
+				extractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+				codec.flush();
+				builder.startWindow(w);
+				boolean inputEOS = false;
+				boolean windowDone = false;
+				int idleDequeues = 0;
+				while (!windowDone && idleDequeues < PREVIEW_MAX_IDLE_DEQUEUES) {
+					if (!inputEOS) {
+						int inIndex = codec.dequeueInputBuffer(PREVIEW_DEQUEUE_TIMEOUT_US);
+						if (inIndex >= 0) {
+							ByteBuffer inputBuffer = codec.getInputBuffer(inIndex);
+							int size = inputBuffer != null ? extractor.readSampleData(inputBuffer, 0) : -1;
+							if (size < 0) {
+								codec.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+								inputEOS = true;
+							} else {
+								codec.queueInputBuffer(inIndex, 0, size, extractor.getSampleTime(), 0);
+								extractor.advance();
+							}
+						}
+					}
+					int outIndex = codec.dequeueOutputBuffer(info, PREVIEW_DEQUEUE_TIMEOUT_US);
+					if (outIndex >= 0) {
+						ByteBuffer outputBuffer = codec.getOutputBuffer(outIndex);
+						if (outputBuffer != null && info.size > 0) {
+							outputBuffer.position(info.offset);
+							outputBuffer.limit(info.offset + info.size);
+							windowDone = builder.consume(outputBuffer, info.presentationTimeUs);
+						}
+						windowDone |= (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+						codec.releaseOutputBuffer(outIndex, false);
+					} else if (inputEOS) {
+						idleDequeues++;
+					}
+				}
+				builder.finishWindow();
+				int curPercent = 100 * (w + 1) / builder.getWindowCount();
+				if (curPercent != percent) {
+					percent = curPercent;
+					decodeListener.onProcessingProgress(percent);
+				}
+			}
+			AudioDecoder decoder = new AudioDecoder(null);
+			decoder.duration = duration;
+			decoder.finishProcessing(builder.build(), decodeListener);
+		} catch (Exception e) {
+			decodeListener.onError(e);
+		} finally {
+			if (codec != null) {
+				try {
+					codec.stop();
+				} catch (IllegalStateException e) {
+					Timber.e(e);
+				}
+				codec.release();
+			}
+			if (extractor != null) {
+				extractor.release();
+			}
+		}
+	}
+
+	/** Selects the first audio track of [extractor] and returns its format, null if none. */
+	@Nullable
+	private static MediaFormat selectAudioTrack(@NonNull MediaExtractor extractor) {
+		for (int i = 0; i < extractor.getTrackCount(); i++) {
+			MediaFormat format = extractor.getTrackFormat(i);
+			String mime = format.getString(MediaFormat.KEY_MIME);
+			if (mime != null && mime.startsWith("audio/")) {
+				extractor.selectTrack(i);
+				return format;
+			}
+		}
+		return null;
 	}
 
 	private void decodeFile(@NonNull final File mInputFile, @NonNull final AudioDecodingListener decodeListener, final int queueType)
 			throws IOException, OutOfMemoryError, IllegalStateException {
-		gains = new IntArrayList();
+		if (isWavFile(mInputFile)) {
+			// PCM WAV needs no decoding, read the data chunk directly. This is also the only
+			// way for RF64 (> 4 GB) files, MediaExtractor can't open them.
+			WavFileInfo wavInfo = WavHeaderParser.parse(mInputFile);
+			if (wavInfo != null && (wavInfo.isRf64() || WavWaveformReader.isSupported(wavInfo))) {
+				decodeWavPcm(mInputFile, wavInfo, decodeListener);
+				return;
+			}
+		}
 		final MediaExtractor extractor = new MediaExtractor();
 		MediaFormat format = null;
 		int i;
@@ -110,10 +247,16 @@ public class AudioDecoder {
 		sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
 
 		duration = format.getLong(MediaFormat.KEY_DURATION);
-
-		//TODO: Make waveform independent from dpPerSec!!!
-		dpPerSec = ARApplication.getDpPerSecond((float) duration/1000000f);
-		oneFrameAmps = new int[calculateSamplesPerFrame() * channelCount];
+		pyramidBuilder = WaveformCheckpoint.load(checkpointFile, mInputFile, sampleRate, channelCount);
+		analyzers = new PcmAnalyzerChain(decodeListener.createAnalyzers());
+		analyzers.start(sampleRate, channelCount);
+		if (pyramidBuilder != null) {
+			analyzers.skipAnalysis();
+			resumeFrame = pyramidBuilder.getFrameCount();
+			extractor.seekTo(resumeFrame * 1000000L / sampleRate, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+		} else {
+			pyramidBuilder = new WaveformPyramidBuilder(sampleRate, channelCount);
+		}
 
 		String mimeType = format.getString(MediaFormat.KEY_MIME);
 		//Start decoding
@@ -124,21 +267,26 @@ public class AudioDecoder {
 
 			private boolean mOutputEOS = false;
 			private boolean mInputEOS = false;
-			private long decoded = 0;
 			private long totalSize = mInputFile.length();
+			// Resumed decodes start their progress at the checkpoint.
+			private long decoded = duration > 0 ? (long) (totalSize * (resumeFrame * 1000000.0 / sampleRate / duration)) : 0;
 			private int percent = 0;
+			private long checkpointTime = System.currentTimeMillis();
+			private long partialTime = checkpointTime;
 
 			@Override
 			public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException exception) {
 				Timber.e(exception);
 				if (queueType == QUEUE_INPUT_BUFFER_EFFECTIVE) {
 					try {
-						AudioDecoder decoder = new AudioDecoder();
+						AudioDecoder decoder = new AudioDecoder(checkpointFile);
 						decoder.decodeFile(mInputFile, decodeListener, QUEUE_INPUT_BUFFER_SIMPLE);
 					} catch (IllegalStateException | IOException | OutOfMemoryError e) {
+						WaveformCheckpoint.delete(checkpointFile);
 						decodeListener.onError(exception);
 					}
 				} else {
+					WaveformCheckpoint.delete(checkpointFile);
 					decodeListener.onError(exception);
 				}
 			}
@@ -219,26 +367,18 @@ public class AudioDecoder {
 					if (outputBuffer != null) {
 						outputBuffer.rewind();
 						outputBuffer.order(ByteOrder.LITTLE_ENDIAN);
-						while (outputBuffer.remaining() > 0) {
-							oneFrameAmps[frameIndex] = outputBuffer.getShort();
-							frameIndex++;
-							if (frameIndex >= oneFrameAmps.length) {
-								int j;
-								int gain, value;
-								gain = -1;
-								for (j = 0; j < oneFrameAmps.length; j += channelCount) {
-									value = 0;
-									for (int k = 0; k < channelCount; k++) {
-										value += oneFrameAmps[j + k];
-									}
-									value /= channelCount;
-									if (gain < value) {
-										gain = value;
-									}
-								}
-								gains.add((int) Math.sqrt(Math.max(gain, 0)));
-								frameIndex = 0;
+						skipBeforeResumeFrame(outputBuffer, info.presentationTimeUs);
+						consumePcm(outputBuffer);
+						if (checkpointFile != null
+								&& System.currentTimeMillis() - checkpointTime >= WaveformCheckpoint.INTERVAL_MILLS) {
+							WaveformCheckpoint.save(checkpointFile, mInputFile, pyramidBuilder);
+							checkpointTime = System.currentTimeMillis();
+						}
+						if (System.currentTimeMillis() - partialTime >= WaveformPyramidBuilder.PARTIAL_INTERVAL_MILLS) {
+							if (decodeListener.isPartialPyramidWanted()) {
+								decodeListener.onPartialPyramid(pyramidBuilder.snapshot());
 							}
+							partialTime = System.currentTimeMillis();
 						}
 					}
 
@@ -246,32 +386,11 @@ public class AudioDecoder {
 					codec.releaseOutputBuffer(index, false);
 
 					if (mOutputEOS) {
-						// Emit the final partial frame (if any samples accumulated but
-						// did not yet fill a complete frame). Without this, recordings
-						// whose total sample count is not a multiple of the frame size
-						// silently drop the trailing samples; for very short files this
-						// can mean ALL samples are lost.
-						if (frameIndex > 0) {
-							int j;
-							int gain = -1, value;
-							for (j = 0; j < frameIndex; j += channelCount) {
-								value = 0;
-								for (int k = 0; k < channelCount && j + k < frameIndex; k++) {
-									value += oneFrameAmps[j + k];
-								}
-								value /= channelCount;
-								if (gain < value) {
-									gain = value;
-								}
-							}
-							gains.add((int) Math.sqrt(Math.max(gain, 0)));
-							frameIndex = 0;
-						}
 						if (decodeListener.isCanceled()) {
 							decodeListener.onProcessingCancel();
 						} else {
 							decodeListener.onProcessingProgress(100);
-							decodeListener.onFinishProcessing(gains.getData(), duration);
+							finishProcessing(pyramidBuilder.build(), decodeListener);
 						}
 						codec.stop();
 						codec.release();
@@ -286,6 +405,76 @@ public class AudioDecoder {
 		decoder.start();
 	}
 
+	/**
+	 * Decodes a PCM-16LE WAV file by memory-mapping the data chunk, without
+	 * MediaExtractor/MediaCodec. Produces the same gains as the codec path.
+	 */
+	private void decodeWavPcm(@NonNull File inputFile, @NonNull WavFileInfo info,
+									  @NonNull AudioDecodingListener decodeListener) throws IOException {
+		if (!WavWaveformReader.isSupported(info)) {
+			throw new IOException("Unsupported WAV format in " + inputFile);
+		}
+		duration = info.getDurationMicros();
+		decodeListener.onStartProcessing(duration, info.getChannelCount(), info.getSampleRate());
+		analyzers = new PcmAnalyzerChain(decodeListener.createAnalyzers());
+		WaveformPyramid pyramid = WavWaveformReader.read(inputFile, info, decodeListener, checkpointFile, analyzers);
+		if (pyramid == null) {
+			decodeListener.onProcessingCancel();
+			return;
+		}
+		decodeListener.onProcessingProgress(100);
+		finishProcessing(pyramid, decodeListener);
+	}
+
+	/**
+	 * After seeking to a sync sample before the checkpoint, skips the part of [buffer] that
+	 * was already consumed before the decode was interrupted.
+	 */
+	private void skipBeforeResumeFrame(ByteBuffer buffer, long presentationTimeUs) {
+		if (resumeFrame <= 0) return;
+		long bufferFrame = presentationTimeUs * sampleRate / 1000000L;
+		long skipFrames = resumeFrame - bufferFrame;
+		if (skipFrames > 0) {
+			buffer.position((int) Math.min(buffer.limit(), skipFrames * channelCount * 2));
+			if (buffer.hasRemaining()) {
+				resumeFrame = 0;
+			}
+		} else {
+			resumeFrame = 0;
+		}
+	}
+
+	/** Accumulates PCM-16LE samples from [buffer] into the waveform pyramid bins and analyzers. */
+	private void consumePcm(ByteBuffer buffer) {
+		if (analyzers != null) {
+			analyzers.consume(buffer);
+		}
+		pyramidBuilder.consume(buffer);
+	}
+
+	/**
+	 * Builds the waveform pyramid and reports it together with the legacy gains, which are
+	 * resampled from the pyramid to the dp-per-second density the old waveform view expects.
+	 */
+	private void finishProcessing(@NonNull WaveformPyramid pyramid, @NonNull AudioDecodingListener decodeListener) {
+		float dpPerSec = ARApplication.getDpPerSecond(pyramid.getDurationMills() / 1000f);
+		int gainsCount = (int) Math.ceil(pyramid.getDurationMills() / 1000f * dpPerSec);
+		if (gainsCount == 0 && pyramid.getBaseLevel().getSize() > 0) {
+			gainsCount = 1;
+		}
+		WaveformCheckpoint.delete(checkpointFile);
+		AudioAnalysis analysis = analyzers != null ? analyzers.finish() : null;
+		if (analysis != null) {
+			decodeListener.onFinishAnalysis(analysis);
+		}
+		decodeListener.onFinishPyramid(pyramid);
+		decodeListener.onFinishProcessing(pyramid.toGains(gainsCount), duration);
+	}
+
+	private static boolean isWavFile(File file) {
+		return file.getName().toLowerCase().endsWith("." + AppConstants.FORMAT_WAV);
+	}
+
 	public static RecordInfo readRecordInfo(@NonNull final File inputFile)
 			throws OutOfMemoryError, IllegalStateException {
 
@@ -303,6 +492,24 @@ public class AudioDecoder {
 			if (!isInTrash && !FileUtil.isSupportedExtension(components[components.length - 1])) {
 				throw new IOException();
 			}
+			if (isWavFile(inputFile)) {
+				// MediaExtractor can't open RF64 (> 4 GB) WAV files, take the info from the ds64 header.
+				WavFileInfo wavInfo = WavHeaderParser.parse(inputFile);
+				if (wavInfo != null && wavInfo.isRf64()) {
+					return new RecordInfo(
+							FileUtil.removeFileExtension(inputFile.getName()),
+							AppConstants.FORMAT_WAV,
+							wavInfo.getDurationMicros(),
+							inputFile.length(),
+							inputFile.getAbsolutePath(),
+							inputFile.lastModified(),
+							wavInfo.getSampleRate(),
+							wavInfo.getChannelCount(),
+							wavInfo.getSampleRate() * wavInfo.getFrameSize() * 8,
+							isInTrash
+					);
+				}
+			}
 
 			final MediaExtractor extractor = new MediaExtractor();
 			MediaFormat format = null;
@@ -27,6 +27,26 @@ interface AudioDecodingListener {
 	fun onStartProcessing(duration: Long, channelsCount: Int, sampleRate: Int)
 	fun onProcessingProgress(percent: Int)
 	fun onProcessingCancel()
+	/**
+	 * Whether [onPartialPyramid] should be called, asked every
+	 * [WaveformPyramidBuilder.PARTIAL_INTERVAL_MILLS]. Every partial pyramid copies all bins
+	 * decoded so far, so only a decode someone is watching should ask for them.
+	 */
+	fun isPartialPyramidWanted(): Boolean = false
+	/**
+	 * Called every [WaveformPyramidBuilder.PARTIAL_INTERVAL_MILLS] while decoding with the
+	 * waveform from the start of the file up to the decoded position, see [isPartialPyramidWanted].
+	 */
+	fun onPartialPyramid(pyramid: WaveformPyramid) {}
+	/** Analyzers fed with the decoded PCM next to the waveform, asked once per decode. */
+	fun createAnalyzers(): List<PcmAnalyzer> = emptyList()
+	/**
+	 * Called before [onFinishPyramid] with the results of [createAnalyzers]. Not called when
+	 * there are none or the decode resumed from a checkpoint and missed the start of the PCM.
+	 */
+	fun onFinishAnalysis(analysis: AudioAnalysis) {}
+	/** Called right before [onFinishProcessing] with the resolution-independent waveform. */
+	fun onFinishPyramid(pyramid: WaveformPyramid) {}
 	fun onFinishProcessing(data: IntArray, duration: Long)
 	fun onError(exception: Exception)
 }
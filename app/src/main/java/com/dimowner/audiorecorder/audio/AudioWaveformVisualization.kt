@@ -1,6 +1,7 @@
 package com.dimowner.audiorecorder.audio
 
 import com.dimowner.audiorecorder.BackgroundQueue
+import java.io.File
 import java.lang.Exception
 
 /**
@@ -11,9 +12,13 @@ class AudioWaveformVisualization(
 		private val processingTasks: BackgroundQueue
 ) {
 
-	fun decodeRecordWaveform(path: String, listener: AudioDecodingListener? = null) {
+	/**
+	 * Decodes the waveform of [path] on the processing queue. [checkpointFile] lets an
+	 * interrupted decode of the same file resume, see [WaveformCheckpoint].
+	 */
+	fun decodeRecordWaveform(path: String, checkpointFile: File? = null, listener: AudioDecodingListener? = null) {
 		processingTasks.postRunnable {
-			AudioDecoder.decode(path, object : AudioDecodingListener {
+			AudioDecoder.decode(path, checkpointFile, object : AudioDecodingListener {
 				override fun isCanceled(): Boolean {
 					return listener?.isCanceled() ?: false
 				}
@@ -30,6 +35,26 @@ class AudioWaveformVisualization(
 					listener?.onProcessingCancel()
 				}
 
+				override fun isPartialPyramidWanted(): Boolean {
+					return listener?.isPartialPyramidWanted() ?: false
+				}
+
+				override fun onPartialPyramid(pyramid: WaveformPyramid) {
+					listener?.onPartialPyramid(pyramid)
+				}
+
+				override fun createAnalyzers(): List<PcmAnalyzer> {
+					return listener?.createAnalyzers() ?: emptyList()
+				}
+
+				override fun onFinishAnalysis(analysis: AudioAnalysis) {
+					listener?.onFinishAnalysis(analysis)
+				}
+
+				override fun onFinishPyramid(pyramid: WaveformPyramid) {
+					listener?.onFinishPyramid(pyramid)
+				}
+
 				override fun onFinishProcessing(data: IntArray, duration: Long) {
 					listener?.onFinishProcessing(data, duration)
 				}
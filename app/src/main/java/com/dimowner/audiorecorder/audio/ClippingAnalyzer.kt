@@ -0,0 +1,65 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.audio
+
+/**
+ * Counts samples at digital full scale and the runs they form. A run of clipped samples in
+ * one channel usually means the input was too loud while recording.
+ */
+class ClippingAnalyzer : PcmAnalyzer {
+
+    private var channelCount = 1
+    private var channelIndex = 0
+    private var clippedSamples = 0L
+    private var clippedRuns = 0L
+    /** Per channel, whether its previous sample was clipped. */
+    private var isInRun = BooleanArray(1)
+
+    override fun start(sampleRate: Int, channelCount: Int) {
+        this.channelCount = channelCount
+        channelIndex = 0
+        clippedSamples = 0
+        clippedRuns = 0
+        isInRun = BooleanArray(channelCount)
+    }
+
+    override fun consume(samples: ShortArray, count: Int) {
+        for (i in 0 until count) {
+            val value = samples[i]
+            if (value == Short.MAX_VALUE || value == Short.MIN_VALUE) {
+                clippedSamples++
+                if (!isInRun[channelIndex]) {
+                    isInRun[channelIndex] = true
+                    clippedRuns++
+                }
+            } else {
+                isInRun[channelIndex] = false
+            }
+            if (++channelIndex == channelCount) channelIndex = 0
+        }
+    }
+
+    override fun finish(analysis: AudioAnalysis.Builder) {
+        analysis.put(KEY_CLIPPED_SAMPLES, clippedSamples.toDouble())
+        analysis.put(KEY_CLIPPED_RUNS, clippedRuns.toDouble())
+    }
+
+    companion object {
+        const val KEY_CLIPPED_SAMPLES = "clipped_samples"
+        const val KEY_CLIPPED_RUNS = "clipped_runs"
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.audio
+
+import kotlin.math.abs
+import kotlin.math.log10
+import kotlin.math.sqrt
+
+/** Sample peak and RMS level of the whole record over all channels, in dBFS. */
+class LevelAnalyzer : PcmAnalyzer {
+
+    private var peak = 0
+    private var sumSquares = 0.0
+    private var sampleCount = 0L
+
+    override fun start(sampleRate: Int, channelCount: Int) {
+        peak = 0
+        sumSquares = 0.0
+        sampleCount = 0
+    }
+
+    override fun consume(samples: ShortArray, count: Int) {
+        var peak = peak
+        var sumSquares = 0L
+        for (i in 0 until count) {
+            val value = samples[i].toInt()
+            val magnitude = abs(value)
+            if (magnitude > peak) peak = magnitude
+            sumSquares += value.toLong() * value
+        }
+        this.peak = peak
+        this.sumSquares += sumSquares
+        sampleCount += count
+    }
+
+    override fun finish(analysis: AudioAnalysis.Builder) {
+        val rms = if (sampleCount > 0) sqrt(sumSquares / sampleCount) else 0.0
+        analysis.put(KEY_PEAK_DBFS, toDbfs(peak.toDouble()))
+        analysis.put(KEY_RMS_DBFS, toDbfs(rms))
+    }
+
+    companion object {
+        const val KEY_PEAK_DBFS = "peak_dbfs"
+        const val KEY_RMS_DBFS = "rms_dbfs"
+
+        /** Level relative to full scale, negative infinity for digital silence. */
+        fun toDbfs(value: Double): Double {
+            return if (value > 0) 20 * log10(value / FULL_SCALE) else Double.NEGATIVE_INFINITY
+        }
+
+        private const val FULL_SCALE = 32768.0
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.audio
+
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.ceil
+import kotlin.math.log10
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.pow
+import kotlin.math.tan
+
+/**
+ * Loudness of a record as defined by ITU-R BS.1770-4 and EBU R 128: integrated loudness,
+ * loudness range (EBU Tech 3342) and true peak.
+ *
+ * The PCM is K-weighted and its energy summed in 100 ms steps. Each step closes a 400 ms
+ * momentary block and, after the first 3 s, a short-term block, and the loudness of every
+ * block is put into a histogram instead of a list, so the gating at the end needs no memory
+ * proportional to the record length. All state is allocated in [start]; [consume] allocates
+ * nothing. Every channel is weighted 1.0, surround channels are not told apart.
+ */
+class LoudnessAnalyzer : PcmAnalyzer {
+
+    private var channelCount = 1
+    private var stepFrames = 1
+    private var channelIndex = 0
+    private var stepFrameCount = 0
+
+    // K-weighting: a high shelf followed by a high pass, one state pair per channel each.
+    private var shelfB0 = 0.0
+    private var shelfB1 = 0.0
+    private var shelfB2 = 0.0
+    private var shelfA1 = 0.0
+    private var shelfA2 = 0.0
+    private var highPassA1 = 0.0
+    private var highPassA2 = 0.0
+    private var shelfZ1 = DoubleArray(1)
+    private var shelfZ2 = DoubleArray(1)
+    private var highPassZ1 = DoubleArray(1)
+    private var highPassZ2 = DoubleArray(1)
+    private var channelSumSquares = DoubleArray(1)
+
+    /** Mean square of the last [SHORT_TERM_STEPS] steps, summed over channels. */
+    private val stepEnergies = DoubleArray(SHORT_TERM_STEPS)
+    private var stepCount = 0L
+
+    private val momentary = LoudnessHistogram()
+    private val shortTerm = LoudnessHistogram()
+
+    /**
+     * The last [TRUE_PEAK_TAPS] samples of every channel for the oversampling filter. Each
+     * sample is written twice, at `position` and `position + TRUE_PEAK_TAPS`, so the taps
+     * always read one contiguous run.
+     */
+    private var history = DoubleArray(2 * TRUE_PEAK_TAPS)
+    private var historyPosition = 0
+    private var truePeak = 0.0
+
+    override fun start(sampleRate: Int, channelCount: Int) {
+        this.channelCount = channelCount
+        stepFrames = max(1, sampleRate / STEPS_PER_SECOND)
+        channelIndex = 0
+        stepFrameCount = 0
+
+        val shelfK = tan(PI * SHELF_FREQUENCY / sampleRate)
+        val vh = 10.0.pow(SHELF_GAIN_DB / 20)
+        val vb = vh.pow(SHELF_VB_EXPONENT)
+        val shelfA0 = 1 + shelfK / SHELF_Q + shelfK * shelfK
+        shelfB0 = (vh + vb * shelfK / SHELF_Q + shelfK * shelfK) / shelfA0
+        shelfB1 = 2 * (shelfK * shelfK - vh) / shelfA0
+        shelfB2 = (vh - vb * shelfK / SHELF_Q + shelfK * shelfK) / shelfA0
+        shelfA1 = 2 * (shelfK * shelfK - 1) / shelfA0
+        shelfA2 = (1 - shelfK / SHELF_Q + shelfK * shelfK) / shelfA0
+        val highPassK = tan(PI * HIGH_PASS_FREQUENCY / sampleRate)
+        val highPassA0 = 1 + highPassK / HIGH_PASS_Q + highPassK * highPassK
+        highPassA1 = 2 * (highPassK * highPassK - 1) / highPassA0
+        highPassA2 = (1 - highPassK / HIGH_PASS_Q + highPassK * highPassK) / highPassA0
+
+        shelfZ1 = DoubleArray(channelCount)
+        shelfZ2 = DoubleArray(channelCount)
+        highPassZ1 = DoubleArray(channelCount)
+        highPassZ2 = DoubleArray(channelCount)
+        channelSumSquares = DoubleArray(channelCount)
+        stepEnergies.fill(0.0)
+        stepCount = 0
+        momentary.clear()
+        shortTerm.clear()
+
+        history = DoubleArray(channelCount * 2 * TRUE_PEAK_TAPS)
+        historyPosition = 0
+        truePeak = 0.0
+    }
+
+    override fun consume(samples: ShortArray, count: Int) {
+        for (i in 0 until count) {
+            val channel = channelIndex
+            val x = samples[i] / FULL_SCALE
+
+            // Direct form II transposed, shelf then high pass. The high pass numerator is 1, -2, 1.
+            val shelf = shelfB0 * x + shelfZ1[channel]
+            shelfZ1[channel] = shelfB1 * x - shelfA1 * shelf + shelfZ2[channel]
+            shelfZ2[channel] = shelfB2 * x - shelfA2 * shelf
+            val weighted = shelf + highPassZ1[channel]
+            highPassZ1[channel] = -2 * shelf - highPassA1 * weighted + highPassZ2[channel]
+            highPassZ2[channel] = shelf - highPassA2 * weighted
+            channelSumSquares[channel] += weighted * weighted
+
+            updateTruePeak(channel, x)
+
+            if (++channelIndex == channelCount) {
+                channelIndex = 0
+                if (historyPosition-- == 0) historyPosition = TRUE_PEAK_TAPS - 1
+                if (++stepFrameCount == stepFrames) {
+                    finishStep()
+                }
+            }
+        }
+    }
+
+    override fun finish(analysis: AudioAnalysis.Builder) {
+        // A trailing step shorter than 100 ms does not complete a block and is dropped.
+        analysis.put(KEY_INTEGRATED_LUFS, momentary.gatedLoudness(INTEGRATED_RELATIVE_GATE_LU))
+        analysis.put(KEY_LOUDNESS_RANGE_LU, shortTerm.loudnessRange())
+        analysis.put(KEY_TRUE_PEAK_DBTP, LevelAnalyzer.toDbfs(truePeak * FULL_SCALE))
+    }
+
+    /**
+     * Interpolates the signal 4 times with the polyphase filter of BS.1770-4 Annex 2 and
+     * keeps the largest magnitude. The sample itself counts too, so the true peak is never
+     * below the sample peak.
+     */
+    private fun updateTruePeak(channel: Int, x: Double) {
+        val base = channel * 2 * TRUE_PEAK_TAPS
+        val position = base + historyPosition
+        history[position] = x
+        history[position + TRUE_PEAK_TAPS] = x
+        // All four phases in one pass over the history, phase k reading coefficient k * TAPS + j.
+        var phase0 = 0.0
+        var phase1 = 0.0
+        var phase2 = 0.0
+        var phase3 = 0.0
+        for (j in 0 until TRUE_PEAK_TAPS) {
+            val sample = history[position + j]
+            phase0 += TRUE_PEAK_COEFFICIENTS[j] * sample
+            phase1 += TRUE_PEAK_COEFFICIENTS[TRUE_PEAK_TAPS + j] * sample
+            phase2 += TRUE_PEAK_COEFFICIENTS[2 * TRUE_PEAK_TAPS + j] * sample
+            phase3 += TRUE_PEAK_COEFFICIENTS[3 * TRUE_PEAK_TAPS + j] * sample
+        }
+        val peak = max(max(truePeak, abs(x)), max(max(abs(phase0), abs(phase1)), max(abs(phase2), abs(phase3))))
+        truePeak = peak
+    }
+
+    private fun finishStep() {
+        var energy = 0.0
+        for (channel in 0 until channelCount) {
+            energy += channelSumSquares[channel] / stepFrames
+            channelSumSquares[channel] = 0.0
+        }
+        stepEnergies[(stepCount % SHORT_TERM_STEPS).toInt()] = energy
+        stepCount++
+        stepFrameCount = 0
+        if (stepCount >= MOMENTARY_STEPS) {
+            momentary.add(meanOfLastSteps(MOMENTARY_STEPS))
+        }
+        if (stepCount >= SHORT_TERM_STEPS) {
+            shortTerm.add(meanOfLastSteps(SHORT_TERM_STEPS))
+        }
+    }
+
+    private fun meanOfLastSteps(steps: Int): Double {
+        var sum = 0.0
+        for (i in 1..steps) {
+            sum += stepEnergies[((stepCount - i) % SHORT_TERM_STEPS).toInt()]
+        }
+        return sum / steps
+    }
+
+    /**
+     * Blocks above the absolute gate, counted and summed in bins of [BIN_WIDTH_LU]. Gating
+     * at a relative threshold then only rounds to a bin, well inside the 0.1 LU tolerance of
+     * EBU Tech 3341.
+     */
+    private class LoudnessHistogram {
+        private val counts = LongArray(BIN_COUNT)
+        private val energies = DoubleArray(BIN_COUNT)
+        private var totalCount = 0L
+        private var totalEnergy = 0.0
+
+        fun clear() {
+            counts.fill(0)
+            energies.fill(0.0)
+            totalCount = 0
+            totalEnergy = 0.0
+        }
+
+        fun add(energy: Double) {
+            val loudness = toLoudness(energy)
+            if (loudness < ABSOLUTE_GATE_LUFS) return
+            val bin = min(BIN_COUNT - 1, ((loudness - ABSOLUTE_GATE_LUFS) / BIN_WIDTH_LU).toInt())
+            counts[bin]++
+            energies[bin] += energy
+            totalCount++
+            totalEnergy += energy
+        }
+
+        /** Loudness of the blocks at most [relativeGate] below the mean of all blocks. */
+        fun gatedLoudness(relativeGate: Double): Double {
+            if (totalCount == 0L) return ABSOLUTE_GATE_LUFS
+            var count = 0L
+            var energy = 0.0
+            for (bin in firstBinAbove(relativeGate) until BIN_COUNT) {
+                count += counts[bin]
+                energy += energies[bin]
+            }
+            return if (count > 0) max(ABSOLUTE_GATE_LUFS, toLoudness(energy / count)) else ABSOLUTE_GATE_LUFS
+        }
+
+        /** Spread between the 10th and 95th percentile of the blocks above the relative gate. */
+        fun loudnessRange(): Double {
+            if (totalCount == 0L) return 0.0
+            val firstBin = firstBinAbove(LRA_RELATIVE_GATE_LU)
+            var count = 0L
+            for (bin in firstBin until BIN_COUNT) {
+                count += counts[bin]
+            }
+            if (count == 0L) return 0.0
+            return percentile(firstBin, count, LRA_HIGH_PERCENTILE) -
+                percentile(firstBin, count, LRA_LOW_PERCENTILE)
+        }
+
+        private fun firstBinAbove(relativeGate: Double): Int {
+            val threshold = toLoudness(totalEnergy / totalCount) - relativeGate
+            // A bin is in when its centre is at or above the threshold.
+            val bin = ceil((threshold - ABSOLUTE_GATE_LUFS) / BIN_WIDTH_LU - 0.5).toInt()
+            return bin.coerceIn(0, BIN_COUNT)
+        }
+
+        private fun percentile(firstBin: Int, count: Long, percentile: Double): Double {
+            val rank = ((count - 1) * percentile).toLong()
+            var seen = 0L
+            for (bin in firstBin until BIN_COUNT) {
+                seen += counts[bin]
+                if (seen > rank) {
+                    return ABSOLUTE_GATE_LUFS + (bin + 0.5) * BIN_WIDTH_LU
+                }
+            }
+            return ABSOLUTE_GATE_LUFS + BIN_COUNT * BIN_WIDTH_LU
+        }
+    }
+
+    companion object {
+        /** Integrated loudness in LUFS, [ABSOLUTE_GATE_LUFS] if nothing was loud enough to measure. */
+        const val KEY_INTEGRATED_LUFS = "integrated_lufs"
+        /** Loudness range in LU, 0 for records shorter than 3 s. */
+        const val KEY_LOUDNESS_RANGE_LU = "loudness_range_lu"
+        /** True peak in dBTP, negative infinity for digital silence. */
+        const val KEY_TRUE_PEAK_DBTP = "true_peak_dbtp"
+
+        const val ABSOLUTE_GATE_LUFS = -70.0
+
+        private const val FULL_SCALE = 32768.0
+        private const val STEPS_PER_SECOND = 10
+        private const val MOMENTARY_STEPS = 4
+        private const val SHORT_TERM_STEPS = 30
+        private const val INTEGRATED_RELATIVE_GATE_LU = 10.0
+        private const val LRA_RELATIVE_GATE_LU = 20.0
+        private const val LRA_LOW_PERCENTILE = 0.10
+        private const val LRA_HIGH_PERCENTILE = 0.95
+        private const val BIN_WIDTH_LU = 0.02
+        /** Bins from the absolute gate up to +20 LUFS, louder blocks go to the last one. */
+        private const val BIN_COUNT = 4500
+
+        // K-weighting filter parameters, valid for any sample rate (BS.1770 pre-filter and RLB).
+        private const val SHELF_FREQUENCY = 1681.974450955533
+        private const val SHELF_GAIN_DB = 3.999843853973347
+        private const val SHELF_Q = 0.7071752369554196
+        private const val SHELF_VB_EXPONENT = 0.4996667741545416
+        private const val HIGH_PASS_FREQUENCY = 38.13547087602444
+        private const val HIGH_PASS_Q = 0.5003270373238773
+
+        private const val TRUE_PEAK_TAPS = 12
+        private val TRUE_PEAK_COEFFICIENTS = doubleArrayOf(
+            0.0017089843750, 0.0109863281250, -0.0196533203125, 0.0332031250000,
+            -0.0594482421875, 0.1373291015625, 0.9721679687500, -0.1022949218750,
+            0.0476074218750, -0.0266113281250, 0.0148925781250, -0.0083007812500,
+
+            -0.0291748046875, 0.0292968750000, -0.0517578125000, 0.0891113281250,
+            -0.1665039062500, 0.4650878906250, 0.7797851562500, -0.2003173828125,
+            0.1015625000000, -0.0582275390625, 0.0330810546875, -0.0189208984375,
+
+            -0.0189208984375, 0.0330810546875, -0.0582275390625, 0.1015625000000,
+            -0.2003173828125, 0.7797851562500, 0.4650878906250, -0.1665039062500,
+            0.0891113281250, -0.0517578125000, 0.0292968750000, -0.0291748046875,
+
+            -0.0083007812500, 0.0148925781250, -0.0266113281250, 0.0476074218750,
+            -0.1022949218750, 0.9721679687500, 0.1373291015625, -0.0594482421875,
+            0.0332031250000, -0.0196533203125, 0.0109863281250, 0.0017089843750,
+        )
+
+        private fun toLoudness(energy: Double): Double {
+            return if (energy > 0) -0.691 + 10 * log10(energy) else Double.NEGATIVE_INFINITY
+        }
+    }
+}
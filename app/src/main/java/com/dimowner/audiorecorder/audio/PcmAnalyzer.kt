@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.audio
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.ShortBuffer
+import kotlin.math.min
+
+/**
+ * Measures something about a record from its decoded PCM. Analyzers ride along the waveform
+ * decode in a [PcmAnalyzerChain], so a new metric never needs a decode of its own.
+ */
+interface PcmAnalyzer {
+    fun start(sampleRate: Int, channelCount: Int)
+
+    /**
+     * Interleaved PCM-16 samples, the first [count] elements of [samples] are valid.
+     * A frame may be split between two calls. [samples] is reused after the call returns.
+     */
+    fun consume(samples: ShortArray, count: Int)
+
+    /** Adds the results to [analysis], called once after all PCM was consumed. */
+    fun finish(analysis: AudioAnalysis.Builder)
+}
+
+/** Results of the [PcmAnalyzer]s of one decode, stored by name. */
+class AudioAnalysis private constructor(private val values: Map<String, DoubleArray>) {
+
+    val keys: Set<String>
+        get() = values.keys
+
+    /** Single value stored under [key], null if there is none. */
+    fun getValue(key: String): Double? = values[key]?.firstOrNull()
+
+    fun getValues(key: String): DoubleArray? = values[key]?.copyOf()
+
+    @Throws(IOException::class)
+    fun writeTo(output: OutputStream) {
+        val out = DataOutputStream(output.buffered())
+        out.writeInt(MAGIC)
+        out.writeInt(values.size)
+        for ((key, array) in values) {
+            out.writeUTF(key)
+            out.writeInt(array.size)
+            array.forEach { out.writeDouble(it) }
+        }
+        out.flush()
+    }
+
+    class Builder {
+        private val values = LinkedHashMap<String, DoubleArray>()
+
+        fun put(key: String, value: Double): Builder = put(key, doubleArrayOf(value))
+
+        fun put(key: String, values: DoubleArray): Builder {
+            this.values[key] = values
+            return this
+        }
+
+        fun build(): AudioAnalysis = AudioAnalysis(LinkedHashMap(values))
+    }
+
+    companion object {
+        private const val MAGIC = 0x41414E31 // "AAN1"
+
+        @JvmStatic
+        @Throws(IOException::class)
+        fun readFrom(input: InputStream): AudioAnalysis {
+            val data = DataInputStream(input.buffered())
+            if (data.readInt() != MAGIC) {
+                throw IOException("Not an audio analysis file")
+            }
+            val count = data.readInt()
+            val builder = Builder()
+            repeat(count) {
+                val key = data.readUTF()
+                val size = data.readInt()
+                if (size < 0) throw IOException("Corrupted audio analysis value: $key")
+                builder.put(key, DoubleArray(size) { data.readDouble() })
+            }
+            return builder.build()
+        }
+    }
+}
+
+/**
+ * Feeds the PCM of a decode to every analyzer in one pass. Consuming never moves the
+ * position of the caller's buffer, so the waveform builder can read the same data.
+ */
+class PcmAnalyzerChain(private val analyzers: List<PcmAnalyzer>) {
+
+    private val scratch = ShortArray(SCRATCH_SIZE)
+    private var isComplete = true
+
+    val isEmpty: Boolean
+        get() = analyzers.isEmpty()
+
+    fun start(sampleRate: Int, channelCount: Int) {
+        analyzers.forEach { it.start(sampleRate, channelCount) }
+    }
+
+    /** Consumes the remaining PCM-16LE samples of [buffer]. */
+    fun consume(buffer: ByteBuffer) {
+        if (analyzers.isEmpty()) return
+        consume(buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer())
+    }
+
+    fun consume(samples: ShortBuffer) {
+        if (analyzers.isEmpty()) return
+        val view = samples.duplicate()
+        while (view.hasRemaining()) {
+            val count = min(view.remaining(), scratch.size)
+            view.get(scratch, 0, count)
+            for (analyzer in analyzers) {
+                analyzer.consume(scratch, count)
+            }
+        }
+    }
+
+    /**
+     * Marks the PCM as incomplete, e.g. when decoding resumed from a checkpoint, so
+     * [finish] reports nothing instead of results of a part of the record.
+     */
+    fun skipAnalysis() {
+        isComplete = false
+    }
+
+    /** Results of all analyzers, null if there are none or the PCM was incomplete. */
+    fun finish(): AudioAnalysis? {
+        if (analyzers.isEmpty() || !isComplete) return null
+        val builder = AudioAnalysis.Builder()
+        analyzers.forEach { it.finish(builder) }
+        return builder.build()
+    }
+
+    private companion object {
+        const val SCRATCH_SIZE = 4096
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.audio
+
+import kotlin.math.pow
+
+/**
+ * Finds the silent parts of a record: runs of 10 ms blocks whose RMS stays below
+ * [thresholdDbfs] for at least [minDurationMills]. Channels are averaged like in the waveform.
+ */
+class SilenceAnalyzer(
+    private val thresholdDbfs: Double = DEFAULT_THRESHOLD_DBFS,
+    private val minDurationMills: Long = DEFAULT_MIN_DURATION_MILLS,
+) : PcmAnalyzer {
+
+    private var sampleRate = 1
+    private var channelCount = 1
+    private var blockFrames = 1
+    /** Sum of squares of a block below the threshold, to compare without a square root. */
+    private var thresholdSumSquares = 0.0
+
+    private var channelIndex = 0
+    private var frameSum = 0
+    private var blockFrameCount = 0
+    private var blockSumSquares = 0L
+    private var frameCount = 0L
+    private var silenceStartFrame = NO_SILENCE
+    private val ranges = ArrayList<Long>()
+
+    override fun start(sampleRate: Int, channelCount: Int) {
+        this.sampleRate = sampleRate
+        this.channelCount = channelCount
+        blockFrames = maxOf(1, sampleRate * WAVEFORM_BASE_BIN_MILLS / 1000)
+        val threshold = FULL_SCALE * 10.0.pow(thresholdDbfs / 20)
+        thresholdSumSquares = threshold * threshold * blockFrames
+        channelIndex = 0
+        frameSum = 0
+        blockFrameCount = 0
+        blockSumSquares = 0
+        frameCount = 0
+        silenceStartFrame = NO_SILENCE
+        ranges.clear()
+    }
+
+    override fun consume(samples: ShortArray, count: Int) {
+        for (i in 0 until count) {
+            frameSum += samples[i]
+            if (++channelIndex == channelCount) {
+                val value = frameSum / channelCount
+                blockSumSquares += value.toLong() * value
+                channelIndex = 0
+                frameSum = 0
+                frameCount++
+                if (++blockFrameCount == blockFrames) {
+                    onBlock(blockSumSquares < thresholdSumSquares)
+                    blockFrameCount = 0
+                    blockSumSquares = 0
+                }
+            }
+        }
+    }
+
+    override fun finish(analysis: AudioAnalysis.Builder) {
+        if (blockFrameCount > 0) {
+            onBlock(blockSumSquares < thresholdSumSquares * blockFrameCount / blockFrames)
+        }
+        closeSilence(frameCount)
+        analysis.put(KEY_SILENCE_RANGES, DoubleArray(ranges.size) { ranges[it].toDouble() })
+    }
+
+    /** Called with [blockFrameCount] frames of the block just ended counted in [frameCount]. */
+    private fun onBlock(isSilent: Boolean) {
+        val blockStartFrame = frameCount - blockFrameCount
+        if (isSilent) {
+            if (silenceStartFrame == NO_SILENCE) {
+                silenceStartFrame = blockStartFrame
+            }
+        } else {
+            closeSilence(blockStartFrame)
+        }
+    }
+
+    private fun closeSilence(endFrame: Long) {
+        if (silenceStartFrame == NO_SILENCE) return
+        val startMills = silenceStartFrame * 1000 / sampleRate
+        val endMills = endFrame * 1000 / sampleRate
+        if (endMills - startMills >= minDurationMills) {
+            ranges.add(startMills)
+            ranges.add(endMills)
+        }
+        silenceStartFrame = NO_SILENCE
+    }
+
+    companion object {
+        /** Silent parts as `[start, end]` pairs in milliseconds. */
+        const val KEY_SILENCE_RANGES = "silence_ranges"
+        const val DEFAULT_THRESHOLD_DBFS = -50.0
+        const val DEFAULT_MIN_DURATION_MILLS = 2000L
+
+        private const val FULL_SCALE = 32768.0
+        private const val NO_SILENCE = -1L
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.audio
+
+import com.dimowner.audiorecorder.v2.audio.WavFileInfo
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import kotlin.math.min
+
+/**
+ * Builds a [WaveformPyramid] straight from the data chunk of a PCM-16LE WAV file.
+ * The chunk is memory-mapped window by window and scanned as a ShortBuffer, so nothing
+ * goes through MediaExtractor/MediaCodec, which would only copy the same PCM around.
+ */
+object WavWaveformReader {
+
+    /** Bytes mapped at once, keeps address space use low on 32-bit devices. */
+    private const val MAP_WINDOW_SIZE = 8L * 1024 * 1024
+
+    @JvmStatic
+    fun isSupported(info: WavFileInfo): Boolean {
+        return info.bitsPerSample == 16 && info.channelCount > 0 && info.sampleRate > 0
+    }
+
+    /**
+     * Reads the waveform of [file] and reports progress to [listener]. With a
+     * [checkpointFile] the state is saved periodically and a previous checkpoint is resumed.
+     * [analyzers] get the same PCM, they skip their analysis when a checkpoint is resumed.
+     * @return the pyramid, or null when [listener] canceled processing.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun read(
+        file: File,
+        info: WavFileInfo,
+        listener: AudioDecodingListener,
+        checkpointFile: File? = null,
+        analyzers: PcmAnalyzerChain? = null,
+    ): WaveformPyramid? {
+        if (!isSupported(info)) {
+            throw IOException("Unsupported WAV format in $file")
+        }
+        // Whole samples only, a trailing odd byte is ignored.
+        val dataSize = info.dataSize and 1L.inv()
+        val builder = WaveformCheckpoint.load(checkpointFile, file, info.sampleRate, info.channelCount)
+            ?.takeIf { it.sourcePosition in 0..dataSize && it.sourcePosition % 2 == 0L }
+            ?: WaveformPyramidBuilder(info.sampleRate, info.channelCount)
+        analyzers?.start(info.sampleRate, info.channelCount)
+        if (builder.sourcePosition > 0) {
+            analyzers?.skipAnalysis()
+        }
+        RandomAccessFile(file, "r").use { raf ->
+            val channel = raf.channel
+            var offset = builder.sourcePosition
+            var percent = 0
+            var checkpointTime = System.currentTimeMillis()
+            var partialTime = checkpointTime
+            while (offset < dataSize) {
+                if (listener.isCanceled()) return null
+                val length = min(MAP_WINDOW_SIZE, dataSize - offset)
+                val samples = channel.map(FileChannel.MapMode.READ_ONLY, info.dataOffset + offset, length)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asShortBuffer()
+                analyzers?.consume(samples)
+                builder.consume(samples)
+                offset += length
+                builder.sourcePosition = offset
+                if (checkpointFile != null && System.currentTimeMillis() - checkpointTime >= WaveformCheckpoint.INTERVAL_MILLS) {
+                    WaveformCheckpoint.save(checkpointFile, file, builder)
+                    checkpointTime = System.currentTimeMillis()
+                }
+                if (offset < dataSize && System.currentTimeMillis() - partialTime >= WaveformPyramidBuilder.PARTIAL_INTERVAL_MILLS) {
+                    if (listener.isPartialPyramidWanted()) {
+                        listener.onPartialPyramid(builder.snapshot())
+                    }
+                    partialTime = System.currentTimeMillis()
+                }
+                val curPercent = (100 * offset / dataSize).toInt()
+                if (curPercent != percent) {
+                    percent = curPercent
+                    listener.onProcessingProgress(percent)
+                }
+            }
+        }
+        return builder.build()
+    }
+}
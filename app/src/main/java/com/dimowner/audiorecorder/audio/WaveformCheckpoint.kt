@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.audio
+
+import timber.log.Timber
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+
+/**
+ * Saves and restores [WaveformPyramidBuilder] state, so a waveform decode interrupted by a
+ * killed process continues where it stopped instead of starting over.
+ */
+object WaveformCheckpoint {
+
+    /** Minimal wall time between two checkpoints of one decode. */
+    const val INTERVAL_MILLS = 10_000L
+
+    /**
+     * Returns the builder saved in [file] if it was made from the unchanged [source] with
+     * the same PCM format, otherwise null.
+     */
+    @JvmStatic
+    fun load(file: File?, source: File, sampleRate: Int, channelCount: Int): WaveformPyramidBuilder? {
+        if (file == null || !file.exists()) return null
+        return try {
+            file.inputStream().use { input ->
+                val data = DataInputStream(input)
+                if (data.readLong() != source.length() || data.readLong() != source.lastModified()) {
+                    return null
+                }
+                val builder = WaveformPyramidBuilder.readCheckpoint(input)
+                if (builder.sampleRate == sampleRate && builder.channelCount == channelCount) {
+                    builder
+                } else {
+                    null
+                }
+            }
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to read waveform checkpoint: ${file.name}")
+            null
+        }
+    }
+
+    @JvmStatic
+    fun save(file: File, source: File, builder: WaveformPyramidBuilder) {
+        val tmpFile = File(file.parentFile, file.name + ".tmp")
+        try {
+            tmpFile.outputStream().use { output ->
+                val data = DataOutputStream(output)
+                data.writeLong(source.length())
+                data.writeLong(source.lastModified())
+                data.flush()
+                builder.writeCheckpoint(output)
+            }
+            if (!tmpFile.renameTo(file)) {
+                throw IOException("Failed to rename ${tmpFile.name}")
+            }
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to save waveform checkpoint: ${file.name}")
+            tmpFile.delete()
+        }
+    }
+
+    @JvmStatic
+    fun delete(file: File?) {
+        if (file != null && file.exists() && !file.delete()) {
+            Timber.w("Failed to delete waveform checkpoint: ${file.name}")
+        }
+    }
+}
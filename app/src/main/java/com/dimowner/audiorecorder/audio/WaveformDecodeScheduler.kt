@@ -0,0 +1,224 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.audio
+
+import timber.log.Timber
+import java.util.PriorityQueue
+import java.util.concurrent.Executor
+
+/** How a [WaveformDecodeScheduler] job ended. */
+enum class DecodeOutcome { SUCCESS, CANCELED, ERROR }
+
+/**
+ * Latency of one decode job.
+ * @param waitMills time spent queued before a worker picked the job up.
+ * @param runMills time from start on a worker until the job finished, 0 if it never started.
+ */
+data class DecodeJobMetrics(
+    val key: String,
+    val priority: Int,
+    val waitMills: Long,
+    val runMills: Long,
+    val outcome: DecodeOutcome,
+)
+
+fun interface DecodeTask {
+    /** Runs on a worker, must end with [DecodeJob.finish], possibly later from another thread. */
+    fun run(job: DecodeJob)
+}
+
+/** A queued or running decode with its own cancellation token. */
+class DecodeJob internal constructor(
+    val key: String,
+    priority: Int,
+    internal val sequence: Long,
+    internal val task: DecodeTask,
+    internal val onCanceled: () -> Unit,
+    internal val queuedAt: Long,
+    private val scheduler: WaveformDecodeScheduler,
+) {
+    @Volatile
+    var isCanceled = false
+        private set
+
+    var priority = priority
+        internal set
+
+    internal var worker: Executor? = null
+    internal var startedAt = 0L
+    internal var isFinished = false
+
+    internal fun cancel() {
+        isCanceled = true
+    }
+
+    /** Releases the worker of this job. Calls after the first one are ignored. */
+    fun finish(outcome: DecodeOutcome) {
+        scheduler.onJobFinished(this, outcome)
+    }
+}
+
+/**
+ * Runs waveform decode jobs on a bounded set of [workers], the most important first.
+ *
+ * - Jobs with a higher priority start first, equal priorities in submission order.
+ * - A key is queued or running at most once. Submitting it again only raises its priority.
+ * - A queued job can be moved up while it waits, see [prioritize].
+ * - Every job can be canceled on its own, see [cancel].
+ *
+ * A job keeps its worker until it calls [DecodeJob.finish], as the codec decode path reports
+ * its result asynchronously on the worker's looper.
+ */
+class WaveformDecodeScheduler(
+    workers: List<Executor>,
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val onJobMetrics: (DecodeJobMetrics) -> Unit = {},
+    private val onIdle: () -> Unit = {},
+) {
+    private val freeWorkers = ArrayDeque(workers)
+    private val pending = PriorityQueue<DecodeJob>(
+        compareByDescending<DecodeJob> { it.priority }.thenBy { it.sequence }
+    )
+    private val active = HashMap<String, DecodeJob>()
+    private var sequence = 0L
+
+    init {
+        require(workers.isNotEmpty()) { "Decode scheduler needs at least one worker" }
+    }
+
+    /**
+     * Queues [task] under [key].
+     * @param onCanceled called instead of [task] when the job is canceled before it started.
+     * @return false when the key is already queued or running, the request is merged into it.
+     */
+    fun submit(key: String, priority: Int, task: DecodeTask, onCanceled: () -> Unit = {}): Boolean {
+        val toStart = synchronized(this) {
+            if (active.containsKey(key)) return false
+            if (pending.any { it.key == key }) {
+                prioritize(key, priority)
+                return false
+            }
+            pending.add(DecodeJob(key, priority, sequence++, task, onCanceled, clock(), this))
+            takeStartableJobs()
+        }
+        start(toStart)
+        return true
+    }
+
+    /**
+     * Raises the priority of the queued job of [key] to [priority].
+     * @return false when the key is not queued or already has a higher priority.
+     */
+    @Synchronized
+    fun prioritize(key: String, priority: Int): Boolean {
+        val queued = pending.firstOrNull { it.key == key }
+        if (queued == null || priority <= queued.priority) return false
+        pending.remove(queued)
+        queued.priority = priority
+        pending.add(queued)
+        return true
+    }
+
+    /**
+     * Cancels the job of [key]. A running job stops at its next cancellation check,
+     * a queued one is dropped and reported through its onCanceled callback.
+     */
+    fun cancel(key: String): Boolean {
+        val removed = synchronized(this) {
+            active[key]?.let {
+                it.cancel()
+                return true
+            }
+            pending.firstOrNull { it.key == key }?.also { pending.remove(it) } ?: return false
+        }
+        reportDropped(listOf(removed))
+        return true
+    }
+
+    fun cancelAll() {
+        val removed = synchronized(this) {
+            active.values.forEach { it.cancel() }
+            val queued = pending.toList()
+            pending.clear()
+            queued
+        }
+        reportDropped(removed)
+    }
+
+    @Synchronized
+    fun isIdle(): Boolean = active.isEmpty() && pending.isEmpty()
+
+    @Synchronized
+    fun isQueuedOrRunning(key: String): Boolean = active.containsKey(key) || pending.any { it.key == key }
+
+    internal fun onJobFinished(job: DecodeJob, outcome: DecodeOutcome) {
+        val now = clock()
+        val (toStart, isIdle) = synchronized(this) {
+            if (job.isFinished) return
+            job.isFinished = true
+            active.remove(job.key)
+            job.worker?.let { freeWorkers.addLast(it) }
+            job.worker = null
+            takeStartableJobs() to (active.isEmpty() && pending.isEmpty())
+        }
+        onJobMetrics(DecodeJobMetrics(job.key, job.priority, job.startedAt - job.queuedAt, now - job.startedAt, outcome))
+        start(toStart)
+        if (isIdle) onIdle()
+    }
+
+    /** Pairs queued jobs with free workers, must hold the lock. */
+    private fun takeStartableJobs(): List<DecodeJob> {
+        val result = ArrayList<DecodeJob>()
+        val now = clock()
+        while (freeWorkers.isNotEmpty() && pending.isNotEmpty()) {
+            val job = pending.poll()!!
+            job.worker = freeWorkers.removeFirst()
+            job.startedAt = now
+            active[job.key] = job
+            result.add(job)
+        }
+        return result
+    }
+
+    private fun start(jobs: List<DecodeJob>) {
+        for (job in jobs) {
+            job.worker?.execute {
+                if (job.isCanceled) {
+                    job.onCanceled()
+                    job.finish(DecodeOutcome.CANCELED)
+                } else {
+                    try {
+                        job.task.run(job)
+                    } catch (e: RuntimeException) {
+                        Timber.e(e, "Waveform decode failed: ${job.key}")
+                        job.finish(DecodeOutcome.ERROR)
+                    }
+                }
+            }
+        }
+    }
+
+    private fun reportDropped(jobs: List<DecodeJob>) {
+        if (jobs.isEmpty()) return
+        val now = clock()
+        for (job in jobs) {
+            job.onCanceled()
+            onJobMetrics(DecodeJobMetrics(job.key, job.priority, now - job.queuedAt, 0, DecodeOutcome.CANCELED))
+        }
+        if (isIdle()) onIdle()
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.audio
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.math.abs
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sqrt
+
+/**
+ * Collects an approximate waveform from short PCM windows decoded at evenly spaced
+ * positions, one window per base bin. The result has the same shape as a full decode, so
+ * views can draw it before the exact [WaveformPyramid] is ready.
+ */
+class WaveformPreviewBuilder(
+    val durationMills: Long,
+    windowCount: Int,
+    private val sampleRate: Int,
+    private val channelCount: Int,
+) {
+    /** Length of a bin, one window is sampled from each one. */
+    val binMills: Int = max(WAVEFORM_BASE_BIN_MILLS.toLong(), ceilDiv(durationMills, windowCount.toLong())).toInt()
+
+    val windowCount: Int = ceilDiv(durationMills, binMills.toLong()).toInt()
+
+    private val peaks = ShortArray(this.windowCount)
+    private val rms = ShortArray(this.windowCount)
+    private val windowFrames = max(1L, min(WINDOW_MILLS, binMills).toLong() * sampleRate / 1000)
+
+    private var windowIndex = -1
+    private var windowStartFrame = 0L
+    private var frameCount = 0L
+    private var channelIndex = 0
+    private var frameSum = 0
+    private var peak = 0
+    private var sumSquares = 0L
+
+    init {
+        require(sampleRate > 0 && channelCount > 0) { "Invalid PCM format" }
+    }
+
+    /** Position to seek to for the window of bin [index], the window sits mid-bin. */
+    fun windowStartUs(index: Int): Long {
+        return index.toLong() * binMills * 1000 + max(0, binMills - WINDOW_MILLS) / 2 * 1000L
+    }
+
+    /** Starts collecting the window of bin [index], dropping what is left of the previous one. */
+    fun startWindow(index: Int) {
+        windowIndex = index
+        windowStartFrame = windowStartUs(index) * sampleRate / 1_000_000
+        frameCount = 0
+        channelIndex = 0
+        frameSum = 0
+        peak = 0
+        sumSquares = 0
+    }
+
+    /**
+     * Adds PCM-16LE samples decoded at [presentationTimeUs]. Samples before the window start,
+     * left over from seeking to a sync sample, are skipped.
+     * @return true when the window is complete.
+     */
+    fun consume(buffer: ByteBuffer, presentationTimeUs: Long): Boolean {
+        check(windowIndex >= 0) { "startWindow() was not called" }
+        val samples = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer()
+        val bufferFrame = presentationTimeUs * sampleRate / 1_000_000
+        val skipFrames = windowStartFrame - bufferFrame
+        if (frameCount == 0L && skipFrames > 0) {
+            samples.position(min(samples.limit().toLong(), skipFrames * channelCount).toInt())
+        }
+        while (samples.hasRemaining() && frameCount < windowFrames) {
+            frameSum += samples.get().toInt()
+            if (++channelIndex == channelCount) {
+                val value = abs(frameSum / channelCount)
+                if (value > peak) peak = value
+                sumSquares += value.toLong() * value
+                frameCount++
+                channelIndex = 0
+                frameSum = 0
+            }
+        }
+        return frameCount >= windowFrames
+    }
+
+    /** Stores the window started last, a window cut short by the end of the file is kept. */
+    fun finishWindow() {
+        if (windowIndex < 0) return
+        if (frameCount > 0) {
+            peaks[windowIndex] = min(peak, Short.MAX_VALUE.toInt()).toShort()
+            rms[windowIndex] = min(sqrt(sumSquares.toDouble() / frameCount).toInt(), Short.MAX_VALUE.toInt()).toShort()
+        }
+        windowIndex = -1
+    }
+
+    fun build(): WaveformPyramid {
+        return WaveformPyramid.fromBaseLevel(durationMills, WaveformLevel(binMills, peaks.copyOf(), rms.copyOf()))
+    }
+
+    private fun ceilDiv(a: Long, b: Long): Long = if (b <= 0) a else (a + b - 1) / b
+
+    companion object {
+        /** Decoded length of each window, about two AAC frames. */
+        const val WINDOW_MILLS = 50
+    }
+}
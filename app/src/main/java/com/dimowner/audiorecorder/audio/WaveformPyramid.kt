@@ -0,0 +1,412 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.audio
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.ShortBuffer
+import kotlin.math.abs
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sqrt
+
+/** Time span of one bin on the finest [WaveformPyramid] level. */
+const val WAVEFORM_BASE_BIN_MILLS = 10
+
+/**
+ * One resolution of a [WaveformPyramid]: for every [binMills] long bin the peak absolute
+ * amplitude and the RMS amplitude of the channel-averaged 16-bit signal.
+ */
+class WaveformLevel(
+    val binMills: Int,
+    val peaks: ShortArray,
+    val rms: ShortArray,
+) {
+    val size: Int get() = peaks.size
+
+    /** Peaks on the legacy gain scale (square root of the peak amplitude). */
+    fun toGains(): IntArray = IntArray(size) { sqrt(peaks[it].toDouble()).toInt() }
+}
+
+/**
+ * Waveform of a whole recording on a fixed time base. Level 0 holds
+ * [WAVEFORM_BASE_BIN_MILLS] bins, every next level halves the previous one, so a view can
+ * pick the level that matches its zoom without decoding the file again.
+ */
+class WaveformPyramid(
+    val durationMills: Long,
+    val levels: List<WaveformLevel>,
+) {
+
+    init {
+        require(levels.isNotEmpty()) { "Waveform pyramid needs at least one level" }
+    }
+
+    val baseLevel: WaveformLevel get() = levels[0]
+
+    /**
+     * Returns the coarsest level whose bins are not wider than [millsPerPx], so each
+     * drawn pixel still covers at least one bin.
+     */
+    fun levelFor(millsPerPx: Float): WaveformLevel {
+        var result = levels[0]
+        for (level in levels) {
+            if (level.binMills <= millsPerPx) result = level else break
+        }
+        return result
+    }
+
+    /**
+     * Resamples the peaks into [count] values on the legacy gain scale (square root of the
+     * peak amplitude), as stored in record amps before the pyramid existed.
+     */
+    fun toGains(count: Int): IntArray {
+        if (count <= 0) return IntArray(0)
+        val level = levels.lastOrNull { it.size >= count } ?: levels[0]
+        val peaks = level.peaks
+        if (peaks.isEmpty()) return IntArray(count)
+        return IntArray(count) { index ->
+            val from = (index.toLong() * peaks.size / count).toInt()
+            val to = max(from + 1, ((index + 1).toLong() * peaks.size / count).toInt())
+            var peak = 0
+            for (i in from until min(to, peaks.size)) {
+                peak = max(peak, peaks[i].toInt())
+            }
+            sqrt(peak.toDouble()).toInt()
+        }
+    }
+
+    /** Writes the base level only, coarser levels are rebuilt by [readFrom]. */
+    @Throws(IOException::class)
+    fun writeTo(output: OutputStream) {
+        val out = DataOutputStream(output.buffered())
+        val base = baseLevel
+        out.writeInt(FILE_MAGIC)
+        out.writeInt(base.binMills)
+        out.writeLong(durationMills)
+        out.writeInt(base.size)
+        for (i in 0 until base.size) {
+            out.writeShort(base.peaks[i].toInt())
+            out.writeShort(base.rms[i].toInt())
+        }
+        out.flush()
+    }
+
+    companion object {
+        private const val FILE_MAGIC = 0x57465031 // "WFP1"
+        /** Reductions stop once a level would be shorter than this. */
+        private const val MIN_LEVEL_SIZE = 16
+
+        @Throws(IOException::class)
+        fun readFrom(input: InputStream): WaveformPyramid {
+            val data = DataInputStream(input.buffered())
+            if (data.readInt() != FILE_MAGIC) {
+                throw IOException("Not a waveform pyramid")
+            }
+            val binMills = data.readInt()
+            val durationMills = data.readLong()
+            val size = data.readInt()
+            if (binMills <= 0 || size < 0) {
+                throw IOException("Broken waveform pyramid")
+            }
+            val peaks = ShortArray(size)
+            val rms = ShortArray(size)
+            for (i in 0 until size) {
+                peaks[i] = data.readShort()
+                rms[i] = data.readShort()
+            }
+            return fromBaseLevel(durationMills, WaveformLevel(binMills, peaks, rms))
+        }
+
+        /** Builds the 2x reduced levels on top of [base]. */
+        fun fromBaseLevel(durationMills: Long, base: WaveformLevel): WaveformPyramid {
+            val levels = ArrayList<WaveformLevel>()
+            levels.add(base)
+            var level = base
+            while (level.size / 2 >= MIN_LEVEL_SIZE) {
+                level = reduce(level)
+                levels.add(level)
+            }
+            return WaveformPyramid(durationMills, levels)
+        }
+
+        private fun reduce(level: WaveformLevel): WaveformLevel {
+            val size = (level.size + 1) / 2
+            val peaks = ShortArray(size)
+            val rms = ShortArray(size)
+            halveBins(level.peaks, level.rms, level.size, peaks, rms)
+            return WaveformLevel(level.binMills * 2, peaks, rms)
+        }
+    }
+}
+
+/**
+ * Merges neighbour bin pairs of [peaks]/[rms] into [outPeaks]/[outRms], a trailing odd bin
+ * is kept as is. Output may be the input arrays.
+ * @return the number of merged bins.
+ */
+private fun halveBins(peaks: ShortArray, rms: ShortArray, size: Int, outPeaks: ShortArray, outRms: ShortArray): Int {
+    val newSize = (size + 1) / 2
+    for (i in 0 until newSize) {
+        val first = 2 * i
+        val second = min(first + 1, size - 1)
+        outPeaks[i] = max(peaks[first].toInt(), peaks[second].toInt()).toShort()
+        val r1 = rms[first].toDouble()
+        val r2 = rms[second].toDouble()
+        outRms[i] = sqrt((r1 * r1 + r2 * r2) / 2).toInt().toShort()
+    }
+    return newSize
+}
+
+/**
+ * Accumulates interleaved 16-bit PCM into [WAVEFORM_BASE_BIN_MILLS] bins and produces a
+ * [WaveformPyramid]. Memory is bounded regardless of the duration: once [MAX_BASE_BINS] bins
+ * are filled, neighbour bins are merged in place and the bin time span doubles, so the base
+ * level always covers the whole input with equal-time bins.
+ */
+class WaveformPyramidBuilder private constructor(
+    val sampleRate: Int,
+    val channelCount: Int,
+    private var binMills: Int,
+    private var peaks: ShortArray,
+    private var rms: ShortArray,
+    private var size: Int,
+) {
+
+    constructor(sampleRate: Int, channelCount: Int) : this(
+        sampleRate, channelCount, WAVEFORM_BASE_BIN_MILLS,
+        ShortArray(INITIAL_CAPACITY), ShortArray(INITIAL_CAPACITY), 0
+    )
+
+    private var channelIndex = 0
+    private var frameSum = 0
+    private var binFrames = 0
+    private var binPeak = 0
+    private var binSumSquares = 0L
+    private var binEndFrame = 0L
+    private val scratch = ShortArray(SCRATCH_SIZE)
+
+    /** Number of whole frames consumed so far. */
+    var frameCount = 0L
+        private set
+
+    /**
+     * Position in the source the current state corresponds to, e.g. a byte offset.
+     * Not used by the builder itself, only saved and restored with checkpoints.
+     */
+    var sourcePosition = 0L
+
+    init {
+        require(sampleRate > 0 && channelCount > 0) { "Invalid PCM format" }
+        binEndFrame = binEnd(size)
+    }
+
+    /** Adds one interleaved sample. */
+    fun addSample(sample: Int) {
+        frameSum += sample
+        channelIndex++
+        if (channelIndex == channelCount) {
+            val value = abs(frameSum / channelCount)
+            if (value > binPeak) binPeak = value
+            binSumSquares += value.toLong() * value
+            binFrames++
+            frameCount++
+            channelIndex = 0
+            frameSum = 0
+            if (frameCount == binEndFrame) {
+                flushBin()
+            }
+        }
+    }
+
+    /** Reads PCM-16LE samples from [buffer] until less than a sample remains. */
+    fun consume(buffer: ByteBuffer) {
+        val sampleCount = buffer.remaining() / 2
+        consume(buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer())
+        buffer.position(buffer.position() + sampleCount * 2)
+    }
+
+    /** Reads all remaining samples of [samples], bulk-copying them through a reused array. */
+    fun consume(samples: ShortBuffer) {
+        while (samples.hasRemaining()) {
+            val count = min(samples.remaining(), scratch.size)
+            samples.get(scratch, 0, count)
+            consumeScratch(count)
+        }
+    }
+
+    /** Same as [addSample] for [count] scratch samples, with the state kept in locals. */
+    private fun consumeScratch(count: Int) {
+        var channelIndex = channelIndex
+        var frameSum = frameSum
+        var binFrames = binFrames
+        var binPeak = binPeak
+        var binSumSquares = binSumSquares
+        var frameCount = frameCount
+        for (i in 0 until count) {
+            frameSum += scratch[i]
+            if (++channelIndex == channelCount) {
+                val value = abs(frameSum / channelCount)
+                if (value > binPeak) binPeak = value
+                binSumSquares += value.toLong() * value
+                channelIndex = 0
+                frameSum = 0
+                binFrames++
+                if (++frameCount == binEndFrame) {
+                    this.binPeak = binPeak
+                    this.binSumSquares = binSumSquares
+                    this.binFrames = binFrames
+                    flushBin()
+                    binFrames = 0
+                    binPeak = 0
+                    binSumSquares = 0
+                }
+            }
+        }
+        this.channelIndex = channelIndex
+        this.frameSum = frameSum
+        this.binFrames = binFrames
+        this.binPeak = binPeak
+        this.binSumSquares = binSumSquares
+        this.frameCount = frameCount
+    }
+
+    fun build(): WaveformPyramid {
+        if (binFrames > 0) flushBin()
+        return toPyramid(frameCount * 1000 / sampleRate)
+    }
+
+    /**
+     * Pyramid of the bins completed so far, decoding can go on afterwards.
+     * The bin being filled is left out, so it may lag one bin behind [frameCount].
+     */
+    fun snapshot(): WaveformPyramid {
+        return toPyramid(binEnd(size - 1) * 1000 / sampleRate)
+    }
+
+    private fun toPyramid(durationMills: Long): WaveformPyramid {
+        val base = WaveformLevel(binMills, peaks.copyOf(size), rms.copyOf(size))
+        return WaveformPyramid.fromBaseLevel(durationMills, base)
+    }
+
+    /**
+     * Saves the whole state, so decoding can continue from [sourcePosition] with a builder
+     * restored by [readCheckpoint].
+     */
+    @Throws(IOException::class)
+    fun writeCheckpoint(output: OutputStream) {
+        val out = DataOutputStream(output.buffered())
+        out.writeInt(CHECKPOINT_MAGIC)
+        out.writeInt(sampleRate)
+        out.writeInt(channelCount)
+        out.writeInt(binMills)
+        out.writeLong(sourcePosition)
+        out.writeLong(frameCount)
+        out.writeInt(channelIndex)
+        out.writeInt(frameSum)
+        out.writeInt(binFrames)
+        out.writeInt(binPeak)
+        out.writeLong(binSumSquares)
+        out.writeInt(size)
+        for (i in 0 until size) {
+            out.writeShort(peaks[i].toInt())
+            out.writeShort(rms[i].toInt())
+        }
+        out.flush()
+    }
+
+    private fun binEnd(binIndex: Int): Long {
+        return (binIndex + 1).toLong() * binMills * sampleRate / 1000
+    }
+
+    private fun flushBin() {
+        if (size == peaks.size) {
+            val capacity = min(size * 2, MAX_BASE_BINS)
+            peaks = peaks.copyOf(capacity)
+            rms = rms.copyOf(capacity)
+        }
+        peaks[size] = min(binPeak, Short.MAX_VALUE.toInt()).toShort()
+        rms[size] = min(sqrt(binSumSquares.toDouble() / binFrames).toInt(), Short.MAX_VALUE.toInt()).toShort()
+        size++
+        binFrames = 0
+        binPeak = 0
+        binSumSquares = 0
+        if (size == MAX_BASE_BINS) {
+            // Full: merge pairs so the next bins can be twice as long.
+            size = halveBins(peaks, rms, size, peaks, rms)
+            binMills *= 2
+        }
+        binEndFrame = binEnd(size)
+    }
+
+    companion object {
+        /** About 1 minute of bins. */
+        private const val INITIAL_CAPACITY = 6000
+        private const val SCRATCH_SIZE = 4096
+        private const val CHECKPOINT_MAGIC = 0x57464331 // "WFC1"
+
+        /** Base level cap, 2 MB of bins. Covers about 87 minutes with 10 ms bins. */
+        const val MAX_BASE_BINS = 1 shl 19
+
+        /** How often a decode reports the partial waveform, see [AudioDecodingListener.onPartialPyramid]. */
+        const val PARTIAL_INTERVAL_MILLS = 250L
+
+        @JvmStatic
+        @Throws(IOException::class)
+        fun readCheckpoint(input: InputStream): WaveformPyramidBuilder {
+            val data = DataInputStream(input.buffered())
+            if (data.readInt() != CHECKPOINT_MAGIC) {
+                throw IOException("Not a waveform checkpoint")
+            }
+            val sampleRate = data.readInt()
+            val channelCount = data.readInt()
+            val binMills = data.readInt()
+            val sourcePosition = data.readLong()
+            val frameCount = data.readLong()
+            val channelIndex = data.readInt()
+            val frameSum = data.readInt()
+            val binFrames = data.readInt()
+            val binPeak = data.readInt()
+            val binSumSquares = data.readLong()
+            val size = data.readInt()
+            if (sampleRate <= 0 || channelCount <= 0 || binMills <= 0 || size !in 0..MAX_BASE_BINS) {
+                throw IOException("Broken waveform checkpoint")
+            }
+            val capacity = min(max(size * 2, INITIAL_CAPACITY), MAX_BASE_BINS)
+            val peaks = ShortArray(capacity)
+            val rms = ShortArray(capacity)
+            for (i in 0 until size) {
+                peaks[i] = data.readShort()
+                rms[i] = data.readShort()
+            }
+            return WaveformPyramidBuilder(sampleRate, channelCount, binMills, peaks, rms, size).also {
+                it.sourcePosition = sourcePosition
+                it.frameCount = frameCount
+                it.channelIndex = channelIndex
+                it.frameSum = frameSum
+                it.binFrames = binFrames
+                it.binPeak = binPeak
+                it.binSumSquares = binSumSquares
+            }
+        }
+    }
+}
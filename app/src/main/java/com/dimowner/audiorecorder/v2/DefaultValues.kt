@@ -32,6 +32,11 @@ object DefaultValues {
     const val IS_ASK_TO_RENAME: Boolean = true
     const val IS_KEEP_SCREEN_ON: Boolean = false
     const val IS_SAVE_DESCRIPTION_TO_FILE: Boolean = true
+    const val IS_RECORD_COMPRESSED_COPY: Boolean = false
+    const val IS_SKIP_SILENCE: Boolean = false
+    /** Roughly -47 dBFS average level on the scale of the recording amplitudes. */
+    const val SILENCE_SKIP_THRESHOLD: Int = 1200
+    const val SILENCE_SKIP_HANGOVER_MILLS: Int = 2000
 
     val DefaultSampleRate: SampleRate = SampleRate.SR44100
     val DefaultBitRate: BitRate = BitRate.BR128
@@ -48,6 +53,12 @@ object DefaultValues {
     /** Adaptive Multi-Rate Wideband (AMR-WB) bitrate (Bits per second) */
     const val MAX_3GP_BITRATE_WB: Int = 24000
 
+    /**
+     * Typical FLAC file size relative to the same WAV recording, in percent. Used only to
+     * estimate size per minute and remaining recording time; speech usually compresses better.
+     */
+    const val FLAC_SIZE_PERCENT_OF_WAV: Int = 60
+
     val Default3GpSampleRate: SampleRate = SampleRate.SR16000
     val Default3GpChannelCount: ChannelCount = ChannelCount.Mono
 
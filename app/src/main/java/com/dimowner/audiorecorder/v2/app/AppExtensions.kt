@@ -201,7 +201,8 @@ fun recordingSettingsCombinedText(
             "$recordingFormatText, $sampleRateText, $bitRateText, $channelCountText"
         }
         RecordingFormat.Wav,
-        RecordingFormat.ThreeGp -> {
+        RecordingFormat.ThreeGp,
+        RecordingFormat.Flac -> {
             "$recordingFormatText, $sampleRateText, $channelCountText"
         }
         else -> ""
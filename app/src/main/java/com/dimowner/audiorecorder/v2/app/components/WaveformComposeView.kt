@@ -30,10 +30,12 @@ import androidx.core.content.ContextCompat
 import com.dimowner.audiorecorder.AppConstantsV2
 import com.dimowner.audiorecorder.AppConstantsV2.RECORDING_GRID_STEP
 import com.dimowner.audiorecorder.R
+import com.dimowner.audiorecorder.audio.WaveformPyramid
 import com.dimowner.audiorecorder.util.AndroidUtils
 import com.dimowner.audiorecorder.util.TimeUtils
 import com.dimowner.audiorecorder.v2.app.TEST_WAVEFORM_DATA
 import com.dimowner.audiorecorder.v2.app.TEST_WAVEFORM_DATA_DURATION_MILLS
+import com.dimowner.audiorecorder.v2.app.adjustWaveformHeights
 import com.dimowner.audiorecorder.v2.app.getTestWaveformData
 
 private val GIRD_SUBLINE_HEIGHT: Float = AndroidUtils.dpToPx(12)
@@ -57,6 +59,14 @@ fun WaveformComposeView(
     val gridColor =  MaterialTheme.colorScheme.secondary.toArgb()
     val lineColor =  MaterialTheme.colorScheme.inverseSurface.toArgb()
     val textColor =  MaterialTheme.colorScheme.onSurfaceVariant.toArgb()
+    // Heights of the pyramid level matching the current zoom, rebuilt only when the level changes.
+    val pyramidLevelBinMills = state.pyramid?.takeIf { viewState.value.millsPerPx > 0 }
+        ?.levelFor(viewState.value.millsPerPx)?.binMills ?: 0
+    val displayLevel = remember(state.pyramid, pyramidLevelBinMills) {
+        state.pyramid?.levels?.firstOrNull { it.binMills == pyramidLevelBinMills }?.let {
+            DisplayLevel(it.binMills, adjustWaveformHeights(it.toGains()))
+        }
+    }
 
     val paintState = remember {
         mutableStateOf(
@@ -155,7 +165,7 @@ fun WaveformComposeView(
         drawIntoCanvas { canvas ->
             drawGrid(canvas, size, viewState.value, state, showTimeline, paintState.value)
             drawStartAndEnd(canvas, size, viewState.value, state, paintState.value)
-            drawWaveform(canvas, size, viewState.value, state, paintState.value)
+            drawWaveform(canvas, size, viewState.value, state, displayLevel, paintState.value)
             //Draw scrubber
             canvas.nativeCanvas.drawLine(
                 size.width / 2f,
@@ -256,9 +266,15 @@ private fun drawWaveform(
     size: Size,
     viewState: WaveformViewState,
     state: WaveformState,
+    displayLevel: DisplayLevel?,
     paintState: PaintState
 ) {
-    if (state.waveformData.isNotEmpty()) {
+    // Prefer the pyramid level picked for the current zoom over the fixed-density amps.
+    val waveformData = displayLevel?.heights ?: state.waveformData
+    val samplePerPx = displayLevel?.let { viewState.millsPerPx / it.binMills } ?: viewState.samplePerPx
+    val durationSample = displayLevel?.heights?.size ?: state.durationSample
+    val dataOffset = if (displayLevel != null) 0 else state.waveformDataOffset
+    if (waveformData.isNotEmpty()) {
         for (i in viewState.drawLinesArray.indices) {
             viewState.drawLinesArray[i] = 0f
         }
@@ -266,17 +282,19 @@ private fun drawWaveform(
         val textIndent = viewState.textIndent
         var step = 0
         for (index in 0 until viewState.durationPx.toInt()) {
-            var sampleIndex = (index * viewState.samplePerPx).toInt()
-            if (sampleIndex >= state.durationSample) {
-                sampleIndex = state.durationSample - 1
+            var sampleIndex = (index * samplePerPx).toInt()
+            // A pyramid still being decoded covers only the start of the record.
+            if (displayLevel != null && sampleIndex >= durationSample) break
+            if (sampleIndex >= durationSample) {
+                sampleIndex = durationSample - 1
             }
             val xPos = viewState.waveformShiftPx + index
             if (xPos >= 0 && xPos <= size.width && step + 3 < viewState.drawLinesArray.size) {
                 // Adjust sample index by the buffer offset (used during RECORDING ONLY when
                 // waveformData is a sliding window over the full sample timeline).
-                val bufferIndex = sampleIndex - state.waveformDataOffset
-                val amp = if (bufferIndex in state.waveformData.indices) {
-                    state.waveformData[bufferIndex]
+                val bufferIndex = sampleIndex - dataOffset
+                val amp = if (bufferIndex in waveformData.indices) {
+                    waveformData[bufferIndex]
                 } else {
                     0
                 }
@@ -350,6 +368,9 @@ fun WaveformComposeViewRecordingPreview() {
     )
 }
 
+/** Display heights of one [WaveformPyramid] level, one value per [binMills]. */
+class DisplayLevel(val binMills: Int, val heights: IntArray)
+
 data class PaintState(
     val waveformPaint: Paint = Paint(),
     val linePaint: Paint = Paint(),
@@ -421,6 +442,12 @@ data class WaveformState(
      * this offset, ensuring the waveform scrolls in sync with the grid.
      */
     val waveformDataOffset: Int = 0,
+    /**
+     * Resolution-independent waveform of a decoded record. When present the view draws the
+     * pyramid level matching its zoom instead of [waveformData]. While the record is
+     * decoding it holds the part decoded so far, drawn from the left.
+     */
+    val pyramid: WaveformPyramid? = null,
 ) {
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
@@ -434,6 +461,7 @@ data class WaveformState(
         if (durationSample != other.durationSample) return false
         if (gridStepMills != other.gridStepMills) return false
         if (waveformDataOffset != other.waveformDataOffset) return false
+        if (pyramid !== other.pyramid) return false
 
         return true
     }
@@ -447,6 +475,7 @@ data class WaveformState(
         result = 31 * result + durationSample
         result = 31 * result + gridStepMills.hashCode()
         result = 31 * result + waveformDataOffset.hashCode()
+        result = 31 * result + System.identityHashCode(pyramid)
         return result
     }
 }
@@ -29,6 +29,8 @@ import com.dimowner.audiorecorder.v2.app.records.DEFAULT_PAGE_SIZE
 import com.dimowner.audiorecorder.v2.app.toInfoCombinedText
 import com.dimowner.audiorecorder.v2.data.RecordsDataSource
 import com.dimowner.audiorecorder.v2.data.model.Record
+import com.dimowner.audiorecorder.v2.data.model.RecordsCursor
+import com.dimowner.audiorecorder.v2.data.model.toRecordsCursor
 import com.dimowner.audiorecorder.v2.di.qualifiers.IoDispatcher
 import com.dimowner.audiorecorder.v2.di.qualifiers.MainDispatcher
 import dagger.hilt.android.lifecycle.HiltViewModel
@@ -54,20 +56,21 @@ internal class DeletedRecordsViewModel @Inject constructor(
     private val _event = MutableSharedFlow<DeletedRecordsScreenEvent?>()
     val event: SharedFlow<DeletedRecordsScreenEvent?> = _event
 
-    private var currentPage = 1
+    /** Position of the last loaded record, the next page is loaded from there. */
+    private var lastLoadedCursor: RecordsCursor? = null
 
     init {
         loadFirstPage()
     }
 
     private fun loadFirstPage() {
-        currentPage = 1
         _state.value = _state.value.copy(isShowLoadingProgress = true)
         viewModelScope.launch(ioDispatcher) {
             val records = recordsDataSource.getMovedToRecycleRecords(
-                page = currentPage,
+                after = null,
                 pageSize = DEFAULT_PAGE_SIZE,
             )
+            lastLoadedCursor = records.lastOrNull()?.toRecordsCursor()
             withContext(mainDispatcher) {
                 val context: Context = getApplication<Application>().applicationContext
                 _state.value = DeletedRecordsScreenState(
@@ -83,11 +86,11 @@ internal class DeletedRecordsViewModel @Inject constructor(
         if (!state.value.hasMoreData || state.value.isShowLoadingProgress) return
         _state.value = _state.value.copy(isShowLoadingProgress = true)
         viewModelScope.launch(ioDispatcher) {
-            currentPage++
             val newRecords = recordsDataSource.getMovedToRecycleRecords(
-                page = currentPage,
+                after = lastLoadedCursor,
                 pageSize = DEFAULT_PAGE_SIZE,
             )
+            newRecords.lastOrNull()?.let { lastLoadedCursor = it.toRecordsCursor() }
             withContext(mainDispatcher) {
                 val context: Context = getApplication<Application>().applicationContext
                 _state.value = _state.value.copy(
@@ -42,6 +42,7 @@ import com.dimowner.audiorecorder.app.DecodeService
 import com.dimowner.audiorecorder.app.DecodeServiceListener
 import com.dimowner.audiorecorder.app.DownloadService
 import com.dimowner.audiorecorder.audio.AudioDecoder
+import com.dimowner.audiorecorder.audio.WaveformPyramid
 import com.dimowner.audiorecorder.audio.player.AudioPlaybackService
 import com.dimowner.audiorecorder.audio.player.PlayerContractNew
 import com.dimowner.audiorecorder.exception.AppException
@@ -106,6 +107,15 @@ class HomeViewModel @Inject constructor(
 
     private var recordingStateJob: Job? = null
     private var recordingEventJob: Job? = null
+    /**
+     * Waveform pyramid of the last shown record with its record id, reading it is not free.
+     * Only touched on the main dispatcher.
+     */
+    private var loadedPyramid: Pair<Long, WaveformPyramid>? = null
+    /** Bumped when [loadedPyramid] is invalidated, so a read started before it is not cached. */
+    private var loadedPyramidGeneration = 0
+    /** Id of the record whose sparse preview waveform is shown while it decodes in full. */
+    private var previewRecordId = -1L
 
     private val _state = mutableStateOf(HomeScreenState())
     val state: State<HomeScreenState> = _state
@@ -123,13 +133,48 @@ class HomeViewModel @Inject constructor(
                     _state.value = _state.value.copy(isShowRecordProcessing = true)
                 }
 
+                override fun isPartialWaveformWanted(recordId: Long): Boolean {
+                    return prefs.activeRecordId == recordId
+                }
+
+                override fun onPartialWaveform(recordId: Long, pyramid: WaveformPyramid) {
+                    viewModelScope.launch(mainDispatcher) {
+                        // Fill in the waveform of the shown record until the full one is loaded.
+                        // A preview already spans the whole record, a partial one would shrink it.
+                        if (prefs.activeRecordId == recordId && loadedPyramid?.first != recordId
+                            && previewRecordId != recordId) {
+                            _state.value = _state.value.copy(
+                                waveformState = _state.value.waveformState.copy(pyramid = pyramid)
+                            )
+                        }
+                    }
+                }
+
+                override fun onPreviewWaveform(recordId: Long, pyramid: WaveformPyramid) {
+                    viewModelScope.launch(mainDispatcher) {
+                        if (prefs.activeRecordId == recordId && loadedPyramid?.first != recordId) {
+                            previewRecordId = recordId
+                            _state.value = _state.value.copy(
+                                waveformState = _state.value.waveformState.copy(pyramid = pyramid)
+                            )
+                        }
+                    }
+                }
+
                 override fun onFinishProcessing(recordId: Long, decodedData: IntArray) {
                     _state.value = _state.value.copy(isShowRecordProcessing = false)
-                    viewModelScope.launch(ioDispatcher) {
+                    viewModelScope.launch(mainDispatcher) {
                         if (recordId < 0) return@launch
+                        // The decode may have replaced the stored pyramid of this record.
+                        if (loadedPyramid?.first == recordId) {
+                            loadedPyramid = null
+                        }
+                        loadedPyramidGeneration++
                         // Only update UI if the decoded record is still the active record
                         if (prefs.activeRecordId == recordId) {
-                            updateState()
+                            withContext(ioDispatcher) {
+                                updateState()
+                            }
                         }
                     }
                 }
@@ -584,10 +629,25 @@ class HomeViewModel @Inject constructor(
         }
     }
 
+    /** Returns the waveform pyramid of [record], reusing the last one read from disk. */
+    private suspend fun loadWaveformPyramid(record: Record): WaveformPyramid? {
+        if (!record.isWaveformProcessed) return null
+        val (cached, generation) = withContext(mainDispatcher) { loadedPyramid to loadedPyramidGeneration }
+        if (cached != null && cached.first == record.id) return cached.second
+        val pyramid = withContext(ioDispatcher) { fileDataSource.readWaveformPyramid(record.id) } ?: return null
+        withContext(mainDispatcher) {
+            if (generation == loadedPyramidGeneration) {
+                loadedPyramid = record.id to pyramid
+            }
+        }
+        return pyramid
+    }
+
     private suspend fun updateState(resetPlayProgress: Boolean = true) {
         val context: Context = getApplication<Application>().applicationContext
         val activeRecord = recordsDataSource.getActiveRecord()
         if (activeRecord != null) {
+            val pyramid = loadWaveformPyramid(activeRecord)
             val lostRecord = if (activeRecord.isLostRecord()) {
                 activeRecord
             } else {
@@ -607,6 +667,7 @@ class HomeViewModel @Inject constructor(
                         gridStepMills = calculateGridStep(activeRecord.durationMills),
                         isRecording = _state.value.bottomBarState != BottomBarState.READY_TO_START_RECORDING,
                         waveformDataOffset = 0,
+                        pyramid = pyramid,
                     ),
                     startTime = context.getString(R.string.zero_time),
                     endTime = TimeUtils.formatTimeIntervalHourMinSec2(activeRecord.durationMills),
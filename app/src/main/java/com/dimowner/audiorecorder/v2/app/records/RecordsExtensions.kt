@@ -74,6 +74,12 @@ fun getSortDroDownMenuItems(): List<DropDownMenuItem<SortDropDownMenuItemId>> {
             SortDropDownMenuItemId.DURATION -> DropDownMenuItem(
                 id = it, textResId = R.string.by_duration_desc, imageResId = R.drawable.ic_access_time
             )
+            SortDropDownMenuItemId.LOUDNESS_DESC -> DropDownMenuItem(
+                id = it, textResId = R.string.by_loudness, imageResId = R.drawable.ic_volume_up
+            )
+            SortDropDownMenuItemId.LOUDNESS -> DropDownMenuItem(
+                id = it, textResId = R.string.by_loudness_desc, imageResId = R.drawable.ic_volume_up
+            )
         }
     }
 }
@@ -86,6 +92,8 @@ fun SortOrder.toText(context: Context): String {
         SortOrder.NameDesc -> context.getString(R.string.by_name_desc)
         SortOrder.DurationShortest -> context.getString(R.string.by_duration_desc)
         SortOrder.DurationLongest -> context.getString(R.string.by_duration)
+        SortOrder.LoudnessLoudest -> context.getString(R.string.by_loudness)
+        SortOrder.LoudnessQuietest -> context.getString(R.string.by_loudness_desc)
     }
 }
 
@@ -97,6 +105,8 @@ fun SortDropDownMenuItemId.toSortOrder(): SortOrder {
         SortDropDownMenuItemId.NAME_DESC -> SortOrder.NameDesc
         SortDropDownMenuItemId.DURATION -> SortOrder.DurationShortest
         SortDropDownMenuItemId.DURATION_DESC -> SortOrder.DurationLongest
+        SortDropDownMenuItemId.LOUDNESS -> SortOrder.LoudnessQuietest
+        SortDropDownMenuItemId.LOUDNESS_DESC -> SortOrder.LoudnessLoudest
     }
 }
 
@@ -220,6 +230,8 @@ fun List<RecordListItem>.sort(sortOrder: SortOrder): List<RecordListItem> {
         SortOrder.NameDesc -> this.sortedByDescending { it.name }
         SortOrder.DurationShortest -> this.sortedBy { it.duration }
         SortOrder.DurationLongest -> this.sortedByDescending { it.duration }
+        SortOrder.LoudnessLoudest -> this.sortedWith(compareBy(nullsLast(reverseOrder())) { it.loudness })
+        SortOrder.LoudnessQuietest -> this.sortedWith(compareBy(nullsLast()) { it.loudness })
     }
 }
 
@@ -185,7 +185,7 @@ fun RecordsFilterTouchPanel(
 
 /**
  * A panel that slides in below the top bar and lets the user filter the records list by
- * format, sample rate, channel count and bitrate. Each dimension shows toggleable chips for
+ * format, sample rate, channel count, bitrate and clipping. Each dimension shows toggleable chips for
  * the distinct values present among the user's records. Selecting chips updates the [filter]
  * immediately through [onFilterChange]; multiple chips (within and across dimensions) can be
  * active at the same time.
@@ -286,6 +286,15 @@ fun RecordsFilterPanel(
                         onFilterChange(filter.copy(bitrates = filter.bitrates.toggle(value)))
                     },
                 )
+                FilterChipsSection(
+                    title = stringResource(id = R.string.filter_clipping),
+                    options = if (filterOptions.hasClippedRecords) listOf(true) else emptyList(),
+                    selected = if (filter.onlyClipped) setOf(true) else emptySet(),
+                    label = { stringResource(id = R.string.filter_clipped) },
+                    onToggle = {
+                        onFilterChange(filter.copy(onlyClipped = !filter.onlyClipped))
+                    },
+                )
         }
     }
 }
@@ -349,6 +358,7 @@ fun RecordsFilterPanelPreview() {
             sampleRates = listOf(16000, 22050, 44100, 48000),
             channelCounts = listOf(1, 2),
             bitrates = listOf(96000, 128000, 192000),
+            hasClippedRecords = true,
         ),
         onFilterChange = {},
         onClear = {},
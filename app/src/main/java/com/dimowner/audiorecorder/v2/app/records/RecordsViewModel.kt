@@ -43,7 +43,9 @@ import com.dimowner.audiorecorder.v2.data.RecordsDataSource
 import com.dimowner.audiorecorder.v2.analytics.AnalyticsTracker
 import com.dimowner.audiorecorder.v2.data.extensions.checkForLostRecords
 import com.dimowner.audiorecorder.v2.data.model.Record
+import com.dimowner.audiorecorder.v2.data.model.RecordsCursor
 import com.dimowner.audiorecorder.v2.data.model.SortOrder
+import com.dimowner.audiorecorder.v2.data.model.toRecordsCursor
 import com.dimowner.audiorecorder.v2.di.qualifiers.IoDispatcher
 import com.dimowner.audiorecorder.v2.di.qualifiers.MainDispatcher
 import dagger.hilt.android.lifecycle.HiltViewModel
@@ -102,7 +104,8 @@ internal class RecordsViewModel @Inject constructor(
         }
     }
 
-    private var currentPage = 1
+    /** Position of the last loaded record, the next page is loaded from there. */
+    private var lastLoadedCursor: RecordsCursor? = null
 
     fun onStart(showPlayPanel: Boolean) {
         showLoadingProgress(true)
@@ -117,7 +120,7 @@ internal class RecordsViewModel @Inject constructor(
     }
 
     private suspend fun initState(showPlayPanel: Boolean) {
-        currentPage = 1
+        lastLoadedCursor = null
         val context: Context = getApplication<Application>().applicationContext
         val sortOrder = state.value.sortOrder
         val filter = state.value.filter
@@ -133,19 +136,19 @@ internal class RecordsViewModel @Inject constructor(
         while (true) {
             val page = recordsDataSource.getRecords(
                 sortOrder = sortOrder,
-                page = currentPage,
+                after = lastLoadedCursor,
                 pageSize = DEFAULT_PAGE_SIZE,
                 isBookmarked = false,
                 filter = filter,
             )
             allLoadedRecords.addAll(page)
+            page.lastOrNull()?.let { lastLoadedCursor = it.toRecordsCursor() }
             hasMoreData = page.size >= DEFAULT_PAGE_SIZE
             if (!activeRecordFound && page.any { it.id == activeRecordId }) {
                 activeRecordFound = true
             }
             // Stop when found, or when there are no more pages to load.
             if (activeRecordFound || !hasMoreData) break
-            currentPage++
         }
 
         val deletedRecordsCount = recordsDataSource.getMovedToRecycleRecordsCount()
@@ -186,16 +189,16 @@ internal class RecordsViewModel @Inject constructor(
         if (!state.value.hasMoreData || state.value.isShowLoadingProgress) return
         showLoadingProgress(true)
         viewModelScope.launch(ioDispatcher) {
-            currentPage++
             val context: Context = getApplication<Application>().applicationContext
             val sortOrder = state.value.sortOrder
             val newRecords = recordsDataSource.getRecords(
                 sortOrder = sortOrder,
-                page = currentPage,
+                after = lastLoadedCursor,
                 pageSize = DEFAULT_PAGE_SIZE,
                 isBookmarked = state.value.bookmarksSelected,
                 filter = state.value.filter,
             )
+            newRecords.lastOrNull()?.let { lastLoadedCursor = it.toRecordsCursor() }
             withContext(mainDispatcher) {
                 val newRecordsMap = newRecords.map { it.toRecordListItem(context) }
                     .groupRecordsByDate(context, sortOrder)
@@ -214,15 +217,15 @@ internal class RecordsViewModel @Inject constructor(
 
     fun updateListWithBookmarks(bookmarksSelected: Boolean) {
         viewModelScope.launch(ioDispatcher) {
-            currentPage = 1
             val sortOrder = state.value.sortOrder
             val records = recordsDataSource.getRecords(
                 sortOrder = sortOrder,
-                page = currentPage,
+                after = null,
                 pageSize = DEFAULT_PAGE_SIZE,
                 isBookmarked = bookmarksSelected,
                 filter = state.value.filter,
             )
+            lastLoadedCursor = records.lastOrNull()?.toRecordsCursor()
             val context = getApplication<Application>().applicationContext
             withContext(mainDispatcher) {
                 _state.value = _state.value.copy(
@@ -319,15 +322,15 @@ internal class RecordsViewModel @Inject constructor(
 
     fun updateListWithSortOrder(sortOrderId: SortDropDownMenuItemId) {
         viewModelScope.launch(ioDispatcher) {
-            currentPage = 1
             val sortOrder = sortOrderId.toSortOrder()
             val records = recordsDataSource.getRecords(
                 sortOrder = sortOrder,
-                page = currentPage,
+                after = null,
                 pageSize = DEFAULT_PAGE_SIZE,
                 isBookmarked = _state.value.bookmarksSelected,
                 filter = _state.value.filter,
             )
+            lastLoadedCursor = records.lastOrNull()?.toRecordsCursor()
             val context = getApplication<Application>().applicationContext
             withContext(mainDispatcher) {
                 _state.value = _state.value.copy(
@@ -362,15 +365,15 @@ internal class RecordsViewModel @Inject constructor(
      */
     private fun reloadRecordsWithCurrentFilter() {
         viewModelScope.launch(ioDispatcher) {
-            currentPage = 1
             val sortOrder = _state.value.sortOrder
             val records = recordsDataSource.getRecords(
                 sortOrder = sortOrder,
-                page = currentPage,
+                after = null,
                 pageSize = DEFAULT_PAGE_SIZE,
                 isBookmarked = _state.value.bookmarksSelected,
                 filter = _state.value.filter,
             )
+            lastLoadedCursor = records.lastOrNull()?.toRecordsCursor()
             val context = getApplication<Application>().applicationContext
             withContext(mainDispatcher) {
                 _state.value = _state.value.copy(
@@ -821,16 +824,16 @@ internal class RecordsViewModel @Inject constructor(
         viewModelScope.launch(ioDispatcher) {
             val deletedCount = recordsDataSource.moveRecordsToRecycle(state.value.selectedRecords.map { it.recordId })
             if (deletedCount > 0) {
-                currentPage = 1
                 val context: Context = getApplication<Application>().applicationContext
                 val sortOrder = state.value.sortOrder
                 val records = recordsDataSource.getRecords(
                     sortOrder = sortOrder,
-                    page = currentPage,
+                    after = null,
                     pageSize = DEFAULT_PAGE_SIZE,
                     isBookmarked = state.value.bookmarksSelected,
                     filter = state.value.filter,
                 )
+                lastLoadedCursor = records.lastOrNull()?.toRecordsCursor()
                 val recordsInRecycleCount = recordsDataSource.getMovedToRecycleRecordsCount()
                 val selectedRecords = state.value.selectedRecords
                 val isActiveRecordDeleted = selectedRecords.map { it.recordId }.contains(prefs.activeRecordId)
@@ -951,7 +954,9 @@ data class RecordListItem(
     val added: Long,
     val isBookmarked: Boolean,
     val description: String = "",
-    val format: String = ""
+    val format: String = "",
+    /** Integrated loudness in LUFS, null if the record has not been analysed yet. */
+    val loudness: Double? = null,
 )
 
 internal sealed class RecordsScreenEvent {
@@ -1020,6 +1025,7 @@ internal fun Record.toRecordListItem(context: Context): RecordListItem {
         added = this.added,
         isBookmarked = this.isBookmarked,
         description = this.description,
-        format = this.format
+        format = this.format,
+        loudness = this.loudness,
     )
 }
@@ -23,22 +23,26 @@ package com.dimowner.audiorecorder.v2.app.records.models
  * selected values. An empty set means the dimension is not filtered. When multiple values
  * are selected within a dimension they are combined with OR, while different dimensions are
  * combined with AND (e.g. format in (m4a, wav) AND sampleRate in (44100)).
+ * [onlyClipped] keeps only the records whose analysis found clipped samples.
  */
 data class RecordsFilter(
     val formats: Set<String> = emptySet(),
     val sampleRates: Set<Int> = emptySet(),
     val channelCounts: Set<Int> = emptySet(),
     val bitrates: Set<Int> = emptySet(),
+    val onlyClipped: Boolean = false,
 ) {
     val isEmpty: Boolean
         get() = formats.isEmpty() &&
             sampleRates.isEmpty() &&
             channelCounts.isEmpty() &&
-            bitrates.isEmpty()
+            bitrates.isEmpty() &&
+            !onlyClipped
 
     /** Total number of selected values across all dimensions. */
     val activeCount: Int
-        get() = formats.size + sampleRates.size + channelCounts.size + bitrates.size
+        get() = formats.size + sampleRates.size + channelCounts.size + bitrates.size +
+            if (onlyClipped) 1 else 0
 }
 
 /**
@@ -51,10 +55,13 @@ data class RecordsFilterOptions(
     val sampleRates: List<Int> = emptyList(),
     val channelCounts: List<Int> = emptyList(),
     val bitrates: List<Int> = emptyList(),
+    /** Whether any record was found clipped, the clipping filter is offered only then. */
+    val hasClippedRecords: Boolean = false,
 ) {
     val isEmpty: Boolean
         get() = formats.isEmpty() &&
             sampleRates.isEmpty() &&
             channelCounts.isEmpty() &&
-            bitrates.isEmpty()
+            bitrates.isEmpty() &&
+            !hasClippedRecords
 }
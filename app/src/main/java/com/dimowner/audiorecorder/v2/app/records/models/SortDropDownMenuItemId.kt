@@ -17,5 +17,5 @@
 package com.dimowner.audiorecorder.v2.app.records.models
 
 enum class SortDropDownMenuItemId {
-    DATE_DESC, DATE_ASC, NAME, NAME_DESC, DURATION, DURATION_DESC
+    DATE_DESC, DATE_ASC, NAME, NAME_DESC, DURATION, DURATION_DESC, LOUDNESS, LOUDNESS_DESC
 }
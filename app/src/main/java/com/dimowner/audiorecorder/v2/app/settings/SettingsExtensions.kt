@@ -204,6 +204,14 @@ fun sizeMbPerMin(
                 0F
             }
         }
+        RecordingFormat.Flac -> {
+            if (sampleRate != null && channels != null) {
+                (60F * (sampleRate.value * channels.value * 2F)) / 1000000f *
+                        DefaultValues.FLAC_SIZE_PERCENT_OF_WAV / 100F
+            } else {
+                0F
+            }
+        }
     }
 }
 
@@ -232,6 +240,15 @@ fun spaceToRecordingTimeMills(
                 0L
             }
         }
+        RecordingFormat.Flac -> {
+            if (sampleRate != null && channels != null) {
+                val bytesPerSecond = sampleRate.value.toLong() * channels.value * 2L *
+                        DefaultValues.FLAC_SIZE_PERCENT_OF_WAV / 100L
+                1000L * (spaceBytes / bytesPerSecond)
+            } else {
+                0L
+            }
+        }
     }
 }
 
@@ -291,7 +308,8 @@ fun getChannelCounts(
 ): List<ChipItem<ChannelCount>> {
     return when (format) {
         RecordingFormat.M4a,
-        RecordingFormat.Wav -> {
+        RecordingFormat.Wav,
+        RecordingFormat.Flac -> {
             ChannelCount.entries.toList().mapIndexed { i, channelCount ->
                 ChipItem(
                     id = i,
@@ -331,7 +349,8 @@ fun getBitRates(
             }
         }
         RecordingFormat.Wav,
-        RecordingFormat.ThreeGp -> listOf()
+        RecordingFormat.ThreeGp,
+        RecordingFormat.Flac -> listOf()
     }
 }
 
@@ -342,7 +361,8 @@ fun getSampleRates(
 ): List<ChipItem<SampleRate>> {
     return when (format) {
         RecordingFormat.M4a,
-        RecordingFormat.Wav -> {
+        RecordingFormat.Wav,
+        RecordingFormat.Flac -> {
             SampleRate.entries.toList().mapIndexed { i, sampleRate ->
                 ChipItem(
                     id = i,
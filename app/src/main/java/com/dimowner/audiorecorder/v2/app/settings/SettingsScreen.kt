@@ -212,6 +212,24 @@ internal fun SettingsScreen(
                         openInfoDialog.value = true
                     },
                 )
+                SettingsItemCheckBox(
+                    uiState.isRecordCompressedCopy,
+                    stringResource(R.string.record_compressed_copy),
+                    R.drawable.ic_audiotrack,
+                    {
+                        onAction(SettingsScreenAction.SetRecordCompressedCopy(it))
+                    },
+                    enabled = uiState.isRecordingSettingEditable,
+                )
+                SettingsItemCheckBox(
+                    uiState.isSkipSilence,
+                    stringResource(R.string.skip_silence),
+                    R.drawable.ic_skip_next,
+                    {
+                        onAction(SettingsScreenAction.SetSkipSilence(it))
+                    },
+                    enabled = uiState.isRecordingSettingEditable,
+                )
                 Spacer(modifier = Modifier.size(8.dp))
                 val infoAudioSource = htmlStringResource(R.string.info_audio_source_html)
                 AudioSourceSelector(
@@ -52,6 +52,10 @@ data class SettingsState(
     val recordAuthorName: String,
     /** True when the user previously used V1 and intentionally switched to V2. */
     val isLegacyAppUser: Boolean = false,
+    /** Whether Wav recordings also get an M4a copy written alongside. */
+    val isRecordCompressedCopy: Boolean = false,
+    /** Whether silent stretches are left out of new recordings. */
+    val isSkipSilence: Boolean = false,
 ) : Parcelable
 
 @Parcelize
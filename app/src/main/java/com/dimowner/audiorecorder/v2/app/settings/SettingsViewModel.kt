@@ -96,6 +96,8 @@ internal class SettingsViewModel @Inject constructor(
             isDarkTheme = prefs.isDarkTheme,
             isAppV2 = prefs.isAppV2,
             isKeepScreenOn = prefs.isKeepScreenOn,
+            isRecordCompressedCopy = prefs.isRecordCompressedCopy,
+            isSkipSilence = prefs.isSkipSilence,
             isShowRenameDialog = prefs.askToRenameAfterRecordingStopped,
             isRecordingSettingEditable = true,
             selectedNameFormat = prefs.settingNamingFormat.toNameFormatItem(),
@@ -222,6 +224,16 @@ internal class SettingsViewModel @Inject constructor(
         _state.value = _state.value.copy(isKeepScreenOn = value)
     }
 
+    fun setRecordCompressedCopy(value: Boolean) {
+        prefs.isRecordCompressedCopy = value
+        _state.value = _state.value.copy(isRecordCompressedCopy = value)
+    }
+
+    fun setSkipSilence(value: Boolean) {
+        prefs.isSkipSilence = value
+        _state.value = _state.value.copy(isSkipSilence = value)
+    }
+
     fun setShowRenamingDialog(value: Boolean) {
         prefs.askToRenameAfterRecordingStopped = value
         _state.value = _state.value.copy(isShowRenameDialog = value)
@@ -411,6 +423,8 @@ internal class SettingsViewModel @Inject constructor(
             is SettingsScreenAction.SetDynamicTheme -> setDynamicTheme(action.value)
             is SettingsScreenAction.SetDarkTheme -> setDarkTheme(action.value)
             is SettingsScreenAction.SetKeepScreenOn -> setKeepScreenOn(action.value)
+            is SettingsScreenAction.SetRecordCompressedCopy -> setRecordCompressedCopy(action.value)
+            is SettingsScreenAction.SetSkipSilence -> setSkipSilence(action.value)
             is SettingsScreenAction.SetShowRenamingDialog -> setShowRenamingDialog(action.value)
             is SettingsScreenAction.SetNameFormat -> setNameFormat(action.value)
             SettingsScreenAction.ResetRecordingSettings -> resetRecordingSettings()
@@ -478,6 +492,8 @@ internal sealed class SettingsScreenAction {
     data class SetDynamicTheme(val value: Boolean) : SettingsScreenAction()
     data class SetDarkTheme(val value: Boolean) : SettingsScreenAction()
     data class SetKeepScreenOn(val value: Boolean) : SettingsScreenAction()
+    data class SetRecordCompressedCopy(val value: Boolean) : SettingsScreenAction()
+    data class SetSkipSilence(val value: Boolean) : SettingsScreenAction()
     data class SetShowRenamingDialog(val value: Boolean) : SettingsScreenAction()
     data class SetNameFormat(val value: NameFormatItem) : SettingsScreenAction()
     data object ResetRecordingSettings : SettingsScreenAction()
@@ -320,6 +320,7 @@ fun RecordingFormat.toFormatInfo(): String {
         RecordingFormat.M4a -> stringResource(id = R.string.info_m4a)
         RecordingFormat.Wav -> stringResource(id = R.string.info_wav)
         RecordingFormat.ThreeGp -> stringResource(id = R.string.info_3gp)
+        RecordingFormat.Flac -> stringResource(id = R.string.info_flac)
     }
 }
 
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import android.media.MediaCodec
+import android.media.MediaCodecInfo
+import android.media.MediaFormat
+import android.media.MediaMuxer
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+
+/** Amount of PCM the encoder queue can hold while the AAC encoder falls behind. */
+private const val ENCODER_QUEUE_DURATION_MILLS = 2000
+private const val ENCODER_QUEUE_BLOCK_SIZE = 8192
+private const val MIN_ENCODER_QUEUE_BLOCKS = 4
+private const val CODEC_TIMEOUT_US = 10_000L
+private const val IDLE_DELAY_MILLS = 10L
+
+/** AAC-LC encoders reject bitrates above about 6 bits per sample per channel. */
+private const val MAX_AAC_BITS_PER_SAMPLE = 6
+
+/**
+ * AAC-LC in MPEG-4 [PcmSink] built on [MediaCodec] and [MediaMuxer].
+ *
+ * [write] only copies PCM into its own [PcmBlockRingBuffer]; a dedicated encoder thread
+ * feeds the codec and the muxer. If the encoder falls behind by more than
+ * [ENCODER_QUEUE_DURATION_MILLS], [write] waits for it, or with [isDropWhenBehind] drops the
+ * newest PCM instead so a slow encoder never holds up the caller. The latter is used for the
+ * compressed copy in [TeePcmSink], where the WAV master must not be delayed. Dropped PCM still
+ * advances the presentation time, so the copy keeps the master's timeline with a gap where
+ * the PCM was dropped, and its length is passed to [onDropped] when the sink is closed.
+ */
+class AacFileSink internal constructor(
+    private val file: File,
+    private val sampleRate: Int,
+    private val channelCount: Int,
+    private val codec: MediaCodec,
+    private val muxer: MediaMuxer,
+    private val isDropWhenBehind: Boolean,
+    private val onDropped: ((file: File, droppedMills: Long) -> Unit)? = null,
+) : PcmSink {
+
+    private val frameSize = channelCount * 2
+    private val queue = PcmBlockRingBuffer(
+        blockCount = (sampleRate * frameSize * ENCODER_QUEUE_DURATION_MILLS / 1000 / ENCODER_QUEUE_BLOCK_SIZE)
+            .coerceAtLeast(MIN_ENCODER_QUEUE_BLOCKS),
+        blockSize = ENCODER_QUEUE_BLOCK_SIZE,
+    )
+    private val encoderThread = Thread(::encode, "AacFileSink")
+
+    @Volatile private var isFailed = false
+    private var isClosed = false
+
+    /** PCM dropped since the last queued block; handed to the encoder with the next one. */
+    private var pendingDroppedBytes = 0L
+    private var droppedBytes = 0L
+
+    init {
+        encoderThread.start()
+    }
+
+    override fun write(src: ByteArray, offset: Int, length: Int) {
+        var off = offset
+        var remaining = length
+        while (remaining > 0) {
+            if (isFailed) throw IOException("AAC encoding failed: ${file.name}")
+            val n = minOf(remaining, ENCODER_QUEUE_BLOCK_SIZE)
+            val block = queue.writableBlock()
+            if (block == null) {
+                if (!isDropWhenBehind) {
+                    waitForEncoder()
+                    continue
+                }
+                queue.markOverrun()
+                pendingDroppedBytes += n
+                droppedBytes += n
+            } else {
+                System.arraycopy(src, off, block, 0, n)
+                queue.commitWrite(n, skippedBytesBefore = pendingDroppedBytes)
+                pendingDroppedBytes = 0L
+            }
+            off += n
+            remaining -= n
+        }
+    }
+
+    private fun waitForEncoder() {
+        try {
+            Thread.sleep(IDLE_DELAY_MILLS)
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw IOException("Interrupted while writing ${file.name}", e)
+        }
+    }
+
+    /** Waits until every queued block is encoded, then finalises the MP4 file. */
+    @Throws(IOException::class)
+    override fun close() {
+        if (isClosed) return
+        isClosed = true
+        queue.finish(pendingDroppedBytes)
+        try {
+            encoderThread.join()
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw IOException("Interrupted while finishing ${file.name}", e)
+        }
+        if (droppedBytes > 0) {
+            val droppedMills = droppedBytes / frameSize * 1000L / sampleRate
+            Timber.w("AAC copy dropped ${queue.overrunCount} PCM blocks, $droppedMills ms: ${file.name}")
+            onDropped?.invoke(file, droppedMills)
+        }
+        if (isFailed) throw IOException("AAC encoding failed: ${file.name}")
+    }
+
+    override fun closeQuietly() {
+        try {
+            close()
+        } catch (e: IOException) {
+            Timber.e(e, "Error closing AAC output")
+        }
+    }
+
+    private fun encode() {
+        val info = MediaCodec.BufferInfo()
+        var trackIndex = -1
+        var isMuxerStarted = false
+        var hasSamples = false
+        var isInputDone = false
+        var blockOffset = 0
+        var queuedFrames = 0L
+        try {
+            codec.start()
+            while (true) {
+                if (!isInputDone) {
+                    val block = queue.readableBlock()
+                    if (block != null) {
+                        val index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US)
+                        if (index >= 0) {
+                            if (blockOffset == 0) {
+                                // Leave a gap for PCM dropped before this block.
+                                queuedFrames += queue.readableSkippedBytesBefore() / frameSize
+                            }
+                            val input = checkNotNull(codec.getInputBuffer(index))
+                            input.clear()
+                            val n = minOf(queue.readableLength() - blockOffset, input.remaining())
+                            input.put(block, blockOffset, n)
+                            codec.queueInputBuffer(index, 0, n, queuedFrames * 1_000_000L / sampleRate, 0)
+                            queuedFrames += n / frameSize
+                            blockOffset += n
+                            if (blockOffset == queue.readableLength()) {
+                                blockOffset = 0
+                                queue.commitRead()
+                            }
+                        }
+                    } else if (queue.isFinished && queue.readableBlock() == null) {
+                        val index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US)
+                        if (index >= 0) {
+                            queuedFrames += queue.trailingSkippedBytes / frameSize
+                            codec.queueInputBuffer(
+                                index, 0, 0, queuedFrames * 1_000_000L / sampleRate,
+                                MediaCodec.BUFFER_FLAG_END_OF_STREAM
+                            )
+                            isInputDone = true
+                        }
+                    } else {
+                        Thread.sleep(IDLE_DELAY_MILLS)
+                    }
+                }
+
+                // Drain everything the codec has produced so far.
+                var isOutputDone = false
+                while (true) {
+                    val index = codec.dequeueOutputBuffer(info, if (isInputDone) CODEC_TIMEOUT_US else 0L)
+                    if (index == MediaCodec.INFO_TRY_AGAIN_LATER) break
+                    if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                        trackIndex = muxer.addTrack(codec.outputFormat)
+                        muxer.start()
+                        isMuxerStarted = true
+                        continue
+                    }
+                    if (index < 0) continue
+                    val output = checkNotNull(codec.getOutputBuffer(index))
+                    val isConfig = info.flags and MediaCodec.BUFFER_FLAG_CODEC_CONFIG != 0
+                    if (info.size > 0 && !isConfig && isMuxerStarted) {
+                        output.position(info.offset)
+                        output.limit(info.offset + info.size)
+                        muxer.writeSampleData(trackIndex, output, info)
+                        hasSamples = true
+                    }
+                    codec.releaseOutputBuffer(index, false)
+                    if (info.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0) {
+                        isOutputDone = true
+                        break
+                    }
+                }
+                if (isOutputDone) break
+            }
+        } catch (e: RuntimeException) {
+            // MediaCodec.CodecException and MediaMuxer errors, an uncaught one would kill the app.
+            Timber.e(e, "AAC encoding failed: ${file.name}")
+            isFailed = true
+        } catch (e: InterruptedException) {
+            Timber.e(e, "AAC encoder interrupted: ${file.name}")
+            isFailed = true
+        } finally {
+            release(isMuxerStarted, hasSamples)
+            // Unblock close() if encoding stopped early.
+            while (queue.readableBlock() != null) queue.commitRead()
+        }
+    }
+
+    /**
+     * Stops the codec and finalises the muxer. A muxer that got no samples, e.g. for a take
+     * shorter than one AAC frame or one fully skipped as silence, refuses to stop; that leaves
+     * an empty copy rather than a failed one, like a WAV with no data.
+     */
+    private fun release(isMuxerStarted: Boolean, hasSamples: Boolean) {
+        try {
+            codec.stop()
+        } catch (e: IllegalStateException) {
+            Timber.e(e, "MediaCodec stop failed")
+        }
+        codec.release()
+        try {
+            if (isMuxerStarted) muxer.stop()
+        } catch (e: IllegalStateException) {
+            if (hasSamples) {
+                Timber.e(e, "MediaMuxer stop failed: ${file.name}")
+                isFailed = true
+            } else {
+                Timber.w("No audio was encoded: ${file.name}")
+            }
+        }
+        muxer.release()
+    }
+
+    companion object {
+        /**
+         * Creates the encoder and muxer for [file] and starts the encoder thread. [bitrate] is
+         * lowered to what AAC-LC supports at [sampleRate], as MediaRecorder does.
+         * Throws [IOException] if the device can't encode AAC with these parameters.
+         */
+        @Throws(IOException::class)
+        fun open(
+            file: File,
+            sampleRate: Int,
+            channelCount: Int,
+            bitrate: Int,
+            isDropWhenBehind: Boolean = false,
+            onDropped: ((file: File, droppedMills: Long) -> Unit)? = null,
+        ): AacFileSink {
+            val format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, sampleRate, channelCount)
+            format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC)
+            format.setInteger(
+                MediaFormat.KEY_BIT_RATE,
+                bitrate.coerceAtMost(sampleRate * channelCount * MAX_AAC_BITS_PER_SAMPLE)
+            )
+            format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, ENCODER_QUEUE_BLOCK_SIZE)
+            val codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC)
+            try {
+                codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE)
+                val muxer = MediaMuxer(file.absolutePath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4)
+                return AacFileSink(file, sampleRate, channelCount, codec, muxer, isDropWhenBehind, onDropped)
+            } catch (e: IllegalStateException) {
+                codec.release()
+                throw IOException("Failed to configure AAC encoder", e)
+            } catch (e: IOException) {
+                codec.release()
+                throw e
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import android.media.MediaCodecList
+import android.media.MediaFormat
+import kotlinx.coroutines.CoroutineScope
+import java.io.File
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * M4a recorder that encodes the [android.media.AudioRecord] capture itself with
+ * [android.media.MediaCodec] instead of handing the microphone to MediaRecorder.
+ *
+ * Amplitudes come from the same PCM that is encoded and durations from the number of captured
+ * frames, like [WavRecorderV2], and rollover parts are gapless. [AudioRecorderV2] stays as the
+ * fallback for devices without an AAC encoder.
+ */
+@Singleton
+class AacRecorderV2 @Inject constructor(
+    coroutineScope: CoroutineScope,
+    recordingTicker: RecordingTicker,
+) : PcmRecorderBase(coroutineScope, recordingTicker) {
+
+    override val recordingLogTag: String = "AAC "
+
+    /** True if the device has an AAC encoder this recorder can use. */
+    val isSupported: Boolean by lazy {
+        MediaCodecList(MediaCodecList.REGULAR_CODECS).codecInfos.any { info ->
+            info.isEncoder && info.supportedTypes.any {
+                it.equals(MediaFormat.MIMETYPE_AUDIO_AAC, ignoreCase = true)
+            }
+        }
+    }
+
+    override fun openSink(
+        file: File,
+        sampleRate: Int,
+        channelCount: Int,
+        bitrate: Int,
+        maxRecordingDurationMills: Int,
+    ): PcmSink {
+        return AacFileSink.open(file, sampleRate, channelCount, bitrate)
+    }
+}
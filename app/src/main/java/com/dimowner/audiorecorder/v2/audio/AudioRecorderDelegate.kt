@@ -8,16 +8,20 @@ import javax.inject.Singleton
 @Singleton
 class AudioRecorderDelegate @Inject constructor(
     private val prefs: PrefsV2,
+    private val aacRecorder: AacRecorderV2,
     private val audioRecorder: AudioRecorderV2,
     private val threeGpRecorder: ThreeGpRecorderV2,
     private val wavRecorder: WavRecorderV2,
+    private val flacRecorder: FlacRecorderV2,
+    private val teeRecorder: TeeRecorderV2,
 ) {
 
     fun provideAudioRecorder(): RecorderV2 {
         return when (prefs.settingRecordingFormat) {
-            RecordingFormat.M4a -> audioRecorder
-            RecordingFormat.Wav -> wavRecorder
+            RecordingFormat.M4a -> if (aacRecorder.isSupported) aacRecorder else audioRecorder
+            RecordingFormat.Wav -> if (prefs.isRecordCompressedCopy) teeRecorder else wavRecorder
             RecordingFormat.ThreeGp -> threeGpRecorder
+            RecordingFormat.Flac -> flacRecorder
         }
     }
 }
@@ -11,7 +11,8 @@ import javax.inject.Singleton
 class AudioRecorderV2 @Inject constructor(
     @ApplicationContext applicationContext: Context,
     coroutineScope: CoroutineScope,
-) : MediaRecorderBase(applicationContext, coroutineScope) {
+    recordingTicker: RecordingTicker,
+) : MediaRecorderBase(applicationContext, coroutineScope, recordingTicker) {
 
     override val recordingLogTag: String = "AAC "
 
@@ -41,11 +41,13 @@ import com.dimowner.audiorecorder.exception.ErrorParser
 import com.dimowner.audiorecorder.exception.InvalidOutputFile
 import com.dimowner.audiorecorder.exception.RecorderInitException
 import com.dimowner.audiorecorder.util.TimeUtils
+import com.dimowner.audiorecorder.v2.DefaultValues
 import com.dimowner.audiorecorder.v2.app.HomeActivity
 import com.dimowner.audiorecorder.v2.app.getNewRecordName
 import com.dimowner.audiorecorder.v2.data.FileDataSource
 import com.dimowner.audiorecorder.v2.data.PrefsV2
 import com.dimowner.audiorecorder.v2.data.RecordsDataSource
+import com.dimowner.audiorecorder.v2.data.model.NO_LINKED_RECORD
 import com.dimowner.audiorecorder.v2.data.model.Record
 import com.dimowner.audiorecorder.v2.data.model.RecordingFormat
 import com.dimowner.audiorecorder.v2.di.qualifiers.IoDispatcher
@@ -59,11 +61,12 @@ import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.SharedFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import timber.log.Timber
 import java.io.File
-import java.util.LinkedList
+import java.util.concurrent.ConcurrentHashMap
 import javax.inject.Inject
 
 /** Scaling factor applied to raw amplitude samples to visually amplify the recorded waveform. */
@@ -133,36 +136,48 @@ class AudioRecordingService : Service() {
     private val recordingAmplitudeBufferSize: Int = calculateRecordingAmplitudeBufferSize()
 
     /**
-     * Fixed-size sliding-window buffer of recording amplitudes, pre-filled with zeros.
-     * When a new amplitude arrives it is appended at the end and the oldest value is removed
-     * from the front, creating a moving-waveform effect.
-     */
-    private val recordingAmplitudes = LinkedList<Int>()
-
-    /** Total number of amplitude samples received during the current recording session. */
-    private var totalRecordingSampleCount: Int = 0
-
-    /**
-     * Full-session amplitude accumulator. Stays memory-bounded via progressive pair-averaging
-     * halving. Used to persist an initial waveform on the [Record] immediately after recording
-     * stops, before [DecodeService] replaces it with the fully decoded version.
+     * Per-tick amplitude state: a fixed-size sliding window of recording amplitudes for the
+     * moving waveform, and a full-session accumulator. The latter stays memory-bounded and is
+     * used to persist an initial waveform on the [Record] immediately after recording stops,
+     * before [DecodeService] replaces it with the fully decoded version.
      *
-     * Initialised lazily so [ARApplication.longWaveformSampleCount] is resolved after
-     * [Application.onCreate] has run.
+     * Fed on the recorder's progress thread through [RecordingProgressListener]; allocates
+     * nothing per tick. Initialised lazily so [ARApplication.longWaveformSampleCount] is
+     * resolved after [Application.onCreate] has run.
      */
-    private val recordingFullDataBuffer: RecordingWaveformBuffer by lazy {
-        RecordingWaveformBuffer(ARApplication.longWaveformSampleCount)
+    private val recordingProgress: RecordingProgressAccumulator by lazy {
+        RecordingProgressAccumulator(
+            windowSize = recordingAmplitudeBufferSize,
+            fullSession = RecordingWaveformBuffer(ARApplication.longWaveformSampleCount),
+            amplitudeScale = WAVEFORM_AMPLITUDE_SCALE,
+        )
     }
 
+    private val recordingFullDataBuffer: RecordingWaveformBuffer
+        get() = recordingProgress.fullSession
+
     /** Job for the current recorder-events subscription; cancelled before re-subscribing. */
     private var subscriptionJob: Job? = null
 
+    /**
+     * Saves, renames and decodes the part finished by the last gapless rollover, off the
+     * recorder events path. Joined before the service stops so the work isn't cancelled.
+     */
+    private var partFinalizeJob: Job? = null
+
+    /**
+     * Compressed copies created by the recorder through [createCompanionFile], keyed by the
+     * path of the recording they copy. Filled on the recorder's writer thread and taken once
+     * the record of the recording is in the database.
+     */
+    private val companionFiles = ConcurrentHashMap<String, File>()
+
     /**
      * Timestamp (in ms) of the last available-space check.
      * Space is checked at most once every [AppConstants.MIN_REMAIN_RECORDING_TIME] / 2 ms
      * to avoid redundant I/O on every recording progress tick.
      */
-    private var lastAvailableSpaceCheckTime: Long = 0L
+    @Volatile private var lastAvailableSpaceCheckTime: Long = 0L
 
     inner class ServiceBinder : Binder() {
         fun getService(): AudioRecordingService = this@AudioRecordingService
@@ -172,6 +187,15 @@ class AudioRecordingService : Service() {
         super.onCreate()
         createNotificationChannel()
         notificationManager = getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+        // recordingState skips per-tick updates while nobody observes it; bring it up to date
+        // as soon as an observer arrives.
+        serviceScope.launch {
+            _recordingState.subscriptionCount.collect { count ->
+                if (count > 0 && _recordingState.value.isRecording()) {
+                    publishRecordingProgress()
+                }
+            }
+        }
     }
 
     override fun onBind(intent: Intent?): IBinder {
@@ -180,6 +204,7 @@ class AudioRecordingService : Service() {
 
     override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
         audioRecorder = audioRecorderDelegate.provideAudioRecorder()
+        audioRecorder.setProgressListener(::handleRecordingProgress)
         subscribeRecorderEvents()
         when (intent?.action) {
             ACTION_START_RECORDING -> {
@@ -203,12 +228,17 @@ class AudioRecordingService : Service() {
         super.onDestroy()
         subscriptionJob?.cancel()
         serviceJob.cancel()
+        if (::audioRecorder.isInitialized) {
+            audioRecorder.setNextPartFileProvider(null)
+            audioRecorder.setCompanionFileProvider(null)
+            audioRecorder.setProgressListener(null)
+        }
         stopNotificationUpdates()
         notificationManager = null
     }
 
     fun getCurrentProgress(): Long {
-        return _recordingState.value.durationMills
+        return recordingProgress.durationMills
     }
 
     private fun createNotificationChannel() {
@@ -238,16 +268,16 @@ class AudioRecordingService : Service() {
                 Timber.d("AudioRecordingService: event: $event")
                 when (event) {
                     is RecorderEvent.OnStartRecording -> {
-                        recordingAmplitudes.clear()
-                        totalRecordingSampleCount = 0
                         lastAvailableSpaceCheckTime = 0L
-                        recordingFullDataBuffer.reset()
-                        _recordingState.value = _recordingState.value.copy(
-                            recordingState = RecordingState.STARTED,
-                            amplitudes = intArrayOf(),
-                            totalSampleCount = 0,
-                            waveformDataOffset = 0,
-                        )
+                        recordingProgress.reset()
+                        _recordingState.update {
+                            it.copy(
+                                recordingState = RecordingState.STARTED,
+                                amplitudes = intArrayOf(),
+                                totalSampleCount = 0,
+                                waveformDataOffset = 0,
+                            )
+                        }
                         startNotificationUpdates()
                         updateNotification()
                     }
@@ -255,23 +285,36 @@ class AudioRecordingService : Service() {
                         handleRecordingProgress(event.durationMills, event.amplitude)
                     }
                     is RecorderEvent.OnPauseRecording -> {
-                        _recordingState.value = _recordingState.value.copy(
-                            recordingState = RecordingState.PAUSED,
-                        )
+                        _recordingState.update {
+                            it.copy(
+                                recordingState = RecordingState.PAUSED,
+                            )
+                        }
                         updateNotification()
                     }
                     is RecorderEvent.OnResumeRecording -> {
-                        _recordingState.value = _recordingState.value.copy(
-                            recordingState = RecordingState.RESUMED,
-                        )
+                        _recordingState.update {
+                            it.copy(
+                                recordingState = RecordingState.RESUMED,
+                            )
+                        }
                         updateNotification()
                     }
+                    is RecorderEvent.OnCaptureBufferStats -> {
+                        if (event.overrunCount > 0) {
+                            Timber.w("AudioRecordingService: capture buffer overruns: ${event.overrunCount}" +
+                                    " high-water mark: ${event.highWaterMark}/${event.capacity}")
+                        }
+                    }
                     is RecorderEvent.OnStopRecording -> {
                         handleRecordingStopped()
                     }
                     is RecorderEvent.OnMaxDurationReached -> {
                         handleMaxDurationReachedInternal()
                     }
+                    is RecorderEvent.OnPartCompleted -> {
+                        handleRecordingPartCompleted(event)
+                    }
                     is RecorderEvent.OnError -> {
                         Timber.e(event.exception, "AudioRecordingService: recorder error")
                         //Send a user-friendly error message to UI based on the type of error
@@ -288,9 +331,15 @@ class AudioRecordingService : Service() {
                             || event.exception is InvalidOutputFile
                             || event.exception is CantCreateFileException
                         ) {
+                            recordsDataSource.getRecord(recordedRecordId)?.let { record ->
+                                if (record.linkedRecordId != NO_LINKED_RECORD) {
+                                    recordsDataSource.deleteRecordAndFileForever(record.linkedRecordId)
+                                }
+                            }
                             recordsDataSource.deleteRecordAndFileForever(recordedRecordId)
                         }
 
+                        partFinalizeJob?.join()
                         stopForegroundService()
                     }
                 }
@@ -298,10 +347,19 @@ class AudioRecordingService : Service() {
         }
     }
 
-    fun handleRecordingProgress(durationMills: Long, amplitude: Int) {
-        _recordingState.value = _recordingState.value.copy(
-            recordingState = RecordingState.PROGRESS,
-        )
+    /**
+     * Called on the recorder's progress thread every
+     * [AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW] ms. At steady state this allocates
+     * nothing: samples go into [recordingProgress], and a [RecordingServiceState] snapshot
+     * is only built while someone observes [recordingState].
+     */
+    fun handleRecordingProgress(sessionDurationMills: Long, amplitude: Int) {
+        if (_recordingState.value.isStartedOrResumed()) {
+            // Re-checked inside update: a pause or stop that lands first must not be undone.
+            _recordingState.update {
+                if (it.isStartedOrResumed()) it.copy(recordingState = RecordingState.PROGRESS) else it
+            }
+        }
         val state = _recordingState.value
         state.recordingFormat?.let { format ->
             val now = System.currentTimeMillis()
@@ -323,46 +381,18 @@ class AudioRecordingService : Service() {
             }
         }
 
-        // Derive sample count from durationMills so waveform stays in sync with the
-        // recorder's clock (the single source of truth) instead of counting timer ticks
-        // which drift due to scheduling jitter.
-        val newSampleCount =
-            (durationMills / AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW).toInt()
-        val samplesToAdd = (newSampleCount - totalRecordingSampleCount).coerceAtLeast(0)
-        val scaledAmplitude = (amplitude * WAVEFORM_AMPLITUDE_SCALE).toInt()
-
-        // If the timer skipped ticks, fill the gap by repeating the current amplitude
-        // so the waveform buffer stays aligned with the time-derived sample count.
-        repeat(samplesToAdd) {
-            recordingAmplitudes.addLast(scaledAmplitude)
-            if (recordingAmplitudes.size > recordingAmplitudeBufferSize) {
-                recordingAmplitudes.removeFirst()
-            }
+        recordingProgress.onProgress(sessionDurationMills, amplitude)
+        if (_recordingState.subscriptionCount.value > 0) {
+            publishRecordingProgress()
+        }
+    }
 
-            // Feed the full-session buffer with raw (unscaled) amplitude values so the
-            // persisted waveform stays in the 0–32767 range expected by WaveformStaticWidget.
-            recordingFullDataBuffer.add(amplitude)
-        }
-        totalRecordingSampleCount = newSampleCount
-
-//        // Feed the full-session buffer with raw (unscaled) amplitude values so the
-//        // persisted waveform stays in the 0–32767 range expected by WaveformStaticWidget.
-//        repeat(samplesToAdd) { recordingFullDataBuffer.add(amplitude) }
-
-        val amps = recordingAmplitudes.toIntArray()
-        val waveformDataOffset =
-            (totalRecordingSampleCount - amps.size).coerceAtLeast(0)
-        val widthScale =
-            durationMills * (AppConstantsV2.DEFAULT_WIDTH_SCALE / AppConstantsV2.SHORT_RECORD)
-
-        _recordingState.value = _recordingState.value.copy(
-            durationMills = durationMills,
-            amplitude = amplitude,
-            amplitudes = amps,
-            totalSampleCount = totalRecordingSampleCount,
-            waveformDataOffset = waveformDataOffset,
-            widthScale = widthScale,
-        )
+    /** Copies the current [recordingProgress] into [recordingState] for its observers. */
+    private fun publishRecordingProgress() {
+        if (recordingProgress.snapshotLiveAmplitudes()) {
+            // A late tick must not write progress into the state left by stop.
+            _recordingState.update { if (it.isRecording()) it.withRecordingProgress(recordingProgress) else it }
+        }
     }
 
     // - Has available space
@@ -390,40 +420,37 @@ class AudioRecordingService : Service() {
                 val recordFile = fileDataSource.createRecordFile(addExtension(recordName))
                 // Use the actual file name (without extension) in case a suffix was added to avoid collision
                 val actualRecordName = recordFile.nameWithoutExtension
-                val record = Record(
-                    id = 0,
-                    name = actualRecordName,
-                    durationMills = 0,
-                    created = recordFile.lastModified(),
-                    added = System.currentTimeMillis(),
-                    removed = Long.MAX_VALUE,
-                    path = recordFile.absolutePath,
-                    format = format.value,
-                    size = 0,
-                    sampleRate = sampleRate,
-                    channelCount = channelCount,
-                    bitrate = if (format == RecordingFormat.M4a) bitrate else 0,
-                    isBookmarked = false,
-                    isWaveformProcessed = false,
-                    isMovedToRecycle = false,
-                    amps = IntArray(ARApplication.longWaveformSampleCount),
-                    description = "",
-                )
-                val id = recordsDataSource.insertRecord(record)
+                val id = insertRecordedRecord(recordFile, format, sampleRate, bitrate, channelCount)
                 prefs.activeRecordId = -1
                 prefs.recordedRecordId = id
                 prefs.recordedRecordPartCounter += 1
 
-                _recordingState.value = _recordingState.value.copy(
-                    recordId = id,
-                    recordName = actualRecordName,
-                    recordingFormat = format,
-                    sampleRate = sampleRate,
-                    bitrate = bitrate,
-                    channelCount = channelCount,
-                )
+                _recordingState.update {
+                    it.copy(
+                        recordId = id,
+                        recordName = actualRecordName,
+                        recordingFormat = format,
+                        sampleRate = sampleRate,
+                        bitrate = bitrate,
+                        channelCount = channelCount,
+                    )
+                }
 
-                audioRecorder.startRecording(
+                // Recorders that support it switch to the next part without reopening the
+                // capture device; others report OnMaxDurationReached and are restarted.
+                audioRecorder.setNextPartFileProvider(::createNextPartFile)
+                audioRecorder.setCompanionFileProvider(::createCompanionFile)
+                audioRecorder.setSilenceSkipping(
+                    if (prefs.isSkipSilence) {
+                        SilenceSkipConfig(
+                            thresholdAmplitude = prefs.silenceSkipThreshold,
+                            hangoverMills = prefs.silenceSkipHangoverMills.toLong(),
+                        )
+                    } else {
+                        null
+                    }
+                )
+                val isStarted = audioRecorder.startRecording(
                     outputFile = recordFile,
                     channelCount = channelCount,
                     sampleRate = sampleRate,
@@ -431,6 +458,13 @@ class AudioRecordingService : Service() {
                     maxRecordingDurationMills = prefs.maxRecordingDurationMills,
                     audioSource = prefs.settingAudioSource.value,
                 )
+                companionFiles.remove(recordFile.absolutePath)?.let { companionFile ->
+                    if (isStarted) {
+                        insertCompanionRecord(id, companionFile, sampleRate, bitrate, channelCount)
+                    } else {
+                        fileDataSource.deleteRecordFile(companionFile.absolutePath)
+                    }
+                }
                 return id
             } catch (e: CantCreateFileException) {
                 Timber.e(e, "Failed to start recording with name: $recordName")
@@ -445,6 +479,138 @@ class AudioRecordingService : Service() {
         return null
     }
 
+    private suspend fun insertRecordedRecord(
+        recordFile: File,
+        format: RecordingFormat,
+        sampleRate: Int,
+        bitrate: Int,
+        channelCount: Int,
+        linkedRecordId: Long = NO_LINKED_RECORD,
+    ): Long {
+        val record = Record(
+            id = 0,
+            name = recordFile.nameWithoutExtension,
+            durationMills = 0,
+            created = recordFile.lastModified(),
+            added = System.currentTimeMillis(),
+            removed = Long.MAX_VALUE,
+            path = recordFile.absolutePath,
+            format = format.value,
+            size = 0,
+            sampleRate = sampleRate,
+            channelCount = channelCount,
+            bitrate = if (format == RecordingFormat.M4a) bitrate else 0,
+            isBookmarked = false,
+            isWaveformProcessed = false,
+            isMovedToRecycle = false,
+            amps = IntArray(ARApplication.longWaveformSampleCount),
+            description = "",
+            linkedRecordId = linkedRecordId,
+        )
+        return recordsDataSource.insertRecord(record)
+    }
+
+    /**
+     * Inserts the record of the compressed copy written next to [masterRecordId]'s file and
+     * links the two records to each other.
+     */
+    private suspend fun insertCompanionRecord(
+        masterRecordId: Long,
+        companionFile: File,
+        sampleRate: Int,
+        bitrate: Int,
+        channelCount: Int,
+    ) {
+        val companionId = insertRecordedRecord(
+            recordFile = companionFile,
+            format = RecordingFormat.M4a,
+            sampleRate = sampleRate,
+            bitrate = bitrate,
+            channelCount = channelCount,
+            linkedRecordId = masterRecordId,
+        )
+        recordsDataSource.getRecord(masterRecordId)?.let { master ->
+            recordsDataSource.updateRecord(master.copy(linkedRecordId = companionId))
+        }
+    }
+
+    /**
+     * Creates the file for the compressed copy of [masterFile]. Called by dual-output
+     * recorders, on the writer thread for rollover parts; returns null if it can't be created.
+     */
+    private fun createCompanionFile(masterFile: File): File? {
+        return try {
+            fileDataSource.createRecordFile(
+                "${masterFile.nameWithoutExtension}.${RecordingFormat.M4a.value}"
+            ).also { companionFiles[masterFile.absolutePath] = it }
+        } catch (e: CantCreateFileException) {
+            Timber.e(e, "Failed to create file for the compressed copy")
+            null
+        }
+    }
+
+    /**
+     * Finalises the compressed copy linked to [master] once its file is complete: updates
+     * its info and tags, renames it to [newName] if given and queues it for decoding.
+     * Unlike the master no snack is shown, and a copy that ended up empty is removed.
+     */
+    private suspend fun saveCompanionRecord(master: Record, newName: String? = null) {
+        if (master.linkedRecordId == NO_LINKED_RECORD) return
+        val record = recordsDataSource.getRecord(master.linkedRecordId) ?: return
+        val output = File(record.path)
+        val droppedMills = audioRecorder.takeDroppedMills(output)
+        if (!output.exists() || output.length() == 0L) {
+            Timber.w("Compressed copy is empty, removing it: ${record.path}")
+            recordsDataSource.deleteRecordAndFileForever(record.id)
+            return
+        }
+        val info = AudioDecoder.readRecordInfo(output)
+        output.writeTags(record.name, prefs.recordAuthorName)
+        val recordUpdated = record.copy(
+            durationMills = info.duration / 1000,
+            size = info.size,
+            sampleRate = info.sampleRate,
+            channelCount = info.channelCount,
+            bitrate = info.bitrate,
+            amps = master.amps,
+            // Encoded from the same gated PCM as the master.
+            keptSegments = master.keptSegments,
+        )
+        if (!recordsDataSource.updateRecord(recordUpdated)) return
+        if (droppedMills > 0) {
+            Timber.w("Compressed copy dropped $droppedMills ms: ${record.path}")
+            emitEvent(AudioRecordingServiceEvent.ShowErrorSnack(
+                applicationContext.getString(R.string.msg_compressed_copy_has_gaps, record.name)
+            ))
+        }
+        if (newName != null) {
+            recordsDataSource.renameRecord(recordUpdated, newName)
+        }
+        recordsDataSource.getRecord(record.id)?.let { saved ->
+            decodeRecord(
+                recordId = saved.id,
+                path = saved.path,
+                durationMills = saved.durationMills,
+            )
+        }
+    }
+
+    /**
+     * Creates the file for the part after the current one. Called by the recorder on its
+     * writer thread during a gapless rollover; returns null if the file can't be created.
+     */
+    private fun createNextPartFile(): File? {
+        val baseName = prefs.recordedRecordBaseName ?: return null
+        return try {
+            fileDataSource.createRecordFile(
+                addExtension(getPartName(baseName, prefs.recordedRecordPartCounter + 1))
+            )
+        } catch (e: CantCreateFileException) {
+            Timber.e(e, "Failed to create file for the next recording part")
+            null
+        }
+    }
+
     private fun startForegroundWithNotification() {
         val notification = buildNotification()
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
@@ -490,57 +656,38 @@ class AudioRecordingService : Service() {
             val recordedRecordId = prefs.recordedRecordId
             prefs.recordedRecordId = -1
             if (recordedRecordId >= 0) {
-                val record = recordsDataSource.getRecord(recordedRecordId)
-                if (record != null) {
-                    val output = File(record.path)
-                    val info = AudioDecoder.readRecordInfo(output)
-                    output.writeTags(record.name, prefs.recordAuthorName)
-                    val recordUpdated = record.copy(
-                        durationMills = info.duration / 1000,
-                        format = info.format,
-                        size = info.size,
-                        sampleRate = info.sampleRate,
-                        channelCount = info.channelCount,
-                        bitrate = info.bitrate,
-                        // Persist the full-session amplitude data captured during recording as
-                        // the initial waveform. Gives the UI an immediate waveform to display
-                        // while DecodeService runs in the background to produce the final version.
-                        amps = recordingFullDataBuffer.downsampleToIntArray(),
-                    )
-                    val success = recordsDataSource.updateRecord(recordUpdated)
-                    _recordingState.value = _recordingState.value.copy(
-                        recordingState = RecordingState.STOPPED,
-                    )
-                    if (success) {
-                        prefs.activeRecordId = recordedRecordId
-                        //Record saved successfully
-                        emitEvent(AudioRecordingServiceEvent.ShowInfoSnack(
-                            applicationContext.getString(R.string.msg_recording_saved_with_name, record.name)
-                        ))
-                        if (isNotMaxDurationHandling) {
-                            emitEvent(AudioRecordingServiceEvent.RecordingStopped(
-                                recordId = recordedRecordId,
-                                recordName = record.name,
-                            ))
-                            decodeRecord(
-                                recordId = recordUpdated.id,
-                                path = recordUpdated.path,
-                                durationMills = recordUpdated.durationMills,
+                // Persist the full-session amplitude data captured during recording as
+                // the initial waveform. Gives the UI an immediate waveform to display
+                // while DecodeService runs in the background to produce the final version.
+                val recordUpdated = saveRecordedRecord(
+                    recordId = recordedRecordId,
+                    amps = recordingFullDataBuffer.downsampleToIntArray(RecordingWaveformBuffer.Output.PEAK),
+                    onRecordFound = {
+                        _recordingState.update {
+                            it.copy(
+                                recordingState = RecordingState.STOPPED,
                             )
                         }
-                    } else {
-                        //Failed to save record
-                        emitEvent(AudioRecordingServiceEvent.ShowErrorSnack(
-                            applicationContext.getString(R.string.msg_save_recording_failed)
+                    },
+                )
+                if (recordUpdated != null) {
+                    prefs.activeRecordId = recordedRecordId
+                    saveCompanionRecord(recordUpdated)
+                    if (isNotMaxDurationHandling) {
+                        emitEvent(AudioRecordingServiceEvent.RecordingStopped(
+                            recordId = recordedRecordId,
+                            recordName = recordUpdated.name,
                         ))
+                        decodeRecord(
+                            recordId = recordUpdated.id,
+                            path = recordUpdated.path,
+                            durationMills = recordUpdated.durationMills,
+                        )
                     }
-                } else {
-                   //Failed to save record
-                    emitEvent(AudioRecordingServiceEvent.ShowErrorSnack(
-                        applicationContext.getString(R.string.msg_save_recording_failed)
-                    ))
                 }
                 if (isNotMaxDurationHandling) {
+                    // Let the previous part finish saving before the service scope is cancelled.
+                    partFinalizeJob?.join()
                     resetRecordedRecordPartCounter()
                     stopForegroundService()
                 }
@@ -548,10 +695,49 @@ class AudioRecordingService : Service() {
         }
     }
 
+    /**
+     * Updates the record with the info of its finished file, writes tags and shows the
+     * saved/failed snack. Returns the updated record, or null if it could not be saved.
+     */
+    private suspend fun saveRecordedRecord(
+        recordId: Long,
+        amps: IntArray,
+        onRecordFound: () -> Unit = {},
+    ): Record? {
+        val record = recordsDataSource.getRecord(recordId)
+        if (record != null) {
+            val output = File(record.path)
+            val info = AudioDecoder.readRecordInfo(output)
+            output.writeTags(record.name, prefs.recordAuthorName)
+            val recordUpdated = record.copy(
+                durationMills = info.duration / 1000,
+                format = info.format,
+                size = info.size,
+                sampleRate = info.sampleRate,
+                channelCount = info.channelCount,
+                bitrate = info.bitrate,
+                amps = amps,
+                keptSegments = audioRecorder.takeKeptSegments(output) ?: record.keptSegments,
+            )
+            val success = recordsDataSource.updateRecord(recordUpdated)
+            onRecordFound()
+            if (success) {
+                //Record saved successfully
+                emitEvent(AudioRecordingServiceEvent.ShowInfoSnack(
+                    applicationContext.getString(R.string.msg_recording_saved_with_name, record.name)
+                ))
+                return recordUpdated
+            }
+        }
+        //Failed to save record
+        emitEvent(AudioRecordingServiceEvent.ShowErrorSnack(
+            applicationContext.getString(R.string.msg_save_recording_failed)
+        ))
+        return null
+    }
+
     private fun stopForegroundService() {
-        recordingAmplitudes.clear()
-        totalRecordingSampleCount = 0
-        recordingFullDataBuffer.reset()
+        recordingProgress.reset()
         _recordingState.value = RecordingServiceState()
         stopNotificationUpdates()
         stopForeground(STOP_FOREGROUND_REMOVE)
@@ -636,7 +822,10 @@ class AudioRecordingService : Service() {
             statusText = getString(R.string.status_recording_active)
         }
 
-        val durationText = TimeUtils.formatTimeIntervalHourMinSec2(state.durationMills)
+        // recordingState is only refreshed per tick while observed, take the live duration.
+        val durationText = TimeUtils.formatTimeIntervalHourMinSec2(
+            if (state.isRecording()) recordingProgress.durationMills else state.durationMills
+        )
 
         return NotificationCompat.Builder(this, CHANNEL_ID)
             .setContentTitle(statusText)
@@ -667,6 +856,77 @@ class AudioRecordingService : Service() {
         return "${baseName}_$partCounter"
     }
 
+    /**
+     * Handles a gapless part rollover: the recorder is already writing [event]'s next part
+     * file, so only the record for it is created here. Saving, renaming and decoding the
+     * finished part is slow and runs in [partFinalizeJob] without holding up recorder events.
+     */
+    private suspend fun handleRecordingPartCompleted(event: RecorderEvent.OnPartCompleted) {
+        val finishedRecordId = prefs.recordedRecordId
+        val finishedPart = prefs.recordedRecordPartCounter
+        // Split at the part boundary: progress may already have run past it into the next part.
+        val finishedAmps = recordingProgress.startNextPart(
+            nextPartStartMills = event.nextPartStartMills,
+            output = RecordingWaveformBuffer.Output.PEAK,
+        )
+        val nextPart = finishedPart + 1
+
+        val state = _recordingState.value
+        val format = state.recordingFormat ?: prefs.settingRecordingFormat
+        val nextRecordId = withContext(ioDispatcher) {
+            insertRecordedRecord(
+                recordFile = event.nextPartFile,
+                format = format,
+                sampleRate = state.sampleRate,
+                bitrate = state.bitrate,
+                channelCount = state.channelCount,
+            ).also { id ->
+                companionFiles.remove(event.nextPartFile.absolutePath)?.let { companionFile ->
+                    insertCompanionRecord(id, companionFile, state.sampleRate, state.bitrate, state.channelCount)
+                }
+            }
+        }
+        prefs.recordedRecordId = nextRecordId
+        prefs.recordedRecordPartCounter = nextPart
+        _recordingState.update {
+            it.copy(
+                recordId = nextRecordId,
+                recordName = event.nextPartFile.nameWithoutExtension,
+                durationMills = 0,
+                amplitudes = intArrayOf(),
+                totalSampleCount = 0,
+                waveformDataOffset = 0,
+            )
+        }
+        emitEvent(
+            AudioRecordingServiceEvent.NewRecordingPartStarted(
+                part = nextPart, recordId = nextRecordId,
+            )
+        )
+
+        val previousFinalizeJob = partFinalizeJob
+        partFinalizeJob = serviceScope.launch {
+            previousFinalizeJob?.join()
+            if (finishedRecordId < 0) return@launch
+            val saved = saveRecordedRecord(finishedRecordId, finishedAmps) ?: return@launch
+            // Rename saved record to record name and part 1 at the end.
+            // Because the first part has base name without part number by default.
+            val baseName = prefs.recordedRecordBaseName
+            val partName = baseName?.let { getPartName(it, finishedPart) }?.takeIf { finishedPart == 1 }
+            if (partName != null) {
+                recordsDataSource.renameRecord(saved, partName)
+            }
+            saveCompanionRecord(saved, partName)
+            recordsDataSource.getRecord(saved.id)?.let { recordUpdated ->
+                decodeRecord(
+                    recordId = recordUpdated.id,
+                    path = recordUpdated.path,
+                    durationMills = recordUpdated.durationMills,
+                )
+            }
+        }
+    }
+
     private suspend fun handleMaxDurationReachedInternal() {
         // Save the current recording first
         handleRecordingStopped(isNotMaxDurationHandling = false)
@@ -747,6 +1007,15 @@ class AudioRecordingService : Service() {
                     Long.MAX_VALUE
                 }
             }
+            RecordingFormat.Flac -> {
+                // FLAC size depends on the signal; estimate it as a fraction of WAV
+                val bytesPerSecond = sampleRate * channels * 2 * DefaultValues.FLAC_SIZE_PERCENT_OF_WAV / 100
+                if (bytesPerSecond > 0) {
+                    spaceBytes / bytesPerSecond
+                } else {
+                    Long.MAX_VALUE
+                }
+            }
         }
     }
 
@@ -781,6 +1050,12 @@ data class RecordingServiceState(
     val widthScale: Float = 1.5f,
 ) {
 
+    /** True right after start or resume, before the first progress tick. */
+    fun isStartedOrResumed(): Boolean {
+        return this.recordingState == RecordingState.STARTED
+                || this.recordingState == RecordingState.RESUMED
+    }
+
     fun isRecording(): Boolean {
         return this.recordingState == RecordingState.STARTED
                 || this.recordingState == RecordingState.PROGRESS
@@ -833,6 +1108,27 @@ data class RecordingServiceState(
     }
 }
 
+/**
+ * Returns this state with the progress of [progress] as of its last
+ * [RecordingProgressAccumulator.snapshotLiveAmplitudes]. The amplitudes are not copied again,
+ * the state holds the snapshot array, so at steady state the only allocation is the state.
+ */
+internal fun RecordingServiceState.withRecordingProgress(
+    progress: RecordingProgressAccumulator
+): RecordingServiceState {
+    val amps = progress.liveSnapshot
+    val totalSampleCount = progress.liveSnapshotTotalCount
+    val durationMills = progress.durationMills
+    return copy(
+        durationMills = durationMills,
+        amplitude = progress.amplitude,
+        amplitudes = amps,
+        totalSampleCount = totalSampleCount,
+        waveformDataOffset = (totalSampleCount - amps.size).coerceAtLeast(0),
+        widthScale = durationMills * (AppConstantsV2.DEFAULT_WIDTH_SCALE / AppConstantsV2.SHORT_RECORD),
+    )
+}
+
 enum class RecordingState {
     IDLE,
     STARTED,
@@ -37,8 +37,16 @@ import javax.inject.Singleton
  *
  * **WAV** (produced by [WavRecorderV2]):
  *   A broken WAV file contains all the raw PCM data but has an all-zero 44-byte RIFF header
- *   (the placeholder written at recording start that was never filled in).
- *   Restoration rewrites the header in-place using recording parameters from the database.
+ *   (the placeholder written at recording start that was never filled in, apart from the
+ *   flushed data size [WavFileSink] keeps in it), possibly followed by zero slack
+ *   preallocated by [WavFileSink].
+ *   Restoration trims the slack and rewrites the header in-place using recording parameters
+ *   from the database.
+ *
+ * **FLAC** (produced by [FlacRecorderV2]):
+ *   Frames are written as they are encoded and STREAMINFO reports an unknown length until
+ *   the recorder stops, so an interrupted FLAC file is already a valid stream. It is only
+ *   checked with MediaExtractor; the MPEG-4 strategies below don't apply to it.
  *
  * **MPEG-4 / 3GP** (produced by MediaRecorder):
  *   When MediaRecorder is interrupted without proper stop, the container file may be missing
@@ -85,6 +93,11 @@ class BrokenRecordRestorer @Inject constructor() {
             return tryRestoreWavFile(file, sampleRate, channelCount)
         }
 
+        if (file.extension.equals("flac", ignoreCase = true)) {
+            return tryReadWithExtractor(filePath)?.let { RestoreResult.AlreadyReadable(it) }
+                ?: RestoreResult.Failed("FLAC file is not readable")
+        }
+
         // Step 1: Try reading the file directly with MediaExtractor
         val directReadResult = tryReadWithExtractor(filePath)
         if (directReadResult != null) {
@@ -114,17 +127,18 @@ class BrokenRecordRestorer @Inject constructor() {
      * Restores a broken WAV file recorded by [WavRecorderV2].
      *
      * When [WavRecorderV2] starts a recording it writes a 44-byte all-zero placeholder header
-     * and then appends raw PCM-16LE samples. On a normal stop it seeks back and overwrites that
+     * (80 bytes with a `JUNK` marker for sessions that may exceed 4 GB, see
+     * [createRf64CapableWavHeader]) and then appends raw PCM-16LE samples. On a normal stop it seeks back and overwrites that
      * header with the correct RIFF/WAV values. If the app is killed before [WavRecorderV2.stopRecording]
      * completes, the PCM data is intact but the header is still all-zeros (or partially written),
      * making the file unreadable.
      *
      * This method:
      * 1. Validates that the file is large enough to contain a header + some PCM data.
-     * 2. Checks whether the header is already valid (RIFF magic bytes present) — if so, the file
+     * 2. Checks whether the header is already valid (RIFF/RF64 magic bytes present) — if so, the file
      *    may already be readable; falls through to [tryReadWithExtractor] to confirm.
      * 3. Computes correct WAV header values from [sampleRate] and [channelCount] (stored in the DB).
-     * 4. Overwrites only the first 44 bytes in-place — the PCM data is untouched.
+     * 4. Overwrites only the header bytes in-place — the PCM data is untouched.
      * 5. Verifies the restored file is readable via [tryReadWithExtractor].
      *
      * @param file        The broken WAV file.
@@ -135,7 +149,7 @@ class BrokenRecordRestorer @Inject constructor() {
      */
     @Suppress("MagicNumber")
     private fun tryRestoreWavFile(file: File, sampleRate: Int, channelCount: Int): RestoreResult {
-        val fileSize = file.length()
+        var fileSize = file.length()
 
         // A valid WAV file needs at least the 44-byte header plus 1 byte of audio data.
         if (fileSize <= WAV_HEADER_SIZE) {
@@ -149,24 +163,27 @@ class BrokenRecordRestorer @Inject constructor() {
             )
         }
 
-        // Check whether the file already has a valid RIFF header.
-        val hasValidHeader = try {
+        // Recordings that may outgrow 4 GB use the 80-byte RF64-capable layout.
+        val headerSize = if (hasRf64CapableLayout(file)) RF64_CAPABLE_HEADER_SIZE else WAV_HEADER_SIZE
+
+        // Check whether the file already has a valid RIFF (or RF64) header.
+        val magic = try {
             RandomAccessFile(file, "r").use { raf ->
-                val magic = ByteArray(4)
-                raf.readFully(magic)
-                magic[0] == 'R'.code.toByte() &&
-                    magic[1] == 'I'.code.toByte() &&
-                    magic[2] == 'F'.code.toByte() &&
-                    magic[3] == 'F'.code.toByte()
+                val bytes = ByteArray(4)
+                raf.readFully(bytes)
+                String(bytes, Charsets.US_ASCII)
             }
         } catch (e: Exception) {
             Timber.e(e, "Failed to read WAV header: ${file.absolutePath}")
-            false
+            ""
         }
+        val hasValidHeader = magic == "RIFF" || magic == "RF64"
 
         if (hasValidHeader) {
             // Header looks correct already — verify the file is actually playable.
+            // MediaExtractor does not understand RF64, so read its duration from the ds64 chunk.
             val duration = tryReadWithExtractor(file.absolutePath)
+                ?: WavHeaderParser.parse(file)?.takeIf { it.isRf64 }?.durationMicros?.takeIf { it > 0 }
             return if (duration != null) {
                 Timber.d("WAV file already has valid header and is readable: ${file.absolutePath}")
                 RestoreResult.AlreadyReadable(duration)
@@ -174,24 +191,55 @@ class BrokenRecordRestorer @Inject constructor() {
                 // RIFF magic is there but MediaExtractor still can't read it —
                 // fall through to rewrite the header anyway.
                 Timber.d("WAV has RIFF magic but is not readable, rewriting header: ${file.absolutePath}")
-                rewriteWavHeader(file, fileSize, sampleRate, channelCount)
+                rewriteWavHeader(file, fileSize, headerSize, sampleRate, channelCount)
             }
         }
 
         Timber.d("WAV file has broken/zero header, rewriting: ${file.absolutePath}")
-        return rewriteWavHeader(file, fileSize, sampleRate, channelCount)
+        val dataEnd = findFlushedWavDataEnd(file, fileSize, headerSize)
+        if (dataEnd < fileSize) {
+            Timber.d("Trimming ${fileSize - dataEnd} bytes of preallocated slack: ${file.absolutePath}")
+            try {
+                RandomAccessFile(file, "rw").use { raf -> raf.setLength(dataEnd) }
+                fileSize = dataEnd
+            } catch (e: Exception) {
+                Timber.e(e, "Failed to trim preallocated slack: ${file.absolutePath}")
+            }
+        }
+        return rewriteWavHeader(file, fileSize, headerSize, sampleRate, channelCount)
+    }
+
+    /**
+     * [WavFileSink] grows the file in [WavFileSink.PREALLOCATION_EXTENT_SIZE] extents, so an
+     * interrupted recording may end with zero bytes that were never written. The sink keeps
+     * the size of the PCM flushed so far in the placeholder header, see
+     * [writePlaceholderDataSize]; this returns the offset right after that PCM, so silence
+     * that was actually recorded is kept. Files without that size, e.g. written before the
+     * sink stored it, are returned unchanged as [fileSize].
+     */
+    internal fun findFlushedWavDataEnd(file: File, fileSize: Long, headerSize: Int): Long {
+        val dataSize = readPlaceholderDataSize(file, isRf64Capable = headerSize == RF64_CAPABLE_HEADER_SIZE)
+        return if (dataSize > 0 && headerSize + dataSize < fileSize) headerSize + dataSize else fileSize
     }
 
     /**
-     * Rewrites the 44-byte RIFF/WAV header of [file] in-place and verifies the result.
+     * Rewrites the RIFF/WAV header of [file] in-place and verifies the result.
      *
-     * The PCM payload size is derived as `fileSize - 44` (the placeholder header written
-     * by [WavRecorderV2] occupies the first 44 bytes; everything after is raw PCM-16LE).
+     * The PCM payload size is derived as `fileSize - headerSize` (the placeholder header written
+     * by [WavRecorderV2] occupies the first 44 bytes, or 80 bytes for the RF64-capable layout;
+     * everything after is raw PCM-16LE). RF64-capable files become RF64 if the payload
+     * exceeds the 32-bit RIFF sizes.
      */
     @Suppress("MagicNumber")
-    private fun rewriteWavHeader(file: File, fileSize: Long, sampleRate: Int, channelCount: Int): RestoreResult {
+    private fun rewriteWavHeader(
+        file: File,
+        fileSize: Long,
+        headerSize: Int,
+        sampleRate: Int,
+        channelCount: Int,
+    ): RestoreResult {
         val bitsPerSample = 16
-        val totalAudioLen = fileSize - WAV_HEADER_SIZE          // raw PCM bytes
+        val totalAudioLen = fileSize - headerSize               // raw PCM bytes
         val totalDataLen  = totalAudioLen + 36                  // ChunkSize field value
         val byteRate      = (sampleRate * channelCount * bitsPerSample / 8).toLong()
 
@@ -199,13 +247,21 @@ class BrokenRecordRestorer @Inject constructor() {
             RandomAccessFile(file, "rw").use { raf ->
                 raf.seek(0)
 
-                val header = createWavHeader(
-                    totalAudioLen = totalAudioLen,
-                    totalDataLen = totalDataLen,
-                    sampleRate = sampleRate,
-                    channels = channelCount,
-                    byteRate = byteRate,
-                )
+                val header = if (headerSize == RF64_CAPABLE_HEADER_SIZE) {
+                    createRf64CapableWavHeader(
+                        totalAudioLen = totalAudioLen,
+                        sampleRate = sampleRate,
+                        channels = channelCount,
+                    )
+                } else {
+                    createWavHeader(
+                        totalAudioLen = totalAudioLen,
+                        totalDataLen = totalDataLen,
+                        sampleRate = sampleRate,
+                        channels = channelCount,
+                        byteRate = byteRate,
+                    )
+                }
 
                 raf.write(header)
             }
@@ -995,7 +1051,7 @@ class BrokenRecordRestorer @Inject constructor() {
         private const val DEFAULT_BUFFER_SIZE = 1024 * 1024 // 1MB
 
         /** Size of the standard RIFF/WAV header written by [WavRecorderV2] (no extra chunks). */
-        private const val WAV_HEADER_SIZE = 44
+        private const val WAV_HEADER_SIZE = WavFileSink.WAV_HEADER_SIZE
 
         /** Size of a 7-byte ADTS header (no CRC, protection_absent = 1). */
         private const val ADTS_HEADER_SIZE = 7
@@ -0,0 +1,484 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import kotlin.math.abs
+
+/**
+ * Streaming FLAC frame encoder for 16-bit PCM, used by [FlacFileSink].
+ *
+ * Every block is coded with the best of the FLAC fixed predictors (order 0-4) and
+ * partitioned Rice residuals, falling back to CONSTANT or VERBATIM subframes when they are
+ * smaller. Stereo blocks pick the cheapest of independent, left/side, right/side and
+ * mid/side decorrelation. That is roughly `flac -2` without LPC: cheap enough to run on
+ * the writer coroutine in real time while still being lossless.
+ *
+ * All buffers are allocated up front, so [encodeFrame] does not allocate. Not thread-safe.
+ */
+class FlacEncoder(
+    val sampleRate: Int,
+    val channelCount: Int,
+    val blockSize: Int = DEFAULT_BLOCK_SIZE,
+) {
+    private val residual = IntArray(blockSize)
+    private val mid = IntArray(blockSize)
+    private val side = IntArray(blockSize)
+    private val partitionSums = LongArray(1 shl MAX_PARTITION_ORDER)
+    private val riceParams = IntArray(1 shl MAX_PARTITION_ORDER)
+    private val bestRiceParams = IntArray(1 shl MAX_PARTITION_ORDER)
+    private val orderSums = LongArray(MAX_FIXED_ORDER + 1)
+    private var bestPartitionOrder = 0
+    private var bestRiceMethod = 0
+    private val sampleRateCode = sampleRateCode(sampleRate)
+    private var frameNumber = 0L
+
+    /** Bytes of the last frame produced by [encodeFrame]. */
+    val frame = FlacBitWriter(maxFrameSize(blockSize, channelCount))
+
+    init {
+        require(channelCount in 1..MAX_CHANNELS) { "Unsupported channel count: $channelCount" }
+        require(blockSize in MIN_BLOCK_SIZE..MAX_BLOCK_SIZE) { "Unsupported block size: $blockSize" }
+    }
+
+    /**
+     * Encodes the first [length] samples of each channel in [samples] as the next frame.
+     * Only the last frame of a stream may be shorter than [blockSize].
+     *
+     * @return the size of the frame in bytes; the bytes are in [frame].
+     */
+    fun encodeFrame(samples: Array<IntArray>, length: Int): Int {
+        require(length in 1..blockSize) { "Invalid frame length: $length" }
+        val out = frame
+        out.reset()
+        val assignment = if (channelCount == 2) {
+            chooseStereoAssignment(samples[0], samples[1], length)
+        } else {
+            channelCount - 1
+        }
+        writeFrameHeader(out, assignment, length)
+        when (assignment) {
+            CHANNEL_LEFT_SIDE -> {
+                encodeSubframe(out, samples[0], length, BITS_PER_SAMPLE)
+                encodeSubframe(out, side, length, BITS_PER_SAMPLE + 1)
+            }
+            CHANNEL_RIGHT_SIDE -> {
+                encodeSubframe(out, side, length, BITS_PER_SAMPLE + 1)
+                encodeSubframe(out, samples[1], length, BITS_PER_SAMPLE)
+            }
+            CHANNEL_MID_SIDE -> {
+                encodeSubframe(out, mid, length, BITS_PER_SAMPLE)
+                encodeSubframe(out, side, length, BITS_PER_SAMPLE + 1)
+            }
+            else -> for (ch in 0 until channelCount) {
+                encodeSubframe(out, samples[ch], length, BITS_PER_SAMPLE)
+            }
+        }
+        out.alignToByte()
+        out.writeBits(crc16(out.bytes, 0, out.size), 16)
+        frameNumber++
+        return out.size
+    }
+
+    private fun chooseStereoAssignment(left: IntArray, right: IntArray, length: Int): Int {
+        for (i in 0 until length) {
+            val l = left[i]
+            val r = right[i]
+            mid[i] = (l + r) shr 1
+            side[i] = l - r
+        }
+        val leftCost = bestFixedResidualSum(left, length)
+        val rightCost = bestFixedResidualSum(right, length)
+        val midCost = bestFixedResidualSum(mid, length)
+        val sideCost = bestFixedResidualSum(side, length)
+        var best = CHANNEL_INDEPENDENT_STEREO
+        var bestCost = leftCost + rightCost
+        if (leftCost + sideCost < bestCost) {
+            best = CHANNEL_LEFT_SIDE
+            bestCost = leftCost + sideCost
+        }
+        if (rightCost + sideCost < bestCost) {
+            best = CHANNEL_RIGHT_SIDE
+            bestCost = rightCost + sideCost
+        }
+        if (midCost + sideCost < bestCost) {
+            best = CHANNEL_MID_SIDE
+        }
+        return best
+    }
+
+    private fun writeFrameHeader(out: FlacBitWriter, assignment: Int, length: Int) {
+        val blockSizeCode = blockSizeCode(length)
+        out.writeBits(FRAME_SYNC, 16)
+        out.writeBits(blockSizeCode, 4)
+        out.writeBits(sampleRateCode, 4)
+        out.writeBits(assignment, 4)
+        out.writeBits(SAMPLE_SIZE_CODE_16, 3)
+        out.writeBits(0, 1)
+        out.writeUtf8(frameNumber)
+        when (blockSizeCode) {
+            BLOCK_SIZE_CODE_8_BIT -> out.writeBits(length - 1, 8)
+            BLOCK_SIZE_CODE_16_BIT -> out.writeBits(length - 1, 16)
+        }
+        out.writeBits(crc8(out.bytes, 0, out.size), 8)
+    }
+
+    @Suppress("ReturnCount")
+    private fun encodeSubframe(out: FlacBitWriter, x: IntArray, length: Int, bps: Int) {
+        if (isConstant(x, length)) {
+            out.writeBits(SUBFRAME_CONSTANT shl 1, 8)
+            out.writeBits(x[0], bps)
+            return
+        }
+        val verbatimBits = length.toLong() * bps
+        val order = bestFixedOrder(x, length)
+        computeResidual(x, length, order)
+        val residualBits = chooseRicePartitions(length, order)
+        val fixedBits = order.toLong() * bps + residualBits
+        if (fixedBits >= verbatimBits) {
+            out.writeBits(SUBFRAME_VERBATIM shl 1, 8)
+            for (i in 0 until length) out.writeBits(x[i], bps)
+            return
+        }
+        out.writeBits((SUBFRAME_FIXED or order) shl 1, 8)
+        for (i in 0 until order) out.writeBits(x[i], bps)
+        writeResidual(out, length, order)
+    }
+
+    private fun isConstant(x: IntArray, length: Int): Boolean {
+        val first = x[0]
+        for (i in 1 until length) if (x[i] != first) return false
+        return true
+    }
+
+    /** Sum of absolute residuals of the best fixed predictor, used to compare channel layouts. */
+    private fun bestFixedResidualSum(x: IntArray, length: Int): Long {
+        computeFixedResidualSums(x, length)
+        return orderSums.min()
+    }
+
+    private fun bestFixedOrder(x: IntArray, length: Int): Int {
+        if (length <= MAX_FIXED_ORDER) return 0
+        computeFixedResidualSums(x, length)
+        var best = 0
+        for (order in 1..MAX_FIXED_ORDER) {
+            if (orderSums[order] < orderSums[best]) best = order
+        }
+        return best
+    }
+
+    /** Residual magnitudes of all fixed predictors in a single pass (as in libFLAC). */
+    private fun computeFixedResidualSums(x: IntArray, length: Int) {
+        orderSums.fill(0L)
+        if (length <= MAX_FIXED_ORDER) {
+            for (i in 0 until length) orderSums[0] += abs(x[i]).toLong()
+            for (order in 1..MAX_FIXED_ORDER) orderSums[order] = Long.MAX_VALUE
+            return
+        }
+        var last0 = x[3]
+        var last1 = x[3] - x[2]
+        var last2 = last1 - (x[2] - x[1])
+        var last3 = last2 - (x[2] - x[1] - (x[1] - x[0]))
+        var sum0 = 0L
+        var sum1 = 0L
+        var sum2 = 0L
+        var sum3 = 0L
+        var sum4 = 0L
+        for (i in MAX_FIXED_ORDER until length) {
+            val e0 = x[i]
+            val e1 = e0 - last0
+            val e2 = e1 - last1
+            val e3 = e2 - last2
+            val e4 = e3 - last3
+            sum0 += abs(e0)
+            sum1 += abs(e1)
+            sum2 += abs(e2)
+            sum3 += abs(e3)
+            sum4 += abs(e4)
+            last0 = e0
+            last1 = e1
+            last2 = e2
+            last3 = e3
+        }
+        orderSums[0] = sum0
+        orderSums[1] = sum1
+        orderSums[2] = sum2
+        orderSums[3] = sum3
+        orderSums[4] = sum4
+    }
+
+    private fun computeResidual(x: IntArray, length: Int, order: Int) {
+        val r = residual
+        when (order) {
+            0 -> for (i in 0 until length) r[i] = x[i]
+            1 -> for (i in 1 until length) r[i] = x[i] - x[i - 1]
+            2 -> for (i in 2 until length) r[i] = x[i] - 2 * x[i - 1] + x[i - 2]
+            3 -> for (i in 3 until length) r[i] = x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3]
+            else -> for (i in 4 until length) {
+                r[i] = x[i] - 4 * x[i - 1] + 6 * x[i - 2] - 4 * x[i - 3] + x[i - 4]
+            }
+        }
+    }
+
+    /**
+     * Picks the Rice partition order and per-partition parameters with the smallest estimated
+     * size for the residual in [residual]. Returns the estimated size of the residual section
+     * in bits; the estimate is an upper bound of what [writeResidual] emits.
+     */
+    private fun chooseRicePartitions(length: Int, order: Int): Long {
+        var maxOrder = 0
+        while (maxOrder < MAX_PARTITION_ORDER &&
+            length % (2 shl maxOrder) == 0 &&
+            (length shr (maxOrder + 1)) > order
+        ) {
+            maxOrder++
+        }
+        val sums = partitionSums
+        var partitions = 1 shl maxOrder
+        val partitionSize = length shr maxOrder
+        var i = order
+        for (p in 0 until partitions) {
+            val end = (p + 1) * partitionSize
+            var sum = 0L
+            while (i < end) {
+                val r = residual[i++]
+                sum += ((r shl 1) xor (r shr 31)).toLong() and 0xFFFFFFFFL
+            }
+            sums[p] = sum
+        }
+        var bestBits = Long.MAX_VALUE
+        var partitionOrder = maxOrder
+        while (true) {
+            val size = length shr partitionOrder
+            var bits = 0L
+            var maxParam = 0
+            for (p in 0 until partitions) {
+                val count = if (p == 0) size - order else size
+                val k = riceParameter(sums[p], count)
+                riceParams[p] = k
+                if (k > maxParam) maxParam = k
+                bits += count.toLong() * (k + 1) + (sums[p] shr k)
+            }
+            val method = if (maxParam > MAX_RICE_PARAM) 1 else 0
+            bits += RESIDUAL_HEADER_BITS + partitions.toLong() * (RICE_PARAM_BITS + method)
+            if (bits < bestBits) {
+                bestBits = bits
+                bestPartitionOrder = partitionOrder
+                bestRiceMethod = method
+                riceParams.copyInto(bestRiceParams, 0, 0, partitions)
+            }
+            if (partitionOrder == 0) break
+            partitionOrder--
+            partitions = partitions shr 1
+            for (p in 0 until partitions) sums[p] = sums[2 * p] + sums[2 * p + 1]
+        }
+        return bestBits + SUBFRAME_HEADER_BITS
+    }
+
+    private fun writeResidual(out: FlacBitWriter, length: Int, order: Int) {
+        val partitionOrder = bestPartitionOrder
+        val method = bestRiceMethod
+        val paramBits = RICE_PARAM_BITS + method
+        out.writeBits(method, 2)
+        out.writeBits(partitionOrder, 4)
+        val partitionSize = length shr partitionOrder
+        var i = order
+        for (p in 0 until (1 shl partitionOrder)) {
+            val k = bestRiceParams[p]
+            out.writeBits(k, paramBits)
+            val end = (p + 1) * partitionSize
+            while (i < end) {
+                val r = residual[i++]
+                out.writeRice((r shl 1) xor (r shr 31), k)
+            }
+        }
+    }
+
+    companion object {
+        /** 4096 samples (~93 ms at 44.1 kHz), the block size used by the reference encoder. */
+        const val DEFAULT_BLOCK_SIZE = 4096
+        const val BITS_PER_SAMPLE = 16
+
+        private const val MIN_BLOCK_SIZE = 16
+        private const val MAX_BLOCK_SIZE = 65535
+        private const val MAX_CHANNELS = 8
+        private const val MAX_FIXED_ORDER = 4
+        private const val MAX_PARTITION_ORDER = 8
+        private const val MAX_RICE_PARAM = 14
+        private const val MAX_RICE2_PARAM = 30
+        private const val RICE_PARAM_BITS = 4
+        private const val RESIDUAL_HEADER_BITS = 6
+        private const val SUBFRAME_HEADER_BITS = 8
+
+        private const val FRAME_SYNC = 0xFFF8
+        private const val SAMPLE_SIZE_CODE_16 = 0b100
+        private const val BLOCK_SIZE_CODE_8_BIT = 0b0110
+        private const val BLOCK_SIZE_CODE_16_BIT = 0b0111
+
+        private const val CHANNEL_INDEPENDENT_STEREO = 0b0001
+        private const val CHANNEL_LEFT_SIDE = 0b1000
+        private const val CHANNEL_RIGHT_SIDE = 0b1001
+        private const val CHANNEL_MID_SIDE = 0b1010
+
+        private const val SUBFRAME_CONSTANT = 0b000000
+        private const val SUBFRAME_VERBATIM = 0b000001
+        private const val SUBFRAME_FIXED = 0b001000
+
+        private val CRC8_TABLE = IntArray(256) { n ->
+            var crc = n
+            repeat(8) { crc = if (crc and 0x80 != 0) (crc shl 1) xor 0x07 else crc shl 1 }
+            crc and 0xFF
+        }
+
+        private val CRC16_TABLE = IntArray(256) { n ->
+            var crc = n shl 8
+            repeat(8) { crc = if (crc and 0x8000 != 0) (crc shl 1) xor 0x8005 else crc shl 1 }
+            crc and 0xFFFF
+        }
+
+        /** Upper bound of an encoded frame: verbatim subframes plus header and padding. */
+        fun maxFrameSize(blockSize: Int, channelCount: Int): Int =
+            FRAME_OVERHEAD_BYTES + channelCount * ((blockSize * (BITS_PER_SAMPLE + 1) + 7) / 8 + 1)
+
+        private const val FRAME_OVERHEAD_BYTES = 18
+
+        fun crc8(data: ByteArray, offset: Int, length: Int): Int {
+            var crc = 0
+            for (i in offset until offset + length) {
+                crc = CRC8_TABLE[crc xor (data[i].toInt() and 0xFF)]
+            }
+            return crc
+        }
+
+        fun crc16(data: ByteArray, offset: Int, length: Int): Int {
+            var crc = 0
+            for (i in offset until offset + length) {
+                crc = ((crc shl 8) xor CRC16_TABLE[(crc shr 8) xor (data[i].toInt() and 0xFF)]) and 0xFFFF
+            }
+            return crc
+        }
+
+        /** Smallest k for which count * 2^k covers the folded residual sum. */
+        private fun riceParameter(sum: Long, count: Int): Int {
+            if (count <= 0) return 0
+            var k = 0
+            while (k < MAX_RICE2_PARAM && (count.toLong() shl (k + 1)) <= sum) k++
+            return k
+        }
+
+        private fun blockSizeCode(length: Int): Int {
+            if (length == 192) return 0b0001
+            for (code in 2..5) if (length == 576 shl (code - 2)) return code
+            for (code in 8..15) if (length == 256 shl (code - 8)) return code
+            return if (length <= 256) BLOCK_SIZE_CODE_8_BIT else BLOCK_SIZE_CODE_16_BIT
+        }
+
+        /** Frame header sample rate code; 0 means "see STREAMINFO". */
+        private fun sampleRateCode(sampleRate: Int): Int = when (sampleRate) {
+            88200 -> 0b0001
+            176400 -> 0b0010
+            192000 -> 0b0011
+            8000 -> 0b0100
+            16000 -> 0b0101
+            22050 -> 0b0110
+            24000 -> 0b0111
+            32000 -> 0b1000
+            44100 -> 0b1001
+            48000 -> 0b1010
+            96000 -> 0b1011
+            else -> 0b0000
+        }
+    }
+}
+
+/** MSB-first bit writer backing FLAC frames and metadata blocks. Grows when needed. */
+class FlacBitWriter(initialCapacity: Int) {
+
+    var bytes: ByteArray = ByteArray(initialCapacity.coerceAtLeast(16))
+        private set
+
+    /** Number of complete bytes written. */
+    var size: Int = 0
+        private set
+
+    private var bitBuffer = 0L
+    private var bitCount = 0
+
+    fun reset() {
+        size = 0
+        bitBuffer = 0L
+        bitCount = 0
+    }
+
+    /** Writes the low [bits] bits of [value], 0 to 32 bits. */
+    fun writeBits(value: Int, bits: Int) {
+        if (bits == 0) return
+        bitBuffer = (bitBuffer shl bits) or (value.toLong() and ((1L shl bits) - 1))
+        bitCount += bits
+        if (size + 8 > bytes.size) bytes = bytes.copyOf(bytes.size * 2)
+        while (bitCount >= 8) {
+            bitCount -= 8
+            bytes[size++] = (bitBuffer ushr bitCount).toByte()
+        }
+    }
+
+    fun writeLong(value: Long, bits: Int) {
+        if (bits > 32) {
+            writeBits((value ushr 32).toInt(), bits - 32)
+            writeBits(value.toInt(), 32)
+        } else {
+            writeBits(value.toInt(), bits)
+        }
+    }
+
+    /** Writes [unsigned] as a Rice code with parameter [k]: unary quotient, then k low bits. */
+    fun writeRice(unsigned: Int, k: Int) {
+        val quotient = unsigned ushr k
+        if (quotient + 1 + k <= 32) {
+            writeBits((1 shl k) or (unsigned and ((1 shl k) - 1)), quotient + 1 + k)
+            return
+        }
+        var zeros = quotient
+        while (zeros > 32) {
+            writeBits(0, 32)
+            zeros -= 32
+        }
+        writeBits(0, zeros)
+        writeBits(1, 1)
+        writeBits(unsigned and ((1 shl k) - 1), k)
+    }
+
+    /** Writes [value] in the UTF-8-like coding FLAC uses for frame numbers. */
+    fun writeUtf8(value: Long) {
+        if (value < 0x80) {
+            writeBits(value.toInt(), 8)
+            return
+        }
+        var continuation = 1
+        while (continuation < 6 && value >= (1L shl (5 * continuation + 6))) continuation++
+        // n continuation bytes: the lead byte starts with n + 1 ones and keeps 6 - n value bits.
+        val lead = (0xFF00 shr (continuation + 1)) and 0xFF
+        writeBits(lead or (value ushr (6 * continuation)).toInt(), 8)
+        for (i in continuation - 1 downTo 0) {
+            writeBits(0x80 or ((value ushr (6 * i)).toInt() and 0x3F), 8)
+        }
+    }
+
+    fun alignToByte() {
+        if (bitCount > 0) writeBits(0, 8 - bitCount)
+    }
+
+    fun toByteArray(): ByteArray = bytes.copyOf(size)
+}
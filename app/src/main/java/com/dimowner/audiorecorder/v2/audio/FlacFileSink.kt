@@ -0,0 +1,200 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.security.MessageDigest
+
+/**
+ * Streaming FLAC writer for the PCM-16LE captured by [PcmRecorderBase].
+ *
+ * - PCM is de-interleaved into [FlacEncoder.blockSize]-sample blocks and every full block is
+ *   encoded straight away, so memory use is constant regardless of the recording length.
+ * - Encoded frames are staged in one reusable direct [ByteBuffer] and written in
+ *   [WavFileSink.WRITE_BLOCK_SIZE] blocks, like [WavFileSink].
+ * - [close] encodes the final short block and rewrites STREAMINFO in-place with the total
+ *   sample count, frame size range and the MD5 of the PCM, which lets `flac -t` verify
+ *   the file bit-exactly.
+ *
+ * While recording STREAMINFO reports an unknown length, which is still a valid stream, so
+ * an interrupted recording stays playable up to the last written frame.
+ */
+class FlacFileSink internal constructor(
+    file: File,
+    private val sampleRate: Int,
+    private val channelCount: Int,
+    blockSize: Int,
+) : PcmSink {
+
+    private val encoder = FlacEncoder(sampleRate, channelCount, blockSize)
+    private val samples = Array(channelCount) { IntArray(blockSize) }
+    private val md5 = MessageDigest.getInstance("MD5")
+
+    private val raf = RandomAccessFile(file, "rw")
+    private val channel: FileChannel = raf.channel
+    private val buffer: ByteBuffer = ByteBuffer.allocateDirect(WavFileSink.WRITE_BLOCK_SIZE)
+
+    /** File offset where the content of [buffer] will be written on the next flush. */
+    private var position: Long = STREAM_HEADER_SIZE.toLong()
+
+    /** Sample frames (one sample per channel) buffered in [samples]. */
+    private var blockFill = 0
+    private var nextChannel = 0
+
+    /** Low byte of a sample split across two [write] calls, or -1. */
+    private var pendingLowByte = -1
+
+    private var totalSamples = 0L
+    private var minFrameSize = Int.MAX_VALUE
+    private var maxFrameSize = 0
+
+    /** Number of PCM bytes accepted by [write] so far. */
+    var bytesWritten: Long = 0L
+        private set
+
+    /** Number of encoded bytes in the file, including the stream header. */
+    val encodedSize: Long
+        get() = position + buffer.position()
+
+    init {
+        try {
+            channel.truncate(0)
+            writeFully(ByteBuffer.wrap(createStreamHeader(isFinal = false)), 0L)
+        } catch (e: IOException) {
+            raf.close()
+            throw e
+        }
+    }
+
+    @Throws(IOException::class)
+    override fun write(src: ByteArray, offset: Int, length: Int) {
+        if (length <= 0) return
+        md5.update(src, offset, length)
+        bytesWritten += length
+        var i = offset
+        val end = offset + length
+        if (pendingLowByte >= 0) {
+            putSample(pendingLowByte or (src[i++].toInt() shl 8))
+            pendingLowByte = -1
+        }
+        while (i + 1 < end) {
+            putSample((src[i].toInt() and 0xFF) or (src[i + 1].toInt() shl 8))
+            i += 2
+        }
+        if (i < end) pendingLowByte = src[i].toInt() and 0xFF
+    }
+
+    /**
+     * Encodes the buffered tail, writes the final STREAMINFO, truncates anything past the
+     * last frame and closes the file.
+     */
+    @Throws(IOException::class)
+    override fun close() {
+        try {
+            if (blockFill > 0) encodeBlock(blockFill)
+            flush()
+            writeFully(ByteBuffer.wrap(createStreamHeader(isFinal = true)), 0L)
+            channel.truncate(position)
+        } finally {
+            raf.close()
+        }
+    }
+
+    override fun closeQuietly() {
+        try {
+            close()
+        } catch (e: IOException) {
+            Timber.e(e, "Error closing FLAC output")
+        }
+    }
+
+    private fun putSample(sample: Int) {
+        samples[nextChannel][blockFill] = sample
+        if (++nextChannel == channelCount) {
+            nextChannel = 0
+            if (++blockFill == encoder.blockSize) {
+                encodeBlock(blockFill)
+            }
+        }
+    }
+
+    private fun encodeBlock(length: Int) {
+        val frameSize = encoder.encodeFrame(samples, length)
+        if (frameSize > buffer.remaining()) flush()
+        buffer.put(encoder.frame.bytes, 0, frameSize)
+        if (frameSize < minFrameSize) minFrameSize = frameSize
+        if (frameSize > maxFrameSize) maxFrameSize = frameSize
+        totalSamples += length
+        blockFill = 0
+    }
+
+    private fun flush() {
+        buffer.flip()
+        if (buffer.hasRemaining()) {
+            position += writeFully(buffer, position)
+        }
+        buffer.clear()
+    }
+
+    private fun writeFully(src: ByteBuffer, at: Long): Int {
+        var written = 0
+        while (src.hasRemaining()) {
+            written += channel.write(src, at + written)
+        }
+        return written
+    }
+
+    /** `fLaC` marker followed by the STREAMINFO block (the only, hence last, metadata block). */
+    @Suppress("MagicNumber")
+    private fun createStreamHeader(isFinal: Boolean): ByteArray {
+        val out = FlacBitWriter(STREAM_HEADER_SIZE)
+        for (c in "fLaC") out.writeBits(c.code, 8)
+        out.writeBits(1, 1) // last metadata block
+        out.writeBits(0, 7) // STREAMINFO
+        out.writeBits(STREAMINFO_SIZE, 24)
+        out.writeBits(encoder.blockSize, 16)
+        out.writeBits(encoder.blockSize, 16)
+        // Zero means unknown for the frame sizes, the sample count and the MD5.
+        val hasFrames = isFinal && maxFrameSize > 0
+        out.writeBits(if (hasFrames) minFrameSize else 0, 24)
+        out.writeBits(if (hasFrames) maxFrameSize else 0, 24)
+        out.writeBits(sampleRate, 20)
+        out.writeBits(channelCount - 1, 3)
+        out.writeBits(FlacEncoder.BITS_PER_SAMPLE - 1, 5)
+        out.writeLong(if (isFinal) totalSamples else 0L, 36)
+        val digest = if (isFinal) md5.digest() else ByteArray(MD5_SIZE)
+        for (b in digest) out.writeBits(b.toInt(), 8)
+        return out.toByteArray()
+    }
+
+    companion object {
+        private const val STREAMINFO_SIZE = 34
+        private const val MD5_SIZE = 16
+
+        /** `fLaC` (4) + metadata block header (4) + STREAMINFO (34). */
+        const val STREAM_HEADER_SIZE = 42
+
+        @Throws(IOException::class)
+        fun open(file: File, sampleRate: Int, channelCount: Int): FlacFileSink {
+            return FlacFileSink(file, sampleRate, channelCount, FlacEncoder.DEFAULT_BLOCK_SIZE)
+        }
+    }
+}
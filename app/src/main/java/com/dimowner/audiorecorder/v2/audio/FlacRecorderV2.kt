@@ -0,0 +1,45 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import kotlinx.coroutines.CoroutineScope
+import java.io.File
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Lossless recorder: the same [android.media.AudioRecord] capture as [WavRecorderV2], but
+ * the PCM is FLAC-encoded on the writer coroutine, roughly halving file size and write
+ * bandwidth while keeping the audio bit-exact.
+ */
+@Singleton
+class FlacRecorderV2 @Inject constructor(
+    coroutineScope: CoroutineScope,
+    recordingTicker: RecordingTicker,
+) : PcmRecorderBase(coroutineScope, recordingTicker) {
+
+    override val recordingLogTag: String = "FLAC "
+
+    override fun openSink(
+        file: File,
+        sampleRate: Int,
+        channelCount: Int,
+        bitrate: Int,
+        maxRecordingDurationMills: Int,
+    ): PcmSink {
+        return FlacFileSink.open(file, sampleRate, channelCount)
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+/**
+ * Fixed-capacity primitive ring holding the most recent live waveform amplitudes.
+ *
+ * Written on every recording progress tick and read by the live waveform. [append] never
+ * allocates; readers copy the window into an array they own with [snapshotInto] and use
+ * [version] to skip copies when nothing has changed since their last read.
+ *
+ * **Thread-safety:** all mutating and copying methods are `@Synchronized`; [version] and
+ * [totalCount] are volatile so they can be polled without the lock.
+ *
+ * @param capacity the number of most recent samples kept.
+ */
+class LiveAmplitudeBuffer(val capacity: Int) {
+
+    private val data = IntArray(capacity)
+
+    /** Index in [data] of the oldest sample. */
+    private var start = 0
+    private var count = 0
+
+    /**
+     * Total number of samples appended since the last [reset]. This is the position in the
+     * sample timeline right after the newest sample.
+     */
+    @Volatile var totalCount: Int = 0
+        private set
+
+    /** Incremented on every change, including [reset]. */
+    @Volatile var version: Long = 0L
+        private set
+
+    /** Number of samples currently held, at most [capacity]. */
+    @Synchronized
+    fun size(): Int = count
+
+    /** Appends [amplitude], dropping the oldest sample when the ring is full. */
+    @Synchronized
+    fun append(amplitude: Int) {
+        if (count < capacity) {
+            data[(start + count) % capacity] = amplitude
+            count++
+        } else {
+            data[start] = amplitude
+            start = (start + 1) % capacity
+        }
+        totalCount++
+        version++
+    }
+
+    @Synchronized
+    fun reset() {
+        start = 0
+        count = 0
+        totalCount = 0
+        version++
+    }
+
+    /**
+     * Copies the newest `min(size, dest.size)` samples into [dest], oldest first, and
+     * returns how many were copied.
+     */
+    @Synchronized
+    fun snapshotInto(dest: IntArray): Int {
+        val n = minOf(count, dest.size)
+        val from = start + count - n
+        for (i in 0 until n) {
+            dest[i] = data[(from + i) % capacity]
+        }
+        return n
+    }
+
+    /** Returns a new array with all samples, oldest first. */
+    @Synchronized
+    fun toIntArray(): IntArray {
+        val result = IntArray(count)
+        snapshotInto(result)
+        return result
+    }
+}
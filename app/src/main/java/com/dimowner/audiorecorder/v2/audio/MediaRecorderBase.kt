@@ -18,23 +18,19 @@ package com.dimowner.audiorecorder.v2.audio
 import android.content.Context
 import android.media.MediaRecorder
 import android.os.Build
-import android.os.Handler
-import android.os.Looper
 import android.os.SystemClock
-import com.dimowner.audiorecorder.AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW
 import com.dimowner.audiorecorder.IntArrayList
 import com.dimowner.audiorecorder.exception.AlreadyRecordingException
 import com.dimowner.audiorecorder.exception.InvalidOutputFile
 import com.dimowner.audiorecorder.exception.RecorderInitException
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.launch
 import timber.log.Timber
 import java.io.File
 import java.io.IOException
-import java.util.Timer
-import java.util.TimerTask
 
 /**
  * Abstract base class for [MediaRecorder]-based recorder implementations.
@@ -47,26 +43,27 @@ import java.util.TimerTask
 abstract class MediaRecorderBase(
     private val applicationContext: Context,
     private val coroutineScope: CoroutineScope,
+    private val recordingTicker: RecordingTicker,
 ) : RecorderV2 {
 
-    private var timerProgress: Timer? = null
+    @Volatile private var progressListener: RecordingProgressListener? = null
+
+    /** Collects [RecordingTicker.ticks] while recording; cancelled on pause and stop. */
+    @Volatile private var progressJob: Job? = null
     private val amplitudesBuffer: IntArrayList = IntArrayList()
     @Volatile private var lastNonZeroAmplitude: Int = 0
-    private var mediaRecorder: MediaRecorder? = null
+    @Volatile private var mediaRecorder: MediaRecorder? = null
     private var recordFile: File? = null
     private var updateTime: Long = 0
     private var durationMills: Long = 0
 
-    private var _isRecording: Boolean = false
-    private var _isPaused: Boolean = false
+    @Volatile private var _isRecording: Boolean = false
+    @Volatile private var _isPaused: Boolean = false
     override val isRecording: Boolean
         get() = _isRecording
     override val isPaused: Boolean
         get() = _isPaused
 
-    // Using Handler tied to the main Looper for UI thread synchronization and timing updates
-    private val handler = Handler(Looper.getMainLooper())
-
     private val _event = MutableSharedFlow<RecorderEvent>()
     override fun subscribeRecorderEvents(): Flow<RecorderEvent> = _event
 
@@ -130,8 +127,7 @@ abstract class MediaRecorderBase(
             try {
                 recorder.prepare()
                 recorder.start()
-                scheduleRecordingTimeUpdate()
-                scheduleRecordingTimeUpdateBuffered()
+                startProgressTicks()
                 emitEvent(RecorderEvent.OnStartRecording)
                 _isPaused = false
                 true
@@ -169,8 +165,7 @@ abstract class MediaRecorderBase(
             mediaRecorder?.let { recorder ->
                 recorder.resume()
                 updateTime = SystemClock.elapsedRealtime()
-                scheduleRecordingTimeUpdate()
-                scheduleRecordingTimeUpdateBuffered()
+                startProgressTicks()
                 emitEvent(RecorderEvent.OnResumeRecording)
                 _isPaused = false
                 true
@@ -192,8 +187,8 @@ abstract class MediaRecorderBase(
                 mediaRecorder?.let { recorder ->
                     recorder.pause()
                     durationMills += SystemClock.elapsedRealtime() - updateTime
-                    pauseRecordingTimer()
-                    pauseRecordingTimerBuffered()
+                    stopProgressTicks()
+                    updateTime = 0
                     emitEvent(RecorderEvent.OnPauseRecording)
                     _isPaused = true
                     true
@@ -219,8 +214,8 @@ abstract class MediaRecorderBase(
             return false
         }
 
-        stopRecordingTimer()
-        stopRecordingTimerBuffered()
+        stopProgressTicks()
+        updateTime = 0
         val isStopSucceed = try {
             mediaRecorder?.let {
                 it.setOnInfoListener(null)
@@ -266,13 +261,28 @@ abstract class MediaRecorderBase(
         }
     }
 
+    private fun startProgressTicks() {
+        progressJob?.cancel()
+        progressJob = coroutineScope.launch {
+            recordingTicker.ticks.collect {
+                pollAmplitude()
+                readBufferedProgress()
+            }
+        }
+    }
+
+    private fun stopProgressTicks() {
+        progressJob?.cancel()
+        progressJob = null
+    }
+
     /**
-     * Runnable that fires every [RECORDING_VISUALIZATION_INTERVAL_NEW] ms to push
-     * duration + amplitude progress events.
+     * Reads [MediaRecorder.getMaxAmplitude] on every tick of [recordingTicker] and buffers
+     * it for [readBufferedProgress].
      */
-    private val recordingTimeUpdateRunnable = Runnable {
-        val currentRecorder = mediaRecorder
-        if (currentRecorder != null) {
+    private fun pollAmplitude() {
+        val currentRecorder = mediaRecorder ?: return
+        try {
             if (!isRecording) {
                 //Set that recording is started only after receiving a valid amplitude value,
                 //which indicates that recording has actually started.
@@ -282,73 +292,50 @@ abstract class MediaRecorderBase(
                     updateTime = SystemClock.elapsedRealtime()
                     synchronized(amplitudesBuffer) { amplitudesBuffer.add(amplitude) }
                 }
-            } else if (isRecording && !isPaused) {
-                try {
-                    val amplitude = currentRecorder.maxAmplitude
-                    synchronized(amplitudesBuffer) { amplitudesBuffer.add(amplitude) }
-                } catch (e: IllegalStateException) {
-                    Timber.e(e, "Error reading amplitude or updating progress")
-                }
+            } else if (!isPaused) {
+                val amplitude = currentRecorder.maxAmplitude
+                synchronized(amplitudesBuffer) { amplitudesBuffer.add(amplitude) }
             }
-            scheduleRecordingTimeUpdate()
+        } catch (e: IllegalStateException) {
+            // The recorder may be stopped on another thread between the null check and the read.
+            Timber.e(e, "Error reading amplitude or updating progress")
         }
     }
 
-    private fun scheduleRecordingTimeUpdate() {
-        handler.removeCallbacks(recordingTimeUpdateRunnable)
-        handler.postDelayed(recordingTimeUpdateRunnable, (RECORDING_VISUALIZATION_INTERVAL_NEW/1.5).toLong())
-    }
-
-    private fun stopRecordingTimer() {
-        handler.removeCallbacks(recordingTimeUpdateRunnable)
-    }
-
-    private fun pauseRecordingTimer() {
-        handler.removeCallbacks(recordingTimeUpdateRunnable)
-    }
-
-    private fun scheduleRecordingTimeUpdateBuffered() {
-        timerProgress = Timer()
-        timerProgress?.schedule(object : TimerTask() {
-            override fun run() {
-                try {
-                    readBufferedProgress()
-                } catch (e: java.lang.IllegalStateException) {
-                    Timber.e(e)
-                }
-            }
-        }, 1, RECORDING_VISUALIZATION_INTERVAL_NEW.toLong())
-    }
-
-    private fun stopRecordingTimerBuffered() {
-        timerProgress?.cancel()
-        timerProgress?.purge()
-        updateTime = 0
-    }
-
-    private fun pauseRecordingTimerBuffered() {
-        timerProgress?.cancel()
-        timerProgress?.purge()
-        updateTime = 0
-    }
-
     private fun readBufferedProgress() {
-        // Timer.cancel() doesn't prevent an already-scheduled task from running; skip stale
-        // fires so a late progress event can't flip state back to RECORDING after stop.
+        // Cancelling the collector doesn't stop a tick that is already being handled; skip
+        // stale ticks so a late progress event can't flip state back to RECORDING after stop.
         if (!_isRecording || _isPaused) return
+        var amp = NO_AMPLITUDE
+        var currentDuration = 0L
         synchronized(amplitudesBuffer) {
             val bufferSize = amplitudesBuffer.size()
             if (bufferSize > 0) {
                 val curTime = SystemClock.elapsedRealtime()
                 durationMills += curTime - updateTime
                 updateTime = curTime
-                var amp = amplitudesBuffer.get(bufferSize - 1)
+                currentDuration = durationMills
+                amp = amplitudesBuffer.get(bufferSize - 1)
                 if (amp == 0) amp = lastNonZeroAmplitude
                 else lastNonZeroAmplitude = amp
                 amplitudesBuffer.clear()
-                emitEvent(RecorderEvent.OnRecordingProgress(durationMills = durationMills, amplitude = amp))
             }
         }
+        if (amp == NO_AMPLITUDE) return
+        // Listener avoids allocating an event and launching a coroutine every tick.
+        val listener = progressListener
+        if (listener != null) {
+            listener.onRecordingProgress(currentDuration, amp)
+        } else {
+            emitEvent(RecorderEvent.OnRecordingProgress(durationMills = currentDuration, amplitude = amp))
+        }
     }
-}
 
+    override fun setProgressListener(listener: RecordingProgressListener?) {
+        progressListener = listener
+    }
+
+    private companion object {
+        const val NO_AMPLITUDE = -1
+    }
+}
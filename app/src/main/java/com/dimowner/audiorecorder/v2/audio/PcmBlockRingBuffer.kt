@@ -0,0 +1,145 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Preallocated, lock-free single-producer/single-consumer ring of PCM blocks.
+ *
+ * Used by [WavRecorderV2] to decouple the capture stage (`AudioRecord.read`) from the
+ * writer stage (disk I/O): the capture thread reads straight into [writableBlock] and
+ * publishes it with [commitWrite]; the writer thread drains blocks via [readableBlock] /
+ * [commitRead]. A slow flash write therefore never delays the next `read()` as long as
+ * the ring has a free block.
+ *
+ * All blocks are allocated once in the constructor, so the steady state allocates nothing.
+ *
+ * **Thread-safety:** exactly one thread may call the producer methods ([writableBlock],
+ * [commitWrite], [markOverrun], [finish]) and exactly one thread may call the consumer
+ * methods ([readableBlock], [readableLength], [commitRead]). [head] and [tail] are
+ * published with release semantics so block contents written before a commit are
+ * visible to the other side.
+ *
+ * @param blockCount number of blocks in the ring.
+ * @param blockSize size of every block in bytes.
+ */
+class PcmBlockRingBuffer(val blockCount: Int, val blockSize: Int) {
+
+    private val blocks = Array(blockCount) { ByteArray(blockSize) }
+    private val lengths = IntArray(blockCount)
+    private val partBoundaries = IntArray(blockCount)
+    private val skippedBytes = LongArray(blockCount)
+
+    /** Sequence number of the next block to be written by the producer. */
+    private val head = AtomicLong(0)
+
+    /** Sequence number of the next block to be read by the consumer. */
+    private val tail = AtomicLong(0)
+
+    private val overruns = AtomicLong(0)
+
+    @Volatile private var finished: Boolean = false
+
+    /** Written by [finish] before [finished] is published, so the consumer sees it once [isFinished] is true. */
+    private var skippedBytesAtEnd: Long = 0L
+
+    /** Number of blocks dropped by the producer because the ring was full. */
+    val overrunCount: Long
+        get() = overruns.get()
+
+    /** The largest number of blocks that were queued at the same time. */
+    @Volatile var highWaterMark: Int = 0
+        private set
+
+    /** True once the producer called [finish]; remaining blocks may still be read. */
+    val isFinished: Boolean
+        get() = finished
+
+    /** Number of blocks currently queued between producer and consumer. */
+    fun size(): Int = (head.get() - tail.get()).toInt()
+
+    /** Producer side: returns the next free block, or null if the ring is full. */
+    fun writableBlock(): ByteArray? {
+        val h = head.get()
+        if (h - tail.get() >= blockCount) return null
+        return blocks[(h % blockCount).toInt()]
+    }
+
+    /**
+     * Producer side: publishes the block returned by [writableBlock] holding [length] bytes.
+     * [partBoundary] is the offset within the block where the next recording part starts,
+     * or [NO_PART_BOUNDARY]. [skippedBytesBefore] is the amount of captured PCM deliberately
+     * left out right before this block, e.g. skipped silence.
+     */
+    fun commitWrite(length: Int, partBoundary: Int = NO_PART_BOUNDARY, skippedBytesBefore: Long = 0L) {
+        val h = head.get()
+        val index = (h % blockCount).toInt()
+        lengths[index] = length
+        partBoundaries[index] = partBoundary
+        skippedBytes[index] = skippedBytesBefore
+        head.lazySet(h + 1)
+        val used = (h + 1 - tail.get()).toInt()
+        if (used > highWaterMark) highWaterMark = used
+    }
+
+    /** Producer side: records that a captured block was dropped because the ring was full. */
+    fun markOverrun() {
+        overruns.incrementAndGet()
+    }
+
+    /**
+     * Producer side: signals that no more blocks will be written. [skippedBytesAfter] is the
+     * amount of captured PCM left out after the last committed block, see [trailingSkippedBytes].
+     */
+    fun finish(skippedBytesAfter: Long = 0L) {
+        skippedBytesAtEnd = skippedBytesAfter
+        finished = true
+    }
+
+    /** Consumer side: returns the oldest queued block, or null if the ring is empty. */
+    fun readableBlock(): ByteArray? {
+        val t = tail.get()
+        if (t >= head.get()) return null
+        return blocks[(t % blockCount).toInt()]
+    }
+
+    /** Consumer side: number of valid bytes in the block returned by [readableBlock]. */
+    fun readableLength(): Int = lengths[(tail.get() % blockCount).toInt()]
+
+    /** Consumer side: part boundary of the block returned by [readableBlock], see [commitWrite]. */
+    fun readablePartBoundary(): Int = partBoundaries[(tail.get() % blockCount).toInt()]
+
+    /** Consumer side: PCM skipped right before the block returned by [readableBlock], see [commitWrite]. */
+    fun readableSkippedBytesBefore(): Long = skippedBytes[(tail.get() % blockCount).toInt()]
+
+    /**
+     * Consumer side: PCM skipped after the last block, as passed to [finish].
+     * Only valid once [isFinished] is true.
+     */
+    val trailingSkippedBytes: Long
+        get() = if (finished) skippedBytesAtEnd else 0L
+
+    /** Consumer side: releases the block returned by [readableBlock] back to the producer. */
+    fun commitRead() {
+        tail.lazySet(tail.get() + 1)
+    }
+
+    companion object {
+        /** Passed to [commitWrite] for blocks that belong entirely to the current part. */
+        const val NO_PART_BOUNDARY = -1
+    }
+}
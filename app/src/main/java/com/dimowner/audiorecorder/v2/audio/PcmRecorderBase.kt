@@ -0,0 +1,640 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import android.media.AudioFormat
+import android.media.AudioRecord
+import com.dimowner.audiorecorder.AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW
+import com.dimowner.audiorecorder.audio.sumOfAmplitudes
+import com.dimowner.audiorecorder.IntArrayList
+import com.dimowner.audiorecorder.exception.AlreadyRecordingException
+import com.dimowner.audiorecorder.exception.InvalidOutputFile
+import com.dimowner.audiorecorder.exception.RecorderInitException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+
+private const val NO_AMPLITUDE = -1
+
+/** Amount of audio the capture ring can hold while the writer is stalled on disk I/O. */
+private const val CAPTURE_RING_DURATION_MILLS = 2000
+private const val MIN_CAPTURE_RING_BLOCKS = 4
+
+/**
+ * Abstract base class for [AudioRecord]-based recorder implementations.
+ *
+ * Captures 16-bit PCM into a [PcmBlockRingBuffer] and drains it to a [PcmSink] on a separate
+ * writer coroutine, including gapless rollover to the next part file. Subclasses implement
+ * [openSink] to choose the container/encoding of the output file, and may override
+ * [recordingLogTag] to customise the log prefix used in [startRecording].
+ */
+@SuppressWarnings("TooManyFunctions")
+abstract class PcmRecorderBase(
+    private val coroutineScope: CoroutineScope,
+    private val recordingTicker: RecordingTicker,
+) : RecorderV2 {
+
+    private var audioRecord: AudioRecord? = null
+    private var recordingJob: Job? = null
+
+    @Volatile private var _isRecording: Boolean = false
+    @Volatile private var _isPaused: Boolean = false
+
+    override val isRecording: Boolean
+        get() = _isRecording
+    override val isPaused: Boolean
+        get() = _isPaused
+
+    private var durationMills: Long = 0
+    private var sampleRateConfig: Int = 44100
+    private var channelCountConfig: Int = 1
+
+    @Volatile private var nextPartFileProvider: (() -> File?)? = null
+    @Volatile private var silenceSkipConfig: SilenceSkipConfig? = null
+
+    /** Kept-segment maps of finished files, by path, until taken with [takeKeptSegments]. */
+    private val keptSegmentsByPath = ConcurrentHashMap<String, IntArray>()
+
+    @Volatile private var progressListener: RecordingProgressListener? = null
+
+    /** Collects [RecordingTicker.ticks] while recording; cancelled on pause and stop. */
+    @Volatile private var progressJob: Job? = null
+    private val amplitudesBuffer: IntArrayList = IntArrayList()
+    @Volatile private var lastNonZeroAmplitude: Int = 0
+    @Volatile private var lastEmittedDurationMills: Long = -1L
+
+    private val events = RecorderEventQueue(coroutineScope)
+    override fun subscribeRecorderEvents(): Flow<RecorderEvent> {
+        return events.events
+    }
+
+    /**
+     * A short label used in the "startRecording" log line so subclasses can differentiate
+     * their log output (e.g. "FLAC ").
+     */
+    protected open val recordingLogTag: String = ""
+
+    /**
+     * Opens [file] for a new recording or recording part. Called on the recorder thread at
+     * start and on the writer coroutine on part rollover.
+     *
+     * @param bitrate the bitrate requested for the recording, for sinks that encode lossy.
+     * @param maxRecordingDurationMills the part duration limit, 0 or less if unlimited.
+     */
+    @Throws(IOException::class)
+    protected abstract fun openSink(
+        file: File,
+        sampleRate: Int,
+        channelCount: Int,
+        bitrate: Int,
+        maxRecordingDurationMills: Int,
+    ): PcmSink
+
+    override fun startRecording(
+        outputFile: File,
+        channelCount: Int,
+        sampleRate: Int,
+        bitrate: Int,
+        maxRecordingDurationMills: Int,
+        audioSource: Int,
+    ): Boolean {
+        Timber.d(
+            "${recordingLogTag}startRecording outputFile: ${outputFile.absolutePath} channelCount: $channelCount" +
+                    " sampleRate: $sampleRate bitrate: $bitrate maxRecordingDurationMills: $maxRecordingDurationMills" +
+                    " audioSource: $audioSource"
+        )
+        if (_isRecording) {
+            Timber.e("Recording is already in progress.")
+            emitEvent(RecorderEvent.OnError(AlreadyRecordingException()))
+            return false
+        }
+        amplitudesBuffer.clear()
+        lastNonZeroAmplitude = 0
+        lastEmittedDurationMills = -1L
+        if (!outputFile.exists() || !outputFile.isFile) {
+            emitEvent(RecorderEvent.OnError(InvalidOutputFile()))
+            return false
+        }
+
+        sampleRateConfig = sampleRate
+        channelCountConfig = channelCount
+
+        val channelConfig = if (channelCount == 1) {
+            AudioFormat.CHANNEL_IN_MONO
+        } else {
+            AudioFormat.CHANNEL_IN_STEREO
+        }
+        val bitsPerSample = 16
+        val audioEncoding = AudioFormat.ENCODING_PCM_16BIT
+
+        val bufferSize = AudioRecord.getMinBufferSize(sampleRate, channelConfig, audioEncoding)
+        if (bufferSize == AudioRecord.ERROR_BAD_VALUE || bufferSize == AudioRecord.ERROR) {
+            Timber.e("Invalid buffer size: $bufferSize")
+            emitEvent(RecorderEvent.OnError(RecorderInitException()))
+            return false
+        }
+
+        // Read in ~20 ms chunks so durationMills advances every ~20 ms and progress events
+        // are emitted at least that often. frameSize ensures alignment; coerceAtMost keeps
+        // the chunk within the AudioRecord internal buffer to avoid read errors.
+        val frameSize = channelCount * (bitsPerSample / 8)
+        val readChunkSize = ((sampleRate * RECORDING_VISUALIZATION_INTERVAL_NEW / 1000) * frameSize)
+            .coerceAtLeast(frameSize)
+            .coerceAtMost(bufferSize)
+
+        val recorder = try {
+            AudioRecord(audioSource, sampleRate, channelConfig, audioEncoding, bufferSize)
+        } catch (e: SecurityException) {
+            Timber.e(e, "AudioRecord creation failed due to missing permission")
+            emitEvent(RecorderEvent.OnError(RecorderInitException()))
+            return false
+        } catch (e: IllegalArgumentException) {
+            Timber.e(e, "AudioRecord creation failed")
+            emitEvent(RecorderEvent.OnError(RecorderInitException()))
+            return false
+        }
+
+        if (recorder.state != AudioRecord.STATE_INITIALIZED) {
+            Timber.e("AudioRecord initialization failed")
+            recorder.release()
+            emitEvent(RecorderEvent.OnError(RecorderInitException()))
+            return false
+        }
+
+        audioRecord = recorder
+
+        val sink = try {
+            openSink(outputFile, sampleRate, channelCount, bitrate, maxRecordingDurationMills)
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to open recording output")
+            recorder.release()
+            audioRecord = null
+            emitEvent(RecorderEvent.OnError(RecorderInitException()))
+            return false
+        }
+
+        try {
+            recorder.startRecording()
+        } catch (e: IllegalStateException) {
+            Timber.e(e, "startRecording() failed")
+            sink.closeQuietly()
+            recorder.release()
+            audioRecord = null
+            emitEvent(RecorderEvent.OnError(RecorderInitException()))
+            return false
+        }
+
+        _isRecording = true
+        _isPaused = false
+        durationMills = 0
+        emitEvent(RecorderEvent.OnStartRecording)
+        startProgressTicks()
+
+        // Capture stage: only reads PCM into the preallocated ring so a slow flash write
+        // (fsync, GC, storage contention) can never delay the next AudioRecord.read().
+        // The writer stage below drains the ring to disk on its own coroutine.
+        val ring = PcmBlockRingBuffer(
+            blockCount = (CAPTURE_RING_DURATION_MILLS / RECORDING_VISUALIZATION_INTERVAL_NEW)
+                .coerceAtLeast(MIN_CAPTURE_RING_BLOCKS),
+            blockSize = readChunkSize,
+        )
+        val bytesPerSecond = sampleRate * channelCount * (bitsPerSample / 8)
+        // Whole frames only, so a part boundary never splits a sample.
+        val partMaxBytes = if (maxRecordingDurationMills > 0) {
+            frameSize * (sampleRate.toLong() * maxRecordingDurationMills / 1000)
+        } else {
+            Long.MAX_VALUE
+        }
+        val partFileProvider = nextPartFileProvider.takeIf { partMaxBytes != Long.MAX_VALUE }
+        val silenceGate = silenceSkipConfig?.let { SilenceGate(it) }
+        recordingJob = coroutineScope.launch(Dispatchers.IO) {
+            val overrunBuffer = ByteArray(readChunkSize)
+            var totalBytesCaptured = 0L
+            // Counts written bytes only, so skipped silence doesn't shorten the parts.
+            var partBytesCaptured = 0L
+            var skippedBytes = 0L
+            var maxDurationReached = false
+            val writer = PcmWriter(
+                sink = sink,
+                outputFile = outputFile,
+                ring = ring,
+                nextPartFileProvider = partFileProvider,
+                bytesPerSecond = bytesPerSecond,
+                openSink = { openSink(it, sampleRate, channelCount, bitrate, maxRecordingDurationMills) },
+                onFileFinished = { file, keptSegments ->
+                    keptSegmentsByPath[file.absolutePath] = keptSegments
+                },
+                onPartCompleted = { partFile, nextPartFile, nextPartStartBytes ->
+                    emitEvent(
+                        RecorderEvent.OnPartCompleted(
+                            partFile = partFile,
+                            nextPartFile = nextPartFile,
+                            nextPartStartMills = nextPartStartBytes * 1000L / bytesPerSecond,
+                        )
+                    )
+                },
+            )
+            val writerJob = launch(Dispatchers.IO) { writer.drain() }
+
+            while (isActive && _isRecording && !writer.isFailed && !writer.isRolloverFailed) {
+                if (_isPaused) {
+                    delay(RECORDING_VISUALIZATION_INTERVAL_NEW.toLong())
+                    continue
+                }
+                val block = ring.writableBlock()
+                // Ring is full: keep reading so AudioRecord does not overrun, but the block is lost.
+                val target = block ?: overrunBuffer
+                val readResult = recorder.read(target, 0, readChunkSize)
+                if (readResult > 0) {
+                    // Each read covers ~RECORDING_VISUALIZATION_INTERVAL_NEW ms, so always update amplitude
+                    val amplitude = calculateAmplitude(target, readResult)
+                    if (silenceGate != null &&
+                        silenceGate.isSkipped(amplitude, readResult * 1000L / bytesPerSecond)
+                    ) {
+                        // Not written, but the session timeline and waveform keep running.
+                        skippedBytes += readResult
+                        totalBytesCaptured += readResult
+                        durationMills = (totalBytesCaptured * 1000L) / bytesPerSecond
+                        synchronized(amplitudesBuffer) { amplitudesBuffer.add(amplitude) }
+                        continue
+                    }
+                    if (block == null) {
+                        ring.markOverrun()
+                        Timber.w("Capture ring is full, dropped $readResult bytes")
+                        continue
+                    }
+                    partBytesCaptured += readResult
+                    var partBoundary = PcmBlockRingBuffer.NO_PART_BOUNDARY
+                    if (partFileProvider != null && partBytesCaptured >= partMaxBytes) {
+                        // Gapless rollover: the writer switches files at this exact byte offset
+                        // while capture keeps reading from the same AudioRecord.
+                        partBoundary = (readResult - (partBytesCaptured - partMaxBytes)).toInt()
+                        partBytesCaptured -= partMaxBytes
+                    }
+                    ring.commitWrite(readResult, partBoundary, skippedBytes)
+                    skippedBytes = 0L
+                    totalBytesCaptured += readResult
+
+                    // Calculate duration from bytes captured. It spans all parts of the session;
+                    // OnPartCompleted tells consumers where the current part starts.
+                    durationMills = (totalBytesCaptured * 1000L) / bytesPerSecond
+                    synchronized(amplitudesBuffer) { amplitudesBuffer.add(amplitude) }
+
+                    // Check max duration
+                    if (partFileProvider == null && partBytesCaptured >= partMaxBytes) {
+                        Timber.d("Max recording duration reached. Stop recording")
+                        // Signal the loop to stop; hardware teardown happens via stopHardware().
+                        // OnStopRecording and OnMaxDurationReached are both emitted after
+                        // the sink has written its final header, so consumers always see a complete file.
+                        maxDurationReached = true
+                        _isRecording = false
+                        _isPaused = false
+                        stopProgressTicks()
+                        stopHardware()
+                        break
+                    }
+                } else if (readResult == AudioRecord.ERROR_INVALID_OPERATION) {
+                    Timber.e("AudioRecord read error: ERROR_INVALID_OPERATION")
+                    break
+                } else if (readResult == AudioRecord.ERROR_BAD_VALUE) {
+                    Timber.e("AudioRecord read error: ERROR_BAD_VALUE")
+                    break
+                }
+            }
+            if (writer.isRolloverFailed && _isRecording) {
+                _isRecording = false
+                _isPaused = false
+                stopProgressTicks()
+                stopHardware()
+            }
+            // Let the writer flush every block still queued before the sink is closed.
+            // Silence skipped after the last kept block still belongs to the file's timeline.
+            ring.finish(skippedBytes)
+            writerJob.join()
+            if (writer.isFailed) {
+                emitEvent(RecorderEvent.OnError(RecorderInitException()))
+            }
+            emitEvent(
+                RecorderEvent.OnCaptureBufferStats(
+                    overrunCount = ring.overrunCount,
+                    highWaterMark = ring.highWaterMark,
+                    capacity = ring.blockCount,
+                )
+            )
+
+            // The writer has already finalised the output file on close.
+            // A failed rollover leaves the finished part saved, so report it like a plain
+            // max-duration stop and let the service start the next part the slow way.
+            if (!writer.isFailed) {
+                if (maxDurationReached || writer.isRolloverFailed) {
+                    emitEvent(RecorderEvent.OnMaxDurationReached)
+                } else {
+                    emitEvent(RecorderEvent.OnStopRecording)
+                }
+            }
+
+            // Clean up state only after header write so nothing above reads stale nulls.
+            durationMills = 0
+        }
+        return true
+    }
+
+    override fun resumeRecording(): Boolean {
+        if (!_isRecording || !_isPaused) return false
+        _isPaused = false
+        emitEvent(RecorderEvent.OnResumeRecording)
+        startProgressTicks()
+        return true
+    }
+
+    override fun pauseRecording(): Boolean {
+        stopProgressTicks()
+        if (!_isRecording) {
+            Timber.e("Recording has already stopped or hasn't started")
+            return false
+        }
+        if (_isPaused) {
+            Timber.e("Recording has already paused")
+            return false
+        }
+        _isPaused = true
+        emitEvent(RecorderEvent.OnPauseRecording)
+        return true
+    }
+
+    override fun stopRecording(): Boolean {
+        stopProgressTicks()
+        if (!_isRecording) {
+            Timber.e("Recording has already stopped or hasn't started")
+            return false
+        }
+        _isRecording = false
+        _isPaused = false
+        synchronized(amplitudesBuffer) { amplitudesBuffer.clear() }
+        // Tear down the hardware; the recording coroutine will finish its current
+        // read(), flush PCM data, finalise the output file, and then emit OnStopRecording.
+        return stopHardware()
+    }
+
+    /**
+     * Stops and releases [audioRecord]. Safe to call from any thread.
+     * Returns true if the hardware was stopped successfully.
+     */
+    private fun stopHardware(): Boolean {
+        return try {
+            audioRecord?.let {
+                it.stop()
+                it.release()
+                true
+            } ?: false
+        } catch (e: IllegalStateException) {
+            Timber.e(e, "stopHardware() problems")
+            audioRecord?.release()
+            false
+        } finally {
+            audioRecord = null
+        }
+    }
+
+    override fun setNextPartFileProvider(provider: (() -> File?)?): Boolean {
+        nextPartFileProvider = provider
+        return true
+    }
+
+    override fun setSilenceSkipping(config: SilenceSkipConfig?): Boolean {
+        silenceSkipConfig = config
+        return true
+    }
+
+    override fun takeKeptSegments(file: File): IntArray? {
+        return keptSegmentsByPath.remove(file.absolutePath)
+    }
+
+    /**
+     * Writer stage of the recording pipeline: drains [ring] into [sink] until the capture
+     * stage calls [PcmBlockRingBuffer.finish] and every queued block has been written,
+     * then closes the sink, which finalises the file header.
+     *
+     * When a block carries a part boundary the writer finalises the current file, opens the
+     * one returned by [nextPartFileProvider] and writes the rest of the block there, so the
+     * file switch and its I/O never run on the capture path.
+     *
+     * Gaps left by skipped silence are tracked per file; when a file with gaps is finished its
+     * kept segments go to [onFileFinished] as `[start, end]` pairs in milliseconds of the
+     * file's capture timeline.
+     */
+    internal class PcmWriter(
+        private var sink: PcmSink,
+        private var outputFile: File,
+        private val ring: PcmBlockRingBuffer,
+        private val nextPartFileProvider: (() -> File?)?,
+        private val bytesPerSecond: Int,
+        private val openSink: (File) -> PcmSink,
+        private val onFileFinished: (file: File, keptSegments: IntArray) -> Unit,
+        private val onPartCompleted: (partFile: File, nextPartFile: File, nextPartStartBytes: Long) -> Unit,
+    ) {
+        @Volatile var isFailed: Boolean = false
+            private set
+
+        /** True if the next part could not be opened; the last part was saved and writing stopped. */
+        @Volatile var isRolloverFailed: Boolean = false
+            private set
+
+        private var isSinkOpen: Boolean = true
+
+        /** Position in the session timeline, including skipped silence. */
+        private var sessionTimelineBytes: Long = 0L
+
+        /** Position in the current file's capture timeline, including skipped silence. */
+        private var fileTimelineBytes: Long = 0L
+        private var segmentStartBytes: Long = 0L
+        private val keptSegments = ArrayList<Int>()
+        private var hasSkippedSilence = false
+
+        suspend fun drain() {
+            try {
+                while (true) {
+                    val block = ring.readableBlock()
+                    if (block == null) {
+                        // Check finish flag before the emptiness re-check so the last block is not missed.
+                        if (ring.isFinished && ring.readableBlock() == null) break
+                        delay(WRITER_IDLE_DELAY_MILLS)
+                        continue
+                    }
+                    val length = ring.readableLength()
+                    val partBoundary = ring.readablePartBoundary()
+                    skip(ring.readableSkippedBytesBefore())
+                    if (isRolloverFailed) {
+                        // Nowhere to write; discard until the capture stage stops.
+                    } else if (partBoundary == PcmBlockRingBuffer.NO_PART_BOUNDARY) {
+                        write(block, 0, length)
+                    } else {
+                        write(block, 0, partBoundary)
+                        if (switchToNextPart()) {
+                            write(block, partBoundary, length - partBoundary)
+                        }
+                    }
+                    ring.commitRead()
+                }
+                skip(ring.trailingSkippedBytes)
+                if (isSinkOpen) {
+                    isSinkOpen = false
+                    sink.close()
+                    finishFile()
+                }
+            } catch (e: IOException) {
+                Timber.e(e, "Error writing PCM data")
+                isFailed = true
+                if (isSinkOpen) {
+                    isSinkOpen = false
+                    sink.closeQuietly()
+                }
+            }
+        }
+
+        private fun write(block: ByteArray, offset: Int, length: Int) {
+            if (length > 0) {
+                sink.write(block, offset, length)
+                sessionTimelineBytes += length
+                fileTimelineBytes += length
+            }
+        }
+
+        private fun skip(bytes: Long) {
+            if (bytes <= 0L) return
+            addKeptSegment()
+            sessionTimelineBytes += bytes
+            fileTimelineBytes += bytes
+            segmentStartBytes = fileTimelineBytes
+            hasSkippedSilence = true
+        }
+
+        private fun addKeptSegment() {
+            if (fileTimelineBytes > segmentStartBytes) {
+                keptSegments.add((segmentStartBytes * 1000L / bytesPerSecond).toInt())
+                keptSegments.add((fileTimelineBytes * 1000L / bytesPerSecond).toInt())
+            }
+        }
+
+        /** Reports the kept segments of the file just closed and starts a new timeline. */
+        private fun finishFile() {
+            if (hasSkippedSilence) {
+                addKeptSegment()
+                onFileFinished(outputFile, keptSegments.toIntArray())
+            }
+            keptSegments.clear()
+            fileTimelineBytes = 0L
+            segmentStartBytes = 0L
+            hasSkippedSilence = false
+        }
+
+        /** Closes the current part and opens the next one. Returns false if it can't be opened. */
+        private fun switchToNextPart(): Boolean {
+            isSinkOpen = false
+            sink.close()
+            finishFile()
+            val partFile = outputFile
+            val nextFile = nextPartFileProvider?.invoke()
+            val nextSink = try {
+                nextFile?.let(openSink)
+            } catch (e: IOException) {
+                Timber.e(e, "Failed to open recording output for the next part")
+                null
+            }
+            if (nextFile == null || nextSink == null) {
+                isRolloverFailed = true
+                return false
+            }
+            sink = nextSink
+            outputFile = nextFile
+            isSinkOpen = true
+            onPartCompleted(partFile, nextFile, sessionTimelineBytes)
+            return true
+        }
+
+        companion object {
+            private const val WRITER_IDLE_DELAY_MILLS = RECORDING_VISUALIZATION_INTERVAL_NEW / 2L
+        }
+    }
+
+    private fun calculateAmplitude(buffer: ByteArray, bytesRead: Int): Int {
+        if (bytesRead <= 0) return 0
+        val sum = buffer.sumOfAmplitudes(bytesRead)
+        return (sum / (bytesRead / 16 + 1)).toInt()
+    }
+
+    private fun emitEvent(event: RecorderEvent) {
+        events.send(event)
+    }
+
+    private fun startProgressTicks() {
+        progressJob?.cancel()
+        progressJob = coroutineScope.launch {
+            recordingTicker.ticks.collect { readBufferedProgress() }
+        }
+    }
+
+    private fun stopProgressTicks() {
+        progressJob?.cancel()
+        progressJob = null
+    }
+
+    private fun readBufferedProgress() {
+        // Cancelling the collector doesn't stop a tick that is already being handled; skip
+        // stale ticks so a late progress event can't flip state back to RECORDING after stop.
+        if (!_isRecording || _isPaused) return
+        val currentDuration = durationMills
+        // Skip if durationMills hasn't changed since the last emission — this prevents duplicate
+        // events when the timer fires faster than the AudioRecord buffer fills (~40 ms/buffer).
+        if (currentDuration == lastEmittedDurationMills) return
+        var amp = NO_AMPLITUDE
+        synchronized(amplitudesBuffer) {
+            val bufferSize = amplitudesBuffer.size()
+            if (bufferSize > 0) {
+                lastEmittedDurationMills = currentDuration
+                amp = amplitudesBuffer.get(bufferSize - 1)
+                if (amp == 0) amp = lastNonZeroAmplitude
+                else lastNonZeroAmplitude = amp
+                amplitudesBuffer.clear()
+                amplitudesBuffer.add(amp)
+            }
+        }
+        // Outside the lock so a slow listener never blocks the capture loop.
+        if (amp != NO_AMPLITUDE) publishProgress(currentDuration, amp)
+    }
+
+    private fun publishProgress(durationMills: Long, amplitude: Int) {
+        // Listener avoids allocating and queueing an event every tick.
+        val listener = progressListener
+        if (listener != null) {
+            listener.onRecordingProgress(durationMills, amplitude)
+        } else {
+            emitEvent(RecorderEvent.OnRecordingProgress(durationMills = durationMills, amplitude = amplitude))
+        }
+    }
+
+    override fun setProgressListener(listener: RecordingProgressListener?) {
+        progressListener = listener
+    }
+}
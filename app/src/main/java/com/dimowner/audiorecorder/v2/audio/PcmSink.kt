@@ -0,0 +1,35 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import java.io.Closeable
+import java.io.IOException
+
+/**
+ * Destination of the 16-bit little-endian interleaved PCM captured by [PcmRecorderBase].
+ *
+ * [close] finalises the file (header, sizes, checksums). Implementations are owned by the
+ * single writer stage of a recording and don't need to be thread-safe.
+ */
+interface PcmSink : Closeable {
+
+    /** Appends [length] bytes of PCM from [src] starting at [offset]. */
+    @Throws(IOException::class)
+    fun write(src: ByteArray, offset: Int, length: Int)
+
+    /** Like [close] but logs instead of throwing; used on error paths. */
+    fun closeQuietly()
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.launch
+
+/**
+ * Delivers [RecorderEvent]s to [events] in the order [send] was called, from any thread.
+ *
+ * Events go through one unbounded channel drained by a single coroutine, so an event sent
+ * after another is also emitted after it, whatever dispatcher [coroutineScope] uses. E.g.
+ * [RecorderEvent.OnPartCompleted] always reaches collectors before the
+ * [RecorderEvent.OnStopRecording] that follows it.
+ */
+internal class RecorderEventQueue(coroutineScope: CoroutineScope) {
+
+    private val queue = Channel<RecorderEvent>(Channel.UNLIMITED)
+    private val _events = MutableSharedFlow<RecorderEvent>()
+
+    val events: SharedFlow<RecorderEvent> = _events.asSharedFlow()
+
+    init {
+        coroutineScope.launch {
+            for (event in queue) {
+                _events.emit(event)
+            }
+        }
+    }
+
+    /** Queues [event] without suspending. */
+    fun send(event: RecorderEvent) {
+        queue.trySend(event)
+    }
+}
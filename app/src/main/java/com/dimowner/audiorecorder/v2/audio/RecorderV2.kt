@@ -18,16 +18,95 @@ interface RecorderV2 {
     fun resumeRecording(): Boolean
     fun pauseRecording(): Boolean
     fun stopRecording(): Boolean
+
+    /**
+     * Enables gapless part rollover for the next [startRecording]: when
+     * `maxRecordingDurationMills` is reached the recorder keeps the capture device open and
+     * continues in the file returned by [provider], emitting [RecorderEvent.OnPartCompleted]
+     * instead of stopping with [RecorderEvent.OnMaxDurationReached]. [provider] may return
+     * null if no file can be created; the recording then stops as before.
+     *
+     * Returns false if this recorder can't switch output files without a restart.
+     */
+    fun setNextPartFileProvider(provider: (() -> File?)?): Boolean = false
+
+    /**
+     * Sets where a dual-output recorder writes the compressed copy of each output file
+     * (including every rollover part). [provider] receives the master file and may return null,
+     * in which case that file is recorded without a copy.
+     *
+     * Returns false if this recorder writes a single output.
+     */
+    fun setCompanionFileProvider(provider: ((masterFile: File) -> File?)?): Boolean = false
+
+    /**
+     * Enables skipping silent stretches in the next recordings, or disables it with null.
+     * Recording progress keeps counting skipped time; the gaps of each file are reported by
+     * [takeKeptSegments].
+     *
+     * Returns false if this recorder always writes everything it captures.
+     */
+    fun setSilenceSkipping(config: SilenceSkipConfig?): Boolean = false
+
+    /**
+     * Returns and forgets the kept-segment map of a finished [file]: `[start, end]` pairs in
+     * milliseconds of the file's capture timeline. Null if nothing was skipped in [file].
+     */
+    fun takeKeptSegments(file: File): IntArray? = null
+
+    /**
+     * Returns and forgets how many milliseconds a dual-output recorder dropped from the
+     * compressed copy [file] because its encoder fell behind. The copy keeps the master's
+     * timeline, so dropped audio is a silent gap rather than a shift. 0 if nothing was dropped.
+     */
+    fun takeDroppedMills(file: File): Long = 0L
+
+    /**
+     * Delivers progress ticks straight to [listener] on the recorder's progress thread
+     * instead of emitting a [RecorderEvent.OnRecordingProgress] per tick. Pass null to go
+     * back to events.
+     */
+    fun setProgressListener(listener: RecordingProgressListener?)
+
     val isRecording: Boolean
     val isPaused: Boolean
 }
 
+/**
+ * Receives recording progress every [com.dimowner.audiorecorder.AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW]
+ * ms. Called on the recorder's progress thread, so implementations must not block and
+ * should not allocate.
+ */
+fun interface RecordingProgressListener {
+    fun onRecordingProgress(durationMills: Long, amplitude: Int)
+}
+
 sealed class RecorderEvent {
     object OnStartRecording: RecorderEvent()
     object OnPauseRecording: RecorderEvent()
     object OnResumeRecording: RecorderEvent()
     data class OnRecordingProgress(val durationMills: Long, val amplitude: Int): RecorderEvent()
+    /**
+     * Capture buffer statistics of a finished recording session, emitted right before
+     * [OnStopRecording] or [OnMaxDurationReached] by recorders that buffer PCM between
+     * capture and disk writes. [overrunCount] > 0 means captured blocks were dropped.
+     */
+    data class OnCaptureBufferStats(
+        val overrunCount: Long,
+        val highWaterMark: Int,
+        val capacity: Int,
+    ): RecorderEvent()
     object OnStopRecording: RecorderEvent()
     object OnMaxDurationReached: RecorderEvent()
+    /**
+     * A part of a recording split by max duration was finalised in [partFile] while capture
+     * continued without a gap into [nextPartFile]. [nextPartStartMills] is the position of
+     * the part boundary in the session timeline used by [OnRecordingProgress].
+     */
+    data class OnPartCompleted(
+        val partFile: File,
+        val nextPartFile: File,
+        val nextPartStartMills: Long,
+    ): RecorderEvent()
     data class OnError(val exception: AppException): RecorderEvent()
 }
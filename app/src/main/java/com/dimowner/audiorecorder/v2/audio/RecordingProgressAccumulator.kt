@@ -0,0 +1,158 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import com.dimowner.audiorecorder.AppConstants
+
+/**
+ * Per-tick amplitude bookkeeping of [AudioRecordingService], kept free of Android types
+ * so it can run in plain JVM tests.
+ *
+ * Recorders deliver progress through [RecordingProgressListener] every
+ * [AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW] ms. [onProgress] appends the new
+ * samples to the primitive [liveAmplitudes] window and to [fullSession], and stores the
+ * latest values in volatile fields. At steady state a tick allocates nothing, so hours of
+ * recording produce no garbage on this path.
+ *
+ * @param windowSize number of samples kept for the live (sliding-window) waveform.
+ * @param fullSession full-session accumulator persisted as the initial waveform of a record.
+ * @param amplitudeScale scaling applied to samples of the live waveform only.
+ */
+class RecordingProgressAccumulator(
+    windowSize: Int,
+    val fullSession: RecordingWaveformBuffer,
+    private val amplitudeScale: Float,
+) {
+
+    val liveAmplitudes = LiveAmplitudeBuffer(windowSize)
+
+    /**
+     * Raw amplitudes of the newest samples, indexed by sample position modulo the size, so
+     * that samples added past a part boundary can be moved to the next part by [startNextPart].
+     */
+    private val recentAmplitudes = IntArray(windowSize)
+
+    private var snapshotVersion = -1L
+
+    /**
+     * Live amplitudes copied by the last [snapshotLiveAmplitudes] that returned true. A new
+     * array every time, so a published snapshot is never changed while the UI draws it.
+     */
+    var liveSnapshot: IntArray = intArrayOf()
+        private set
+
+    /** [LiveAmplitudeBuffer.totalCount] at the time of [liveSnapshot]. */
+    var liveSnapshotTotalCount: Int = 0
+        private set
+
+    /** Duration of the current part as of the last tick. */
+    @Volatile var durationMills: Long = 0L
+        private set
+
+    /** Raw amplitude of the last tick. */
+    @Volatile var amplitude: Int = 0
+        private set
+
+    /**
+     * Position of the current part in the recorder's session timeline. Non-zero after a
+     * gapless part rollover, where recorder progress keeps counting across parts.
+     */
+    @Volatile var partStartMills: Long = 0L
+        private set
+
+    /**
+     * Consumes one progress tick and returns the duration of the current part.
+     * [sessionDurationMills] comes straight from the recorder.
+     */
+    @Synchronized
+    fun onProgress(sessionDurationMills: Long, amplitude: Int): Long {
+        // Late progress of a part finished by a gapless rollover is clamped to the new part.
+        val durationMills = (sessionDurationMills - partStartMills).coerceAtLeast(0)
+
+        // Derive sample count from durationMills so waveform stays in sync with the
+        // recorder's clock (the single source of truth) instead of counting timer ticks
+        // which drift due to scheduling jitter.
+        val newSampleCount = (durationMills / AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW).toInt()
+        val samplesToAdd = (newSampleCount - liveAmplitudes.totalCount).coerceAtLeast(0)
+        val scaledAmplitude = (amplitude * amplitudeScale).toInt()
+
+        // If the timer skipped ticks, fill the gap by repeating the current amplitude
+        // so the waveform buffer stays aligned with the time-derived sample count.
+        repeat(samplesToAdd) {
+            append(amplitude, scaledAmplitude)
+        }
+        this.durationMills = durationMills
+        this.amplitude = amplitude
+        return durationMills
+    }
+
+    private fun append(amplitude: Int, scaledAmplitude: Int) {
+        recentAmplitudes[liveAmplitudes.totalCount % recentAmplitudes.size] = amplitude
+        liveAmplitudes.append(scaledAmplitude)
+        // Feed the full-session buffer with raw (unscaled) amplitude values so the
+        // persisted waveform stays in the 0–32767 range expected by WaveformStaticWidget.
+        fullSession.add(amplitude)
+    }
+
+    /**
+     * Ends the current part at [nextPartStartMills] of the session timeline and returns the
+     * full-session waveform of the finished part, like [RecordingWaveformBuffer.downsampleToIntArray].
+     *
+     * Progress keeps running while the part switch is being handled, so samples past the
+     * boundary may already have been added. They are cut from the finished part and carried
+     * into the next one, up to the live window size; the next tick fills in any older ones.
+     */
+    @Synchronized
+    fun startNextPart(nextPartStartMills: Long, output: RecordingWaveformBuffer.Output): IntArray {
+        val boundarySampleCount = ((nextPartStartMills - partStartMills) /
+                AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW).toInt().coerceAtLeast(0)
+        val totalCount = liveAmplitudes.totalCount
+        val finishedAmps = fullSession.downsampleToIntArray(output, boundarySampleCount.toLong())
+        val carryCount = (totalCount - boundarySampleCount).coerceIn(0, recentAmplitudes.size)
+        val carried = IntArray(carryCount) { recentAmplitudes[(totalCount - carryCount + it) % recentAmplitudes.size] }
+        reset(nextPartStartMills)
+        for (amplitude in carried) {
+            append(amplitude, (amplitude * amplitudeScale).toInt())
+        }
+        return finishedAmps
+    }
+
+    /**
+     * Copies the live window into [liveSnapshot] for publishing, or returns false when no
+     * sample changed since the last copy, so an unobserved or idle window costs nothing.
+     * Called on the progress thread, the same one as [onProgress].
+     */
+    fun snapshotLiveAmplitudes(): Boolean {
+        synchronized(liveAmplitudes) {
+            val version = liveAmplitudes.version
+            if (version == snapshotVersion) return false
+            liveSnapshot = liveAmplitudes.toIntArray()
+            liveSnapshotTotalCount = liveAmplitudes.totalCount
+            snapshotVersion = version
+            return true
+        }
+    }
+
+    /** Clears all samples; the next part starts at [partStartMills] of the session timeline. */
+    @Synchronized
+    fun reset(partStartMills: Long = 0L) {
+        this.partStartMills = partStartMills
+        liveAmplitudes.reset()
+        fullSession.reset()
+        durationMills = 0L
+        amplitude = 0
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import com.dimowner.audiorecorder.AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.stateIn
+import kotlinx.coroutines.plus
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Single progress clock shared by all [RecorderV2] implementations.
+ *
+ * [ticks] is a conflated [StateFlow] fed by one coroutine that ticks every [intervalMills]
+ * on a serial view of [Dispatchers.Default], so starting or resuming a recording no longer
+ * creates a `java.util.Timer` thread. The ticker only runs while [ticks] has subscribers:
+ * recorders collect it while recording and cancel the collector on pause and stop, which
+ * stops the clock and lets the CPU sleep.
+ *
+ * Each tick carries a counter that never repeats, so no tick is swallowed by the
+ * [StateFlow] equality check. A slow collector only misses intermediate ticks.
+ */
+@Singleton
+class RecordingTicker internal constructor(
+    scope: CoroutineScope,
+    dispatcher: CoroutineDispatcher,
+    private val intervalMills: Long,
+) {
+
+    @Inject
+    constructor(scope: CoroutineScope) : this(
+        scope = scope,
+        dispatcher = Dispatchers.Default.limitedParallelism(1),
+        intervalMills = RECORDING_VISUALIZATION_INTERVAL_NEW.toLong(),
+    )
+
+    /** Only touched by the ticker coroutine, which runs on a serial dispatcher. */
+    private var tickCount: Long = 0L
+
+    val ticks: StateFlow<Long> = flow {
+        while (true) {
+            emit(++tickCount)
+            delay(intervalMills)
+        }
+    }.stateIn(scope + dispatcher, SharingStarted.WhileSubscribed(), tickCount)
+}
@@ -15,32 +15,37 @@
  */
 package com.dimowner.audiorecorder.v2.audio
 
+import kotlin.math.sqrt
+
 /**
  * Memory-bounded full-session amplitude accumulator for V2 recording.
  *
  * Unlike the sliding-window [recordingAmplitudes] buffer in [AudioRecordingService]
  * (used only for the live waveform display), this buffer captures the *entire* recording
- * session while staying bounded in memory. When the buffer reaches
- * [HALVING_CAP_MULTIPLIER] × [targetSize] samples a [compressUniformly] pass fires,
- * resampling the **entire original-sample timeline** down to [cap]/2 slots so every
- * slot always represents an equal time fraction of the recording up to that point.
+ * session while staying bounded in memory. Samples are folded into buckets of
+ * [bucketWidth] consecutive samples, each keeping the max, sum and sum of squares of its
+ * samples. When [HALVING_CAP_MULTIPLIER] × [targetSize] buckets are in use,
+ * [compressUniformly] merges them in pairs and doubles [bucketWidth].
  *
- * ### Why uniform resampling matters
- * A naïve pair-average halve produces slots with non-equal time widths: previously
- * compressed slots cover many original samples each, while freshly-added raw slots
- * cover only one. Treating them as uniform in [downsampleToIntArray] would shrink
- * the early part of the waveform and stretch the recent part. The fix is to always
- * sample in **original-sample-index space** (via [getAmplitudeAtOriginalIndex]) rather
- * than in buffer-slot space, both during compression and during final downsampling.
+ * ### Why fixed-width buckets
+ * Every bucket except the last, still open one covers exactly [bucketWidth] original
+ * samples, so buckets always map to equal time fractions of the recording and the
+ * original-sample timeline is recovered by plain index arithmetic. Merging pairs of such
+ * buckets is exact: the max of the merged bucket is the max of both and sums add up, so
+ * peaks survive any number of compressions instead of being averaged away.
  *
  * At recording stop, call [downsampleToIntArray] to obtain a [targetSize]-element
  * [IntArray] suitable for persisting as the initial `amps` on a [Record]. This gives
  * the UI an immediate real waveform to display before [DecodeService] replaces it with
  * the fully-decoded version.
  *
- * **Memory bound:** worst case ≈ [HALVING_CAP_MULTIPLIER] × [targetSize] boxed integers.
- * For a typical 400 dp screen [targetSize] ≈ 600, so the cap is ≈ 2 400 elements (~38 KB)
- * regardless of recording length.
+ * **Cost:** [add] is O(1) amortised: a compression pass is O([targetSize]) and happens once
+ * per [HALVING_CAP_MULTIPLIER]/2 × [targetSize] buckets filled. [downsampleToIntArray] is
+ * O([targetSize]).
+ *
+ * **Memory bound:** one `IntArray` and two `LongArray`s of [HALVING_CAP_MULTIPLIER] ×
+ * [targetSize] elements. For a typical 400 dp screen [targetSize] ≈ 600, so the cap is
+ * ≈ 2 400 buckets (~48 KB) regardless of recording length, and [add] never allocates.
  *
  * **Thread-safety:** [add], [reset], and [downsampleToIntArray] are individually
  * `@Synchronized` and may be called from any thread. [compressUniformly] is internal
@@ -52,35 +57,44 @@ package com.dimowner.audiorecorder.v2.audio
  */
 class RecordingWaveformBuffer(private val targetSize: Int) {
 
+    /** How the samples of one output bin of [downsampleToIntArray] are combined. */
+    enum class Output {
+        /** Mean amplitude, smooth but short peaks are averaged away. */
+        AVERAGE,
+        /** Loudest sample, keeps short transients visible. */
+        PEAK,
+        /** Root mean square, follows perceived loudness. */
+        RMS,
+    }
+
     companion object {
         /**
-         * When the sample count reaches this multiple of [targetSize] a uniform
-         * compression pass is triggered. After compression the buffer holds [cap]/2 slots,
-         * giving headroom for the next batch of raw samples.
+         * When the bucket count reaches this multiple of [targetSize] a compression pass
+         * is triggered. After compression the buffer holds [cap]/2 buckets, giving
+         * headroom for the next batch of samples.
          */
         internal const val HALVING_CAP_MULTIPLIER = 4
     }
 
-    private val samples = ArrayList<Int>(targetSize * HALVING_CAP_MULTIPLIER)
     private val cap: Int = targetSize * HALVING_CAP_MULTIPLIER
+    private val peaks = IntArray(cap)
+    private val sums = LongArray(cap)
+    private val sumSquares = LongArray(cap)
 
-    /** Total number of raw amplitude samples ever passed to [add] since the last [reset]. */
-    private var totalSamplesAdded: Int = 0
+    /** Number of buckets in use, the last one may be partly filled. */
+    private var bucketCount: Int = 0
 
-    /**
-     * Value of [totalSamplesAdded] captured immediately after the most recent
-     * [compressUniformly] pass. Zero if no compression has occurred yet.
-     *
-     * Together with [cap]/2 this defines the two regions of the buffer:
-     * - **Compressed region** slots `0..[cap]/2-1`: uniformly cover original samples
-     *   `0..[totalSamplesAtLastCompression]-1`.
-     * - **Raw region** slots `[cap]/2..[samples.size]-1`: one slot per original sample,
-     *   covering `[totalSamplesAtLastCompression]..[totalSamplesAdded]-1`.
-     */
-    private var totalSamplesAtLastCompression: Int = 0
+    /** Original samples per bucket, a power of two. */
+    private var bucketWidth: Int = 1
+
+    /** Samples folded into the last bucket. */
+    private var lastBucketFill: Int = 0
 
-    /** Number of slots currently held in the buffer. */
-    fun size(): Int = samples.size
+    /** Total number of raw amplitude samples ever passed to [add] since the last [reset]. */
+    private var totalSamplesAdded: Long = 0
+
+    /** Number of buckets currently held in the buffer. */
+    fun size(): Int = bucketCount
 
     /**
      * Appends [amplitude] (raw 0–32 767 from MediaRecorder.getMaxAmplitude) and triggers
@@ -88,9 +102,21 @@ class RecordingWaveformBuffer(private val targetSize: Int) {
      */
     @Synchronized
     fun add(amplitude: Int) {
-        samples.add(amplitude)
+        if (bucketCount == 0 || lastBucketFill == bucketWidth) {
+            peaks[bucketCount] = 0
+            sums[bucketCount] = 0
+            sumSquares[bucketCount] = 0
+            bucketCount++
+            lastBucketFill = 0
+        }
+        val index = bucketCount - 1
+        if (amplitude > peaks[index]) peaks[index] = amplitude
+        sums[index] += amplitude
+        sumSquares[index] += amplitude.toLong() * amplitude
+        lastBucketFill++
         totalSamplesAdded++
-        if (samples.size >= cap) {
+        // Compress as soon as the last bucket is in use, so the next one always has room.
+        if (bucketCount == cap) {
             compressUniformly()
         }
     }
@@ -98,9 +124,10 @@ class RecordingWaveformBuffer(private val targetSize: Int) {
     /** Clears all accumulated samples and resets the timeline counters. */
     @Synchronized
     fun reset() {
-        samples.clear()
+        bucketCount = 0
+        bucketWidth = 1
+        lastBucketFill = 0
         totalSamplesAdded = 0
-        totalSamplesAtLastCompression = 0
     }
 
     /**
@@ -108,88 +135,93 @@ class RecordingWaveformBuffer(private val targetSize: Int) {
      * using the **original-sample timeline** as the reference axis:
      *
      * - Fewer total samples than [targetSize]: left-aligned, remainder zero-filled.
-     * - Otherwise: equal-width averaging windows of `totalSamplesAdded / targetSize`
-     *   original samples are mapped to output bins via [getAmplitudeAtOriginalIndex],
-     *   which correctly handles the mixed compressed+raw buffer structure.
+     * - Otherwise: each output bin combines, as selected by [output], the buckets starting
+     *   within its `totalSamplesAdded / targetSize` share of the original samples.
+     *
+     * Only the first [sampleCount] samples are used, e.g. up to a part boundary that
+     * progress already ran past; this is rounded up to whole buckets.
      *
      * Output values are in the 0–32 767 range, matching
      * [AppConstantsV2.WAVEFORM_AMPLITUDE_MAX_VALUE].
      * [adjustWaveformHeights] is applied at display time by HomeViewModel / Mapper.
      */
     @Synchronized
-    fun downsampleToIntArray(): IntArray {
+    fun downsampleToIntArray(output: Output = Output.AVERAGE, sampleCount: Long = Long.MAX_VALUE): IntArray {
         val result = IntArray(targetSize)
-        if (totalSamplesAdded == 0) return result
+        val total = minOf(sampleCount, totalSamplesAdded)
+        if (total <= 0L) return result
 
-        if (totalSamplesAdded <= targetSize) {
-            // Short recording: copy the raw slots as-is; rest stays zero.
-            for (i in 0 until totalSamplesAdded) {
-                result[i] = getAmplitudeAtOriginalIndex(i)
+        if (total <= targetSize && bucketWidth == 1) {
+            // Short recording: never compressed, one bucket per sample; rest stays zero.
+            for (i in 0 until total.toInt()) {
+                result[i] = peaks[i]
             }
             return result
         }
 
-        // General case: iterate over original-sample-index space so that every output
-        // bin covers an equal duration of the recording regardless of compression state.
-        val scale = totalSamplesAdded.toFloat() / targetSize.toFloat()
-        val step = scale.toInt().coerceAtLeast(1)
-        for (i in 0 until targetSize) {
-            var sum = 0
-            for (j in 0 until step) {
-                val origIdx = (i * scale + j).toInt().coerceIn(0, totalSamplesAdded - 1)
-                sum += getAmplitudeAtOriginalIndex(origIdx)
+        // General case: more buckets than output bins, so every bin gets at least one.
+        val usedBuckets = ((total + bucketWidth - 1) / bucketWidth).toInt().coerceAtMost(bucketCount)
+        var bin = 0
+        var peak = 0
+        var sum = 0L
+        var squares = 0L
+        var count = 0L
+        for (i in 0 until usedBuckets) {
+            val start = i.toLong() * bucketWidth
+            val bucketBin = (start * targetSize / total).toInt()
+            if (bucketBin != bin) {
+                result[bin] = combine(output, peak, sum, squares, count)
+                bin = bucketBin
+                peak = 0
+                sum = 0
+                squares = 0
+                count = 0
             }
-            result[i] = sum / step
+            if (peaks[i] > peak) peak = peaks[i]
+            sum += sums[i]
+            squares += sumSquares[i]
+            count += if (i == bucketCount - 1) lastBucketFill.toLong() else bucketWidth.toLong()
         }
+        result[bin] = combine(output, peak, sum, squares, count)
         return result
     }
 
     /**
-     * Resamples the entire buffer — which may be a mix of previously-compressed slots
-     * and freshly-added raw slots — down to [cap]/2 uniformly-spaced slots by iterating
-     * in **original-sample-index space** via [getAmplitudeAtOriginalIndex].
-     *
-     * After this call every slot covers an equal `totalSamplesAdded / (cap/2)` fraction
-     * of the original recording timeline, eliminating the time-width mismatch that a
-     * naïve buffer-slot-space average would produce.
+     * Merges buckets in pairs so each one covers twice as many original samples, leaving
+     * [cap]/2 buckets when the buffer was full. A partly filled last bucket stays last and
+     * the merged buckets keep their exact max, sum and sum of squares.
      */
     internal fun compressUniformly() {
-        val newSize = cap / 2
-        val scale = totalSamplesAdded.toFloat() / newSize.toFloat()
-        val step = scale.toInt().coerceAtLeast(1)
-        val compressed = ArrayList<Int>(newSize)
-        for (i in 0 until newSize) {
-            var sum = 0
-            for (j in 0 until step) {
-                val origIdx = (i * scale + j).toInt().coerceIn(0, totalSamplesAdded - 1)
-                sum += getAmplitudeAtOriginalIndex(origIdx)
+        if (bucketCount == 0) return
+        val lastFill = (bucketCount - 1).toLong() * bucketWidth + lastBucketFill
+        var target = 0
+        var i = 0
+        while (i < bucketCount) {
+            var peak = peaks[i]
+            var sum = sums[i]
+            var squares = sumSquares[i]
+            if (i + 1 < bucketCount) {
+                if (peaks[i + 1] > peak) peak = peaks[i + 1]
+                sum += sums[i + 1]
+                squares += sumSquares[i + 1]
             }
-            compressed.add(sum / step)
+            peaks[target] = peak
+            sums[target] = sum
+            sumSquares[target] = squares
+            target++
+            i += 2
         }
-        samples.clear()
-        samples.addAll(compressed)
-        totalSamplesAtLastCompression = totalSamplesAdded
+        bucketCount = target
+        bucketWidth *= 2
+        lastBucketFill = (lastFill - (bucketCount - 1).toLong() * bucketWidth).toInt()
     }
 
-    /**
-     * Returns the amplitude for logical original-sample index [origIdx] by mapping it
-     * into the correct physical buffer region:
-     *
-     * - If [origIdx] falls before [totalSamplesAtLastCompression] it is in the compressed
-     *   region: scale to a slot in `0..[cap]/2-1`.
-     * - Otherwise it is in the raw region: offset by the number of compressed slots.
-     */
-    private fun getAmplitudeAtOriginalIndex(origIdx: Int): Int {
-        val compressedSlotCount = if (totalSamplesAtLastCompression > 0) cap / 2 else 0
-        return if (totalSamplesAtLastCompression > 0 && origIdx < totalSamplesAtLastCompression) {
-            val bufIdx = (origIdx.toLong() * compressedSlotCount / totalSamplesAtLastCompression)
-                .toInt()
-                .coerceIn(0, compressedSlotCount - 1)
-            samples[bufIdx]
-        } else {
-            val bufIdx = compressedSlotCount + (origIdx - totalSamplesAtLastCompression)
-            if (bufIdx < samples.size) samples[bufIdx] else 0
+    private fun combine(output: Output, peak: Int, sum: Long, squares: Long, count: Long): Int {
+        if (count == 0L) return 0
+        return when (output) {
+            Output.AVERAGE -> (sum / count).toInt()
+            Output.PEAK -> peak
+            Output.RMS -> sqrt(squares.toDouble() / count).toInt()
         }
     }
 }
-
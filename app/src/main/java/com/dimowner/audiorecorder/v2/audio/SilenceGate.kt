@@ -0,0 +1,51 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+/**
+ * Silence skipping settings of a recording.
+ *
+ * @param thresholdAmplitude chunks with an amplitude below this are considered silent. Uses
+ * the scale of the amplitudes reported in [RecorderEvent.OnRecordingProgress].
+ * @param hangoverMills how long the input must stay silent before writing stops, so pauses
+ * between words are kept.
+ */
+data class SilenceSkipConfig(
+    val thresholdAmplitude: Int,
+    val hangoverMills: Long,
+)
+
+/**
+ * Voice-activity gate of the capture loop: decides per captured chunk whether it is written.
+ *
+ * Speech is always kept, and so is silence until it has lasted longer than
+ * [SilenceSkipConfig.hangoverMills]. The first chunk above the threshold reopens the gate.
+ * Keeps no history beyond a counter, so it costs nothing per chunk.
+ */
+class SilenceGate(private val config: SilenceSkipConfig) {
+
+    private var silentMills = 0L
+
+    /** Returns true if the chunk with [amplitude] lasting [chunkMills] should not be written. */
+    fun isSkipped(amplitude: Int, chunkMills: Long): Boolean {
+        if (amplitude >= config.thresholdAmplitude) {
+            silentMills = 0L
+            return false
+        }
+        silentMills += chunkMills
+        return silentMills > config.hangoverMills
+    }
+}
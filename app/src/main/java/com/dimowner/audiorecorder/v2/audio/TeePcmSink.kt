@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import timber.log.Timber
+import java.io.IOException
+
+/**
+ * Writes the same PCM to a [primary] and a [secondary] sink.
+ *
+ * The primary output is the recording of record: its errors propagate as usual. A failing
+ * [secondary] is logged, closed and skipped from then on, so a broken companion file never
+ * interrupts the main recording.
+ */
+class TeePcmSink(
+    private val primary: PcmSink,
+    private val secondary: PcmSink,
+) : PcmSink {
+
+    private var isSecondaryActive = true
+
+    override fun write(src: ByteArray, offset: Int, length: Int) {
+        primary.write(src, offset, length)
+        if (isSecondaryActive) {
+            try {
+                secondary.write(src, offset, length)
+            } catch (e: IOException) {
+                Timber.e(e, "Secondary output failed, continuing with the primary only")
+                isSecondaryActive = false
+                secondary.closeQuietly()
+            }
+        }
+    }
+
+    override fun close() {
+        try {
+            primary.close()
+        } finally {
+            if (isSecondaryActive) {
+                isSecondaryActive = false
+                secondary.closeQuietly()
+            }
+        }
+    }
+
+    override fun closeQuietly() {
+        primary.closeQuietly()
+        if (isSecondaryActive) {
+            isSecondaryActive = false
+            secondary.closeQuietly()
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import kotlinx.coroutines.CoroutineScope
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * WAV recorder that also writes an AAC (M4a) copy of every part from the same capture.
+ *
+ * The companion file for each WAV part comes from the provider set with
+ * [setCompanionFileProvider]. The copy is best-effort: if it can't be created or its encoder
+ * falls behind, only the copy suffers and the WAV recording continues untouched. How much a
+ * copy dropped is reported by [takeDroppedMills].
+ */
+@Singleton
+class TeeRecorderV2 @Inject constructor(
+    coroutineScope: CoroutineScope,
+    recordingTicker: RecordingTicker,
+) : PcmRecorderBase(coroutineScope, recordingTicker) {
+
+    override val recordingLogTag: String = "WAV+AAC "
+
+    @Volatile
+    private var companionFileProvider: ((masterFile: File) -> File?)? = null
+
+    /** Audio dropped from finished copies, by path, until taken with [takeDroppedMills]. */
+    private val droppedMillsByPath = ConcurrentHashMap<String, Long>()
+
+    override fun setCompanionFileProvider(provider: ((masterFile: File) -> File?)?): Boolean {
+        companionFileProvider = provider
+        return true
+    }
+
+    override fun openSink(
+        file: File,
+        sampleRate: Int,
+        channelCount: Int,
+        bitrate: Int,
+        maxRecordingDurationMills: Int,
+    ): PcmSink {
+        val wavSink = WavFileSink.openForRecording(file, sampleRate, channelCount, maxRecordingDurationMills)
+        val companionFile = companionFileProvider?.invoke(file) ?: return wavSink
+        return try {
+            TeePcmSink(
+                wavSink,
+                AacFileSink.open(
+                    companionFile, sampleRate, channelCount, bitrate,
+                    isDropWhenBehind = true,
+                    onDropped = { copy, droppedMills -> droppedMillsByPath[copy.absolutePath] = droppedMills },
+                ),
+            )
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to open AAC copy, recording WAV only")
+            wavSink
+        }
+    }
+
+    override fun takeDroppedMills(file: File): Long {
+        return droppedMillsByPath.remove(file.absolutePath) ?: 0L
+    }
+}
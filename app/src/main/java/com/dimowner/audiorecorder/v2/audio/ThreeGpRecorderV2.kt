@@ -27,7 +27,8 @@ import javax.inject.Singleton
 class ThreeGpRecorderV2 @Inject constructor(
     @ApplicationContext applicationContext: Context,
     coroutineScope: CoroutineScope,
-) : MediaRecorderBase(applicationContext, coroutineScope) {
+    recordingTicker: RecordingTicker,
+) : MediaRecorderBase(applicationContext, coroutineScope, recordingTicker) {
 
     override val recordingLogTag: String = "3GP "
 
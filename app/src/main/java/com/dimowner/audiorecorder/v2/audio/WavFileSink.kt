@@ -0,0 +1,253 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import android.system.ErrnoException
+import android.system.Os
+import android.system.OsConstants
+import timber.log.Timber
+import java.io.File
+import java.io.FileDescriptor
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+
+/**
+ * [FileChannel]-based PCM-16LE WAV writer used by [WavRecorderV2].
+ *
+ * - PCM is staged in a single reusable direct [ByteBuffer] and written in
+ *   [WRITE_BLOCK_SIZE] blocks instead of one `write` syscall per ~20 ms chunk.
+ *   The first block is shortened by the header size so every following write starts
+ *   at a block-aligned file offset.
+ * - The file is grown in [PREALLOCATION_EXTENT_SIZE] extents via `posix_fallocate`, so
+ *   multi-hour recordings do not fragment the filesystem.
+ * - [close] writes the final RIFF header through the same channel and truncates the
+ *   preallocated slack, so no second file handle is needed.
+ * - Recordings that may outgrow 4 GB reserve an 80-byte header (see
+ *   [createRf64CapableWavHeader]) and are finalised as RF64 when they do.
+ *
+ * While recording the header stays zero, exactly like the placeholder the recorder always
+ * wrote, except for its data size field. That is kept at the PCM flushed so far through a
+ * memory mapping of the header, which costs no extra write call; [BrokenRecordRestorer]
+ * trims an interrupted recording to it.
+ *
+ * Not thread-safe: a sink is owned by the single writer stage of a recording.
+ */
+class WavFileSink internal constructor(
+    file: File,
+    private val sampleRate: Int,
+    private val channelCount: Int,
+    private val isRf64Capable: Boolean,
+    private val allocateExtent: (FileDescriptor, Long, Long) -> Boolean,
+) : PcmSink {
+
+    /** 44 bytes for a plain RIFF header, 80 bytes when room for a `ds64` chunk is reserved. */
+    val headerSize: Int = if (isRf64Capable) RF64_CAPABLE_HEADER_SIZE else WAV_HEADER_SIZE
+
+    private val raf = RandomAccessFile(file, "rw")
+    private val channel: FileChannel = raf.channel
+    private val buffer: ByteBuffer = ByteBuffer.allocateDirect(WRITE_BLOCK_SIZE)
+
+    /** The placeholder header mapped into memory, see [writePlaceholderDataSize]. Null if it can't be mapped. */
+    private val placeholder: ByteBuffer?
+
+    /** File offset where the content of [buffer] will be written on the next flush. */
+    private var position: Long = headerSize.toLong()
+    private var allocatedSize: Long = 0L
+    private var isPreallocationSupported: Boolean = true
+
+    /** Number of PCM bytes accepted by [write] so far. */
+    var bytesWritten: Long = 0L
+        private set
+
+    /** Number of write syscalls issued on the channel, including the header. */
+    var writeCallCount: Int = 0
+        private set
+
+    init {
+        try {
+            channel.truncate(0)
+            val header = if (isRf64Capable) createRf64CapableWavPlaceholder() else ByteArray(WAV_HEADER_SIZE)
+            writeFully(ByteBuffer.wrap(header), 0L)
+            placeholder = mapPlaceholder()
+            // Shorten the first block so later flushes land on aligned file offsets.
+            buffer.limit(WRITE_BLOCK_SIZE - headerSize)
+        } catch (e: IOException) {
+            raf.close()
+            throw e
+        }
+    }
+
+    @Throws(IOException::class)
+    override fun write(src: ByteArray, offset: Int, length: Int) {
+        var off = offset
+        var remaining = length
+        while (remaining > 0) {
+            val n = minOf(remaining, buffer.remaining())
+            buffer.put(src, off, n)
+            off += n
+            remaining -= n
+            if (!buffer.hasRemaining()) flush()
+        }
+        bytesWritten += length
+    }
+
+    /**
+     * Flushes staged PCM, writes the final header, truncates the preallocated slack
+     * and closes the file.
+     */
+    @Throws(IOException::class)
+    override fun close() {
+        try {
+            flush()
+            val totalAudioLen = bytesWritten
+            val header = if (isRf64Capable) {
+                createRf64CapableWavHeader(
+                    totalAudioLen = totalAudioLen,
+                    sampleRate = sampleRate,
+                    channels = channelCount,
+                )
+            } else {
+                createWavHeader(
+                    totalAudioLen = totalAudioLen,
+                    totalDataLen = totalAudioLen + 36,
+                    sampleRate = sampleRate,
+                    channels = channelCount,
+                    byteRate = (sampleRate * channelCount * BYTES_PER_SAMPLE).toLong(),
+                )
+            }
+            writeFully(ByteBuffer.wrap(header), 0L)
+            channel.truncate(position)
+        } finally {
+            raf.close()
+        }
+    }
+
+    override fun closeQuietly() {
+        try {
+            close()
+        } catch (e: IOException) {
+            Timber.e(e, "Error closing WAV output")
+        }
+    }
+
+    private fun flush() {
+        buffer.flip()
+        if (buffer.hasRemaining()) {
+            ensureAllocated(position + buffer.remaining())
+            position += writeFully(buffer, position)
+            // Only after the PCM itself, so the stored size never covers unwritten bytes.
+            placeholder?.let { writePlaceholderDataSize(it, isRf64Capable, position - headerSize) }
+        }
+        buffer.clear()
+    }
+
+    private fun mapPlaceholder(): ByteBuffer? {
+        return try {
+            channel.map(FileChannel.MapMode.READ_WRITE, 0L, headerSize.toLong()).order(ByteOrder.LITTLE_ENDIAN)
+        } catch (e: IOException) {
+            // An interrupted recording is then restored with all of its preallocated slack.
+            Timber.w(e, "Failed to map the WAV header, flushed size is not tracked")
+            null
+        }
+    }
+
+    private fun writeFully(src: ByteBuffer, at: Long): Int {
+        var written = 0
+        while (src.hasRemaining()) {
+            written += channel.write(src, at + written)
+            writeCallCount++
+        }
+        return written
+    }
+
+    /** Throws [IOException] when the extent can't be reserved for lack of space. */
+    @Throws(IOException::class)
+    private fun ensureAllocated(end: Long) {
+        if (!isPreallocationSupported || end <= allocatedSize) return
+        val newSize = allocatedSize + PREALLOCATION_EXTENT_SIZE * ((end - allocatedSize) / PREALLOCATION_EXTENT_SIZE + 1)
+        if (allocateExtent(raf.fd, allocatedSize, newSize - allocatedSize)) {
+            allocatedSize = newSize
+        } else {
+            // e.g. FAT-formatted external storage. Plain appends still work.
+            isPreallocationSupported = false
+        }
+    }
+
+    companion object {
+        /** Size of the standard RIFF/WAV header (no extra chunks). */
+        const val WAV_HEADER_SIZE = 44
+
+        /** Size of a single write to the channel. Multiple of the common 4 KB page/block size. */
+        const val WRITE_BLOCK_SIZE = 256 * 1024
+
+        /** The file is grown by this many bytes at a time. */
+        const val PREALLOCATION_EXTENT_SIZE = 8L * 1024 * 1024
+
+        private const val BYTES_PER_SAMPLE = 2
+
+        /**
+         * Opens [file] for writing. Pass [isRf64Capable] when the recording may exceed the
+         * 4 GB RIFF limit; the file then switches to RF64 on [close] only if it has to.
+         */
+        @Throws(IOException::class)
+        fun open(file: File, sampleRate: Int, channelCount: Int, isRf64Capable: Boolean): WavFileSink {
+            return WavFileSink(file, sampleRate, channelCount, isRf64Capable, ::posixFallocate)
+        }
+
+        /**
+         * Opens [file] for a recording part limited to [maxRecordingDurationMills] (0 or less
+         * if unlimited). Room for an RF64 ds64 chunk is reserved only when the part can outgrow
+         * the 32-bit RIFF sizes (~6 h of stereo 48 kHz); shorter recordings keep the plain
+         * 44-byte header.
+         */
+        @Throws(IOException::class)
+        fun openForRecording(
+            file: File,
+            sampleRate: Int,
+            channelCount: Int,
+            maxRecordingDurationMills: Int,
+        ): WavFileSink {
+            val frameSize = channelCount * BYTES_PER_SAMPLE
+            val maxAudioBytes = frameSize.toLong() * sampleRate * maxRecordingDurationMills / 1000
+            val isRf64Capable = maxRecordingDurationMills <= 0 ||
+                    maxAudioBytes + RF64_CAPABLE_HEADER_SIZE - 8 > RIFF_MAX_SIZE
+            return open(file, sampleRate, channelCount, isRf64Capable)
+        }
+
+        /**
+         * Returns false when the file system can't preallocate. Any other failure, e.g. ENOSPC,
+         * is thrown, so the recording ends like on a failed write.
+         */
+        @Throws(IOException::class)
+        private fun posixFallocate(fd: FileDescriptor, offset: Long, length: Long): Boolean {
+            return try {
+                Os.posix_fallocate(fd, offset, length)
+                true
+            } catch (e: ErrnoException) {
+                when (e.errno) {
+                    OsConstants.EOPNOTSUPP, OsConstants.ENOSYS, OsConstants.EINVAL -> {
+                        Timber.w(e, "posix_fallocate is not supported, preallocation disabled")
+                        false
+                    }
+                    else -> throw IOException("Failed to preallocate WAV file", e)
+                }
+            }
+        }
+    }
+}
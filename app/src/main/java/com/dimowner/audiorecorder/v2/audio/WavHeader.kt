@@ -0,0 +1,273 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dimowner.audiorecorder.v2.audio
+
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/** Largest value a 32-bit RIFF size field can hold. */
+const val RIFF_MAX_SIZE = 0xFFFFFFFFL
+
+/**
+ * Size of the RF64-capable header written by [createRf64CapableWavHeader]:
+ * RIFF/RF64 descriptor (12) + JUNK/ds64 chunk (36) + fmt chunk (24) + data chunk header (8).
+ */
+const val RF64_CAPABLE_HEADER_SIZE = 80
+
+/** Offset of the JUNK/ds64 chunk id inside an RF64-capable header. */
+const val RF64_RESERVED_CHUNK_OFFSET = 12
+
+private const val DS64_PAYLOAD_SIZE = 28
+
+/**
+ * Placeholder written at the start of a recording that may outgrow the 4 GB RIFF limit.
+ * All sizes are zero, like the plain 44-byte placeholder, but the reserved chunk id is set
+ * to `JUNK` so [BrokenRecordRestorer] can recognise the 80-byte layout.
+ */
+fun createRf64CapableWavPlaceholder(): ByteArray {
+    val header = ByteArray(RF64_CAPABLE_HEADER_SIZE)
+    writeReservedChunk(header, "JUNK")
+    return header
+}
+
+/**
+ * Creates an 80-byte PCM-16LE header with room for a `ds64` chunk (EBU Tech 3306).
+ *
+ * If [totalAudioLen] fits the 32-bit RIFF sizes the result is a regular `RIFF` file whose
+ * reserved chunk is a `JUNK` chunk every WAV reader skips. Otherwise the file becomes
+ * `RF64`: the 32-bit sizes are set to 0xFFFFFFFF and the real 64-bit sizes go into `ds64`.
+ */
+@Suppress("MagicNumber")
+fun createRf64CapableWavHeader(
+    totalAudioLen: Long,
+    sampleRate: Int,
+    channels: Int,
+): ByteArray {
+    val bitsPerSample = 16
+    val blockAlign = channels * bitsPerSample / 8
+    val riffSize = totalAudioLen + RF64_CAPABLE_HEADER_SIZE - 8
+    val isRf64 = riffSize > RIFF_MAX_SIZE
+
+    val buf = ByteBuffer.allocate(RF64_CAPABLE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+    buf.put((if (isRf64) "RF64" else "RIFF").toByteArray(Charsets.US_ASCII))
+    buf.putInt(if (isRf64) -1 else riffSize.toInt())
+    buf.put("WAVE".toByteArray(Charsets.US_ASCII))
+
+    buf.put((if (isRf64) "ds64" else "JUNK").toByteArray(Charsets.US_ASCII))
+    buf.putInt(DS64_PAYLOAD_SIZE)
+    if (isRf64) {
+        buf.putLong(riffSize)
+        buf.putLong(totalAudioLen)
+        buf.putLong(totalAudioLen / blockAlign) // sample frame count
+        buf.putInt(0) // no additional chunk size table entries
+    } else {
+        buf.position(buf.position() + DS64_PAYLOAD_SIZE)
+    }
+
+    buf.put("fmt ".toByteArray(Charsets.US_ASCII))
+    buf.putInt(16)
+    buf.putShort(1) // PCM
+    buf.putShort(channels.toShort())
+    buf.putInt(sampleRate)
+    buf.putInt(sampleRate * blockAlign)
+    buf.putShort(blockAlign.toShort())
+    buf.putShort(bitsPerSample.toShort())
+
+    buf.put("data".toByteArray(Charsets.US_ASCII))
+    buf.putInt(if (isRf64) -1 else totalAudioLen.toInt())
+    return buf.array()
+}
+
+/**
+ * Returns true if [file] uses the 80-byte RF64-capable layout (either still the placeholder
+ * or a finished RIFF/JUNK or RF64/ds64 header).
+ */
+fun hasRf64CapableLayout(file: File): Boolean {
+    return try {
+        RandomAccessFile(file, "r").use { raf ->
+            if (raf.length() < RF64_CAPABLE_HEADER_SIZE) return false
+            val id = ByteArray(4)
+            raf.seek(RF64_RESERVED_CHUNK_OFFSET.toLong())
+            raf.readFully(id)
+            val chunkId = String(id, Charsets.US_ASCII)
+            chunkId == "JUNK" || chunkId == "ds64"
+        }
+    } catch (e: IOException) {
+        Timber.e(e, "Failed to read WAV header: ${file.absolutePath}")
+        false
+    }
+}
+
+/** Offset of the data chunk size in the plain 44-byte header. */
+private const val WAV_DATA_SIZE_OFFSET = 40
+
+/** Offset of the 64-bit data size in the ds64 payload of an RF64-capable header. */
+private const val RF64_DATA_SIZE_OFFSET = RF64_RESERVED_CHUNK_OFFSET + 16
+
+/**
+ * Stores [dataSize] in the recording placeholder [header], where the finished header keeps
+ * the data size: the 32-bit data chunk size of the plain layout, or the 64-bit size of the
+ * reserved chunk of the RF64-capable one. The magic stays zero, so the file still reads as
+ * unfinished. [header] must be little-endian.
+ */
+fun writePlaceholderDataSize(header: ByteBuffer, isRf64Capable: Boolean, dataSize: Long) {
+    if (isRf64Capable) {
+        header.putLong(RF64_DATA_SIZE_OFFSET, dataSize)
+    } else {
+        header.putInt(WAV_DATA_SIZE_OFFSET, dataSize.coerceAtMost(RIFF_MAX_SIZE).toInt())
+    }
+}
+
+/**
+ * Returns the data size stored by [writePlaceholderDataSize] in the placeholder of [file],
+ * or 0 if there is none or it can't be read.
+ */
+fun readPlaceholderDataSize(file: File, isRf64Capable: Boolean): Long {
+    return try {
+        RandomAccessFile(file, "r").use { raf ->
+            if (isRf64Capable) {
+                if (raf.length() < RF64_CAPABLE_HEADER_SIZE) return 0L
+                raf.seek(RF64_DATA_SIZE_OFFSET.toLong())
+                java.lang.Long.reverseBytes(raf.readLong())
+            } else {
+                if (raf.length() < WAV_DATA_SIZE_OFFSET + 4) return 0L
+                raf.seek(WAV_DATA_SIZE_OFFSET.toLong())
+                Integer.reverseBytes(raf.readInt()).toLong() and RIFF_MAX_SIZE
+            }
+        }
+    } catch (e: IOException) {
+        Timber.e(e, "Failed to read WAV placeholder: ${file.absolutePath}")
+        0L
+    }
+}
+
+private fun writeReservedChunk(header: ByteArray, id: String) {
+    id.toByteArray(Charsets.US_ASCII).copyInto(header, RF64_RESERVED_CHUNK_OFFSET)
+    header[RF64_RESERVED_CHUNK_OFFSET + 4] = DS64_PAYLOAD_SIZE.toByte()
+}
+
+/**
+ * Format and data-chunk location of a PCM WAV file, as read by [WavHeaderParser].
+ *
+ * @param dataOffset file offset of the first PCM byte.
+ * @param dataSize number of PCM bytes, clamped to what the file actually contains.
+ */
+data class WavFileInfo(
+    val isRf64: Boolean,
+    val audioFormat: Int,
+    val channelCount: Int,
+    val sampleRate: Int,
+    val bitsPerSample: Int,
+    val dataOffset: Long,
+    val dataSize: Long,
+) {
+    val frameSize: Int
+        get() = channelCount * bitsPerSample / 8
+
+    val durationMicros: Long
+        get() = if (sampleRate > 0 && frameSize > 0) {
+            dataSize / frameSize * 1_000_000L / sampleRate
+        } else {
+            0L
+        }
+}
+
+/**
+ * Minimal RIFF/RF64 WAV chunk walker. Understands `ds64` 64-bit sizes and skips unknown
+ * chunks such as `JUNK` or `LIST`, so it can read files that MediaExtractor rejects.
+ */
+object WavHeaderParser {
+
+    private const val FORMAT_PCM = 1
+    private const val FORMAT_EXTENSIBLE = 0xFFFE
+    private const val CHUNK_HEADER_SIZE = 8
+
+    @JvmStatic
+    fun isRf64File(file: File): Boolean = parse(file)?.isRf64 == true
+
+    /** Returns header info of [file], or null if it is not a readable WAV file. */
+    @JvmStatic
+    @Suppress("MagicNumber", "ReturnCount")
+    fun parse(file: File): WavFileInfo? {
+        return try {
+            RandomAccessFile(file, "r").use { raf ->
+                val fileLength = raf.length()
+                val chunk = ByteBuffer.allocate(DS64_PAYLOAD_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                if (fileLength < 12) return null
+                raf.readFully(chunk.array(), 0, 12)
+                val magic = String(chunk.array(), 0, 4, Charsets.US_ASCII)
+                val wave = String(chunk.array(), 8, 4, Charsets.US_ASCII)
+                if ((magic != "RIFF" && magic != "RF64") || wave != "WAVE") return null
+                val isRf64 = magic == "RF64"
+
+                var ds64DataSize = -1L
+                var audioFormat = 0
+                var channels = 0
+                var sampleRate = 0
+                var bitsPerSample = 0
+                var pos = 12L
+                while (pos + CHUNK_HEADER_SIZE <= fileLength) {
+                    raf.seek(pos)
+                    raf.readFully(chunk.array(), 0, CHUNK_HEADER_SIZE)
+                    val id = String(chunk.array(), 0, 4, Charsets.US_ASCII)
+                    val size = chunk.getInt(4).toLong() and RIFF_MAX_SIZE
+                    val bodyStart = pos + CHUNK_HEADER_SIZE
+                    when (id) {
+                        "ds64" -> {
+                            raf.readFully(chunk.array(), 0, 16)
+                            ds64DataSize = chunk.getLong(8)
+                        }
+                        "fmt " -> {
+                            raf.readFully(chunk.array(), 0, 16)
+                            audioFormat = chunk.getShort(0).toInt() and 0xFFFF
+                            channels = chunk.getShort(2).toInt()
+                            sampleRate = chunk.getInt(4)
+                            bitsPerSample = chunk.getShort(14).toInt()
+                        }
+                        "data" -> {
+                            val declared = if (isRf64 && size == RIFF_MAX_SIZE && ds64DataSize >= 0) {
+                                ds64DataSize
+                            } else {
+                                size
+                            }
+                            val available = fileLength - bodyStart
+                            if (audioFormat != FORMAT_PCM && audioFormat != FORMAT_EXTENSIBLE) return null
+                            return WavFileInfo(
+                                isRf64 = isRf64,
+                                audioFormat = audioFormat,
+                                channelCount = channels,
+                                sampleRate = sampleRate,
+                                bitsPerSample = bitsPerSample,
+                                dataOffset = bodyStart,
+                                dataSize = if (declared <= 0 || declared > available) available else declared,
+                            )
+                        }
+                    }
+                    // Chunks are word-aligned.
+                    pos = bodyStart + size + (size and 1L)
+                }
+                null
+            }
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to parse WAV header: ${file.absolutePath}")
+            null
+        }
+    }
+}
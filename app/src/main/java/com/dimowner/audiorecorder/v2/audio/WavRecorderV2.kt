@@ -1,404 +1,26 @@
 package com.dimowner.audiorecorder.v2.audio
 
-import android.media.AudioFormat
-import android.media.AudioRecord
-import com.dimowner.audiorecorder.AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW
-import com.dimowner.audiorecorder.audio.sumOfAmplitudes
-import com.dimowner.audiorecorder.IntArrayList
-import com.dimowner.audiorecorder.exception.AlreadyRecordingException
-import com.dimowner.audiorecorder.exception.InvalidOutputFile
-import com.dimowner.audiorecorder.exception.RecorderInitException
 import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.Job
-import kotlinx.coroutines.delay
-import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.MutableSharedFlow
-import kotlinx.coroutines.isActive
-import kotlinx.coroutines.launch
-import timber.log.Timber
 import java.io.File
-import java.io.FileOutputStream
-import java.io.IOException
-import java.io.RandomAccessFile
-import java.util.Timer
-import java.util.TimerTask
 import javax.inject.Inject
 import javax.inject.Singleton
 
 @Singleton
 class WavRecorderV2 @Inject constructor(
-    private val coroutineScope: CoroutineScope,
-) : RecorderV2 {
+    coroutineScope: CoroutineScope,
+    recordingTicker: RecordingTicker,
+) : PcmRecorderBase(coroutineScope, recordingTicker) {
 
-    private var audioRecord: AudioRecord? = null
-    private var recordingJob: Job? = null
-
-    @Volatile private var _isRecording: Boolean = false
-    @Volatile private var _isPaused: Boolean = false
-
-    override val isRecording: Boolean
-        get() = _isRecording
-    override val isPaused: Boolean
-        get() = _isPaused
-
-    private var durationMills: Long = 0
-    private var sampleRateConfig: Int = 44100
-    private var channelCountConfig: Int = 1
-    private var maxDurationMills: Int = Int.MAX_VALUE
-
-    private var timerProgress: Timer? = null
-    private val amplitudesBuffer: IntArrayList = IntArrayList()
-    @Volatile private var lastNonZeroAmplitude: Int = 0
-    @Volatile private var lastEmittedDurationMills: Long = -1L
-
-    private val _event = MutableSharedFlow<RecorderEvent>()
-    override fun subscribeRecorderEvents(): Flow<RecorderEvent> {
-        return _event
-    }
-
-    override fun startRecording(
-        outputFile: File,
-        channelCount: Int,
+    override fun openSink(
+        file: File,
         sampleRate: Int,
+        channelCount: Int,
         bitrate: Int,
         maxRecordingDurationMills: Int,
-        audioSource: Int,
-    ): Boolean {
-        Timber.d(
-            "startRecording outputFile: ${outputFile.absolutePath} channelCount: $channelCount" +
-                    " sampleRate: $sampleRate bitrate: $bitrate maxRecordingDurationMills: $maxRecordingDurationMills" +
-                    " audioSource: $audioSource"
-        )
-        if (_isRecording) {
-            Timber.e("Recording is already in progress.")
-            emitEvent(RecorderEvent.OnError(AlreadyRecordingException()))
-            return false
-        }
-        amplitudesBuffer.clear()
-        lastNonZeroAmplitude = 0
-        lastEmittedDurationMills = -1L
-        if (!outputFile.exists() || !outputFile.isFile) {
-            emitEvent(RecorderEvent.OnError(InvalidOutputFile()))
-            return false
-        }
-
-        sampleRateConfig = sampleRate
-        channelCountConfig = channelCount
-        maxDurationMills = maxRecordingDurationMills
-
-        val channelConfig = if (channelCount == 1) {
-            AudioFormat.CHANNEL_IN_MONO
-        } else {
-            AudioFormat.CHANNEL_IN_STEREO
-        }
-        val bitsPerSample = 16
-        val audioEncoding = AudioFormat.ENCODING_PCM_16BIT
-
-        val bufferSize = AudioRecord.getMinBufferSize(sampleRate, channelConfig, audioEncoding)
-        if (bufferSize == AudioRecord.ERROR_BAD_VALUE || bufferSize == AudioRecord.ERROR) {
-            Timber.e("Invalid buffer size: $bufferSize")
-            emitEvent(RecorderEvent.OnError(RecorderInitException()))
-            return false
-        }
-
-        // Read in ~20 ms chunks so durationMills advances every ~20 ms and progress events
-        // are emitted at least that often. frameSize ensures alignment; coerceAtMost keeps
-        // the chunk within the AudioRecord internal buffer to avoid read errors.
-        val frameSize = channelCount * (bitsPerSample / 8)
-        val readChunkSize = ((sampleRate * RECORDING_VISUALIZATION_INTERVAL_NEW / 1000) * frameSize)
-            .coerceAtLeast(frameSize)
-            .coerceAtMost(bufferSize)
-
-        val recorder = try {
-            AudioRecord(audioSource, sampleRate, channelConfig, audioEncoding, bufferSize)
-        } catch (e: SecurityException) {
-            Timber.e(e, "AudioRecord creation failed due to missing permission")
-            emitEvent(RecorderEvent.OnError(RecorderInitException()))
-            return false
-        } catch (e: IllegalArgumentException) {
-            Timber.e(e, "AudioRecord creation failed")
-            emitEvent(RecorderEvent.OnError(RecorderInitException()))
-            return false
-        }
-
-        if (recorder.state != AudioRecord.STATE_INITIALIZED) {
-            Timber.e("AudioRecord initialization failed")
-            recorder.release()
-            emitEvent(RecorderEvent.OnError(RecorderInitException()))
-            return false
-        }
-
-        audioRecord = recorder
-
-        // Write a placeholder 44-byte WAV header; it will be overwritten with real values after recording.
-        try {
-            FileOutputStream(outputFile).use { fos ->
-                fos.write(ByteArray(44))
-            }
-        } catch (e: IOException) {
-            Timber.e(e, "Failed to write placeholder WAV header")
-            recorder.release()
-            audioRecord = null
-            emitEvent(RecorderEvent.OnError(RecorderInitException()))
-            return false
-        }
-
-        try {
-            recorder.startRecording()
-        } catch (e: IllegalStateException) {
-            Timber.e(e, "startRecording() failed")
-            recorder.release()
-            audioRecord = null
-            emitEvent(RecorderEvent.OnError(RecorderInitException()))
-            return false
-        }
-
-        _isRecording = true
-        _isPaused = false
-        durationMills = 0
-        emitEvent(RecorderEvent.OnStartRecording)
-        scheduleRecordingTimeUpdateBuffered()
-
-        // Launch a coroutine to read audio data in the background
-        recordingJob = coroutineScope.launch(Dispatchers.IO) {
-            val buffer = ByteArray(bufferSize)
-            var fos: FileOutputStream? = null
-            var totalBytesWritten = 0L
-            val bytesPerSecond = sampleRate * channelCount * (bitsPerSample / 8)
-            var maxDurationReached = false
-
-            try {
-                fos = FileOutputStream(outputFile, true) // append after the placeholder header
-                while (isActive && _isRecording) {
-                    if (_isPaused) {
-                        delay(RECORDING_VISUALIZATION_INTERVAL_NEW.toLong())
-                        continue
-                    }
-                    val readResult = recorder.read(buffer, 0, readChunkSize)
-                    if (readResult > 0) {
-                        fos.write(buffer, 0, readResult)
-                        totalBytesWritten += readResult
-
-                        // Calculate duration from bytes written
-                        durationMills = (totalBytesWritten * 1000L) / bytesPerSecond
-
-                        // Each read covers ~RECORDING_VISUALIZATION_INTERVAL_NEW ms, so always update amplitude
-                        val amplitude = calculateAmplitude(buffer, readResult)
-                        synchronized(amplitudesBuffer) { amplitudesBuffer.add(amplitude) }
-
-                        // Check max duration
-                        if (maxDurationMills > 0 && durationMills >= maxDurationMills) {
-                            Timber.d("Max recording duration reached. Stop recording")
-                            // Signal the loop to stop; hardware teardown happens via stopHardware().
-                            // OnStopRecording and OnMaxDurationReached are both emitted after
-                            // the WAV header is written in-place, so consumers always see a complete file.
-                            maxDurationReached = true
-                            _isRecording = false
-                            _isPaused = false
-                            stopHardware()
-                            break
-                        }
-                    } else if (readResult == AudioRecord.ERROR_INVALID_OPERATION) {
-                        Timber.e("AudioRecord read error: ERROR_INVALID_OPERATION")
-                        break
-                    } else if (readResult == AudioRecord.ERROR_BAD_VALUE) {
-                        Timber.e("AudioRecord read error: ERROR_BAD_VALUE")
-                        break
-                    }
-                }
-            } catch (e: IOException) {
-                Timber.e(e, "Error writing PCM data")
-                emitEvent(RecorderEvent.OnError(RecorderInitException()))
-            } finally {
-                try {
-                    fos?.close()
-                } catch (e: IOException) {
-                    Timber.e(e, "Error closing output file stream")
-                }
-            }
-
-            // Write the real WAV header in-place now that we know the final audio length.
-            if (outputFile.exists()) {
-                try {
-                    val totalAudioLen = totalBytesWritten
-                    val totalDataLen = totalAudioLen + 36
-                    val byteRate = (sampleRateConfig * channelCountConfig * bitsPerSample / 8).toLong()
-
-                    RandomAccessFile(outputFile, "rw").use { raf ->
-                        raf.seek(0)
-                        val headerStream = FileOutputStream(raf.fd)
-                        writeWavHeader(
-                            out = headerStream,
-                            totalAudioLen = totalAudioLen,
-                            totalDataLen = totalDataLen,
-                            sampleRate = sampleRateConfig,
-                            channels = channelCountConfig,
-                            byteRate = byteRate,
-                        )
-                        headerStream.flush()
-                    }
-
-                    if (maxDurationReached) {
-                        emitEvent(RecorderEvent.OnMaxDurationReached)
-                    } else {
-                        emitEvent(RecorderEvent.OnStopRecording)
-                    }
-                } catch (e: IOException) {
-                    Timber.e(e, "Error writing WAV header")
-                    emitEvent(RecorderEvent.OnError(RecorderInitException()))
-                }
-            }
-
-            // Clean up state only after header write so nothing above reads stale nulls.
-            durationMills = 0
-        }
-        return true
-    }
-
-    override fun resumeRecording(): Boolean {
-        if (!_isRecording || !_isPaused) return false
-        _isPaused = false
-        emitEvent(RecorderEvent.OnResumeRecording)
-        scheduleRecordingTimeUpdateBuffered()
-        return true
-    }
-
-    override fun pauseRecording(): Boolean {
-        pauseRecordingTimer()
-        if (!_isRecording) {
-            Timber.e("Recording has already stopped or hasn't started")
-            return false
-        }
-        if (_isPaused) {
-            Timber.e("Recording has already paused")
-            return false
-        }
-        _isPaused = true
-        emitEvent(RecorderEvent.OnPauseRecording)
-        return true
-    }
-
-    override fun stopRecording(): Boolean {
-        stopRecordingTimer()
-        if (!_isRecording) {
-            Timber.e("Recording has already stopped or hasn't started")
-            return false
-        }
-        _isRecording = false
-        _isPaused = false
-        synchronized(amplitudesBuffer) { amplitudesBuffer.clear() }
-        // Tear down the hardware; the recording coroutine will finish its current
-        // read(), flush PCM data, write the WAV header in-place, and then emit OnStopRecording.
-        return stopHardware()
-    }
-
-    /**
-     * Stops and releases [audioRecord]. Safe to call from any thread.
-     * Returns true if the hardware was stopped successfully.
-     */
-    private fun stopHardware(): Boolean {
-        return try {
-            audioRecord?.let {
-                it.stop()
-                it.release()
-                true
-            } ?: false
-        } catch (e: IllegalStateException) {
-            Timber.e(e, "stopHardware() problems")
-            audioRecord?.release()
-            false
-        } finally {
-            audioRecord = null
-        }
-    }
-
-    private fun calculateAmplitude(buffer: ByteArray, bytesRead: Int): Int {
-        if (bytesRead <= 0) return 0
-        val sum = buffer.sumOfAmplitudes(bytesRead)
-        return (sum / (bytesRead / 16 + 1)).toInt()
-    }
-
-    private fun emitEvent(event: RecorderEvent) {
-        coroutineScope.launch {
-            _event.emit(event)
-        }
-    }
-
-    /**
-     * Writes a 44-byte RIFF/WAV header to a FileOutputStream.
-     * The header follows the standard little-endian format required for WAV files.
-     *
-     * @param out              The output stream to write the header to.
-     * @param totalAudioLen    The total length of the raw audio data in bytes.
-     * @param totalDataLen     The total data length (totalAudioLen + 36).
-     * @param sampleRate       The sample rate in Hz.
-     * @param channels         The number of audio channels (1 = mono, 2 = stereo).
-     * @param byteRate         The byte rate (sampleRate * channels * bitsPerSample / 8).
-     */
-    @SuppressWarnings("MagicNumber", "LongParameterList")
-    @Throws(IOException::class)
-    private fun writeWavHeader(
-        out: FileOutputStream,
-        totalAudioLen: Long,
-        totalDataLen: Long,
-        sampleRate: Int,
-        channels: Int,
-        byteRate: Long,
-    ) {
-        val header = createWavHeader(
-            totalAudioLen = totalAudioLen,
-            totalDataLen = totalDataLen,
-            sampleRate = sampleRate,
-            channels = channels,
-            byteRate = byteRate,
-        )
-        out.write(header, 0, 44)
-    }
-
-    private fun scheduleRecordingTimeUpdateBuffered() {
-        timerProgress = Timer()
-        timerProgress?.schedule(object : TimerTask() {
-            override fun run() {
-                try {
-                    readBufferedProgress()
-                } catch (e: java.lang.IllegalStateException) {
-                    Timber.e(e)
-                }
-            }
-        }, 0, RECORDING_VISUALIZATION_INTERVAL_NEW.toLong())
-    }
-
-    private fun stopRecordingTimer() {
-        timerProgress?.cancel()
-        timerProgress?.purge()
-    }
-
-    private fun pauseRecordingTimer() {
-        timerProgress?.cancel()
-        timerProgress?.purge()
-    }
-
-    private fun readBufferedProgress() {
-        // Timer.cancel() doesn't prevent an already-scheduled task from running; skip stale
-        // fires so a late progress event can't flip state back to RECORDING after stop.
-        if (!_isRecording || _isPaused) return
-        val currentDuration = durationMills
-        // Skip if durationMills hasn't changed since the last emission — this prevents duplicate
-        // events when the timer fires faster than the AudioRecord buffer fills (~40 ms/buffer).
-        if (currentDuration == lastEmittedDurationMills) return
-        synchronized(amplitudesBuffer) {
-            val bufferSize = amplitudesBuffer.size()
-            if (bufferSize > 0) {
-                lastEmittedDurationMills = currentDuration
-                var amp = amplitudesBuffer.get(bufferSize - 1)
-                if (amp == 0) amp = lastNonZeroAmplitude
-                else lastNonZeroAmplitude = amp
-                amplitudesBuffer.clear()
-                amplitudesBuffer.add(amp)
-                emitEvent(RecorderEvent.OnRecordingProgress(durationMills = currentDuration, amplitude = amp))
-            }
-        }
+    ): PcmSink {
+        // Opening the sink writes a placeholder WAV header; it is overwritten
+        // with real values when the sink is closed after recording.
+        return WavFileSink.openForRecording(file, sampleRate, channelCount, maxRecordingDurationMills)
     }
 }
 
@@ -411,6 +33,10 @@ fun createWavHeader(
 ): ByteArray {
     val bitsPerSample = 16
     val blockAlign = channels * bitsPerSample / 8
+    // Sizes beyond 4 GB can't be represented here; saturate instead of wrapping around so
+    // readers at least see the maximum length. Use createRf64CapableWavHeader for such files.
+    val totalAudioLen = totalAudioLen.coerceAtMost(RIFF_MAX_SIZE)
+    val totalDataLen = totalDataLen.coerceAtMost(RIFF_MAX_SIZE)
 
     val header = ByteArray(44)
 
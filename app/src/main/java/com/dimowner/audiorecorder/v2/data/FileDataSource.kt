@@ -17,6 +17,8 @@
 package com.dimowner.audiorecorder.v2.data
 
 import android.content.Context
+import com.dimowner.audiorecorder.audio.AudioAnalysis
+import com.dimowner.audiorecorder.audio.WaveformPyramid
 import com.dimowner.audiorecorder.exception.CantCreateFileException
 import java.io.File
 
@@ -41,4 +43,16 @@ interface FileDataSource {
     fun getAvailableSpace(): Long
 
     fun requestSystemMoreMemory(context: Context, file: File, requiredSpace: Long)
+
+    fun saveWaveformPyramid(recordId: Long, pyramid: WaveformPyramid): Boolean
+
+    fun readWaveformPyramid(recordId: Long): WaveformPyramid?
+
+    fun deleteWaveformPyramid(recordId: Long): Boolean
+
+    fun saveAudioAnalysis(recordId: Long, analysis: AudioAnalysis): Boolean
+
+    fun readAudioAnalysis(recordId: Long): AudioAnalysis?
+
+    fun deleteAudioAnalysis(recordId: Long): Boolean
 }
@@ -19,6 +19,9 @@ package com.dimowner.audiorecorder.v2.data
 import android.annotation.SuppressLint
 import android.content.Context
 import com.dimowner.audiorecorder.AppConstants
+import com.dimowner.audiorecorder.AppConstantsV2
+import com.dimowner.audiorecorder.audio.AudioAnalysis
+import com.dimowner.audiorecorder.audio.WaveformPyramid
 import com.dimowner.audiorecorder.exception.CantCreateFileException
 import com.dimowner.audiorecorder.v2.data.extensions.createFile
 import com.dimowner.audiorecorder.v2.data.extensions.deleteFileAndChildren
@@ -36,9 +39,17 @@ import javax.inject.Singleton
 
 @Singleton
 class FileDataSourceImpl @Inject internal constructor(
-    @ApplicationContext context: Context
+    @ApplicationContext private val context: Context
 ): FileDataSource {
 
+    private val waveformDirectory: File by lazy {
+        File(context.filesDir, AppConstantsV2.WAVEFORMS_DIR)
+    }
+
+    private val analysisDirectory: File by lazy {
+        File(context.filesDir, AppConstantsV2.ANALYSIS_DIR)
+    }
+
     private val recordDirectory: File? by lazy {
         getPrivateMusicStorageDir(context, AppConstants.RECORDS_DIR)
     }
@@ -86,4 +97,76 @@ class FileDataSourceImpl @Inject internal constructor(
     override fun requestSystemMoreMemory(context: Context, file: File, requiredSpace: Long) {
         requestAllocateSpace(context, file, requiredSpace)
     }
+
+    override fun saveWaveformPyramid(recordId: Long, pyramid: WaveformPyramid): Boolean {
+        val file = waveformFile(recordId)
+        val tmpFile = File(waveformDirectory, file.name + ".tmp")
+        return try {
+            if (!waveformDirectory.exists() && !waveformDirectory.mkdirs()) {
+                throw IOException("Failed to create waveform directory")
+            }
+            tmpFile.outputStream().use { pyramid.writeTo(it) }
+            tmpFile.renameTo(file)
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to save waveform of record: $recordId")
+            tmpFile.delete()
+            false
+        }
+    }
+
+    override fun readWaveformPyramid(recordId: Long): WaveformPyramid? {
+        val file = waveformFile(recordId)
+        if (!file.exists()) return null
+        return try {
+            file.inputStream().use { WaveformPyramid.readFrom(it) }
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to read waveform of record: $recordId")
+            null
+        }
+    }
+
+    override fun deleteWaveformPyramid(recordId: Long): Boolean {
+        val file = waveformFile(recordId)
+        return !file.exists() || file.delete()
+    }
+
+    private fun waveformFile(recordId: Long): File {
+        return File(waveformDirectory, recordId.toString())
+    }
+
+    override fun saveAudioAnalysis(recordId: Long, analysis: AudioAnalysis): Boolean {
+        val file = analysisFile(recordId)
+        val tmpFile = File(analysisDirectory, file.name + ".tmp")
+        return try {
+            if (!analysisDirectory.exists() && !analysisDirectory.mkdirs()) {
+                throw IOException("Failed to create analysis directory")
+            }
+            tmpFile.outputStream().use { analysis.writeTo(it) }
+            tmpFile.renameTo(file)
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to save analysis of record: $recordId")
+            tmpFile.delete()
+            false
+        }
+    }
+
+    override fun readAudioAnalysis(recordId: Long): AudioAnalysis? {
+        val file = analysisFile(recordId)
+        if (!file.exists()) return null
+        return try {
+            file.inputStream().use { AudioAnalysis.readFrom(it) }
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to read analysis of record: $recordId")
+            null
+        }
+    }
+
+    override fun deleteAudioAnalysis(recordId: Long): Boolean {
+        val file = analysisFile(recordId)
+        return !file.exists() || file.delete()
+    }
+
+    private fun analysisFile(recordId: Long): File {
+        return File(analysisDirectory, recordId.toString())
+    }
 }
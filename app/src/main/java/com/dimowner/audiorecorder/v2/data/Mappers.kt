@@ -18,6 +18,7 @@ package com.dimowner.audiorecorder.v2.data
 
 import com.dimowner.audiorecorder.v2.data.model.Record
 import com.dimowner.audiorecorder.v2.data.room.RecordEntity
+import com.dimowner.audiorecorder.v2.data.room.RecordListRow
 import com.dimowner.audiorecorder.data.database.Record as OldRecord
 
 fun RecordEntity.toRecord(): Record {
@@ -39,6 +40,44 @@ fun RecordEntity.toRecord(): Record {
         isMovedToRecycle = isMovedToRecycle,
         amps = amps,
         description = description,
+        linkedRecordId = linkedRecordId,
+        keptSegments = keptSegments,
+        loudness = loudness,
+        loudnessRange = loudnessRange,
+        truePeak = truePeak,
+        clippedSamples = clippedSamples,
+    )
+}
+
+/**
+ * Maps a list row to [Record] with empty [Record.amps]. The waveform of a record
+ * is loaded by id with [RecordEntity] when it is needed.
+ */
+fun RecordListRow.toRecord(): Record {
+    return Record(
+        id = id,
+        name = name,
+        durationMills = duration,
+        created = created,
+        added = added,
+        removed = removed,
+        path = path,
+        format = format,
+        size = size,
+        sampleRate = sampleRate,
+        channelCount = channelCount,
+        bitrate = bitrate,
+        isBookmarked = isBookmarked,
+        isWaveformProcessed = isWaveformProcessed,
+        isMovedToRecycle = isMovedToRecycle,
+        amps = intArrayOf(),
+        description = description,
+        linkedRecordId = linkedRecordId,
+        keptSegments = keptSegments,
+        loudness = loudness,
+        loudnessRange = loudnessRange,
+        truePeak = truePeak,
+        clippedSamples = clippedSamples,
     )
 }
 
@@ -61,6 +100,12 @@ fun Record.toRecordEntity(): RecordEntity {
         isMovedToRecycle = this.isMovedToRecycle,
         amps = this.amps,
         description = this.description,
+        linkedRecordId = this.linkedRecordId,
+        keptSegments = this.keptSegments,
+        loudness = this.loudness,
+        loudnessRange = this.loudnessRange,
+        truePeak = this.truePeak,
+        clippedSamples = this.clippedSamples,
     )
 }
 
@@ -35,6 +35,7 @@ interface PrefsV2 {
     var saveDescriptionToFile: Boolean
 
     var activeRecordId: Long
+    val activeRecordIdFlow: StateFlow<Long>
     //Stores the last recorded record id. It is not gets cleared after recording stops.
     // It gets overwritten after new recording starts.
     var recordedRecordId: Long
@@ -67,6 +68,18 @@ interface PrefsV2 {
     var settingChannelCount: ChannelCount
     var settingAudioSource: AudioSource
 
+    /** Also save an M4a copy next to every Wav recording, encoded from the same capture. */
+    var isRecordCompressedCopy: Boolean
+
+    /** Leave silent stretches out of new recordings, see [silenceSkipThreshold]. */
+    var isSkipSilence: Boolean
+
+    /** Recording amplitude below which input counts as silence. */
+    var silenceSkipThreshold: Int
+
+    /** How long the input must stay silent before it is skipped. */
+    var silenceSkipHangoverMills: Int
+
     var maxRecordingDurationMills: Int
 
     var recordAuthorName: String
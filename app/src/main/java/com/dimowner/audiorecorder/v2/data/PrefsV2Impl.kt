@@ -74,6 +74,10 @@ class PrefsV2Impl @Inject internal constructor(@ApplicationContext context: Cont
 
     override val isDynamicThemeFlow: StateFlow<Boolean> = _isDynamicThemeFlow.asStateFlow()
 
+    private val _activeRecordIdFlow = MutableStateFlow(sharedPreferences.getLong(PREF_KEY_ACTIVE_RECORD, -1))
+
+    override val activeRecordIdFlow: StateFlow<Long> = _activeRecordIdFlow.asStateFlow()
+
     override val isFirstRun: Boolean
         get() = sharedPreferences.getBoolean(PREF_KEY_IS_FIRST_RUN, true)
 
@@ -109,6 +113,7 @@ class PrefsV2Impl @Inject internal constructor(@ApplicationContext context: Cont
             sharedPreferences.edit {
                 putLong(PREF_KEY_ACTIVE_RECORD, value)
             }
+            _activeRecordIdFlow.value = value
         }
 
     override var recordedRecordId: Long
@@ -263,6 +268,44 @@ class PrefsV2Impl @Inject internal constructor(@ApplicationContext context: Cont
             }
         }
 
+    override var isRecordCompressedCopy: Boolean
+        get() = sharedPreferences.getBoolean(
+            PREF_KEY_RECORD_COMPRESSED_COPY, DefaultValues.IS_RECORD_COMPRESSED_COPY
+        )
+        set(value) {
+            sharedPreferences.edit {
+                putBoolean(PREF_KEY_RECORD_COMPRESSED_COPY, value)
+            }
+        }
+
+    override var isSkipSilence: Boolean
+        get() = sharedPreferences.getBoolean(PREF_KEY_SKIP_SILENCE, DefaultValues.IS_SKIP_SILENCE)
+        set(value) {
+            sharedPreferences.edit {
+                putBoolean(PREF_KEY_SKIP_SILENCE, value)
+            }
+        }
+
+    override var silenceSkipThreshold: Int
+        get() = sharedPreferences.getInt(
+            PREF_KEY_SILENCE_SKIP_THRESHOLD, DefaultValues.SILENCE_SKIP_THRESHOLD
+        )
+        set(value) {
+            sharedPreferences.edit {
+                putInt(PREF_KEY_SILENCE_SKIP_THRESHOLD, value)
+            }
+        }
+
+    override var silenceSkipHangoverMills: Int
+        get() = sharedPreferences.getInt(
+            PREF_KEY_SILENCE_SKIP_HANGOVER_MILLS, DefaultValues.SILENCE_SKIP_HANGOVER_MILLS
+        )
+        set(value) {
+            sharedPreferences.edit {
+                putInt(PREF_KEY_SILENCE_SKIP_HANGOVER_MILLS, value)
+            }
+        }
+
     override var maxRecordingDurationMills: Int
         get() = sharedPreferences.getInt(
             PREF_KEY_MAX_RECORDING_DURATION_MILLS,
@@ -325,5 +368,9 @@ class PrefsV2Impl @Inject internal constructor(@ApplicationContext context: Cont
         private const val PREF_KEY_SETTING_AUDIO_SOURCE = "pref_key_setting_audio_source"
         private const val PREF_KEY_RECORD_AUTHOR_NAME = "pref_key_record_author_name"
         private const val PREF_KEY_SAVE_DESCRIPTION_TO_FILE = "pref_key_save_description_to_file"
+        private const val PREF_KEY_RECORD_COMPRESSED_COPY = "pref_key_record_compressed_copy"
+        private const val PREF_KEY_SKIP_SILENCE = "pref_key_skip_silence"
+        private const val PREF_KEY_SILENCE_SKIP_THRESHOLD = "pref_key_silence_skip_threshold"
+        private const val PREF_KEY_SILENCE_SKIP_HANGOVER_MILLS = "pref_key_silence_skip_hangover_mills"
     }
 }
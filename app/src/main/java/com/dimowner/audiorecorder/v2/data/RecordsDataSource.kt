@@ -19,6 +19,7 @@ package com.dimowner.audiorecorder.v2.data
 import com.dimowner.audiorecorder.v2.app.records.models.RecordsFilter
 import com.dimowner.audiorecorder.v2.app.records.models.RecordsFilterOptions
 import com.dimowner.audiorecorder.v2.data.model.Record
+import com.dimowner.audiorecorder.v2.data.model.RecordsCursor
 import com.dimowner.audiorecorder.v2.data.model.SortOrder
 
 interface RecordsDataSource {
@@ -30,17 +31,40 @@ interface RecordsDataSource {
 
     suspend fun getAllRecords(): List<Record>
     suspend fun getMovedToRecycleRecords(): List<Record>
-    suspend fun getMovedToRecycleRecords(page: Int, pageSize: Int): List<Record>
+    /**
+     * Returns up to [pageSize] records of the recycle bin that follow [after], the cursor of the
+     * last record of the previous page, or the first page when [after] is null.
+     * [Record.amps] is left empty for list pages, use [getRecord] to read the waveform of a record.
+     */
+    suspend fun getMovedToRecycleRecords(after: RecordsCursor?, pageSize: Int): List<Record>
     suspend fun getMovedToRecycleRecordsCount(): Int
 
+    /**
+     * Returns up to [pageSize] records in [sortOrder] that follow [after], the cursor of the
+     * last record of the previous page, or the first page when [after] is null.
+     * [Record.amps] is left empty for list pages, use [getRecord] to read the waveform of a record.
+     */
     suspend fun getRecords(
-        page: Int,
+        after: RecordsCursor?,
         pageSize: Int,
         sortOrder: SortOrder = SortOrder.DateDesc,
         isBookmarked: Boolean = false,
         filter: RecordsFilter = RecordsFilter(),
     ): List<Record>
 
+    /**
+     * Returns up to [limit] records outside the recycle bin that have words starting with every
+     * word of [query] in their name or description, best matches first. Matches in the name rank
+     * higher. An empty list is returned when [query] has no words.
+     * [Record.amps] is left empty, use [getRecord] to read the waveform of a record.
+     */
+    suspend fun searchRecords(
+        query: String,
+        limit: Int,
+        isBookmarked: Boolean = false,
+        filter: RecordsFilter = RecordsFilter(),
+    ): List<Record>
+
     /**
      * Returns the distinct filter values (formats, sample rates, channel counts, bitrates)
      * available among the records currently in the list (excluding the recycle bin).
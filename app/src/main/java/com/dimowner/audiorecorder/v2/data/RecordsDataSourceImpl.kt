@@ -23,12 +23,20 @@ import com.dimowner.audiorecorder.v2.app.records.models.RecordsFilter
 import com.dimowner.audiorecorder.v2.app.records.models.RecordsFilterOptions
 import com.dimowner.audiorecorder.v2.audio.BrokenRecordRestorer
 import com.dimowner.audiorecorder.v2.audio.writeCommentTag
+import com.dimowner.audiorecorder.v2.data.extensions.RECORDS_COLUMN_ADDED
+import com.dimowner.audiorecorder.v2.data.extensions.RECORDS_COLUMN_DURATION
+import com.dimowner.audiorecorder.v2.data.extensions.RECORDS_COLUMN_LOUDNESS
+import com.dimowner.audiorecorder.v2.data.extensions.RECORDS_COLUMN_NAME
+import com.dimowner.audiorecorder.v2.data.extensions.toFtsPrefixQuery
 import com.dimowner.audiorecorder.v2.data.extensions.toRecordsSortColumnName
 import com.dimowner.audiorecorder.v2.data.extensions.toSqlSortOrder
 import com.dimowner.audiorecorder.v2.data.model.Record
+import com.dimowner.audiorecorder.v2.data.model.RecordsCursor
 import com.dimowner.audiorecorder.v2.data.model.SortOrder
+import com.dimowner.audiorecorder.v2.data.room.RECORD_LIST_COLUMNS
 import com.dimowner.audiorecorder.v2.data.room.RecordDao
 import com.dimowner.audiorecorder.v2.data.room.RecordEntity
+import com.dimowner.audiorecorder.v2.data.room.rank
 import timber.log.Timber
 import java.io.File
 import javax.inject.Inject
@@ -77,8 +85,13 @@ class RecordsDataSourceImpl @Inject internal constructor(
         return recordDao.getMovedToRecycleRecords().map { it.toRecord() }
     }
 
-    override suspend fun getMovedToRecycleRecords(page: Int, pageSize: Int): List<Record> {
-        return recordDao.getMovedToRecycleRecordsByPage(pageSize, (page - 1) * pageSize).map { it.toRecord() }
+    override suspend fun getMovedToRecycleRecords(after: RecordsCursor?, pageSize: Int): List<Record> {
+        val rows = if (after == null) {
+            recordDao.getMovedToRecycleRecordsFirstPage(pageSize)
+        } else {
+            recordDao.getMovedToRecycleRecordsAfter(after.removed, after.id, pageSize)
+        }
+        return rows.map { it.toRecord() }
     }
 
     override suspend fun getMovedToRecycleRecordsCount(): Int {
@@ -86,44 +99,51 @@ class RecordsDataSourceImpl @Inject internal constructor(
     }
 
     override suspend fun getRecords(
-        page: Int,
+        after: RecordsCursor?,
         pageSize: Int,
         sortOrder: SortOrder,
         isBookmarked: Boolean,
         filter: RecordsFilter
     ): List<Record> {
-        val args = mutableListOf<Any>()
-        val sb = StringBuilder()
-        sb.append("SELECT * FROM records")
-        sb.append(" WHERE isMovedToRecycle = 0")
-        if (isBookmarked) {
-            sb.append(" AND isBookmarked = 1")
+        val isByLoudness = sortOrder.isByLoudness()
+        val afterNotAnalysed = isByLoudness && after != null && after.loudness == null
+        val query = buildRecordsPageQuery(after, pageSize, sortOrder, isBookmarked, filter, afterNotAnalysed)
+        val records = recordDao.getRecordListRawQuery(query).map { it.toRecord() }
+        if (!isByLoudness || afterNotAnalysed || records.size >= pageSize) {
+            return records
         }
-        appendInClause(sb, args, "format", filter.formats)
-        appendInClause(sb, args, "sampleRate", filter.sampleRates)
-        appendInClause(sb, args, "channelCount", filter.channelCounts)
-        appendInClause(sb, args, "bitrate", filter.bitrates)
-        sb.append(" ORDER BY ${sortOrder.toRecordsSortColumnName()} ${sortOrder.toSqlSortOrder()}")
-        sb.append(" LIMIT $pageSize")
-        sb.append(" OFFSET " + ((page - 1) * pageSize))
-        return recordDao.getRecordsRewQuery(SimpleSQLiteQuery(sb.toString(), args.toTypedArray()))
-            .map { it.toRecord() }
+        // Records that are not analysed yet follow all the others in both loudness orders.
+        val notAnalysedQuery = buildRecordsPageQuery(
+            after = null,
+            pageSize = pageSize - records.size,
+            sortOrder = sortOrder,
+            isBookmarked = isBookmarked,
+            filter = filter,
+            notAnalysed = true,
+        )
+        return records + recordDao.getRecordListRawQuery(notAnalysedQuery).map { it.toRecord() }
     }
 
-    /**
-     * Appends an `AND column IN (?, ?, ...)` clause for the given [values], adding the bound
-     * arguments to [args]. Empty value sets are ignored so the column is not filtered.
-     */
-    private fun appendInClause(
-        sb: StringBuilder,
-        args: MutableList<Any>,
-        column: String,
-        values: Collection<Any>
-    ) {
-        if (values.isEmpty()) return
-        val placeholders = values.joinToString(separator = ", ") { "?" }
-        sb.append(" AND $column IN ($placeholders)")
-        args.addAll(values)
+    override suspend fun searchRecords(
+        query: String,
+        limit: Int,
+        isBookmarked: Boolean,
+        filter: RecordsFilter
+    ): List<Record> {
+        val match = query.toFtsPrefixQuery()
+        if (match.isEmpty() || limit <= 0) {
+            return emptyList()
+        }
+        val ids = recordDao.searchRecordsRawQuery(buildRecordsSearchQuery(match, isBookmarked, filter))
+            .map { it.id to it.rank() }
+            .sortedWith(compareByDescending<Pair<Long, Double>> { it.second }.thenByDescending { it.first })
+            .take(limit)
+            .map { it.first }
+        if (ids.isEmpty()) {
+            return emptyList()
+        }
+        val rows = recordDao.getRecordListRowsByIds(ids).associateBy { it.id }
+        return ids.mapNotNull { rows[it]?.toRecord() }
     }
 
     override suspend fun getFilterOptions(): RecordsFilterOptions {
@@ -132,6 +152,7 @@ class RecordsDataSourceImpl @Inject internal constructor(
             sampleRates = recordDao.getDistinctSampleRates(),
             channelCounts = recordDao.getDistinctChannelCounts(),
             bitrates = recordDao.getDistinctBitrates(),
+            hasClippedRecords = recordDao.hasClippedRecords(),
         )
     }
 
@@ -250,6 +271,8 @@ class RecordsDataSourceImpl @Inject internal constructor(
                 false
             }
             if (isRecordDeleted) {
+                fileDataSource.deleteWaveformPyramid(record.id)
+                fileDataSource.deleteAudioAnalysis(record.id)
                 // Step 2 — delete the file from disk.
                 if (!deleteFile()) {
                     //Retry deleting the file once more.
@@ -382,3 +405,121 @@ class RecordsDataSourceImpl @Inject internal constructor(
         }
     }
 }
+
+/**
+ * Builds the query of a [RecordsDataSource.getRecords] page: up to [pageSize] records that
+ * follow [after] in [sortOrder], or the first ones when [after] is null. Records with the same
+ * sort value are ordered by id, so the cursor always points at a single position.
+ *
+ * Loudness is null until a record is analysed and those records are put after the others,
+ * which no index order gives. So the loudness orders are read as two ranges: analysed records
+ * by loudness, then, with [notAnalysed], the others by id.
+ */
+@Suppress("LongParameterList")
+internal fun buildRecordsPageQuery(
+    after: RecordsCursor?,
+    pageSize: Int,
+    sortOrder: SortOrder,
+    isBookmarked: Boolean,
+    filter: RecordsFilter,
+    notAnalysed: Boolean = false,
+): SimpleSQLiteQuery {
+    val args = mutableListOf<Any>()
+    val sb = StringBuilder()
+    sb.append("SELECT $RECORD_LIST_COLUMNS FROM records")
+    sb.append(" WHERE isMovedToRecycle = 0")
+    appendFilterClauses(sb, args, isBookmarked, filter)
+    val direction = sortOrder.toSqlSortOrder()
+    if (notAnalysed) {
+        sb.append(" AND $RECORDS_COLUMN_LOUDNESS IS NULL")
+        if (after != null) {
+            sb.append(if (direction == "ASC") " AND id > ?" else " AND id < ?")
+            args.add(after.id)
+        }
+        sb.append(" ORDER BY id $direction")
+    } else {
+        val column = sortOrder.toRecordsSortColumnName()
+        val value = after?.sortValue(sortOrder)
+        if (after != null && value != null) {
+            // A range on the sort column, so the index is searched from the cursor on.
+            val (from, past) = if (direction == "ASC") ">=" to ">" else "<=" to "<"
+            sb.append(" AND $column $from ? AND ($column $past ? OR id $past ?)")
+            args.add(value)
+            args.add(value)
+            args.add(after.id)
+        } else if (sortOrder.isByLoudness()) {
+            sb.append(" AND $RECORDS_COLUMN_LOUDNESS IS NOT NULL")
+        }
+        sb.append(" ORDER BY $column $direction, id $direction")
+    }
+    sb.append(" LIMIT $pageSize")
+    return SimpleSQLiteQuery(sb.toString(), args.toTypedArray())
+}
+
+/**
+ * Builds the query of [RecordsDataSource.searchRecords]: the ids and match info of every record
+ * outside the recycle bin that matches the FTS [match] expression and the filters. Only the id
+ * and match info are read for every match, the caller ranks them and reads the best records.
+ */
+internal fun buildRecordsSearchQuery(
+    match: String,
+    isBookmarked: Boolean,
+    filter: RecordsFilter,
+): SimpleSQLiteQuery {
+    val args = mutableListOf<Any>(match)
+    val sb = StringBuilder()
+    sb.append("SELECT records.id AS id, matchinfo(records_fts, 'pcx') AS matchInfo")
+    // CROSS JOIN keeps the full-text index as the outer loop, matched records are read by id.
+    sb.append(" FROM records_fts CROSS JOIN records ON records.id = records_fts.docid")
+    sb.append(" WHERE records_fts MATCH ? AND isMovedToRecycle = 0")
+    appendFilterClauses(sb, args, isBookmarked, filter)
+    return SimpleSQLiteQuery(sb.toString(), args.toTypedArray())
+}
+
+/** Appends the conditions of the bookmarks list and of the [filter] to a `records` query. */
+private fun appendFilterClauses(
+    sb: StringBuilder,
+    args: MutableList<Any>,
+    isBookmarked: Boolean,
+    filter: RecordsFilter
+) {
+    if (isBookmarked) {
+        sb.append(" AND isBookmarked = 1")
+    }
+    appendInClause(sb, args, "format", filter.formats)
+    appendInClause(sb, args, "sampleRate", filter.sampleRates)
+    appendInClause(sb, args, "channelCount", filter.channelCounts)
+    appendInClause(sb, args, "bitrate", filter.bitrates)
+    if (filter.onlyClipped) {
+        sb.append(" AND clippedSamples > 0")
+    }
+}
+
+private fun SortOrder.isByLoudness(): Boolean {
+    return toRecordsSortColumnName() == RECORDS_COLUMN_LOUDNESS
+}
+
+private fun RecordsCursor.sortValue(sortOrder: SortOrder): Any? {
+    return when (sortOrder.toRecordsSortColumnName()) {
+        RECORDS_COLUMN_ADDED -> added
+        RECORDS_COLUMN_NAME -> name
+        RECORDS_COLUMN_DURATION -> durationMills
+        else -> loudness
+    }
+}
+
+/**
+ * Appends an `AND column IN (?, ?, ...)` clause for the given [values], adding the bound
+ * arguments to [args]. Empty value sets are ignored so the column is not filtered.
+ */
+private fun appendInClause(
+    sb: StringBuilder,
+    args: MutableList<Any>,
+    column: String,
+    values: Collection<Any>
+) {
+    if (values.isEmpty()) return
+    val placeholders = values.joinToString(separator = ", ") { "?" }
+    sb.append(" AND $column IN ($placeholders)")
+    args.addAll(values)
+}
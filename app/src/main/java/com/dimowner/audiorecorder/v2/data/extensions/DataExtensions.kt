@@ -6,15 +6,18 @@ import com.dimowner.audiorecorder.v2.data.model.SortOrder
 const val RECORDS_COLUMN_ADDED = "added"
 const val RECORDS_COLUMN_NAME = "name"
 const val RECORDS_COLUMN_DURATION = "duration"
+const val RECORDS_COLUMN_LOUDNESS = "loudness"
 
 fun SortOrder.toSqlSortOrder(): String {
     return when (this) {
         SortOrder.DateDesc,
         SortOrder.NameDesc,
-        SortOrder.DurationLongest -> "DESC"
+        SortOrder.DurationLongest,
+        SortOrder.LoudnessLoudest -> "DESC"
         SortOrder.DateAsc,
         SortOrder.NameAsc,
-        SortOrder.DurationShortest -> "ASC"
+        SortOrder.DurationShortest,
+        SortOrder.LoudnessQuietest -> "ASC"
     }
 }
 
@@ -26,9 +29,26 @@ fun SortOrder.toRecordsSortColumnName(): String {
         SortOrder.NameDesc -> RECORDS_COLUMN_NAME
         SortOrder.DurationShortest,
         SortOrder.DurationLongest -> RECORDS_COLUMN_DURATION
+        SortOrder.LoudnessLoudest,
+        SortOrder.LoudnessQuietest -> RECORDS_COLUMN_LOUDNESS
     }
 }
 
+/** Runs of characters that the unicode61 tokenizer of the records search treats as separators. */
+private val FTS_SEPARATORS = Regex("[^\\p{L}\\p{N}]+")
+
+/**
+ * Converts text typed into the search field into an FTS MATCH expression that finds records
+ * with a word starting with each typed word. Every word is quoted, so FTS operators and
+ * punctuation typed by the user are not interpreted. Returns an empty string when there is
+ * no word to search.
+ */
+fun String.toFtsPrefixQuery(): String {
+    return split(FTS_SEPARATORS)
+        .filter { it.isNotEmpty() }
+        .joinToString(separator = " ") { "\"$it*\"" }
+}
+
 fun checkForLostRecords(records: List<Record>): List<Record> {
     return records.filter { !isFileExists(it.path) }
 }
@@ -36,6 +36,27 @@ data class Record(
     val amps: IntArray,
     /** Optional user-provided description stored as COMMENT tag in the audio file metadata. */
     val description: String,
+    /**
+     * Id of the other output of a dual-output recording: the M4a copy for a Wav master and
+     * the Wav master for its copy. [NO_LINKED_RECORD] for ordinary records.
+     */
+    val linkedRecordId: Long = NO_LINKED_RECORD,
+    /**
+     * Parts of the capture timeline kept in the file when silence was skipped while recording,
+     * as `[start, end]` pairs in milliseconds. Empty if the file holds everything captured.
+     */
+    val keptSegments: IntArray = intArrayOf(),
+    /**
+     * Integrated loudness in LUFS (EBU R 128), measured while the waveform is decoded.
+     * Null until the record has been analysed.
+     */
+    val loudness: Double? = null,
+    /** Loudness range in LU (EBU Tech 3342). Null until the record has been analysed. */
+    val loudnessRange: Double? = null,
+    /** True peak in dBTP. Null until the record has been analysed. */
+    val truePeak: Double? = null,
+    /** Number of samples at digital full scale. Null until the record has been analysed. */
+    val clippedSamples: Long? = null,
 ) {
 
     @SuppressWarnings("CyclomaticComplexMethod")
@@ -61,7 +82,13 @@ data class Record(
         if (isWaveformProcessed != other.isWaveformProcessed) return false
         if (isMovedToRecycle != other.isMovedToRecycle) return false
         if (!amps.contentEquals(other.amps)) return false
-        return description == other.description
+        if (description != other.description) return false
+        if (linkedRecordId != other.linkedRecordId) return false
+        if (!keptSegments.contentEquals(other.keptSegments)) return false
+        if (loudness != other.loudness) return false
+        if (loudnessRange != other.loudnessRange) return false
+        if (truePeak != other.truePeak) return false
+        return clippedSamples == other.clippedSamples
     }
 
     override fun hashCode(): Int {
@@ -82,6 +109,14 @@ data class Record(
         result = 31 * result + isMovedToRecycle.hashCode()
         result = 31 * result + amps.contentHashCode()
         result = 31 * result + description.hashCode()
+        result = 31 * result + linkedRecordId.hashCode()
+        result = 31 * result + keptSegments.contentHashCode()
+        result = 31 * result + (loudness?.hashCode() ?: 0)
+        result = 31 * result + (loudnessRange?.hashCode() ?: 0)
+        result = 31 * result + (truePeak?.hashCode() ?: 0)
+        result = 31 * result + (clippedSamples?.hashCode() ?: 0)
         return result
     }
 }
+
+const val NO_LINKED_RECORD = -1L
@@ -20,12 +20,13 @@ import kotlinx.parcelize.Parcelize
 
 @Parcelize
 enum class RecordingFormat(val value: String, val index: Int) : Parcelable {
-    M4a("m4a", 0), Wav("wav", 1), ThreeGp("3gp", 2)
+    M4a("m4a", 0), Wav("wav", 1), ThreeGp("3gp", 2), Flac("flac", 3)
 }
 
 fun String.convertToRecordingFormat(): RecordingFormat? {
     return if (this.equals(RecordingFormat.M4a.value, true)) RecordingFormat.M4a
     else if (this.equals(RecordingFormat.Wav.value, true)) RecordingFormat.Wav
     else if (this.equals(RecordingFormat.ThreeGp.value, true)) RecordingFormat.ThreeGp
+    else if (this.equals(RecordingFormat.Flac.value, true)) RecordingFormat.Flac
     else null
 }
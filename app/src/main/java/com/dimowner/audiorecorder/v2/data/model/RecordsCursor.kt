@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.v2.data.model
+
+/**
+ * Position of a record in a sorted records list, used to load the page that follows it.
+ * Holds the id and the value of every column the lists sort by, so the same cursor works
+ * for any [SortOrder] and for the trash, which is sorted by [removed].
+ *
+ * A page is read from the index starting right after this position rather than skipping
+ * rows with an offset, so it costs the same at any depth and doesn't repeat or skip records
+ * when others are added or removed while the list is scrolled.
+ */
+data class RecordsCursor(
+    val id: Long,
+    val added: Long,
+    val name: String,
+    val durationMills: Long,
+    val loudness: Double?,
+    val removed: Long,
+)
+
+fun Record.toRecordsCursor(): RecordsCursor {
+    return RecordsCursor(
+        id = id,
+        added = added,
+        name = name,
+        durationMills = durationMills,
+        loudness = loudness,
+        removed = removed,
+    )
+}
@@ -37,7 +37,13 @@ enum class SortOrder {
     DurationShortest,
 
     /** Sorts by duration in descending order (longest to shortest). */
-    DurationLongest
+    DurationLongest,
+
+    /** Sorts by integrated loudness in descending order (loudest to quietest), not analysed records last. */
+    LoudnessLoudest,
+
+    /** Sorts by integrated loudness in ascending order (quietest to loudest), not analysed records last. */
+    LoudnessQuietest
 }
 
 fun String.convertToSortOrder(): SortOrder? {
@@ -47,5 +53,7 @@ fun String.convertToSortOrder(): SortOrder? {
     else if (this == SortOrder.NameDesc.toString()) SortOrder.NameDesc
     else if (this == SortOrder.DurationShortest.toString()) SortOrder.DurationShortest
     else if (this == SortOrder.DurationLongest.toString()) SortOrder.DurationLongest
+    else if (this == SortOrder.LoudnessLoudest.toString()) SortOrder.LoudnessLoudest
+    else if (this == SortOrder.LoudnessQuietest.toString()) SortOrder.LoudnessQuietest
     else null
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.v2.data.room
+
+import androidx.room.TypeConverter
+
+/**
+ * Stores the waveform amplitudes of a record as a BLOB: a format byte, the amplitude count
+ * and every amplitude as a zigzag varint of its difference to the previous one. Neighbouring
+ * amplitudes are close, so most of them take a single byte, and reading a row decodes
+ * straight into the resulting [IntArray].
+ *
+ * Only `amps` uses it; other [IntArray] columns keep the text form of [Converters].
+ */
+class AmpsConverter {
+
+    @TypeConverter
+    fun fromIntArray(amps: IntArray): ByteArray = encode(amps)
+
+    @TypeConverter
+    fun toIntArray(blob: ByteArray): IntArray = decode(blob)
+
+    companion object {
+        private const val FORMAT_DELTA_VARINT: Byte = 1
+
+        @JvmStatic
+        fun encode(amps: IntArray): ByteArray {
+            var size = 1 + varintSize(amps.size)
+            var previous = 0
+            for (value in amps) {
+                size += varintSize(zigzag(value - previous))
+                previous = value
+            }
+            val blob = ByteArray(size)
+            blob[0] = FORMAT_DELTA_VARINT
+            var position = writeVarint(blob, 1, amps.size)
+            previous = 0
+            for (value in amps) {
+                position = writeVarint(blob, position, zigzag(value - previous))
+                previous = value
+            }
+            return blob
+        }
+
+        /** Decodes a BLOB written by [encode]. An empty BLOB holds no amplitudes. */
+        @JvmStatic
+        fun decode(blob: ByteArray): IntArray {
+            if (blob.isEmpty()) return IntArray(0)
+            require(blob[0] == FORMAT_DELTA_VARINT) { "Unknown amps format: ${blob[0]}" }
+            var position = 1
+            var count = 0
+            var shift = 0
+            while (true) {
+                val byte = blob[position++].toInt()
+                count = count or ((byte and 0x7F) shl shift)
+                if (byte >= 0) break
+                shift += 7
+            }
+            val amps = IntArray(count)
+            var previous = 0
+            for (i in 0 until count) {
+                var encoded = 0
+                shift = 0
+                while (true) {
+                    val byte = blob[position++].toInt()
+                    encoded = encoded or ((byte and 0x7F) shl shift)
+                    if (byte >= 0) break
+                    shift += 7
+                }
+                previous += (encoded ushr 1) xor -(encoded and 1)
+                amps[i] = previous
+            }
+            return amps
+        }
+
+        private fun zigzag(value: Int): Int = (value shl 1) xor (value shr 31)
+
+        private fun varintSize(value: Int): Int {
+            var remaining = value
+            var size = 1
+            while (remaining and 0x7F.inv() != 0) {
+                remaining = remaining ushr 7
+                size++
+            }
+            return size
+        }
+
+        private fun writeVarint(blob: ByteArray, position: Int, value: Int): Int {
+            var remaining = value
+            var index = position
+            while (remaining and 0x7F.inv() != 0) {
+                blob[index++] = ((remaining and 0x7F) or 0x80).toByte()
+                remaining = remaining ushr 7
+            }
+            blob[index++] = remaining.toByte()
+            return index
+        }
+    }
+}
@@ -31,7 +31,166 @@ val MIGRATION_1_2 = object : Migration(1, 2) {
     }
 }
 
-@Database(entities = [RecordEntity::class], version = 2, exportSchema = false)
+val MIGRATION_2_3 = object : Migration(2, 3) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("ALTER TABLE records ADD COLUMN linkedRecordId INTEGER NOT NULL DEFAULT -1")
+    }
+}
+
+val MIGRATION_3_4 = object : Migration(3, 4) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("ALTER TABLE records ADD COLUMN keptSegments TEXT NOT NULL DEFAULT ''")
+    }
+}
+
+val MIGRATION_4_5 = object : Migration(4, 5) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("ALTER TABLE records ADD COLUMN loudness REAL")
+        database.execSQL("ALTER TABLE records ADD COLUMN loudnessRange REAL")
+        database.execSQL("ALTER TABLE records ADD COLUMN truePeak REAL")
+        database.execSQL("ALTER TABLE records ADD COLUMN clippedSamples INTEGER")
+        database.execSQL("CREATE INDEX IF NOT EXISTS index_records_loudness ON records (loudness)")
+        database.execSQL("CREATE INDEX IF NOT EXISTS index_records_clippedSamples ON records (clippedSamples)")
+    }
+}
+
+/** Rows converted per query by [MIGRATION_5_6], bounds the amps held in memory at once. */
+private const val AMPS_MIGRATION_BATCH_SIZE = 50
+
+/**
+ * Moves `amps` from comma separated text to the [AmpsConverter] BLOB. SQLite can't change
+ * the type of a column, so the table is copied into a new one with an empty BLOB, and the
+ * amps are then converted in batches of [AMPS_MIGRATION_BATCH_SIZE] rows in id order.
+ */
+val MIGRATION_5_6 = object : Migration(5, 6) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "CREATE TABLE records_new (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                "name TEXT NOT NULL, " +
+                "duration INTEGER NOT NULL, " +
+                "created INTEGER NOT NULL, " +
+                "added INTEGER NOT NULL, " +
+                "removed INTEGER NOT NULL, " +
+                "path TEXT NOT NULL, " +
+                "format TEXT NOT NULL, " +
+                "size INTEGER NOT NULL, " +
+                "sampleRate INTEGER NOT NULL, " +
+                "channelCount INTEGER NOT NULL, " +
+                "bitrate INTEGER NOT NULL, " +
+                "isBookmarked INTEGER NOT NULL, " +
+                "isWaveformProcessed INTEGER NOT NULL, " +
+                "isMovedToRecycle INTEGER NOT NULL, " +
+                "amps BLOB NOT NULL, " +
+                "description TEXT NOT NULL DEFAULT '', " +
+                "linkedRecordId INTEGER NOT NULL DEFAULT -1, " +
+                "keptSegments TEXT NOT NULL DEFAULT '', " +
+                "loudness REAL, " +
+                "loudnessRange REAL, " +
+                "truePeak REAL, " +
+                "clippedSamples INTEGER)"
+        )
+        val columns = "id, name, duration, created, added, removed, path, format, size, sampleRate, " +
+            "channelCount, bitrate, isBookmarked, isWaveformProcessed, isMovedToRecycle, description, " +
+            "linkedRecordId, keptSegments, loudness, loudnessRange, truePeak, clippedSamples"
+        database.execSQL("INSERT INTO records_new ($columns, amps) SELECT $columns, X'' FROM records")
+
+        val converters = Converters()
+        var lastId = Long.MIN_VALUE
+        while (true) {
+            var count = 0
+            database.query(
+                "SELECT id, amps FROM records WHERE id > ? ORDER BY id LIMIT $AMPS_MIGRATION_BATCH_SIZE",
+                arrayOf<Any?>(lastId)
+            ).use { cursor ->
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0)
+                    val amps = converters.toIntArray(cursor.getString(1) ?: "")
+                    database.execSQL(
+                        "UPDATE records_new SET amps = ? WHERE id = ?",
+                        arrayOf<Any?>(AmpsConverter.encode(amps), lastId)
+                    )
+                    count++
+                }
+            }
+            if (count < AMPS_MIGRATION_BATCH_SIZE) break
+        }
+
+        // Keep ids of deleted records from being reused.
+        database.execSQL(
+            "UPDATE sqlite_sequence SET seq = MAX(seq, " +
+                "COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'records'), 0)) " +
+                "WHERE name = 'records_new'"
+        )
+        database.execSQL("DROP TABLE records")
+        database.execSQL("ALTER TABLE records_new RENAME TO records")
+        database.execSQL("CREATE INDEX IF NOT EXISTS index_records_loudness ON records (loudness)")
+        database.execSQL("CREATE INDEX IF NOT EXISTS index_records_clippedSamples ON records (clippedSamples)")
+    }
+}
+
+/**
+ * Replaces the single column loudness and clipping indexes with the composite indexes of
+ * [RecordEntity], which match the `isMovedToRecycle` filter and the sort column of each list.
+ */
+val MIGRATION_6_7 = object : Migration(6, 7) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("DROP INDEX IF EXISTS index_records_loudness")
+        database.execSQL("DROP INDEX IF EXISTS index_records_clippedSamples")
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_records_isMovedToRecycle_added ON records (isMovedToRecycle, added)"
+        )
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_records_isMovedToRecycle_name ON records (isMovedToRecycle, name)"
+        )
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_records_isMovedToRecycle_duration ON records (isMovedToRecycle, duration)"
+        )
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_records_isMovedToRecycle_loudness ON records (isMovedToRecycle, loudness)"
+        )
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_records_isMovedToRecycle_removed ON records (isMovedToRecycle, removed)"
+        )
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_records_isMovedToRecycle_clippedSamples " +
+                "ON records (isMovedToRecycle, clippedSamples)"
+        )
+        database.execSQL("CREATE INDEX IF NOT EXISTS index_records_path ON records (path)")
+    }
+}
+
+/**
+ * Adds the [RecordFtsEntity] full-text index with the triggers Room keeps it in sync with,
+ * then indexes the names and descriptions of the existing records.
+ */
+val MIGRATION_7_8 = object : Migration(7, 8) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "CREATE VIRTUAL TABLE IF NOT EXISTS `records_fts` USING FTS4(" +
+                "`name` TEXT NOT NULL, `description` TEXT NOT NULL, " +
+                "tokenize=unicode61, content=`records`, prefix=`2,3`)"
+        )
+        for (timing in listOf("BEFORE_UPDATE", "BEFORE_DELETE")) {
+            database.execSQL(
+                "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_records_fts_$timing " +
+                    "${timing.replace('_', ' ')} ON `records` BEGIN " +
+                    "DELETE FROM `records_fts` WHERE `docid`=OLD.`rowid`; END"
+            )
+        }
+        for (timing in listOf("AFTER_UPDATE", "AFTER_INSERT")) {
+            database.execSQL(
+                "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_records_fts_$timing " +
+                    "${timing.replace('_', ' ')} ON `records` BEGIN " +
+                    "INSERT INTO `records_fts`(`docid`, `name`, `description`) " +
+                    "VALUES (NEW.`rowid`, NEW.`name`, NEW.`description`); END"
+            )
+        }
+        database.execSQL("INSERT INTO records_fts(records_fts) VALUES('rebuild')")
+    }
+}
+
+@Database(entities = [RecordEntity::class, RecordFtsEntity::class], version = 8, exportSchema = false)
 abstract class AppDatabase : RoomDatabase() {
 
     abstract fun recordDao(): RecordDao
@@ -47,7 +206,15 @@ abstract class AppDatabase : RoomDatabase() {
                     AppDatabase::class.java,
                     DATABASE_NAME
                 )
-                    .addMigrations(MIGRATION_1_2)
+                    .addMigrations(
+                        MIGRATION_1_2,
+                        MIGRATION_2_3,
+                        MIGRATION_3_4,
+                        MIGRATION_4_5,
+                        MIGRATION_5_6,
+                        MIGRATION_6_7,
+                        MIGRATION_7_8,
+                    )
                     .build()
                 INSTANCE = instance
                 instance
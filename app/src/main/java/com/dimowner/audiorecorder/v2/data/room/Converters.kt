@@ -25,12 +25,36 @@ class Converters {
         return intArray.joinToString(separator = ",")
     }
 
+    /** Parses the comma separated form in place, without a String or boxed Int per value. */
     @TypeConverter
     fun toIntArray(value: String): IntArray {
-        return if (value.isBlank()) {
-            intArrayOf()
-        } else {
-            value.split(",").map { it.toInt() }.toIntArray()
+        if (value.isBlank()) return intArrayOf()
+        var count = 1
+        for (char in value) {
+            if (char == ',') count++
         }
+        val result = IntArray(count)
+        var start = 0
+        for (i in 0 until count) {
+            var end = value.indexOf(',', start)
+            if (end < 0) end = value.length
+            result[i] = parseInt(value, start, end)
+            start = end + 1
+        }
+        return result
+    }
+
+    private fun parseInt(value: String, start: Int, end: Int): Int {
+        var index = start
+        val isNegative = index < end && value[index] == '-'
+        if (isNegative) index++
+        if (index >= end) throw NumberFormatException("Not a number: " + value.substring(start, end))
+        var result = 0
+        while (index < end) {
+            val digit = value[index++] - '0'
+            if (digit !in 0..9) throw NumberFormatException("Not a number: " + value.substring(start, end))
+            result = result * 10 + digit
+        }
+        return if (isNegative) -result else result
     }
 }
@@ -18,11 +18,10 @@ package com.dimowner.audiorecorder.v2.data.room
 
 import androidx.room.Dao
 import androidx.room.Delete
-import androidx.room.Insert
-import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import androidx.room.RawQuery
 import androidx.room.Update
+import androidx.room.Upsert
 import androidx.sqlite.db.SupportSQLiteQuery
 
 @SuppressWarnings("TooManyFunctions")
@@ -35,10 +34,16 @@ interface RecordDao {
     @Query("SELECT * FROM records WHERE id IN (:recordIds)")
     fun getRecordsByIds(recordIds: List<Long>): List<RecordEntity>
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    /**
+     * Inserts the record, or updates the record with the same id. Not a REPLACE insert: the
+     * row deleted by REPLACE doesn't fire the delete trigger of [RecordFtsEntity], which would
+     * keep the old name in the search index. Returns the id of an inserted record, -1 on update.
+     */
+    @Upsert
     fun insertRecord(record: RecordEntity): Long
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    /** Inserts the records, or updates those with an existing id, see [insertRecord]. */
+    @Upsert
     fun insertRecords(records: List<RecordEntity>)
 
     @Update
@@ -95,8 +100,19 @@ interface RecordDao {
     @Query("SELECT * FROM records WHERE isMovedToRecycle = 1 ORDER BY removed DESC")
     fun getMovedToRecycleRecords(): List<RecordEntity>
 
-    @Query("SELECT * FROM records WHERE isMovedToRecycle = 1 ORDER BY removed DESC LIMIT :pageSize OFFSET :offset")
-    fun getMovedToRecycleRecordsByPage(pageSize: Int, offset: Int): List<RecordEntity>
+    @Query(
+        "SELECT $RECORD_LIST_COLUMNS FROM records WHERE isMovedToRecycle = 1" +
+                " ORDER BY removed DESC, id DESC LIMIT :pageSize"
+    )
+    fun getMovedToRecycleRecordsFirstPage(pageSize: Int): List<RecordListRow>
+
+    /** Returns the trash records that follow the one with [removed] and [id] in the trash order. */
+    @Query(
+        "SELECT $RECORD_LIST_COLUMNS FROM records WHERE isMovedToRecycle = 1" +
+                " AND removed <= :removed AND (removed < :removed OR id < :id)" +
+                " ORDER BY removed DESC, id DESC LIMIT :pageSize"
+    )
+    fun getMovedToRecycleRecordsAfter(removed: Long, id: Long, pageSize: Int): List<RecordListRow>
 
     @Deprecated("Used only for legacy app v1")
     @Query("SELECT id FROM records WHERE isMovedToRecycle = 1 ORDER BY removed DESC")
@@ -116,6 +132,23 @@ interface RecordDao {
     @RawQuery
     fun getRecordsRewQuery(query: SupportSQLiteQuery): List<RecordEntity>
 
+    /**
+     * Same as [getRecordsRewQuery] for queries that select [RECORD_LIST_COLUMNS],
+     * so that the waveform is not read for list pages.
+     */
+    @RawQuery
+    fun getRecordListRawQuery(query: SupportSQLiteQuery): List<RecordListRow>
+
+    /**
+     * Full-text search in [RecordFtsEntity]. The query selects the record `id` and the
+     * `matchInfo` that [rank] reads, records themselves are then read by [getRecordListRowsByIds].
+     */
+    @RawQuery
+    fun searchRecordsRawQuery(query: SupportSQLiteQuery): List<RecordSearchMatch>
+
+    @Query("SELECT $RECORD_LIST_COLUMNS FROM records WHERE id IN (:recordIds)")
+    fun getRecordListRowsByIds(recordIds: List<Long>): List<RecordListRow>
+
     @Query("SELECT DISTINCT format FROM records WHERE isMovedToRecycle = 0 AND format != '' ORDER BY format ASC")
     fun getDistinctFormats(): List<String>
 
@@ -128,6 +161,9 @@ interface RecordDao {
     @Query("SELECT DISTINCT bitrate FROM records WHERE isMovedToRecycle = 0 AND bitrate > 0 ORDER BY bitrate ASC")
     fun getDistinctBitrates(): List<Int>
 
+    @Query("SELECT EXISTS(SELECT 1 FROM records WHERE isMovedToRecycle = 0 AND clippedSamples > 0)")
+    fun hasClippedRecords(): Boolean
+
     /**
      * Returns records that appear to be broken due to an interrupted recording.
      * A broken record has duration=0 (meaning handleRecordingStopped never ran)
@@ -18,10 +18,28 @@ package com.dimowner.audiorecorder.v2.data.room
 
 import androidx.room.ColumnInfo
 import androidx.room.Entity
+import androidx.room.Index
 import androidx.room.PrimaryKey
 import androidx.room.TypeConverters
+import com.dimowner.audiorecorder.v2.data.model.NO_LINKED_RECORD
 
-@Entity(tableName = "records")
+/**
+ * Every list query filters on `isMovedToRecycle`, so each index leads with it and then holds
+ * the column a [com.dimowner.audiorecorder.v2.data.model.SortOrder] or the trash sorts by.
+ * The rows of a page are then read in index order without sorting the whole table.
+ */
+@Entity(
+    tableName = "records",
+    indices = [
+        Index(value = ["isMovedToRecycle", "added"]),
+        Index(value = ["isMovedToRecycle", "name"]),
+        Index(value = ["isMovedToRecycle", "duration"]),
+        Index(value = ["isMovedToRecycle", "loudness"]),
+        Index(value = ["isMovedToRecycle", "removed"]),
+        Index(value = ["isMovedToRecycle", "clippedSamples"]),
+        Index(value = ["path"]),
+    ]
+)
 @TypeConverters(Converters::class)
 data class RecordEntity(
     @PrimaryKey(autoGenerate = true) val id: Long = 0,
@@ -39,8 +57,14 @@ data class RecordEntity(
     @ColumnInfo(name = "isBookmarked") val isBookmarked: Boolean,
     @ColumnInfo(name = "isWaveformProcessed") val isWaveformProcessed: Boolean,
     @ColumnInfo(name = "isMovedToRecycle") val isMovedToRecycle: Boolean,
-    @ColumnInfo(name = "amps") val amps: IntArray,
+    @ColumnInfo(name = "amps") @field:TypeConverters(AmpsConverter::class) val amps: IntArray,
     @ColumnInfo(name = "description", defaultValue = "") val description: String = "",
+    @ColumnInfo(name = "linkedRecordId", defaultValue = "-1") val linkedRecordId: Long = NO_LINKED_RECORD,
+    @ColumnInfo(name = "keptSegments", defaultValue = "") val keptSegments: IntArray = intArrayOf(),
+    @ColumnInfo(name = "loudness") val loudness: Double? = null,
+    @ColumnInfo(name = "loudnessRange") val loudnessRange: Double? = null,
+    @ColumnInfo(name = "truePeak") val truePeak: Double? = null,
+    @ColumnInfo(name = "clippedSamples") val clippedSamples: Long? = null,
 ) {
 
     override fun equals(other: Any?): Boolean {
@@ -65,7 +89,13 @@ data class RecordEntity(
         if (isWaveformProcessed != other.isWaveformProcessed) return false
         if (isMovedToRecycle != other.isMovedToRecycle) return false
         if (!amps.contentEquals(other.amps)) return false
-        return description == other.description
+        if (description != other.description) return false
+        if (linkedRecordId != other.linkedRecordId) return false
+        if (!keptSegments.contentEquals(other.keptSegments)) return false
+        if (loudness != other.loudness) return false
+        if (loudnessRange != other.loudnessRange) return false
+        if (truePeak != other.truePeak) return false
+        return clippedSamples == other.clippedSamples
     }
 
     override fun hashCode(): Int {
@@ -86,6 +116,12 @@ data class RecordEntity(
         result = 31 * result + isMovedToRecycle.hashCode()
         result = 31 * result + amps.contentHashCode()
         result = 31 * result + description.hashCode()
+        result = 31 * result + linkedRecordId.hashCode()
+        result = 31 * result + keptSegments.contentHashCode()
+        result = 31 * result + (loudness?.hashCode() ?: 0)
+        result = 31 * result + (loudnessRange?.hashCode() ?: 0)
+        result = 31 * result + (truePeak?.hashCode() ?: 0)
+        result = 31 * result + (clippedSamples?.hashCode() ?: 0)
         return result
     }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.v2.data.room
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+
+/**
+ * Full-text index of record names and descriptions, searched by [RecordDao.searchRecordsRawQuery].
+ * The text is not stored twice: `records` is the content table and Room keeps the index in
+ * sync with triggers on it. The unicode61 tokenizer folds case and diacritics of any script,
+ * and prefix indexes of 2 and 3 characters keep the first letters typed into a search cheap.
+ */
+@Fts4(
+    contentEntity = RecordEntity::class,
+    tokenizer = FtsOptions.TOKENIZER_UNICODE61,
+    prefix = [2, 3],
+)
+@Entity(tableName = "records_fts")
+data class RecordFtsEntity(
+    @ColumnInfo(name = "name") val name: String,
+    @ColumnInfo(name = "description") val description: String,
+)
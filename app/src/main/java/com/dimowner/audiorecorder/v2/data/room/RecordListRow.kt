@@ -0,0 +1,116 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.v2.data.room
+
+import androidx.room.ColumnInfo
+import androidx.room.TypeConverters
+
+/**
+ * Columns of the `records` table read by list queries: every column except `amps`.
+ * Keep in sync with [RecordListRow] and [RecordEntity].
+ */
+const val RECORD_LIST_COLUMNS = "id, name, duration, created, added, removed, path, format, size, " +
+        "sampleRate, channelCount, bitrate, isBookmarked, isWaveformProcessed, isMovedToRecycle, " +
+        "description, linkedRecordId, keptSegments, loudness, loudnessRange, truePeak, clippedSamples"
+
+/**
+ * Row of the `records` table without the waveform. Pages of the records list and the trash
+ * never draw waveforms, so they are read through this projection instead of [RecordEntity]
+ * and the `amps` blob is only loaded by id for the record that becomes active.
+ */
+@TypeConverters(Converters::class)
+data class RecordListRow(
+    @ColumnInfo(name = "id") val id: Long,
+    @ColumnInfo(name = "name") val name: String,
+    @ColumnInfo(name = "duration") val duration: Long,
+    @ColumnInfo(name = "created") val created: Long,
+    @ColumnInfo(name = "added") val added: Long,
+    @ColumnInfo(name = "removed") val removed: Long,
+    @ColumnInfo(name = "path") val path: String,
+    @ColumnInfo(name = "format") val format: String,
+    @ColumnInfo(name = "size") val size: Long,
+    @ColumnInfo(name = "sampleRate") val sampleRate: Int,
+    @ColumnInfo(name = "channelCount") val channelCount: Int,
+    @ColumnInfo(name = "bitrate") val bitrate: Int,
+    @ColumnInfo(name = "isBookmarked") val isBookmarked: Boolean,
+    @ColumnInfo(name = "isWaveformProcessed") val isWaveformProcessed: Boolean,
+    @ColumnInfo(name = "isMovedToRecycle") val isMovedToRecycle: Boolean,
+    @ColumnInfo(name = "description") val description: String,
+    @ColumnInfo(name = "linkedRecordId") val linkedRecordId: Long,
+    @ColumnInfo(name = "keptSegments") val keptSegments: IntArray,
+    @ColumnInfo(name = "loudness") val loudness: Double?,
+    @ColumnInfo(name = "loudnessRange") val loudnessRange: Double?,
+    @ColumnInfo(name = "truePeak") val truePeak: Double?,
+    @ColumnInfo(name = "clippedSamples") val clippedSamples: Long?,
+) {
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (javaClass != other?.javaClass) return false
+
+        other as RecordListRow
+
+        if (id != other.id) return false
+        if (name != other.name) return false
+        if (duration != other.duration) return false
+        if (created != other.created) return false
+        if (added != other.added) return false
+        if (removed != other.removed) return false
+        if (path != other.path) return false
+        if (format != other.format) return false
+        if (size != other.size) return false
+        if (sampleRate != other.sampleRate) return false
+        if (channelCount != other.channelCount) return false
+        if (bitrate != other.bitrate) return false
+        if (isBookmarked != other.isBookmarked) return false
+        if (isWaveformProcessed != other.isWaveformProcessed) return false
+        if (isMovedToRecycle != other.isMovedToRecycle) return false
+        if (description != other.description) return false
+        if (linkedRecordId != other.linkedRecordId) return false
+        if (!keptSegments.contentEquals(other.keptSegments)) return false
+        if (loudness != other.loudness) return false
+        if (loudnessRange != other.loudnessRange) return false
+        if (truePeak != other.truePeak) return false
+        return clippedSamples == other.clippedSamples
+    }
+
+    override fun hashCode(): Int {
+        var result = id.hashCode()
+        result = 31 * result + name.hashCode()
+        result = 31 * result + duration.hashCode()
+        result = 31 * result + created.hashCode()
+        result = 31 * result + added.hashCode()
+        result = 31 * result + removed.hashCode()
+        result = 31 * result + path.hashCode()
+        result = 31 * result + format.hashCode()
+        result = 31 * result + size.hashCode()
+        result = 31 * result + sampleRate
+        result = 31 * result + channelCount
+        result = 31 * result + bitrate
+        result = 31 * result + isBookmarked.hashCode()
+        result = 31 * result + isWaveformProcessed.hashCode()
+        result = 31 * result + isMovedToRecycle.hashCode()
+        result = 31 * result + description.hashCode()
+        result = 31 * result + linkedRecordId.hashCode()
+        result = 31 * result + keptSegments.contentHashCode()
+        result = 31 * result + (loudness?.hashCode() ?: 0)
+        result = 31 * result + (loudnessRange?.hashCode() ?: 0)
+        result = 31 * result + (truePeak?.hashCode() ?: 0)
+        result = 31 * result + (clippedSamples?.hashCode() ?: 0)
+        return result
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2026 Dmytro Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.audiorecorder.v2.data.room
+
+import androidx.room.ColumnInfo
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/** Weights of a hit in the `name` and `description` columns of [RecordFtsEntity]. */
+private val SEARCH_COLUMN_WEIGHTS = doubleArrayOf(4.0, 1.0)
+
+/**
+ * Record found by a full-text search, with the `matchinfo(records_fts, 'pcx')` of the match:
+ * the number of phrases and columns, then for each phrase and column the hits in this record,
+ * the hits in all records and the number of records with a hit.
+ */
+class RecordSearchMatch(
+    @ColumnInfo(name = "id") val id: Long,
+    @ColumnInfo(name = "matchInfo") val matchInfo: ByteArray,
+)
+
+/**
+ * Relevance of the match, higher is better. Each hit counts less the more common the word is
+ * among all records, and a hit in the name counts more than one in the description.
+ */
+fun RecordSearchMatch.rank(): Double {
+    val info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer()
+    if (info.limit() < 2) return 0.0
+    val phraseCount = info.get(0)
+    val columnCount = info.get(1)
+    if (info.limit() < 2 + 3 * phraseCount * columnCount) return 0.0
+    var rank = 0.0
+    for (phrase in 0 until phraseCount) {
+        for (column in 0 until columnCount) {
+            val offset = 2 + 3 * (phrase * columnCount + column)
+            val hitsInRecord = info.get(offset)
+            val hitsInAllRecords = info.get(offset + 1)
+            if (hitsInRecord > 0 && hitsInAllRecords > 0) {
+                val weight = SEARCH_COLUMN_WEIGHTS.getOrElse(column) { 1.0 }
+                rank += weight * hitsInRecord / hitsInAllRecords
+            }
+        }
+    }
+    return rank
+}
@@ -0,0 +1,155 @@
+package com.dimowner.audiorecorder.audio
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.PI
+import kotlin.math.pow
+import kotlin.math.roundToInt
+import kotlin.math.sin
+
+/** Reference signals from EBU Tech 3341 and Tech 3342, 1 kHz tones unless stated otherwise. */
+class LoudnessAnalyzerTest {
+
+    /** A tone of the same amplitude in every channel, one `(dBFS, seconds)` pair per part. */
+    private fun tone(
+        sampleRate: Int,
+        channelCount: Int,
+        vararg parts: Pair<Double, Int>,
+        frequency: Double = 1000.0,
+        phase: Double = 0.0,
+    ): ShortArray {
+        val frames = parts.sumOf { it.second } * sampleRate
+        val samples = ShortArray(frames * channelCount)
+        var frame = 0
+        for ((dbfs, seconds) in parts) {
+            val amplitude = 32768 * 10.0.pow(dbfs / 20)
+            repeat(seconds * sampleRate) {
+                val value = (amplitude * sin(2 * PI * frequency * frame / sampleRate + phase))
+                    .roundToInt().coerceIn(-32768, 32767).toShort()
+                for (channel in 0 until channelCount) {
+                    samples[frame * channelCount + channel] = value
+                }
+                frame++
+            }
+        }
+        return samples
+    }
+
+    private fun analyze(
+        sampleRate: Int,
+        channelCount: Int,
+        samples: ShortArray,
+        chunkSize: Int = 4096,
+    ): AudioAnalysis {
+        val analyzer = LoudnessAnalyzer()
+        analyzer.start(sampleRate, channelCount)
+        val chunk = ShortArray(chunkSize)
+        var offset = 0
+        while (offset < samples.size) {
+            val count = minOf(chunkSize, samples.size - offset)
+            System.arraycopy(samples, offset, chunk, 0, count)
+            analyzer.consume(chunk, count)
+            offset += count
+        }
+        val builder = AudioAnalysis.Builder()
+        analyzer.finish(builder)
+        return builder.build()
+    }
+
+    private fun AudioAnalysis.integrated() = getValue(LoudnessAnalyzer.KEY_INTEGRATED_LUFS)!!
+    private fun AudioAnalysis.range() = getValue(LoudnessAnalyzer.KEY_LOUDNESS_RANGE_LU)!!
+    private fun AudioAnalysis.truePeak() = getValue(LoudnessAnalyzer.KEY_TRUE_PEAK_DBTP)!!
+
+    @Test
+    fun `stereo tone at -23 dBFS measures -23 LUFS`() {
+        val analysis = analyze(48000, 2, tone(48000, 2, -23.0 to 20))
+        assertEquals(-23.0, analysis.integrated(), 0.1)
+    }
+
+    @Test
+    fun `loudness does not depend on the sample rate`() {
+        assertEquals(-23.0, analyze(44100, 2, tone(44100, 2, -23.0 to 20)).integrated(), 0.1)
+        assertEquals(-23.0, analyze(16000, 2, tone(16000, 2, -23.0 to 20)).integrated(), 0.1)
+    }
+
+    @Test
+    fun `mono tone is 3 LU quieter than the same tone in stereo`() {
+        assertEquals(-26.0, analyze(48000, 1, tone(48000, 1, -23.0 to 20)).integrated(), 0.1)
+    }
+
+    @Test
+    fun `relative gate drops the quiet parts`() {
+        // Tech 3341 case 3.
+        val samples = tone(48000, 2, -36.0 to 10, -23.0 to 60, -36.0 to 10)
+        assertEquals(-23.0, analyze(48000, 2, samples).integrated(), 0.1)
+    }
+
+    @Test
+    fun `absolute gate drops the near silent parts`() {
+        // Tech 3341 case 4.
+        val samples = tone(48000, 2, -72.0 to 10, -36.0 to 10, -23.0 to 60, -36.0 to 10, -72.0 to 10)
+        assertEquals(-23.0, analyze(48000, 2, samples).integrated(), 0.1)
+    }
+
+    @Test
+    fun `loudness range of two levels`() {
+        // Tech 3342 cases 1 and 2.
+        assertEquals(10.0, analyze(48000, 2, tone(48000, 2, -20.0 to 20, -30.0 to 20)).range(), 1.0)
+        assertEquals(5.0, analyze(48000, 2, tone(48000, 2, -20.0 to 20, -15.0 to 20)).range(), 1.0)
+    }
+
+    @Test
+    fun `loudness range of a steady tone is zero`() {
+        assertEquals(0.0, analyze(48000, 2, tone(48000, 2, -23.0 to 20)).range(), 0.1)
+    }
+
+    @Test
+    fun `true peak finds the peak between samples`() {
+        // A quarter sample rate tone at 45 degrees puts every sample 3 dB below the real peak.
+        val samples = tone(48000, 1, -0.5 to 2, frequency = 12000.0, phase = PI / 4)
+        val analysis = analyze(48000, 1, samples)
+        val samplePeak = LevelAnalyzer.toDbfs(samples.maxOf { it.toDouble() })
+        assertEquals(-3.5, samplePeak, 0.1)
+        assertEquals(-0.5, analysis.truePeak(), 0.4)
+    }
+
+    @Test
+    fun `true peak of a low tone equals its sample peak`() {
+        assertEquals(-6.0, analyze(48000, 2, tone(48000, 2, -6.0 to 2)).truePeak(), 0.05)
+    }
+
+    @Test
+    fun `silence is reported at the absolute gate`() {
+        val analysis = analyze(48000, 2, ShortArray(48000 * 2 * 5))
+        assertEquals(LoudnessAnalyzer.ABSOLUTE_GATE_LUFS, analysis.integrated(), 0.0)
+        assertEquals(0.0, analysis.range(), 0.0)
+        assertTrue(analysis.truePeak().isInfinite())
+    }
+
+    @Test
+    fun `result does not depend on how the PCM is split`() {
+        val samples = tone(44100, 2, -30.0 to 5, -18.0 to 5)
+        val whole = analyze(44100, 2, samples, chunkSize = samples.size)
+        val split = analyze(44100, 2, samples, chunkSize = 333)
+        assertEquals(whole.integrated(), split.integrated(), 1e-9)
+        assertEquals(whole.range(), split.range(), 1e-9)
+        assertEquals(whole.truePeak(), split.truePeak(), 1e-9)
+    }
+
+    @Test
+    fun `analyzer can be restarted for another record`() {
+        val analyzer = LoudnessAnalyzer()
+        analyzer.start(8000, 1)
+        val loud = tone(8000, 1, -6.0 to 5)
+        analyzer.consume(loud, loud.size)
+
+        analyzer.start(48000, 2)
+        val samples = tone(48000, 2, -23.0 to 20)
+        analyzer.consume(samples, samples.size)
+        val builder = AudioAnalysis.Builder()
+        analyzer.finish(builder)
+
+        assertEquals(-23.0, builder.build().integrated(), 0.1)
+    }
+}
@@ -0,0 +1,138 @@
+package com.dimowner.audiorecorder.audio
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.ShortBuffer
+
+class PcmAnalyzerTest {
+
+    private fun analyze(
+        analyzers: List<PcmAnalyzer>,
+        sampleRate: Int,
+        channelCount: Int,
+        samples: ShortArray,
+    ): AudioAnalysis {
+        val chain = PcmAnalyzerChain(analyzers)
+        chain.start(sampleRate, channelCount)
+        chain.consume(ShortBuffer.wrap(samples))
+        return chain.finish()!!
+    }
+
+    @Test
+    fun `chain feeds every analyzer and leaves the buffer position`() {
+        val buffer = ByteBuffer.allocate(20_000).order(ByteOrder.LITTLE_ENDIAN)
+        repeat(10_000) { buffer.putShort(if (it == 7000) 16384 else 0) }
+        buffer.flip()
+        val chain = PcmAnalyzerChain(listOf(LevelAnalyzer(), ClippingAnalyzer()))
+        chain.start(8000, 1)
+
+        chain.consume(buffer)
+
+        assertEquals(0, buffer.position())
+        val analysis = chain.finish()!!
+        assertEquals(setOf(LevelAnalyzer.KEY_PEAK_DBFS, LevelAnalyzer.KEY_RMS_DBFS,
+            ClippingAnalyzer.KEY_CLIPPED_SAMPLES, ClippingAnalyzer.KEY_CLIPPED_RUNS), analysis.keys)
+        assertEquals(-6.02, analysis.getValue(LevelAnalyzer.KEY_PEAK_DBFS)!!, 0.01)
+    }
+
+    @Test
+    fun `chain without analyzers or with skipped analysis reports nothing`() {
+        assertNull(PcmAnalyzerChain(emptyList()).finish())
+        val chain = PcmAnalyzerChain(listOf(LevelAnalyzer()))
+        chain.start(8000, 1)
+        chain.skipAnalysis()
+        assertNull(chain.finish())
+    }
+
+    @Test
+    fun `level of a negative full scale signal is 0 dBFS`() {
+        val samples = ShortArray(8000) { Short.MIN_VALUE }
+        val analysis = analyze(listOf(LevelAnalyzer()), 8000, 1, samples)
+        assertEquals(0.0, analysis.getValue(LevelAnalyzer.KEY_PEAK_DBFS)!!, 0.001)
+        assertEquals(0.0, analysis.getValue(LevelAnalyzer.KEY_RMS_DBFS)!!, 0.001)
+    }
+
+    @Test
+    fun `level of digital silence is minus infinity`() {
+        val analysis = analyze(listOf(LevelAnalyzer()), 8000, 2, ShortArray(1600))
+        assertEquals(Double.NEGATIVE_INFINITY, analysis.getValue(LevelAnalyzer.KEY_PEAK_DBFS)!!, 0.0)
+    }
+
+    @Test
+    fun `clipping counts samples and runs per channel`() {
+        val max = Short.MAX_VALUE
+        val min = Short.MIN_VALUE
+        // Left clips in two runs of 2 and 1 samples, right in one run of 3 samples.
+        val samples = shortArrayOf(max, 0, max, min, 0, min, 0, min, min, 0)
+        val analysis = analyze(listOf(ClippingAnalyzer()), 8000, 2, samples)
+        assertEquals(6.0, analysis.getValue(ClippingAnalyzer.KEY_CLIPPED_SAMPLES)!!, 0.0)
+        assertEquals(3.0, analysis.getValue(ClippingAnalyzer.KEY_CLIPPED_RUNS)!!, 0.0)
+    }
+
+    @Test
+    fun `silence ranges longer than the minimum are found`() {
+        val sampleRate = 8000
+        // 1 s tone, 3 s silence, 1 s tone, 1 s silence (too short), 1 s tone, 2.5 s silence to the end.
+        val parts = listOf(true to 1000, false to 3000, true to 1000, false to 1000, true to 1000, false to 2500)
+        val samples = ShortArray(parts.sumOf { it.second } * sampleRate / 1000)
+        var pos = 0
+        for ((isTone, mills) in parts) {
+            repeat(mills * sampleRate / 1000) {
+                samples[pos] = if (isTone) (if (pos % 16 < 8) 8000 else -8000).toShort() else (pos % 3 - 1).toShort()
+                pos++
+            }
+        }
+
+        val analysis = analyze(listOf(SilenceAnalyzer()), sampleRate, 1, samples)
+
+        assertArrayEquals(
+            doubleArrayOf(1000.0, 4000.0, 7000.0, 9500.0),
+            analysis.getValues(SilenceAnalyzer.KEY_SILENCE_RANGES)!!,
+            0.0
+        )
+    }
+
+    @Test
+    fun `frames split between calls are analyzed like whole ones`() {
+        val samples = ShortArray(3 * 8000) { (if ((it / 3) % 40 < 20) 12000 else -12000).toShort() }
+        val whole = analyze(listOf(LevelAnalyzer(), SilenceAnalyzer()), 8000, 3, samples)
+
+        val chain = PcmAnalyzerChain(listOf(LevelAnalyzer(), SilenceAnalyzer()))
+        chain.start(8000, 3)
+        var pos = 0
+        while (pos < samples.size) {
+            val count = minOf(1001, samples.size - pos)
+            chain.consume(ShortBuffer.wrap(samples, pos, count))
+            pos += count
+        }
+        val split = chain.finish()!!
+
+        assertEquals(whole.getValue(LevelAnalyzer.KEY_RMS_DBFS)!!, split.getValue(LevelAnalyzer.KEY_RMS_DBFS)!!, 0.0)
+        assertTrue(split.getValues(SilenceAnalyzer.KEY_SILENCE_RANGES)!!.isEmpty())
+    }
+
+    @Test
+    fun `analysis survives serialization`() {
+        val analysis = AudioAnalysis.Builder()
+            .put("scalar", -23.5)
+            .put("ranges", doubleArrayOf(1.0, 2.0, 3.0))
+            .put("silence", Double.NEGATIVE_INFINITY)
+            .build()
+        val out = ByteArrayOutputStream()
+        analysis.writeTo(out)
+
+        val restored = AudioAnalysis.readFrom(ByteArrayInputStream(out.toByteArray()))
+
+        assertEquals(analysis.keys, restored.keys)
+        assertEquals(-23.5, restored.getValue("scalar")!!, 0.0)
+        assertArrayEquals(doubleArrayOf(1.0, 2.0, 3.0), restored.getValues("ranges")!!, 0.0)
+        assertEquals(Double.NEGATIVE_INFINITY, restored.getValue("silence")!!, 0.0)
+    }
+}
@@ -0,0 +1,164 @@
+package com.dimowner.audiorecorder.audio
+
+import com.dimowner.audiorecorder.v2.audio.WavHeaderParser
+import com.dimowner.audiorecorder.v2.audio.createRf64CapableWavHeader
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class WavWaveformReaderTest {
+
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private class TestListener(private val cancelAfterProgress: Int = Int.MAX_VALUE) : AudioDecodingListener {
+        val progress = ArrayList<Int>()
+        override fun isCanceled(): Boolean = progress.size >= cancelAfterProgress
+        override fun onStartProcessing(duration: Long, channelsCount: Int, sampleRate: Int) {}
+        override fun onProcessingProgress(percent: Int) {
+            progress.add(percent)
+        }
+        override fun onProcessingCancel() {}
+        override fun onFinishProcessing(data: IntArray, duration: Long) {}
+        override fun onError(exception: Exception) {}
+    }
+
+    private fun generatePcm(frames: Int, channelCount: Int): ByteArray {
+        val buffer = ByteBuffer.allocate(frames * channelCount * 2).order(ByteOrder.LITTLE_ENDIAN)
+        for (frame in 0 until frames) {
+            for (channel in 0 until channelCount) {
+                buffer.putShort(((frame * 31 + channel * 4099) % 65536 - 32768).toShort())
+            }
+        }
+        return buffer.array()
+    }
+
+    private fun writeWav(pcm: ByteArray, sampleRate: Int, channelCount: Int): File {
+        val file = tempFolder.newFile("test.wav")
+        file.outputStream().use {
+            it.write(createRf64CapableWavHeader(pcm.size.toLong(), sampleRate, channelCount))
+            it.write(pcm)
+        }
+        return file
+    }
+
+    private fun streamPyramid(pcm: ByteArray, sampleRate: Int, channelCount: Int): WaveformPyramid {
+        val builder = WaveformPyramidBuilder(sampleRate, channelCount)
+        builder.consume(ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN))
+        return builder.build()
+    }
+
+    private fun assertSamePyramid(expected: WaveformPyramid, actual: WaveformPyramid) {
+        assertEquals(expected.durationMills, actual.durationMills)
+        assertEquals(expected.levels.size, actual.levels.size)
+        for (i in expected.levels.indices) {
+            assertArrayEquals(expected.levels[i].peaks, actual.levels[i].peaks)
+            assertArrayEquals(expected.levels[i].rms, actual.levels[i].rms)
+        }
+    }
+
+    @Test
+    fun `mapped read matches streamed PCM`() {
+        val pcm = generatePcm(frames = 44100 * 3 + 123, channelCount = 2)
+        val file = writeWav(pcm, 44100, 2)
+        val listener = TestListener()
+
+        val pyramid = WavWaveformReader.read(file, WavHeaderParser.parse(file)!!, listener)
+
+        assertSamePyramid(streamPyramid(pcm, 44100, 2), pyramid!!)
+        assertEquals(100, listener.progress.last())
+    }
+
+    @Test
+    fun `data chunk larger than a map window is read whole`() {
+        // 2 minutes of 44.1 kHz stereo, about 21 MB, spans three map windows.
+        val pcm = generatePcm(frames = 44100 * 120, channelCount = 2)
+        val file = writeWav(pcm, 44100, 2)
+        val listener = TestListener()
+
+        val pyramid = WavWaveformReader.read(file, WavHeaderParser.parse(file)!!, listener)
+
+        assertSamePyramid(streamPyramid(pcm, 44100, 2), pyramid!!)
+        assertEquals(120_000L, pyramid.durationMills)
+        assertEquals(listOf(39, 79, 100), listener.progress)
+    }
+
+    @Test
+    fun `read resumes from checkpoint`() {
+        val pcm = generatePcm(frames = 16000 * 10, channelCount = 1)
+        val file = writeWav(pcm, 16000, 1)
+        val checkpointFile = File(tempFolder.root, "checkpoint")
+        val interrupted = WaveformPyramidBuilder(16000, 1)
+        interrupted.consume(ByteBuffer.wrap(pcm, 0, 64_000).order(ByteOrder.LITTLE_ENDIAN))
+        interrupted.sourcePosition = 64_000
+        WaveformCheckpoint.save(checkpointFile, file, interrupted)
+        val listener = TestListener()
+
+        val pyramid = WavWaveformReader.read(file, WavHeaderParser.parse(file)!!, listener, checkpointFile)
+
+        assertSamePyramid(streamPyramid(pcm, 16000, 1), pyramid!!)
+        assertEquals(listOf(100), listener.progress)
+    }
+
+    @Test
+    fun `analyzers get the whole data chunk next to the waveform`() {
+        val pcm = generatePcm(frames = 44100 * 20, channelCount = 2)
+        val file = writeWav(pcm, 44100, 2)
+        val analyzers = PcmAnalyzerChain(listOf(LevelAnalyzer(), ClippingAnalyzer()))
+
+        val pyramid = WavWaveformReader.read(file, WavHeaderParser.parse(file)!!, TestListener(), null, analyzers)
+
+        assertSamePyramid(streamPyramid(pcm, 44100, 2), pyramid!!)
+        val analysis = analyzers.finish()!!
+        val samples = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer()
+        val clipped = (0 until samples.limit()).count {
+            samples[it] == Short.MAX_VALUE || samples[it] == Short.MIN_VALUE
+        }
+        assertEquals(0.0, analysis.getValue(LevelAnalyzer.KEY_PEAK_DBFS)!!, 0.0)
+        assertEquals(clipped.toDouble(), analysis.getValue(ClippingAnalyzer.KEY_CLIPPED_SAMPLES)!!, 0.0)
+    }
+
+    @Test
+    fun `analysis is skipped when a checkpoint is resumed`() {
+        val pcm = generatePcm(frames = 16000 * 10, channelCount = 1)
+        val file = writeWav(pcm, 16000, 1)
+        val checkpointFile = File(tempFolder.root, "checkpoint")
+        val interrupted = WaveformPyramidBuilder(16000, 1)
+        interrupted.consume(ByteBuffer.wrap(pcm, 0, 64_000).order(ByteOrder.LITTLE_ENDIAN))
+        interrupted.sourcePosition = 64_000
+        WaveformCheckpoint.save(checkpointFile, file, interrupted)
+        val analyzers = PcmAnalyzerChain(listOf(LevelAnalyzer()))
+
+        WavWaveformReader.read(file, WavHeaderParser.parse(file)!!, TestListener(), checkpointFile, analyzers)
+
+        assertNull(analyzers.finish())
+    }
+
+    @Test
+    fun `checkpoint of a changed file is ignored`() {
+        val pcm = generatePcm(frames = 16000, channelCount = 1)
+        val file = writeWav(pcm, 16000, 1)
+        val checkpointFile = File(tempFolder.root, "checkpoint")
+        WaveformCheckpoint.save(checkpointFile, file, WaveformPyramidBuilder(16000, 1))
+
+        assertNotNull(WaveformCheckpoint.load(checkpointFile, file, 16000, 1))
+        assertNull(WaveformCheckpoint.load(checkpointFile, file, 44100, 1))
+        file.appendBytes(ByteArray(2))
+        assertNull(WaveformCheckpoint.load(checkpointFile, file, 16000, 1))
+    }
+
+    @Test
+    fun `canceled read returns null`() {
+        val pcm = generatePcm(frames = 44100 * 120, channelCount = 2)
+        val file = writeWav(pcm, 44100, 2)
+
+        assertNull(WavWaveformReader.read(file, WavHeaderParser.parse(file)!!, TestListener(cancelAfterProgress = 1)))
+    }
+}
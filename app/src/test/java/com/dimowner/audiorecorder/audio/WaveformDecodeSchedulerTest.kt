@@ -0,0 +1,226 @@
+package com.dimowner.audiorecorder.audio
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.Executor
+
+class WaveformDecodeSchedulerTest {
+
+    /** Worker that holds posted runnables until the test runs them. */
+    private class ManualWorker : Executor {
+        val posted = ArrayList<Runnable>()
+
+        override fun execute(command: Runnable) {
+            posted.add(command)
+        }
+
+        fun runAll() {
+            val toRun = posted.toList()
+            posted.clear()
+            toRun.forEach { it.run() }
+        }
+    }
+
+    private var time = 0L
+    private val started = ArrayList<String>()
+    private val jobs = HashMap<String, DecodeJob>()
+    private val metrics = ArrayList<DecodeJobMetrics>()
+    private var idleCount = 0
+
+    private fun scheduler(vararg workers: Executor) = WaveformDecodeScheduler(
+        workers = workers.toList(),
+        clock = { time },
+        onJobMetrics = { metrics.add(it) },
+        onIdle = { idleCount++ },
+    )
+
+    private val recordingTask = DecodeTask { job ->
+        started.add(job.key)
+        jobs[job.key] = job
+    }
+
+    @Test
+    fun `running jobs are bounded by the worker count`() {
+        val workers = List(2) { ManualWorker() }
+        val scheduler = scheduler(*workers.toTypedArray())
+        repeat(5) { scheduler.submit("$it", 0, recordingTask) }
+        workers.forEach { it.runAll() }
+        assertEquals(listOf("0", "1"), started)
+
+        jobs.getValue("0").finish(DecodeOutcome.SUCCESS)
+        workers.forEach { it.runAll() }
+        assertEquals(listOf("0", "1", "2"), started)
+    }
+
+    @Test
+    fun `higher priority job starts first`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(worker)
+        scheduler.submit("a", 0, recordingTask)
+        scheduler.submit("b", 0, recordingTask)
+        scheduler.submit("c", 10, recordingTask)
+        scheduler.submit("d", 0, recordingTask)
+        worker.runAll()
+        jobs.getValue("a").finish(DecodeOutcome.SUCCESS)
+        worker.runAll()
+        jobs.getValue("c").finish(DecodeOutcome.SUCCESS)
+        worker.runAll()
+        jobs.getValue("b").finish(DecodeOutcome.SUCCESS)
+        worker.runAll()
+        assertEquals(listOf("a", "c", "b", "d"), started)
+    }
+
+    @Test
+    fun `repeated key is merged and raises priority`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(worker)
+        assertTrue(scheduler.submit("a", 0, recordingTask))
+        assertTrue(scheduler.submit("b", 0, recordingTask))
+        assertTrue(scheduler.submit("c", 0, recordingTask))
+        assertFalse(scheduler.submit("a", 0, recordingTask))
+        assertFalse(scheduler.submit("c", 5, recordingTask))
+        worker.runAll()
+        jobs.getValue("a").finish(DecodeOutcome.SUCCESS)
+        worker.runAll()
+        assertEquals(listOf("a", "c"), started)
+        assertTrue(scheduler.isQueuedOrRunning("b"))
+    }
+
+    @Test
+    fun `canceled pending job never starts`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(worker)
+        scheduler.submit("a", 0, recordingTask)
+        scheduler.submit("b", 0, recordingTask)
+        assertTrue(scheduler.cancel("b"))
+        worker.runAll()
+        jobs.getValue("a").finish(DecodeOutcome.SUCCESS)
+        worker.runAll()
+        assertEquals(listOf("a"), started)
+        assertFalse(scheduler.isQueuedOrRunning("b"))
+        assertEquals(DecodeOutcome.CANCELED, metrics.first { it.key == "b" }.outcome)
+    }
+
+    @Test
+    fun `canceled pending job reports its cancel callback`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(worker)
+        val canceled = ArrayList<String>()
+        scheduler.submit("a", 0, recordingTask, onCanceled = { canceled.add("a") })
+        scheduler.submit("b", 0, recordingTask, onCanceled = { canceled.add("b") })
+        scheduler.submit("c", 0, recordingTask, onCanceled = { canceled.add("c") })
+        scheduler.cancel("b")
+        assertEquals(listOf("b"), canceled)
+        scheduler.cancelAll()
+        assertEquals(listOf("b", "c"), canceled)
+    }
+
+    @Test
+    fun `job canceled after it was handed to a worker reports its cancel callback`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(worker)
+        var canceledCount = 0
+        scheduler.submit("a", 0, recordingTask, onCanceled = { canceledCount++ })
+        scheduler.cancel("a")
+        worker.runAll()
+        assertEquals(1, canceledCount)
+    }
+
+    @Test
+    fun `prioritize moves a queued job ahead`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(worker)
+        scheduler.submit("a", 0, recordingTask)
+        scheduler.submit("b", 0, recordingTask)
+        scheduler.submit("c", 0, recordingTask)
+        assertTrue(scheduler.prioritize("c", 10))
+        assertFalse(scheduler.prioritize("c", 5))
+        assertFalse(scheduler.prioritize("a", 10))
+        assertFalse(scheduler.prioritize("missing", 10))
+        worker.runAll()
+        jobs.getValue("a").finish(DecodeOutcome.SUCCESS)
+        worker.runAll()
+        assertEquals(listOf("a", "c"), started)
+    }
+
+    @Test
+    fun `cancel of running job only sets its token`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(ManualWorker(), worker)
+        scheduler.submit("a", 0, recordingTask)
+        scheduler.submit("b", 0, recordingTask)
+        worker.runAll()
+        val job = jobs.getValue("b")
+        assertTrue(scheduler.cancel("b"))
+        assertTrue(job.isCanceled)
+        assertTrue(scheduler.isQueuedOrRunning("b"))
+        job.finish(DecodeOutcome.CANCELED)
+        assertFalse(scheduler.isQueuedOrRunning("b"))
+    }
+
+    @Test
+    fun `job canceled before its worker ran is finished without running`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(worker)
+        scheduler.submit("a", 0, recordingTask)
+        scheduler.cancel("a")
+        worker.runAll()
+        assertTrue(started.isEmpty())
+        assertTrue(scheduler.isIdle())
+        assertEquals(DecodeOutcome.CANCELED, metrics.single().outcome)
+    }
+
+    @Test
+    fun `metrics report wait and run time`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(worker)
+        scheduler.submit("a", 0, recordingTask)
+        time = 100
+        scheduler.submit("b", 3, recordingTask)
+        worker.runAll()
+        time = 250
+        jobs.getValue("a").finish(DecodeOutcome.SUCCESS)
+        worker.runAll()
+        time = 400
+        jobs.getValue("b").finish(DecodeOutcome.ERROR)
+        // Finishing twice is ignored.
+        jobs.getValue("b").finish(DecodeOutcome.SUCCESS)
+
+        assertEquals(
+            listOf(
+                DecodeJobMetrics("a", 0, 0, 250, DecodeOutcome.SUCCESS),
+                DecodeJobMetrics("b", 3, 150, 150, DecodeOutcome.ERROR),
+            ),
+            metrics
+        )
+    }
+
+    @Test
+    fun `failing task releases its worker`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(worker)
+        scheduler.submit("a", 0, DecodeTask { throw IllegalStateException("broken") })
+        scheduler.submit("b", 0, recordingTask)
+        worker.runAll()
+        worker.runAll()
+        assertEquals(listOf("b"), started)
+        assertEquals(DecodeOutcome.ERROR, metrics.first().outcome)
+    }
+
+    @Test
+    fun `idle is reported when the last job finishes`() {
+        val worker = ManualWorker()
+        val scheduler = scheduler(worker)
+        scheduler.submit("a", 0, recordingTask)
+        scheduler.submit("b", 0, recordingTask)
+        worker.runAll()
+        jobs.getValue("a").finish(DecodeOutcome.SUCCESS)
+        assertEquals(0, idleCount)
+        worker.runAll()
+        jobs.getValue("b").finish(DecodeOutcome.SUCCESS)
+        assertEquals(1, idleCount)
+        assertTrue(scheduler.isIdle())
+    }
+}
@@ -0,0 +1,85 @@
+package com.dimowner.audiorecorder.audio
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class WaveformPreviewBuilderTest {
+
+    private fun pcm(frames: Int, channelCount: Int, sample: (Int) -> Int): ByteBuffer {
+        val buffer = ByteBuffer.allocate(frames * channelCount * 2).order(ByteOrder.LITTLE_ENDIAN)
+        for (frame in 0 until frames) {
+            repeat(channelCount) { buffer.putShort(sample(frame).toShort()) }
+        }
+        buffer.flip()
+        return buffer
+    }
+
+    @Test
+    fun `windows are spread evenly over the duration`() {
+        // 2 hours in 600 windows, one every 12 s.
+        val builder = WaveformPreviewBuilder(2 * 3600 * 1000L, 600, 44100, 2)
+        assertEquals(12_000, builder.binMills)
+        assertEquals(600, builder.windowCount)
+        assertEquals(5_975_000L, builder.windowStartUs(0))
+        assertEquals(599 * 12_000_000L + 5_975_000L, builder.windowStartUs(599))
+    }
+
+    @Test
+    fun `short record gets no more than one window per base bin`() {
+        val builder = WaveformPreviewBuilder(1000, 600, 8000, 1)
+        assertEquals(WAVEFORM_BASE_BIN_MILLS, builder.binMills)
+        assertEquals(100, builder.windowCount)
+    }
+
+    @Test
+    fun `samples before the window start are skipped`() {
+        val builder = WaveformPreviewBuilder(60_000, 10, 8000, 1)
+        val startUs = builder.windowStartUs(3)
+        builder.startWindow(3)
+        // Decoding resumed 100 ms before the window, loud until the window starts.
+        val leadFrames = 800
+        val windowFrames = WaveformPreviewBuilder.WINDOW_MILLS * 8
+        val done = builder.consume(
+            pcm(leadFrames + windowFrames, 1) { if (it < leadFrames) 30_000 else 1000 },
+            startUs - 100_000
+        )
+        assertTrue(done)
+        builder.finishWindow()
+
+        val base = builder.build().baseLevel
+        assertEquals(6000, base.binMills)
+        assertEquals(1000.toShort(), base.peaks[3])
+        assertEquals(1000.toShort(), base.rms[3])
+        assertEquals(0.toShort(), base.peaks[2])
+    }
+
+    @Test
+    fun `window is filled across buffers and channels are averaged`() {
+        val builder = WaveformPreviewBuilder(10_000, 10, 8000, 2)
+        val startUs = builder.windowStartUs(0)
+        builder.startWindow(0)
+        val half = WaveformPreviewBuilder.WINDOW_MILLS * 4
+        assertFalse(builder.consume(pcm(half, 2) { 200 }, startUs))
+        assertTrue(builder.consume(pcm(half, 2) { -600 }, startUs + half * 125L))
+        builder.finishWindow()
+
+        val base = builder.build().baseLevel
+        assertEquals(600.toShort(), base.peaks[0])
+        assertEquals(447.toShort(), base.rms[0])
+    }
+
+    @Test
+    fun `window cut short by the end of file is kept`() {
+        val builder = WaveformPreviewBuilder(10_000, 10, 8000, 1)
+        builder.startWindow(9)
+        assertFalse(builder.consume(pcm(10, 1) { 500 }, builder.windowStartUs(9)))
+        builder.finishWindow()
+
+        assertEquals(500.toShort(), builder.build().baseLevel.peaks[9])
+        assertEquals(10_000L, builder.build().durationMills)
+    }
+}
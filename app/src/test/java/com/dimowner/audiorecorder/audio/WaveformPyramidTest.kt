@@ -0,0 +1,229 @@
+package com.dimowner.audiorecorder.audio
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.ShortBuffer
+
+class WaveformPyramidTest {
+
+    private fun buildPyramid(sampleRate: Int, channelCount: Int, frames: Int, sample: (Int) -> Int): WaveformPyramid {
+        val builder = WaveformPyramidBuilder(sampleRate, channelCount)
+        for (frame in 0 until frames) {
+            repeat(channelCount) { builder.addSample(sample(frame)) }
+        }
+        return builder.build()
+    }
+
+    @Test
+    fun `base level holds one bin per 10 ms`() {
+        // 1 second at 8 kHz, 80 frames per bin.
+        val pyramid = buildPyramid(8000, 1, 8000) { frame -> if (frame / 80 == 3) -1000 else 100 }
+
+        val base = pyramid.baseLevel
+        assertEquals(WAVEFORM_BASE_BIN_MILLS, base.binMills)
+        assertEquals(100, base.size)
+        assertEquals(1000L, pyramid.durationMills)
+        assertEquals(100.toShort(), base.peaks[0])
+        assertEquals(1000.toShort(), base.peaks[3])
+        assertEquals(1000.toShort(), base.rms[3])
+    }
+
+    @Test
+    fun `channels are averaged and partial bin is kept`() {
+        val builder = WaveformPyramidBuilder(8000, 2)
+        repeat(100) {
+            builder.addSample(2000)
+            builder.addSample(0)
+        }
+        val base = builder.build().baseLevel
+
+        assertEquals(2, base.size)
+        assertEquals(1000.toShort(), base.peaks[0])
+        assertEquals(1000.toShort(), base.peaks[1])
+    }
+
+    @Test
+    fun `every level halves the previous one`() {
+        val pyramid = buildPyramid(8000, 1, 8000 * 10) { frame -> frame % 2000 }
+
+        assertEquals(1000, pyramid.baseLevel.size)
+        for (i in 1 until pyramid.levels.size) {
+            val prev = pyramid.levels[i - 1]
+            val level = pyramid.levels[i]
+            assertEquals(prev.binMills * 2, level.binMills)
+            assertEquals((prev.size + 1) / 2, level.size)
+            assertEquals(maxOf(prev.peaks[0], prev.peaks[1]), level.peaks[0])
+        }
+        assertEquals(1999.toShort(), pyramid.levels.last().peaks.max())
+    }
+
+    @Test
+    fun `level is picked by zoom`() {
+        val pyramid = buildPyramid(8000, 1, 8000 * 10) { 500 }
+
+        assertSame(pyramid.levels[0], pyramid.levelFor(5f))
+        assertSame(pyramid.levels[0], pyramid.levelFor(15f))
+        assertSame(pyramid.levels[1], pyramid.levelFor(20f))
+        assertSame(pyramid.levels[2], pyramid.levelFor(79f))
+        assertSame(pyramid.levels.last(), pyramid.levelFor(1_000_000f))
+    }
+
+    @Test
+    fun `gains are resampled peaks on legacy scale`() {
+        val pyramid = buildPyramid(8000, 1, 8000) { frame -> if (frame < 4000) 400 else 10_000 }
+
+        assertArrayEquals(intArrayOf(20, 100), pyramid.toGains(2))
+        assertEquals(25, pyramid.toGains(25).size)
+        assertEquals(0, pyramid.toGains(0).size)
+    }
+
+    @Test
+    fun `consume reads little endian samples`() {
+        val buffer = ByteBuffer.allocate(8000 * 2 + 1).order(ByteOrder.LITTLE_ENDIAN)
+        repeat(8000) { buffer.putShort(-300) }
+        buffer.put(7)
+        buffer.flip()
+        val builder = WaveformPyramidBuilder(8000, 1)
+        builder.consume(buffer)
+
+        assertEquals(1, buffer.remaining())
+        assertEquals(300.toShort(), builder.build().baseLevel.peaks[99])
+    }
+
+    @Test
+    fun `bulk read matches sample by sample aggregation`() {
+        for (sampleRate in intArrayOf(8000, 16000, 22050, 44100, 48000)) {
+            for (channelCount in 1..2) {
+                val samples = ShortArray(sampleRate * channelCount * 2 + 3) { ((it * 7919) % 65536 - 32768).toShort() }
+                val bytes = ByteBuffer.allocateDirect(samples.size * 2).order(ByteOrder.LITTLE_ENDIAN)
+                samples.forEach { bytes.putShort(it) }
+                bytes.flip()
+
+                val bulk = WaveformPyramidBuilder(sampleRate, channelCount)
+                // Split the input to carry a partial frame and bin over calls.
+                val first = bytes.duplicate()
+                first.limit(1001)
+                bulk.consume(first)
+                bytes.position(first.position())
+                bulk.consume(bytes)
+                val single = WaveformPyramidBuilder(sampleRate, channelCount)
+                samples.forEach { single.addSample(it.toInt()) }
+
+                val expected = single.build()
+                val actual = bulk.build()
+                assertEquals(0, bytes.remaining())
+                assertEquals(expected.durationMills, actual.durationMills)
+                assertArrayEquals(expected.baseLevel.peaks, actual.baseLevel.peaks)
+                assertArrayEquals(expected.baseLevel.rms, actual.baseLevel.rms)
+            }
+        }
+    }
+
+    @Test
+    fun `full scale negative samples do not overflow`() {
+        val pyramid = buildPyramid(8000, 1, 80) { -32768 }
+
+        assertEquals(Short.MAX_VALUE, pyramid.baseLevel.peaks[0])
+        assertEquals(Short.MAX_VALUE, pyramid.baseLevel.rms[0])
+    }
+
+    @Test
+    fun `bins follow exact time with fractional frames per bin`() {
+        // 220.5 frames per 10 ms bin.
+        val pyramid = buildPyramid(22050, 1, 22050 * 60) { 100 }
+
+        assertEquals(6000, pyramid.baseLevel.size)
+        assertEquals(60_000L, pyramid.durationMills)
+    }
+
+    @Test
+    fun `base level stays bounded for long input`() {
+        val sampleRate = 8000
+        val binFrames = 80
+        val builder = WaveformPyramidBuilder(sampleRate, 1)
+        val chunk = ShortBuffer.allocate(binFrames * 1000)
+        val bins = WaveformPyramidBuilder.MAX_BASE_BINS + 2000
+        var binIndex = 0
+        while (binIndex < bins) {
+            chunk.clear()
+            repeat(1000) {
+                val value = if (binIndex == 5) 30_000 else (binIndex % 100).toShort().toInt()
+                repeat(binFrames) { chunk.put(value.toShort()) }
+                binIndex++
+            }
+            chunk.flip()
+            builder.consume(chunk)
+        }
+        val pyramid = builder.build()
+
+        val base = pyramid.baseLevel
+        assertEquals(WAVEFORM_BASE_BIN_MILLS * 2, base.binMills)
+        assertEquals((binIndex + 1) / 2, base.size)
+        assertEquals(binIndex * 10L, pyramid.durationMills)
+        assertEquals(30_000.toShort(), base.peaks[2])
+        assertEquals(99.toShort(), base.peaks[49])
+    }
+
+    @Test
+    fun `resumed checkpoint gives the same pyramid`() {
+        val samples = ShortArray(44100 * 2 * 5) { ((it * 104729) % 65536 - 32768).toShort() }
+        val expected = WaveformPyramidBuilder(44100, 2).apply { consume(ShortBuffer.wrap(samples)) }.build()
+
+        val first = WaveformPyramidBuilder(44100, 2)
+        // Stop mid-bin and mid-frame.
+        first.consume(ShortBuffer.wrap(samples, 0, 100_001))
+        first.sourcePosition = 100_001
+        val out = ByteArrayOutputStream()
+        first.writeCheckpoint(out)
+
+        val resumed = WaveformPyramidBuilder.readCheckpoint(ByteArrayInputStream(out.toByteArray()))
+        assertEquals(100_001L, resumed.sourcePosition)
+        resumed.consume(ShortBuffer.wrap(samples, 100_001, samples.size - 100_001))
+        val actual = resumed.build()
+
+        assertEquals(expected.durationMills, actual.durationMills)
+        assertArrayEquals(expected.baseLevel.peaks, actual.baseLevel.peaks)
+        assertArrayEquals(expected.baseLevel.rms, actual.baseLevel.rms)
+    }
+
+    @Test
+    fun `snapshot holds completed bins and leaves building intact`() {
+        val samples = ShortArray(8000 * 3) { ((it * 7919) % 20000).toShort() }
+        val expected = WaveformPyramidBuilder(8000, 1).apply { consume(ShortBuffer.wrap(samples)) }.build()
+
+        val builder = WaveformPyramidBuilder(8000, 1)
+        // 1.5 s plus 40 frames of the next bin.
+        builder.consume(ShortBuffer.wrap(samples, 0, 12_040))
+        val partial = builder.snapshot()
+        builder.consume(ShortBuffer.wrap(samples, 12_040, samples.size - 12_040))
+        val actual = builder.build()
+
+        assertEquals(1500L, partial.durationMills)
+        assertEquals(150, partial.baseLevel.size)
+        assertArrayEquals(expected.baseLevel.peaks.copyOf(150), partial.baseLevel.peaks)
+        assertArrayEquals(expected.baseLevel.peaks, actual.baseLevel.peaks)
+        assertArrayEquals(expected.baseLevel.rms, actual.baseLevel.rms)
+    }
+
+    @Test
+    fun `pyramid survives serialization`() {
+        val pyramid = buildPyramid(16000, 1, 16000 * 3) { frame -> (frame * 7) % 30000 }
+        val out = ByteArrayOutputStream()
+        pyramid.writeTo(out)
+        val restored = WaveformPyramid.readFrom(ByteArrayInputStream(out.toByteArray()))
+
+        assertEquals(pyramid.durationMills, restored.durationMills)
+        assertEquals(pyramid.levels.size, restored.levels.size)
+        for (i in pyramid.levels.indices) {
+            assertEquals(pyramid.levels[i].binMills, restored.levels[i].binMills)
+            assertArrayEquals(pyramid.levels[i].peaks, restored.levels[i].peaks)
+            assertArrayEquals(pyramid.levels[i].rms, restored.levels[i].rms)
+        }
+    }
+}
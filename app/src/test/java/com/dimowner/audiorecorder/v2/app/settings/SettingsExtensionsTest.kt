@@ -134,6 +134,13 @@ class SettingsExtensionsTest {
         assertEquals(0f, sizeMbPerMin(RecordingFormat.Wav, SampleRate.SR44100, null, null), 0f)
     }
 
+    @Test
+    fun `sizeMbPerMin estimates Flac as a fraction of Wav`() {
+        val wav = sizeMbPerMin(RecordingFormat.Wav, SampleRate.SR44100, null, ChannelCount.Stereo)
+        val expected = wav * DefaultValues.FLAC_SIZE_PERCENT_OF_WAV / 100f
+        assertEquals(expected, sizeMbPerMin(RecordingFormat.Flac, SampleRate.SR44100, null, ChannelCount.Stereo), 0.0001f)
+    }
+
     // -------------------------------------------------------------------------
     // spaceToRecordingTimeMills
     // -------------------------------------------------------------------------
@@ -203,6 +210,16 @@ class SettingsExtensionsTest {
         assertEquals(0L, spaceToRecordingTimeMills(1_000_000L, RecordingFormat.Wav, SampleRate.SR44100, null, null))
     }
 
+    @Test
+    fun `spaceToRecordingTimeMills gives Flac more time than Wav for the same space`() {
+        val spaceBytes = 10_000_000L
+        val wav = spaceToRecordingTimeMills(spaceBytes, RecordingFormat.Wav, SampleRate.SR44100, null, ChannelCount.Stereo)
+        val flac = spaceToRecordingTimeMills(spaceBytes, RecordingFormat.Flac, SampleRate.SR44100, null, ChannelCount.Stereo)
+        val expected = 1000L * (spaceBytes / (44100L * 2L * 2L * DefaultValues.FLAC_SIZE_PERCENT_OF_WAV / 100L))
+        assertEquals(expected, flac)
+        assertTrue(flac > wav)
+    }
+
     // -------------------------------------------------------------------------
     // isDurationLongerThanTwoHours
     // -------------------------------------------------------------------------
@@ -0,0 +1,192 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import android.media.MediaCodec
+import android.media.MediaFormat
+import android.media.MediaMuxer
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.dimowner.audiorecorder.util.TestARApplication
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.annotation.Config
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.util.Collections
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+@RunWith(AndroidJUnit4::class)
+@Config(application = TestARApplication::class, sdk = [36])
+class AacFileSinkTest {
+
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private lateinit var codec: MediaCodec
+    private lateinit var muxer: MediaMuxer
+
+    /** Number of encoded samples the fake codec emits once input arrives. */
+    private var samplesToEmit = 0
+    private val queuedInputBytes = AtomicInteger(0)
+    private val isEndOfStreamQueued = AtomicBoolean(false)
+    private val isFormatSent = AtomicBoolean(false)
+    private val emittedSamples = AtomicInteger(0)
+    private val isInputBlocked = AtomicBoolean(false)
+    private val endOfStreamPtsUs = AtomicLong(-1L)
+    private val inputPtsUs = Collections.synchronizedList(ArrayList<Long>())
+
+    @Before
+    fun setUp() {
+        codec = mockk(relaxed = true)
+        muxer = mockk(relaxed = true)
+        every { codec.dequeueInputBuffer(any()) } answers {
+            if (isInputBlocked.get()) MediaCodec.INFO_TRY_AGAIN_LATER else 0
+        }
+        every { codec.getInputBuffer(0) } answers { ByteBuffer.allocate(8192) }
+        every { codec.queueInputBuffer(0, 0, any(), any(), any()) } answers {
+            queuedInputBytes.addAndGet(thirdArg())
+            if (thirdArg<Int>() > 0) inputPtsUs.add(arg(3))
+            if (arg<Int>(4) and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0) {
+                endOfStreamPtsUs.set(arg(3))
+                isEndOfStreamQueued.set(true)
+            }
+        }
+        every { codec.outputFormat } returns mockk<MediaFormat>(relaxed = true)
+        every { codec.getOutputBuffer(any()) } answers { ByteBuffer.allocate(64) }
+        every { codec.dequeueOutputBuffer(any(), any()) } answers {
+            val info = firstArg<MediaCodec.BufferInfo>()
+            when {
+                !isFormatSent.getAndSet(true) -> MediaCodec.INFO_OUTPUT_FORMAT_CHANGED
+                queuedInputBytes.get() > 0 && emittedSamples.get() < samplesToEmit -> {
+                    info.set(0, 16, emittedSamples.getAndIncrement() * 23_220L, 0)
+                    1
+                }
+                isEndOfStreamQueued.get() -> {
+                    info.set(0, 0, 0L, MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+                    2
+                }
+                else -> MediaCodec.INFO_TRY_AGAIN_LATER
+            }
+        }
+        every { muxer.addTrack(any()) } returns 0
+        // MediaMuxer refuses to stop a track that got no samples.
+        every { muxer.stop() } throws IllegalStateException("Failed to stop the muxer")
+    }
+
+    private fun openSink(
+        isDropWhenBehind: Boolean = false,
+        onDropped: ((file: File, droppedMills: Long) -> Unit)? = null,
+    ) = AacFileSink(
+        file = tempFolder.newFile("record.m4a"),
+        sampleRate = SAMPLE_RATE,
+        channelCount = 1,
+        codec = codec,
+        muxer = muxer,
+        isDropWhenBehind = isDropWhenBehind,
+        onDropped = onDropped,
+    )
+
+    @Test
+    fun `take with no encoded audio closes without error`() {
+        val sink = openSink()
+        sink.write(ByteArray(64), 0, 64)
+
+        sink.close()
+
+        verify(exactly = 0) { muxer.writeSampleData(any(), any(), any()) }
+        verify { muxer.release() }
+    }
+
+    @Test
+    fun `take with no input at all closes without error`() {
+        val sink = openSink()
+
+        sink.close()
+
+        verify { muxer.release() }
+    }
+
+    @Test
+    fun `muxer stop failure after encoded audio is reported`() {
+        samplesToEmit = 3
+        val sink = openSink()
+        sink.write(ByteArray(4096), 0, 4096)
+
+        try {
+            sink.close()
+            fail("Expected IOException")
+        } catch (e: IOException) {
+            assertFalse(e.message.isNullOrEmpty())
+        }
+        verify(exactly = 3) { muxer.writeSampleData(0, any(), any()) }
+    }
+
+    @Test
+    fun `muxer write failure is reported by close`() {
+        samplesToEmit = 3
+        every { muxer.writeSampleData(any(), any(), any()) } throws IllegalArgumentException("Bad sample")
+        val sink = openSink()
+        sink.write(ByteArray(4096), 0, 4096)
+
+        try {
+            sink.close()
+            fail("Expected IOException")
+        } catch (e: IOException) {
+            assertFalse(e.message.isNullOrEmpty())
+        }
+        verify { muxer.release() }
+    }
+
+    @Test
+    fun `PCM dropped while the encoder is behind still advances the timeline`() {
+        isInputBlocked.set(true)
+        var reportedMills = -1L
+        val sink = openSink(isDropWhenBehind = true, onDropped = { _, mills -> reportedMills = mills })
+        // The encoder queue holds 2 seconds of PCM, so most of the third second is dropped.
+        val second = ByteArray(SAMPLE_RATE * 2)
+        repeat(3) { sink.write(second, 0, second.size) }
+        val queuedBlocks = QUEUE_BLOCK_COUNT
+        isInputBlocked.set(false)
+        while (inputPtsUs.size < queuedBlocks) Thread.sleep(1)
+        val queuedBytes = queuedInputBytes.get()
+
+        sink.write(second, 0, second.size)
+        sink.close()
+
+        // PCM written after the gap is placed after the dropped stretch, not right after the queued PCM.
+        assertEquals(3_000_000L, inputPtsUs[queuedBlocks])
+        assertEquals(4_000_000L, endOfStreamPtsUs.get())
+        val droppedFrames = 3L * SAMPLE_RATE - queuedBytes / 2
+        assertEquals(droppedFrames * 1000L / SAMPLE_RATE, reportedMills)
+    }
+
+    @Test
+    fun `nothing dropped reports nothing`() {
+        var isReported = false
+        val sink = openSink(isDropWhenBehind = true, onDropped = { _, _ -> isReported = true })
+        val second = ByteArray(SAMPLE_RATE * 2)
+        sink.write(second, 0, second.size)
+
+        sink.close()
+
+        assertEquals(1_000_000L, endOfStreamPtsUs.get())
+        assertFalse(isReported)
+    }
+
+    companion object {
+        private const val SAMPLE_RATE = 44100
+
+        /** 2 seconds of mono PCM in 8 KiB blocks. */
+        private const val QUEUE_BLOCK_COUNT = SAMPLE_RATE * 2 * 2 / 8192
+    }
+}
@@ -24,6 +24,8 @@ import org.junit.Test
 import org.junit.rules.TemporaryFolder
 import java.io.File
 import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
 
 /**
  * Unit tests for WAV broken-record restoration in [BrokenRecordRestorer].
@@ -347,4 +349,78 @@ class BrokenRecordRestorerWavTest {
             assertEquals(rate8k, storedRate)
         }
     }
+
+    /** Header-only placeholder as [WavFileSink] leaves it, holding the flushed PCM size. */
+    private fun placeholderWithFlushedSize(dataSize: Long): ByteArray {
+        val header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN)
+        writePlaceholderDataSize(header, isRf64Capable = false, dataSize = dataSize)
+        return header.array()
+    }
+
+    @Test
+    fun `restore trims zero slack preallocated by WavFileSink`() {
+        val extent = WavFileSink.PREALLOCATION_EXTENT_SIZE
+        val pcmBytes = 100_001 * channelCount * (bitsPerSample / 8)
+        val file = tempFolder.newFile("preallocated.wav")
+        RandomAccessFile(file, "rw").use { raf ->
+            raf.write(placeholderWithFlushedSize(pcmBytes.toLong()))
+            raf.write(ByteArray(pcmBytes) { 1 })
+            raf.setLength(extent)
+        }
+
+        val result = restorer.restoreFile(
+            filePath = file.absolutePath,
+            sampleRate = sampleRate,
+            channelCount = channelCount,
+        )
+
+        assertTrue("Expected Success but got $result", result is BrokenRecordRestorer.RestoreResult.Success)
+        assertEquals(44L + pcmBytes, file.length())
+        assertEquals(pcmBytes.toLong(), readDataChunkSize(file))
+    }
+
+    @Test
+    fun `restore keeps silence recorded at the end`() {
+        val extent = WavFileSink.PREALLOCATION_EXTENT_SIZE
+        val soundBytes = 50_000 * channelCount * (bitsPerSample / 8)
+        val silenceBytes = 60_000 * channelCount * (bitsPerSample / 8)
+        val file = tempFolder.newFile("silent_end.wav")
+        RandomAccessFile(file, "rw").use { raf ->
+            raf.write(placeholderWithFlushedSize((soundBytes + silenceBytes).toLong()))
+            raf.write(ByteArray(soundBytes) { 1 })
+            raf.write(ByteArray(silenceBytes))
+            raf.setLength(extent)
+        }
+
+        val result = restorer.restoreFile(
+            filePath = file.absolutePath,
+            sampleRate = sampleRate,
+            channelCount = channelCount,
+        )
+
+        assertTrue("Expected Success but got $result", result is BrokenRecordRestorer.RestoreResult.Success)
+        assertEquals(44L + soundBytes + silenceBytes, file.length())
+        assertEquals((soundBytes + silenceBytes).toLong(), readDataChunkSize(file))
+    }
+
+    @Test
+    fun `restore keeps the whole file when no flushed size was stored`() {
+        val extent = WavFileSink.PREALLOCATION_EXTENT_SIZE
+        val pcmBytes = 100_001 * channelCount * (bitsPerSample / 8)
+        val file = tempFolder.newFile("no_flushed_size.wav")
+        RandomAccessFile(file, "rw").use { raf ->
+            raf.write(ByteArray(44))
+            raf.write(ByteArray(pcmBytes) { 1 })
+            raf.setLength(extent)
+        }
+
+        restorer.restoreFile(
+            filePath = file.absolutePath,
+            sampleRate = sampleRate,
+            channelCount = channelCount,
+        )
+
+        assertEquals(extent, file.length())
+        assertEquals(extent - 44, readDataChunkSize(file))
+    }
 }
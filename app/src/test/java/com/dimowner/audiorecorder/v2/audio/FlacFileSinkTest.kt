@@ -0,0 +1,174 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.security.MessageDigest
+import kotlin.math.PI
+import kotlin.math.sin
+import kotlin.random.Random
+
+class FlacFileSinkTest {
+
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private val sampleRate = 44100
+
+    /** ~20 ms stereo 44.1 kHz chunk, the size PcmRecorderBase reads per AudioRecord.read(). */
+    private val chunkSize = 882 * 4
+
+    /** Harmonic tones with a little noise; right channel follows left, like a real stereo mic. */
+    private fun musicLikePcm(seconds: Int, channelCount: Int, seed: Int = 1): ByteArray {
+        val random = Random(seed)
+        val frames = sampleRate * seconds
+        val pcm = ByteArray(frames * channelCount * 2)
+        var pos = 0
+        for (i in 0 until frames) {
+            val t = i.toDouble() / sampleRate
+            val tone = 6000 * sin(2 * PI * 220 * t) + 2500 * sin(2 * PI * 440 * t + 0.3) +
+                    1200 * sin(2 * PI * 1320 * t) * sin(2 * PI * 0.5 * t)
+            val left = (tone + random.nextInt(-24, 24)).toInt().coerceIn(-32768, 32767)
+            val right = (tone * 0.8 + random.nextInt(-24, 24)).toInt().coerceIn(-32768, 32767)
+            for (ch in 0 until channelCount) {
+                val s = if (ch == 0) left else right
+                pcm[pos++] = s.toByte()
+                pcm[pos++] = (s shr 8).toByte()
+            }
+        }
+        return pcm
+    }
+
+    private fun encode(file: File, pcm: ByteArray, channelCount: Int, chunk: Int = chunkSize): FlacFileSink {
+        val sink = FlacFileSink.open(file, sampleRate, channelCount)
+        var offset = 0
+        while (offset < pcm.size) {
+            val n = minOf(chunk, pcm.size - offset)
+            sink.write(pcm, offset, n)
+            offset += n
+        }
+        sink.close()
+        return sink
+    }
+
+    @Test
+    fun `stereo recording decodes bit-exactly`() {
+        val pcm = musicLikePcm(seconds = 3, channelCount = 2)
+        val file = tempFolder.newFile("out.flac")
+        encode(file, pcm, channelCount = 2)
+
+        val result = FlacTestDecoder(file.readBytes()).decode()
+        assertArrayEquals(pcm, result.pcm)
+        assertEquals(sampleRate, result.streamInfo.sampleRate)
+        assertEquals(2, result.streamInfo.channelCount)
+        assertEquals(16, result.streamInfo.bitsPerSample)
+        assertEquals(pcm.size / 4L, result.streamInfo.totalSamples)
+        assertArrayEquals(MessageDigest.getInstance("MD5").digest(pcm), result.streamInfo.md5)
+    }
+
+    @Test
+    fun `mono silence, full-scale noise and a short tail decode bit-exactly`() {
+        val random = Random(7)
+        // Silence exercises CONSTANT subframes, white noise VERBATIM ones; the length is not
+        // a multiple of the block size so the last frame is short.
+        val frames = FlacEncoder.DEFAULT_BLOCK_SIZE * 3 + 1234
+        val pcm = ByteArray(frames * 2)
+        for (i in FlacEncoder.DEFAULT_BLOCK_SIZE * 2 until frames) {
+            val s = random.nextInt(-32768, 32768)
+            pcm[2 * i] = s.toByte()
+            pcm[2 * i + 1] = (s shr 8).toByte()
+        }
+        val file = tempFolder.newFile("out.flac")
+        // Odd chunk size splits samples across write() calls.
+        encode(file, pcm, channelCount = 1, chunk = 1001)
+
+        val result = FlacTestDecoder(file.readBytes()).decode()
+        assertArrayEquals(pcm, result.pcm)
+        assertEquals(4, result.frameCount)
+        assertEquals(frames.toLong(), result.streamInfo.totalSamples)
+    }
+
+    @Test
+    fun `extreme stereo values survive side channel coding`() {
+        val frames = 5000
+        val pcm = ByteArray(frames * 4)
+        for (i in 0 until frames) {
+            // Opposite full-scale channels need the 17-bit side channel.
+            val left = if (i % 2 == 0) 32767 else -32768
+            val right = -left - 1
+            pcm[4 * i] = left.toByte()
+            pcm[4 * i + 1] = (left shr 8).toByte()
+            pcm[4 * i + 2] = right.toByte()
+            pcm[4 * i + 3] = (right shr 8).toByte()
+        }
+        val file = tempFolder.newFile("out.flac")
+        encode(file, pcm, channelCount = 2)
+        assertArrayEquals(pcm, FlacTestDecoder(file.readBytes()).decode().pcm)
+    }
+
+    @Test
+    fun `close with no data leaves a valid empty stream`() {
+        val file = tempFolder.newFile("out.flac")
+        FlacFileSink.open(file, sampleRate, 2).close()
+        assertEquals(FlacFileSink.STREAM_HEADER_SIZE.toLong(), file.length())
+        val result = FlacTestDecoder(file.readBytes()).decode()
+        assertEquals(0L, result.streamInfo.totalSamples)
+        assertEquals(0, result.pcm.size)
+    }
+
+    @Test
+    fun `interrupted recording header still describes a decodable stream`() {
+        val pcm = musicLikePcm(seconds = 1, channelCount = 2)
+        val file = tempFolder.newFile("out.flac")
+        encode(file, pcm, channelCount = 2)
+        val bytes = file.readBytes()
+        // Reset what only close() fills in, as in a recording interrupted by a reboot:
+        // frame size range (bytes 12-17), low nibble + 4 bytes of the sample count (21-25), MD5.
+        bytes.fill(0, 12, 18)
+        bytes[21] = (bytes[21].toInt() and 0xF0).toByte()
+        bytes.fill(0, 22, FlacFileSink.STREAM_HEADER_SIZE)
+
+        // That is exactly the header the sink writes when it is opened.
+        val openFile = tempFolder.newFile("open.flac")
+        val openSink = FlacFileSink.open(openFile, sampleRate, 2)
+        assertArrayEquals(bytes.copyOf(FlacFileSink.STREAM_HEADER_SIZE), openFile.readBytes())
+        openSink.close()
+
+        val result = FlacTestDecoder(bytes).decode()
+        assertEquals(0L, result.streamInfo.totalSamples)
+        assertArrayEquals(pcm, result.pcm)
+    }
+
+    @Test
+    fun `stereo music is compressed to well under the WAV size`() {
+        val pcm = musicLikePcm(seconds = 10, channelCount = 2)
+        val file = tempFolder.newFile("out.flac")
+        encode(file, pcm, channelCount = 2)
+        val ratio = file.length().toDouble() / (pcm.size + WavFileSink.WAV_HEADER_SIZE)
+        assertTrue("ratio $ratio", ratio < 0.6)
+    }
+
+    /**
+     * JVM encode-throughput benchmark: one minute of stereo 44.1 kHz audio through the same
+     * 20 ms writes the recorder issues. The encoder has to keep up with capture by a wide
+     * margin to run on the writer coroutine of low-end devices.
+     */
+    @Test
+    fun `encoder runs far faster than real time`() {
+        val pcm = musicLikePcm(seconds = 60, channelCount = 2)
+        // Warm-up so the JIT compiles the encoder before it is timed.
+        encode(tempFolder.newFile("warmup.flac"), pcm.copyOf(pcm.size / 4), channelCount = 2)
+
+        val file = tempFolder.newFile("bench.flac")
+        val start = System.nanoTime()
+        encode(file, pcm, channelCount = 2)
+        val nanos = System.nanoTime() - start
+
+        val realTimeFactor = 60_000_000_000.0 / nanos
+        assertTrue("real time factor $realTimeFactor", realTimeFactor > 10)
+    }
+}
@@ -0,0 +1,224 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import org.junit.Assert.assertEquals
+
+/**
+ * Minimal reference FLAC decoder used to verify [FlacEncoder] output: STREAMINFO, fixed-blocksize
+ * frames, CONSTANT/VERBATIM/FIXED subframes, Rice and Rice2 residuals and all stereo
+ * decorrelation modes. Frame header and frame CRCs are checked with bitwise implementations
+ * independent from the encoder's tables.
+ */
+class FlacTestDecoder(private val data: ByteArray) {
+
+    class StreamInfo(
+        val minBlockSize: Int,
+        val maxBlockSize: Int,
+        val minFrameSize: Int,
+        val maxFrameSize: Int,
+        val sampleRate: Int,
+        val channelCount: Int,
+        val bitsPerSample: Int,
+        val totalSamples: Long,
+        val md5: ByteArray,
+    )
+
+    class Result(val streamInfo: StreamInfo, val pcm: ByteArray, val frameCount: Int)
+
+    private var bitPos = 0L
+
+    fun decode(): Result {
+        assertEquals("fLaC", String(data, 0, 4, Charsets.US_ASCII))
+        bitPos = 32
+        var streamInfo: StreamInfo? = null
+        do {
+            val isLast = readBits(1) == 1
+            val type = readBits(7)
+            val length = readBits(24)
+            if (type == 0) {
+                streamInfo = StreamInfo(
+                    minBlockSize = readBits(16),
+                    maxBlockSize = readBits(16),
+                    minFrameSize = readBits(24),
+                    maxFrameSize = readBits(24),
+                    sampleRate = readBits(20),
+                    channelCount = readBits(3) + 1,
+                    bitsPerSample = readBits(5) + 1,
+                    totalSamples = (readBits(4).toLong() shl 32) or (readBits(32).toLong() and 0xFFFFFFFFL),
+                    md5 = ByteArray(16) { readBits(8).toByte() },
+                )
+            } else {
+                bitPos += length * 8L
+            }
+        } while (!isLast)
+        val info = checkNotNull(streamInfo)
+        val out = java.io.ByteArrayOutputStream()
+        val channels = Array(info.channelCount) { IntArray(info.maxBlockSize) }
+        var frameCount = 0
+        while (bitPos / 8 < data.size) {
+            val blockSize = decodeFrame(info, channels, frameCount)
+            for (i in 0 until blockSize) {
+                for (ch in 0 until info.channelCount) {
+                    val s = channels[ch][i]
+                    out.write(s and 0xFF)
+                    out.write((s shr 8) and 0xFF)
+                }
+            }
+            frameCount++
+        }
+        return Result(info, out.toByteArray(), frameCount)
+    }
+
+    private fun decodeFrame(info: StreamInfo, channels: Array<IntArray>, expectedFrameNumber: Int): Int {
+        val frameStart = (bitPos / 8).toInt()
+        assertEquals("sync", 0x7FFC, readBits(15))
+        assertEquals("fixed blocking strategy", 0, readBits(1))
+        val blockSizeCode = readBits(4)
+        val sampleRateCode = readBits(4)
+        val assignment = readBits(4)
+        assertEquals("16-bit sample size code", 0b100, readBits(3))
+        readBits(1)
+        assertEquals(expectedFrameNumber.toLong(), readUtf8())
+        val blockSize = when (blockSizeCode) {
+            1 -> 192
+            in 2..5 -> 576 shl (blockSizeCode - 2)
+            6 -> readBits(8) + 1
+            7 -> readBits(16) + 1
+            in 8..15 -> 256 shl (blockSizeCode - 8)
+            else -> error("Reserved block size code")
+        }
+        when (sampleRateCode) {
+            12 -> readBits(8)
+            13, 14 -> readBits(16)
+        }
+        val headerCrc = crc8(frameStart, (bitPos / 8).toInt())
+        assertEquals("frame header CRC-8", headerCrc, readBits(8))
+
+        for (ch in 0 until info.channelCount) {
+            val isSide = (assignment == 8 || assignment == 10) && ch == 1 || assignment == 9 && ch == 0
+            decodeSubframe(channels[ch], blockSize, info.bitsPerSample + if (isSide) 1 else 0)
+        }
+        alignToByte()
+        val frameCrc = crc16(frameStart, (bitPos / 8).toInt())
+        assertEquals("frame CRC-16", frameCrc, readBits(16))
+
+        if (info.channelCount == 2) {
+            val a = channels[0]
+            val b = channels[1]
+            for (i in 0 until blockSize) {
+                when (assignment) {
+                    8 -> b[i] = a[i] - b[i]
+                    9 -> a[i] += b[i]
+                    10 -> {
+                        val side = b[i]
+                        val mid = (a[i] shl 1) or (side and 1)
+                        a[i] = (mid + side) shr 1
+                        b[i] = (mid - side) shr 1
+                    }
+                }
+            }
+        }
+        return blockSize
+    }
+
+    private fun decodeSubframe(out: IntArray, blockSize: Int, bps: Int) {
+        assertEquals("subframe padding", 0, readBits(1))
+        val type = readBits(6)
+        assertEquals("wasted bits", 0, readBits(1))
+        when {
+            type == 0 -> out.fill(readSigned(bps), 0, blockSize)
+            type == 1 -> for (i in 0 until blockSize) out[i] = readSigned(bps)
+            type in 8..12 -> {
+                val order = type and 7
+                for (i in 0 until order) out[i] = readSigned(bps)
+                decodeResidual(out, blockSize, order)
+                for (i in order until blockSize) {
+                    out[i] += when (order) {
+                        0 -> 0
+                        1 -> out[i - 1]
+                        2 -> 2 * out[i - 1] - out[i - 2]
+                        3 -> 3 * out[i - 1] - 3 * out[i - 2] + out[i - 3]
+                        else -> 4 * out[i - 1] - 6 * out[i - 2] + 4 * out[i - 3] - out[i - 4]
+                    }
+                }
+            }
+            else -> error("Unsupported subframe type $type")
+        }
+    }
+
+    private fun decodeResidual(out: IntArray, blockSize: Int, order: Int) {
+        val method = readBits(2)
+        val paramBits = if (method == 0) 4 else 5
+        val escape = (1 shl paramBits) - 1
+        val partitionOrder = readBits(4)
+        val partitionSize = blockSize shr partitionOrder
+        var i = order
+        for (p in 0 until (1 shl partitionOrder)) {
+            val k = readBits(paramBits)
+            val end = (p + 1) * partitionSize
+            if (k == escape) {
+                val bits = readBits(5)
+                while (i < end) out[i++] = readSigned(bits)
+            } else {
+                while (i < end) {
+                    var q = 0
+                    while (readBits(1) == 0) q++
+                    val v = (q shl k) or readBits(k)
+                    out[i++] = (v ushr 1) xor -(v and 1)
+                }
+            }
+        }
+    }
+
+    private fun readBits(n: Int): Int {
+        var v = 0L
+        repeat(n) {
+            val byte = data[(bitPos ushr 3).toInt()].toInt()
+            val bit = (byte shr (7 - (bitPos and 7).toInt())) and 1
+            v = (v shl 1) or bit.toLong()
+            bitPos++
+        }
+        return v.toInt()
+    }
+
+    private fun readSigned(n: Int): Int {
+        if (n == 0) return 0
+        val v = readBits(n)
+        return if (n < 32) (v shl (32 - n)) shr (32 - n) else v
+    }
+
+    private fun readUtf8(): Long {
+        val first = readBits(8)
+        if (first and 0x80 == 0) return first.toLong()
+        var extra = 0
+        var mask = 0x40
+        while (first and mask != 0) {
+            extra++
+            mask = mask shr 1
+        }
+        var v = (first and (mask - 1)).toLong()
+        repeat(extra) { v = (v shl 6) or (readBits(8) and 0x3F).toLong() }
+        return v
+    }
+
+    private fun alignToByte() {
+        bitPos = (bitPos + 7) and 7L.inv()
+    }
+
+    private fun crc8(from: Int, to: Int): Int {
+        var crc = 0
+        for (i in from until to) {
+            crc = crc xor (data[i].toInt() and 0xFF)
+            repeat(8) { crc = if (crc and 0x80 != 0) ((crc shl 1) xor 0x07) and 0xFF else (crc shl 1) and 0xFF }
+        }
+        return crc
+    }
+
+    private fun crc16(from: Int, to: Int): Int {
+        var crc = 0
+        for (i in from until to) {
+            crc = crc xor ((data[i].toInt() and 0xFF) shl 8)
+            repeat(8) { crc = if (crc and 0x8000 != 0) ((crc shl 1) xor 0x8005) and 0xFFFF else (crc shl 1) and 0xFFFF }
+        }
+        return crc
+    }
+}
@@ -0,0 +1,50 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+
+class LiveAmplitudeBufferTest {
+
+    @Test
+    fun `keeps samples in order until capacity`() {
+        val buf = LiveAmplitudeBuffer(capacity = 4)
+        buf.append(1)
+        buf.append(2)
+        buf.append(3)
+        assertEquals(3, buf.size())
+        assertArrayEquals(intArrayOf(1, 2, 3), buf.toIntArray())
+    }
+
+    @Test
+    fun `drops oldest samples when full`() {
+        val buf = LiveAmplitudeBuffer(capacity = 3)
+        (1..7).forEach { buf.append(it) }
+        assertEquals(3, buf.size())
+        assertEquals(7, buf.totalCount)
+        assertArrayEquals(intArrayOf(5, 6, 7), buf.toIntArray())
+    }
+
+    @Test
+    fun `snapshotInto copies the newest samples that fit`() {
+        val buf = LiveAmplitudeBuffer(capacity = 5)
+        (1..8).forEach { buf.append(it) }
+        val dest = IntArray(3)
+        assertEquals(3, buf.snapshotInto(dest))
+        assertArrayEquals(intArrayOf(6, 7, 8), dest)
+    }
+
+    @Test
+    fun `version changes on append and reset`() {
+        val buf = LiveAmplitudeBuffer(capacity = 2)
+        val v0 = buf.version
+        buf.append(1)
+        val v1 = buf.version
+        assertNotEquals(v0, v1)
+        buf.reset()
+        assertNotEquals(v1, buf.version)
+        assertEquals(0, buf.size())
+        assertEquals(0, buf.totalCount)
+    }
+}
@@ -0,0 +1,185 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class PcmBlockRingBufferTest {
+
+    @Test
+    fun `empty ring has nothing to read`() {
+        val ring = PcmBlockRingBuffer(blockCount = 4, blockSize = 8)
+        assertNull(ring.readableBlock())
+        assertEquals(0, ring.size())
+    }
+
+    @Test
+    fun `committed block is read back with its length`() {
+        val ring = PcmBlockRingBuffer(blockCount = 4, blockSize = 8)
+        val block = ring.writableBlock()!!
+        block[0] = 1
+        block[1] = 2
+        ring.commitWrite(2)
+
+        val read = ring.readableBlock()
+        assertNotNull(read)
+        assertEquals(2, ring.readableLength())
+        assertEquals(1.toByte(), read!![0])
+        assertEquals(2.toByte(), read[1])
+        ring.commitRead()
+        assertNull(ring.readableBlock())
+    }
+
+    @Test
+    fun `full ring returns null writable block`() {
+        val ring = PcmBlockRingBuffer(blockCount = 3, blockSize = 4)
+        repeat(3) {
+            ring.writableBlock()!!
+            ring.commitWrite(4)
+        }
+        assertNull(ring.writableBlock())
+        ring.readableBlock()
+        ring.commitRead()
+        assertNotNull(ring.writableBlock())
+    }
+
+    @Test
+    fun `high water mark tracks max queued blocks`() {
+        val ring = PcmBlockRingBuffer(blockCount = 8, blockSize = 4)
+        repeat(5) {
+            ring.writableBlock()!!
+            ring.commitWrite(4)
+        }
+        repeat(5) {
+            ring.readableBlock()
+            ring.commitRead()
+        }
+        ring.writableBlock()!!
+        ring.commitWrite(4)
+        assertEquals(5, ring.highWaterMark)
+    }
+
+    @Test
+    fun `part boundary is read back with its block`() {
+        val ring = PcmBlockRingBuffer(blockCount = 4, blockSize = 8)
+        ring.writableBlock()!!
+        ring.commitWrite(8)
+        ring.writableBlock()!!
+        ring.commitWrite(8, partBoundary = 4)
+
+        ring.readableBlock()
+        assertEquals(PcmBlockRingBuffer.NO_PART_BOUNDARY, ring.readablePartBoundary())
+        ring.commitRead()
+        ring.readableBlock()
+        assertEquals(4, ring.readablePartBoundary())
+        ring.commitRead()
+
+        // A reused slot does not keep the boundary of the previous lap.
+        repeat(3) {
+            ring.writableBlock()!!
+            ring.commitWrite(8)
+            ring.readableBlock()
+            assertEquals(PcmBlockRingBuffer.NO_PART_BOUNDARY, ring.readablePartBoundary())
+            ring.commitRead()
+        }
+    }
+
+    @Test
+    fun `skipped bytes are read back with their block`() {
+        val ring = PcmBlockRingBuffer(blockCount = 2, blockSize = 8)
+        ring.writableBlock()!!
+        ring.commitWrite(8, skippedBytesBefore = 35_280L)
+        ring.readableBlock()
+        assertEquals(35_280L, ring.readableSkippedBytesBefore())
+        ring.commitRead()
+
+        repeat(2) {
+            ring.writableBlock()!!
+            ring.commitWrite(8)
+            ring.readableBlock()
+            assertEquals(0L, ring.readableSkippedBytesBefore())
+            ring.commitRead()
+        }
+    }
+
+    @Test
+    fun `trailing skipped bytes are readable after finish`() {
+        val ring = PcmBlockRingBuffer(blockCount = 2, blockSize = 8)
+        ring.writableBlock()!!
+        ring.commitWrite(8)
+        assertEquals(0L, ring.trailingSkippedBytes)
+
+        ring.finish(skippedBytesAfter = 17_640L)
+
+        assertTrue(ring.isFinished)
+        assertEquals(17_640L, ring.trailingSkippedBytes)
+        assertNotNull(ring.readableBlock())
+        assertEquals(0L, ring.readableSkippedBytesBefore())
+    }
+
+    @Test
+    fun `overrun count increments`() {
+        val ring = PcmBlockRingBuffer(blockCount = 2, blockSize = 4)
+        ring.markOverrun()
+        ring.markOverrun()
+        assertEquals(2L, ring.overrunCount)
+    }
+
+    @Test
+    fun `producer and consumer threads transfer every block in order`() {
+        val blockCount = 16
+        val blockSize = 64
+        val totalBlocks = 20_000
+        val ring = PcmBlockRingBuffer(blockCount = blockCount, blockSize = blockSize)
+        val received = IntArray(totalBlocks)
+        var receivedCount = 0
+
+        val consumer = Thread {
+            while (true) {
+                val block = ring.readableBlock()
+                if (block == null) {
+                    if (ring.isFinished && ring.readableBlock() == null) break
+                    Thread.yield()
+                    continue
+                }
+                val len = ring.readableLength()
+                // First 4 bytes hold the sequence number, the rest repeats its low byte.
+                val seq = (block[0].toInt() and 0xFF) or
+                        ((block[1].toInt() and 0xFF) shl 8) or
+                        ((block[2].toInt() and 0xFF) shl 16) or
+                        ((block[3].toInt() and 0xFF) shl 24)
+                assertEquals(blockSize, len)
+                assertTrue(block.copyOfRange(4, len).all { it == seq.toByte() })
+                received[receivedCount++] = seq
+                ring.commitRead()
+            }
+        }
+        consumer.start()
+
+        var seq = 0
+        while (seq < totalBlocks) {
+            val block = ring.writableBlock()
+            if (block == null) {
+                Thread.yield()
+                continue
+            }
+            block[0] = seq.toByte()
+            block[1] = (seq shr 8).toByte()
+            block[2] = (seq shr 16).toByte()
+            block[3] = (seq shr 24).toByte()
+            block.fill(seq.toByte(), 4, blockSize)
+            ring.commitWrite(blockSize)
+            seq++
+        }
+        ring.finish()
+        consumer.join()
+
+        assertEquals(totalBlocks, receivedCount)
+        assertArrayEquals(IntArray(totalBlocks) { it }, received)
+        assertEquals(0L, ring.overrunCount)
+        assertTrue(ring.highWaterMark in 1..blockCount)
+    }
+}
@@ -0,0 +1,106 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.File
+
+class PcmWriterTest {
+
+    private class FakeSink : PcmSink {
+        val written = ByteArrayOutputStream()
+        var closeCount = 0
+
+        override fun write(src: ByteArray, offset: Int, length: Int) {
+            written.write(src, offset, length)
+        }
+
+        override fun close() {
+            closeCount++
+        }
+
+        override fun closeQuietly() {
+            closeCount++
+        }
+    }
+
+    private val outputFile = File("record.wav")
+    private val ring = PcmBlockRingBuffer(blockCount = 4, blockSize = BLOCK_SIZE)
+    private val sink = FakeSink()
+    private val finishedFiles = HashMap<File, IntArray>()
+
+    private fun writer() = PcmRecorderBase.PcmWriter(
+        sink = sink,
+        outputFile = outputFile,
+        ring = ring,
+        nextPartFileProvider = null,
+        bytesPerSecond = BYTES_PER_SECOND,
+        openSink = { FakeSink() },
+        onFileFinished = { file, keptSegments -> finishedFiles[file] = keptSegments },
+        onPartCompleted = { _, _, _ -> },
+    )
+
+    private fun commitKeptBlock(skippedBytesBefore: Long = 0L) {
+        ring.writableBlock()!!
+        ring.commitWrite(BLOCK_SIZE, skippedBytesBefore = skippedBytesBefore)
+    }
+
+    @Test
+    fun `recording without skipped silence reports no kept segments`() = runTest {
+        commitKeptBlock()
+        commitKeptBlock()
+        ring.finish()
+
+        writer().drain()
+
+        assertEquals(2 * BLOCK_SIZE, sink.written.size())
+        assertEquals(1, sink.closeCount)
+        assertNull(finishedFiles[outputFile])
+    }
+
+    @Test
+    fun `silence skipped between blocks splits the kept segments`() = runTest {
+        commitKeptBlock()
+        commitKeptBlock(skippedBytesBefore = 200L)
+        ring.finish()
+
+        writer().drain()
+
+        assertEquals(2 * BLOCK_SIZE, sink.written.size())
+        assertArrayEquals(intArrayOf(0, 100, 300, 400), finishedFiles[outputFile])
+    }
+
+    @Test
+    fun `recording that ends in silence keeps the trailing gap`() = runTest {
+        commitKeptBlock()
+        commitKeptBlock()
+        ring.finish(skippedBytesAfter = 300L)
+
+        writer().drain()
+
+        assertEquals(2 * BLOCK_SIZE, sink.written.size())
+        assertEquals(1, sink.closeCount)
+        assertArrayEquals(intArrayOf(0, 200), finishedFiles[outputFile])
+    }
+
+    @Test
+    fun `trailing silence after a gap closes the last kept segment`() = runTest {
+        commitKeptBlock(skippedBytesBefore = 50L)
+        commitKeptBlock(skippedBytesBefore = 150L)
+        ring.finish(skippedBytesAfter = 300L)
+
+        writer().drain()
+
+        assertArrayEquals(intArrayOf(50, 150, 300, 400), finishedFiles[outputFile])
+    }
+
+    companion object {
+        private const val BLOCK_SIZE = 100
+
+        /** One byte per millisecond keeps the expected segments readable. */
+        private const val BYTES_PER_SECOND = 1000
+    }
+}
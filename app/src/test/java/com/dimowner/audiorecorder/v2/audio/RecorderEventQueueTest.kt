@@ -0,0 +1,91 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.flow.onSubscription
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.File
+
+class RecorderEventQueueTest {
+
+    /** Multi-threaded, like the scope the recorders get injected. */
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+    }
+
+    /** Starts collecting [count] events and returns once the collector is subscribed. */
+    private suspend fun startCollecting(queue: RecorderEventQueue, count: Int): Deferred<List<RecorderEvent>> {
+        val subscribed = CompletableDeferred<Unit>()
+        val received = scope.async {
+            queue.events.onSubscription { subscribed.complete(Unit) }.take(count).toList()
+        }
+        subscribed.await()
+        return received
+    }
+
+    @Test
+    fun `events are emitted in the order they were sent`() = runBlocking {
+        val queue = RecorderEventQueue(scope)
+        val count = 2_000
+        val received = startCollecting(queue, count)
+
+        repeat(count) { queue.send(RecorderEvent.OnRecordingProgress(durationMills = it.toLong(), amplitude = 0)) }
+
+        val durations = withTimeout(10_000) { received.await() }
+            .map { (it as RecorderEvent.OnRecordingProgress).durationMills }
+        assertEquals((0 until count).map { it.toLong() }, durations)
+    }
+
+    @Test
+    fun `part completed by a rollover is reported before the stop that follows it`() = runBlocking {
+        val queue = RecorderEventQueue(scope)
+        val received = startCollecting(queue, 2)
+        val ring = PcmBlockRingBuffer(blockCount = 2, blockSize = 100)
+        val partFile = File("part1.wav")
+        val nextPartFile = File("part2.wav")
+        ring.writableBlock()!!
+        ring.commitWrite(100, partBoundary = 40)
+        ring.finish()
+        val writer = PcmRecorderBase.PcmWriter(
+            sink = NullSink(),
+            outputFile = partFile,
+            ring = ring,
+            nextPartFileProvider = { nextPartFile },
+            bytesPerSecond = 1000,
+            openSink = { NullSink() },
+            onFileFinished = { _, _ -> },
+            onPartCompleted = { finished, next, nextPartStartBytes ->
+                queue.send(RecorderEvent.OnPartCompleted(finished, next, nextPartStartBytes))
+            },
+        )
+
+        // The capture stage emits the stop once the writer has drained the ring.
+        writer.drain()
+        queue.send(RecorderEvent.OnStopRecording)
+
+        assertEquals(
+            listOf(RecorderEvent.OnPartCompleted(partFile, nextPartFile, 40L), RecorderEvent.OnStopRecording),
+            withTimeout(10_000) { received.await() },
+        )
+    }
+
+    private class NullSink : PcmSink {
+        override fun write(src: ByteArray, offset: Int, length: Int) = Unit
+        override fun close() = Unit
+        override fun closeQuietly() = Unit
+    }
+}
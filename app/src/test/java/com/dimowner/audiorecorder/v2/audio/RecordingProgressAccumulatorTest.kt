@@ -0,0 +1,221 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import com.dimowner.audiorecorder.AppConstants.RECORDING_VISUALIZATION_INTERVAL_NEW
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.lang.management.ManagementFactory
+
+class RecordingProgressAccumulatorTest {
+
+    private val interval = RECORDING_VISUALIZATION_INTERVAL_NEW.toLong()
+
+    private fun accumulator(windowSize: Int = 8, targetSize: Int = 10) = RecordingProgressAccumulator(
+        windowSize = windowSize,
+        fullSession = RecordingWaveformBuffer(targetSize),
+        amplitudeScale = 2f,
+    )
+
+    @Test
+    fun `each tick adds one scaled live sample and one raw full-session sample`() {
+        val acc = accumulator()
+        acc.onProgress(interval, 100)
+        acc.onProgress(interval * 2, 200)
+
+        assertArrayEquals(intArrayOf(200, 400), acc.liveAmplitudes.toIntArray())
+        assertEquals(2, acc.liveAmplitudes.totalCount)
+        assertEquals(100, acc.fullSession.downsampleToIntArray()[0])
+        assertEquals(200, acc.fullSession.downsampleToIntArray()[1])
+        assertEquals(interval * 2, acc.durationMills)
+        assertEquals(200, acc.amplitude)
+    }
+
+    @Test
+    fun `skipped ticks are filled with the current amplitude`() {
+        val acc = accumulator()
+        acc.onProgress(interval, 10)
+        acc.onProgress(interval * 4, 30)
+        assertArrayEquals(intArrayOf(20, 60, 60, 60), acc.liveAmplitudes.toIntArray())
+    }
+
+    @Test
+    fun `progress is relative to the part start after reset`() {
+        val acc = accumulator()
+        repeat(5) { acc.onProgress(interval * (it + 1), 1) }
+        acc.reset(partStartMills = interval * 5)
+
+        // A late tick of the previous part adds nothing.
+        assertEquals(0L, acc.onProgress(interval * 4, 1))
+        assertEquals(0, acc.liveAmplitudes.totalCount)
+
+        assertEquals(interval * 2, acc.onProgress(interval * 7, 3))
+        assertArrayEquals(intArrayOf(6, 6), acc.liveAmplitudes.toIntArray())
+    }
+
+    @Test
+    fun `next part takes the samples added past the boundary`() {
+        val acc = accumulator()
+        repeat(5) { acc.onProgress(interval * (it + 1), 100) }
+        // Progress of the next part arrived before the part switch was handled.
+        acc.onProgress(interval * 7, 700)
+
+        val finishedAmps = acc.startNextPart(interval * 5, RecordingWaveformBuffer.Output.PEAK)
+
+        assertArrayEquals(intArrayOf(100, 100, 100, 100, 100, 0, 0, 0, 0, 0), finishedAmps)
+        assertEquals(interval * 5, acc.partStartMills)
+        assertArrayEquals(intArrayOf(1400, 1400), acc.liveAmplitudes.toIntArray())
+        assertArrayEquals(
+            intArrayOf(700, 700, 0, 0, 0, 0, 0, 0, 0, 0),
+            acc.fullSession.downsampleToIntArray(RecordingWaveformBuffer.Output.PEAK),
+        )
+
+        assertEquals(interval * 3, acc.onProgress(interval * 8, 300))
+        assertArrayEquals(intArrayOf(1400, 1400, 600), acc.liveAmplitudes.toIntArray())
+    }
+
+    @Test
+    fun `next part carries at most one live window`() {
+        val acc = accumulator(windowSize = 2)
+        repeat(5) { acc.onProgress(interval * (it + 1), 100) }
+        repeat(4) { acc.onProgress(interval * (it + 6), 200 + it) }
+
+        acc.startNextPart(interval * 5, RecordingWaveformBuffer.Output.PEAK)
+
+        assertArrayEquals(intArrayOf(404, 406), acc.liveAmplitudes.toIntArray())
+        assertEquals(2, acc.liveAmplitudes.totalCount)
+        // The next tick fills in the samples that were not carried.
+        acc.onProgress(interval * 10, 300)
+        assertEquals(5, acc.liveAmplitudes.totalCount)
+    }
+
+    @Test
+    fun `next part without samples past the boundary starts empty`() {
+        val acc = accumulator()
+        repeat(3) { acc.onProgress(interval * (it + 1), 100) }
+
+        val finishedAmps = acc.startNextPart(interval * 3, RecordingWaveformBuffer.Output.PEAK)
+
+        assertArrayEquals(intArrayOf(100, 100, 100, 0, 0, 0, 0, 0, 0, 0), finishedAmps)
+        assertEquals(0, acc.liveAmplitudes.totalCount)
+        assertEquals(0, acc.fullSession.size())
+    }
+
+    @Test
+    fun `live snapshot is copied only when the window changed`() {
+        val acc = accumulator(windowSize = 3)
+        acc.onProgress(interval, 1)
+
+        assertTrue(acc.snapshotLiveAmplitudes())
+        assertArrayEquals(intArrayOf(2), acc.liveSnapshot)
+        assertEquals(1, acc.liveSnapshotTotalCount)
+        assertFalse(acc.snapshotLiveAmplitudes())
+
+        repeat(3) { acc.onProgress(interval * (it + 2), it + 2) }
+        assertTrue(acc.snapshotLiveAmplitudes())
+        assertArrayEquals(intArrayOf(4, 6, 8), acc.liveSnapshot)
+        assertEquals(4, acc.liveSnapshotTotalCount)
+
+        acc.reset()
+        assertTrue(acc.snapshotLiveAmplitudes())
+        assertEquals(0, acc.liveSnapshot.size)
+    }
+
+    @Test
+    fun `published full window is not overwritten by the next snapshot`() {
+        val acc = accumulator(windowSize = 3)
+        repeat(3) { acc.onProgress(interval * (it + 1), it + 1) }
+        acc.snapshotLiveAmplitudes()
+        val published = acc.liveSnapshot
+
+        acc.onProgress(interval * 4, 4)
+        acc.snapshotLiveAmplitudes()
+
+        assertNotSame(published, acc.liveSnapshot)
+        assertArrayEquals(intArrayOf(2, 4, 6), published)
+        assertArrayEquals(intArrayOf(4, 6, 8), acc.liveSnapshot)
+    }
+
+    /**
+     * The path [AudioRecordingService] runs on each tick while the UI observes: the tick, the
+     * live snapshot and the [RecordingServiceState] copy. The state object and one immutable
+     * copy of the live window are the only allocations.
+     */
+    @Test
+    fun `publishing steady state ticks allocates only the state and the window copy`() {
+        val mxBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val threadId = Thread.currentThread().id
+        val windowSize = 120
+        val acc = accumulator(windowSize = windowSize, targetSize = 600)
+        var state = RecordingServiceState()
+
+        var durationMills = 0L
+        fun tick(count: Int) {
+            for (i in 0 until count) {
+                durationMills += interval
+                acc.onProgress(durationMills, i and 0x7FFF)
+                if (acc.snapshotLiveAmplitudes()) {
+                    state = state.withRecordingProgress(acc)
+                }
+            }
+        }
+
+        // Warm up so class loading and JIT compilation are not counted.
+        tick(200_000)
+
+        val probe1 = mxBean.getThreadAllocatedBytes(threadId)
+        val probe2 = mxBean.getThreadAllocatedBytes(threadId)
+        val overhead = probe2 - probe1
+
+        val ticks = 60 * 60 * 1000 / RECORDING_VISUALIZATION_INTERVAL_NEW
+        val before = mxBean.getThreadAllocatedBytes(threadId)
+        tick(ticks)
+        val allocated = mxBean.getThreadAllocatedBytes(threadId) - before - overhead
+
+        // The state object plus an IntArray of windowSize elements per tick.
+        val perTick = 128L + 16L + windowSize * 4L
+        assertTrue("bytes allocated by $ticks ticks: $allocated", allocated < ticks * perTick)
+        assertEquals(windowSize, state.amplitudes.size)
+        assertEquals(200_000 + ticks, state.totalSampleCount)
+        assertEquals(state.totalSampleCount - windowSize, state.waveformDataOffset)
+        assertEquals(2 * ((ticks - 1) and 0x7FFF), state.amplitudes.last())
+    }
+
+    /**
+     * Simulates several hours of 20 ms progress ticks and counts bytes allocated by this
+     * thread. The live window wraps and the full-session buffer compresses many times
+     * during the measured run, so both steady-state paths are covered.
+     */
+    @Test
+    fun `steady state ticks allocate nothing`() {
+        val mxBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val threadId = Thread.currentThread().id
+        val acc = accumulator(windowSize = 120, targetSize = 600)
+
+        var durationMills = 0L
+        fun tick(count: Int) {
+            for (i in 0 until count) {
+                durationMills += interval
+                acc.onProgress(durationMills, i and 0x7FFF)
+            }
+        }
+
+        // Warm up so class loading and JIT compilation are not counted.
+        tick(200_000)
+
+        // getThreadAllocatedBytes may allocate itself; measure and subtract that overhead.
+        val probe1 = mxBean.getThreadAllocatedBytes(threadId)
+        val probe2 = mxBean.getThreadAllocatedBytes(threadId)
+        val overhead = probe2 - probe1
+
+        val ticks = 4 * 60 * 60 * 1000 / RECORDING_VISUALIZATION_INTERVAL_NEW
+        val before = mxBean.getThreadAllocatedBytes(threadId)
+        tick(ticks)
+        val allocated = mxBean.getThreadAllocatedBytes(threadId) - before - overhead
+
+        assertEquals("bytes allocated by $ticks ticks", 0L, allocated)
+        assertEquals(200_000 + ticks, acc.liveAmplitudes.totalCount)
+    }
+}
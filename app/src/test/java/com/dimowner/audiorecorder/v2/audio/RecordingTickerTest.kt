@@ -0,0 +1,68 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.test.StandardTestDispatcher
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.runCurrent
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class RecordingTickerTest {
+
+    private val interval = 20L
+
+    private fun TestScope.newTicker(): Pair<RecordingTicker, CoroutineScope> {
+        val dispatcher = StandardTestDispatcher(testScheduler)
+        val tickerScope = CoroutineScope(dispatcher + Job())
+        return RecordingTicker(tickerScope, dispatcher, interval) to tickerScope
+    }
+
+    @Test
+    fun `ticks every interval while collected`() = runTest {
+        val (ticker, tickerScope) = newTicker()
+        val received = mutableListOf<Long>()
+        val collector = launch { ticker.ticks.collect { received.add(it) } }
+        runCurrent()
+        advanceTimeBy(interval * 5)
+        runCurrent()
+        collector.cancel()
+        tickerScope.cancel()
+
+        // Initial value plus one tick per interval, all distinct.
+        assertTrue("received: $received", received.size >= 6)
+        assertEquals(received.distinct(), received)
+    }
+
+    @Test
+    fun `ticker stops without subscribers and resumes counting`() = runTest {
+        val (ticker, tickerScope) = newTicker()
+        val first = launch { ticker.ticks.collect { } }
+        advanceTimeBy(interval * 3)
+        runCurrent()
+        first.cancel()
+        runCurrent()
+
+        val valueAfterStop = ticker.ticks.value
+        advanceTimeBy(interval * 50)
+        runCurrent()
+        assertEquals(valueAfterStop, ticker.ticks.value)
+
+        val received = mutableListOf<Long>()
+        val second = launch { ticker.ticks.collect { received.add(it) } }
+        advanceTimeBy(interval * 2)
+        runCurrent()
+        second.cancel()
+        tickerScope.cancel()
+
+        // A resumed ticker continues from the last tick, so no value is swallowed by StateFlow.
+        assertTrue("received: $received", received.last() > valueAfterStop)
+    }
+}
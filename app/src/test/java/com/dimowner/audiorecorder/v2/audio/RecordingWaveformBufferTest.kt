@@ -178,6 +178,86 @@ class RecordingWaveformBufferTest {
         assertTrue(first.contentEquals(second))
     }
 
+    // ── output modes ──────────────────────────────────────────────────────────
+
+    @Test
+    fun `short peak survives many compressions in peak output`() {
+        val targetSize = 50
+        val buf = RecordingWaveformBuffer(targetSize = targetSize)
+        val total = 100_000
+        repeat(total) { i -> buf.add(if (i == 61_234) 30_000 else 100) }
+
+        val peaks = buf.downsampleToIntArray(RecordingWaveformBuffer.Output.PEAK)
+        val peakBin = (61_234L * targetSize / total).toInt()
+        assertEquals(30_000, peaks[peakBin])
+        for (i in peaks.indices) {
+            if (i != peakBin) assertEquals("index $i", 100, peaks[i])
+        }
+        // The average smears the same peak into its bin.
+        val averages = buf.downsampleToIntArray()
+        assertTrue(averages[peakBin] < 200)
+    }
+
+    @Test
+    fun `rms output is exact across compressions`() {
+        val targetSize = 10
+        val buf = RecordingWaveformBuffer(targetSize = targetSize)
+        // Alternating 300 and 400, RMS is sqrt((300² + 400²) / 2) = 353.
+        repeat(targetSize * 1000) { i -> buf.add(if (i % 2 == 0) 300 else 400) }
+
+        val rms = buf.downsampleToIntArray(RecordingWaveformBuffer.Output.RMS)
+        assertTrue("Got ${rms.toList()}", rms.all { it == 353 })
+        val averages = buf.downsampleToIntArray(RecordingWaveformBuffer.Output.AVERAGE)
+        assertTrue("Got ${averages.toList()}", averages.all { it == 350 })
+    }
+
+    @Test
+    fun `partly filled last bucket counts only its samples`() {
+        val targetSize = 10
+        val buf = RecordingWaveformBuffer(targetSize = targetSize)
+        val cap = targetSize * RecordingWaveformBuffer.HALVING_CAP_MULTIPLIER
+        // Width 2 buckets after the first compression, the last one holds a single 1000.
+        repeat(cap) { buf.add(1000) }
+        buf.add(1000)
+        val result = buf.downsampleToIntArray()
+        assertTrue("Got ${result.toList()}", result.all { it == 1000 })
+    }
+
+    @Test
+    fun `downsampleToIntArray stops at sampleCount`() {
+        val buf = RecordingWaveformBuffer(targetSize = 10)
+        for (i in 1..8) buf.add(i * 100)
+        val result = buf.downsampleToIntArray(RecordingWaveformBuffer.Output.PEAK, sampleCount = 5)
+        assertEquals(listOf(100, 200, 300, 400, 500, 0, 0, 0, 0, 0), result.toList())
+    }
+
+    @Test
+    fun `downsampleToIntArray stops at sampleCount after compressions`() {
+        val targetSize = 10
+        val buf = RecordingWaveformBuffer(targetSize = targetSize)
+        val cap = targetSize * RecordingWaveformBuffer.HALVING_CAP_MULTIPLIER
+        // Two compressions leave buckets of 4 samples, so the cut falls on a bucket edge.
+        repeat(cap * 2) { buf.add(1000) }
+        repeat(cap) { buf.add(9000) }
+        val result = buf.downsampleToIntArray(RecordingWaveformBuffer.Output.PEAK, sampleCount = cap * 2L)
+        assertTrue("Got ${result.toList()}", result.all { it == 1000 })
+    }
+
+    @Test
+    fun `ten hour session stays bounded and keeps its peaks`() {
+        val targetSize = 600
+        val buf = RecordingWaveformBuffer(targetSize = targetSize)
+        // 10 hours of 20 ms ticks, a loud tick every minute.
+        val total = 10 * 3600 * 50
+        repeat(total) { i -> buf.add(if (i % 3000 == 1500) 32_000 else i % 1000) }
+
+        val cap = targetSize * RecordingWaveformBuffer.HALVING_CAP_MULTIPLIER
+        assertTrue(buf.size() < cap)
+        val peaks = buf.downsampleToIntArray(RecordingWaveformBuffer.Output.PEAK)
+        // 600 minutes in 600 bins, every bin holds one loud tick.
+        assertTrue("Got ${peaks.toList()}", peaks.all { it == 32_000 })
+    }
+
     // ── thread-safety ─────────────────────────────────────────────────────────
 
     @Test
@@ -0,0 +1,50 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class SilenceGateTest {
+
+    private val chunkMills = 20L
+    private val gate = SilenceGate(SilenceSkipConfig(thresholdAmplitude = 1000, hangoverMills = 100))
+
+    @Test
+    fun `speech is always kept`() {
+        repeat(100) {
+            assertFalse(gate.isSkipped(amplitude = 5000, chunkMills = chunkMills))
+        }
+    }
+
+    @Test
+    fun `silence is kept during the hangover and skipped after it`() {
+        val decisions = List(10) { gate.isSkipped(amplitude = 100, chunkMills = chunkMills) }
+        // 5 chunks x 20 ms reach the 100 ms hangover; silence beyond it is skipped.
+        assertEquals(List(5) { false } + List(5) { true }, decisions)
+    }
+
+    @Test
+    fun `speech reopens the gate and restarts the hangover`() {
+        repeat(10) { gate.isSkipped(amplitude = 100, chunkMills = chunkMills) }
+        assertFalse(gate.isSkipped(amplitude = 1000, chunkMills = chunkMills))
+        assertFalse(gate.isSkipped(amplitude = 100, chunkMills = chunkMills))
+    }
+
+    @Test
+    fun `short pauses between words are kept`() {
+        repeat(50) {
+            assertFalse(gate.isSkipped(amplitude = 3000, chunkMills = chunkMills))
+            repeat(4) { assertFalse(gate.isSkipped(amplitude = 0, chunkMills = chunkMills)) }
+        }
+    }
+
+    @Test
+    fun `long silence is mostly skipped`() {
+        // One minute of meeting audio: 10 s speech, 40 s silence, 10 s speech.
+        val amplitudes = List(500) { 4000 } + List(2000) { 200 } + List(500) { 4000 }
+        val skipped = amplitudes.count { gate.isSkipped(it, chunkMills) }
+        assertEquals(2000 - 5, skipped)
+        assertTrue(skipped * chunkMills > 39_000)
+    }
+}
@@ -0,0 +1,84 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.fail
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+
+class TeePcmSinkTest {
+
+    private class FakeSink(private val failAfterWrites: Int = Int.MAX_VALUE) : PcmSink {
+        val written = ByteArrayOutputStream()
+        var writeCount = 0
+        var closeCount = 0
+
+        override fun write(src: ByteArray, offset: Int, length: Int) {
+            if (writeCount++ >= failAfterWrites) throw IOException("Disk full")
+            written.write(src, offset, length)
+        }
+
+        override fun close() {
+            closeCount++
+        }
+
+        override fun closeQuietly() {
+            closeCount++
+        }
+    }
+
+    private val chunk = ByteArray(64) { it.toByte() }
+
+    @Test
+    fun `writes every chunk to both sinks`() {
+        val primary = FakeSink()
+        val secondary = FakeSink()
+        val tee = TeePcmSink(primary, secondary)
+
+        tee.write(chunk, 0, chunk.size)
+        tee.write(chunk, 16, 32)
+        tee.close()
+
+        val expected = chunk + chunk.copyOfRange(16, 48)
+        assertArrayEquals(expected, primary.written.toByteArray())
+        assertArrayEquals(expected, secondary.written.toByteArray())
+        assertEquals(1, primary.closeCount)
+        assertEquals(1, secondary.closeCount)
+    }
+
+    @Test
+    fun `secondary failure does not interrupt the primary`() {
+        val primary = FakeSink()
+        val secondary = FakeSink(failAfterWrites = 1)
+        val tee = TeePcmSink(primary, secondary)
+
+        repeat(5) { tee.write(chunk, 0, chunk.size) }
+        tee.close()
+
+        assertEquals(5 * chunk.size, primary.written.size())
+        assertEquals(chunk.size, secondary.written.size())
+        // The failed secondary is closed once when it fails and not written to again.
+        assertEquals(2, secondary.writeCount)
+        assertEquals(1, secondary.closeCount)
+        assertEquals(1, primary.closeCount)
+    }
+
+    @Test
+    fun `primary failure propagates and the secondary is still closed`() {
+        val primary = FakeSink(failAfterWrites = 0)
+        val secondary = FakeSink()
+        val tee = TeePcmSink(primary, secondary)
+
+        try {
+            tee.write(chunk, 0, chunk.size)
+            fail("Expected IOException")
+        } catch (e: IOException) {
+            // expected
+        }
+        tee.closeQuietly()
+
+        assertEquals(1, primary.closeCount)
+        assertEquals(1, secondary.closeCount)
+    }
+}
@@ -0,0 +1,185 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.FileDescriptor
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+
+class WavFileSinkTest {
+
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private val sampleRate = 44100
+    private val channelCount = 2
+
+    /** ~20 ms stereo 44.1 kHz chunk, the size WavRecorderV2 reads per AudioRecord.read(). */
+    private val chunkSize = 882 * 4
+
+    /** Grows the file the way posix_fallocate would, so slack truncation is exercised. */
+    private fun extendingAllocator(file: File): (FileDescriptor, Long, Long) -> Boolean = { _, offset, length ->
+        RandomAccessFile(file, "rw").use { it.setLength(maxOf(it.length(), offset + length)) }
+        true
+    }
+
+    private fun openSink(file: File): WavFileSink =
+        WavFileSink(file, sampleRate, channelCount, isRf64Capable = false, extendingAllocator(file))
+
+    private fun chunk(seed: Int): ByteArray = ByteArray(chunkSize) { (it + seed).toByte() }
+
+    @Test
+    fun `file contains header and all PCM after close`() {
+        val file = tempFolder.newFile("out.wav")
+        val sink = openSink(file)
+        val expected = java.io.ByteArrayOutputStream()
+        repeat(500) {
+            val data = chunk(it)
+            sink.write(data, 0, data.size)
+            expected.write(data)
+        }
+        sink.close()
+
+        val pcm = expected.toByteArray()
+        assertEquals(WavFileSink.WAV_HEADER_SIZE + pcm.size.toLong(), file.length())
+        val bytes = file.readBytes()
+        assertArrayEquals(pcm, bytes.copyOfRange(WavFileSink.WAV_HEADER_SIZE, bytes.size))
+    }
+
+    @Test
+    fun `header matches createWavHeader for written length`() {
+        val file = tempFolder.newFile("out.wav")
+        val sink = openSink(file)
+        val data = chunk(7)
+        repeat(10) { sink.write(data, 0, data.size) }
+        sink.close()
+
+        val pcmLen = data.size * 10L
+        val expectedHeader = createWavHeader(
+            totalAudioLen = pcmLen,
+            totalDataLen = pcmLen + 36,
+            sampleRate = sampleRate,
+            channels = channelCount,
+            byteRate = (sampleRate * channelCount * 2).toLong(),
+        )
+        assertArrayEquals(expectedHeader, file.readBytes().copyOfRange(0, WavFileSink.WAV_HEADER_SIZE))
+    }
+
+    @Test
+    fun `preallocated slack is truncated on close`() {
+        val file = tempFolder.newFile("out.wav")
+        val sink = openSink(file)
+        val data = chunk(1)
+        sink.write(data, 0, data.size)
+        sink.close()
+        assertEquals(WavFileSink.WAV_HEADER_SIZE + data.size.toLong(), file.length())
+    }
+
+    @Test
+    fun `close with no data leaves a header only file`() {
+        val file = tempFolder.newFile("out.wav")
+        openSink(file).close()
+        assertEquals(WavFileSink.WAV_HEADER_SIZE.toLong(), file.length())
+    }
+
+    @Test
+    fun `sink continues without preallocation when allocator fails`() {
+        val file = tempFolder.newFile("out.wav")
+        val sink = WavFileSink(file, sampleRate, channelCount, isRf64Capable = false) { _, _, _ -> false }
+        val data = chunk(3)
+        repeat(200) { sink.write(data, 0, data.size) }
+        sink.close()
+        assertEquals(WavFileSink.WAV_HEADER_SIZE + data.size * 200L, file.length())
+    }
+
+    @Test
+    fun `allocation failure fails the write`() {
+        val file = tempFolder.newFile("out.wav")
+        val sink = WavFileSink(file, sampleRate, channelCount, isRf64Capable = false) { _, _, _ ->
+            throw IOException("No space left on device")
+        }
+        val data = chunk(4)
+        try {
+            repeat(200) { sink.write(data, 0, data.size) }
+            fail("Expected IOException")
+        } catch (e: IOException) {
+            assertEquals("No space left on device", e.message)
+        }
+        sink.closeQuietly()
+    }
+
+    @Test
+    fun `placeholder keeps the flushed PCM size while recording`() {
+        val file = tempFolder.newFile("out.wav")
+        val sink = openSink(file)
+        val data = chunk(5)
+        // Enough chunks for exactly one flush of the shortened first block.
+        repeat(WavFileSink.WRITE_BLOCK_SIZE / data.size + 1) { sink.write(data, 0, data.size) }
+
+        val flushed = (WavFileSink.WRITE_BLOCK_SIZE - WavFileSink.WAV_HEADER_SIZE).toLong()
+        assertEquals(flushed, readPlaceholderDataSize(file, isRf64Capable = false))
+        assertArrayEquals(ByteArray(4), readMagic(file))
+        sink.close()
+        assertEquals("RIFF", String(readMagic(file), Charsets.US_ASCII))
+    }
+
+    @Test
+    fun `RF64-capable placeholder keeps the flushed PCM size while recording`() {
+        val file = tempFolder.newFile("out.wav")
+        val sink = WavFileSink(file, sampleRate, channelCount, isRf64Capable = true, extendingAllocator(file))
+        val data = chunk(5)
+        repeat(WavFileSink.WRITE_BLOCK_SIZE / data.size + 1) { sink.write(data, 0, data.size) }
+
+        val flushed = (WavFileSink.WRITE_BLOCK_SIZE - RF64_CAPABLE_HEADER_SIZE).toLong()
+        assertEquals(flushed, readPlaceholderDataSize(file, isRf64Capable = true))
+        assertTrue(hasRf64CapableLayout(file))
+        assertArrayEquals(ByteArray(4), readMagic(file))
+        sink.close()
+    }
+
+    private fun readMagic(file: File): ByteArray {
+        val magic = ByteArray(4)
+        RandomAccessFile(file, "r").use { it.readFully(magic) }
+        return magic
+    }
+
+    /**
+     * Compares the number of write syscalls against the previous FileOutputStream path,
+     * which issued one write per ~20 ms chunk, for one minute of stereo 44.1 kHz audio.
+     */
+    @Test
+    fun `sink issues far fewer writes than per-chunk FileOutputStream`() {
+        val chunks = 60_000 / 20
+        val data = chunk(0)
+
+        val legacyFile = tempFolder.newFile("legacy.wav")
+        var legacyWrites = 0
+        FileOutputStream(legacyFile).use { fos ->
+            fos.write(ByteArray(WavFileSink.WAV_HEADER_SIZE))
+            legacyWrites++
+            repeat(chunks) {
+                fos.write(data, 0, data.size)
+                legacyWrites++
+            }
+        }
+
+        val sinkFile = tempFolder.newFile("sink.wav")
+        val sink = openSink(sinkFile)
+        repeat(chunks) { sink.write(data, 0, data.size) }
+        sink.close()
+
+        val totalBytes = chunks.toLong() * data.size
+        val expectedBlocks = (totalBytes + WavFileSink.WAV_HEADER_SIZE) / WavFileSink.WRITE_BLOCK_SIZE + 1
+        // Data blocks plus the placeholder and the final header.
+        assertTrue(sink.writeCallCount <= expectedBlocks + 2)
+        assertTrue(sink.writeCallCount * 50 < legacyWrites)
+        assertEquals(legacyFile.length(), sinkFile.length())
+    }
+}
@@ -0,0 +1,112 @@
+package com.dimowner.audiorecorder.v2.audio
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.FileDescriptor
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class WavHeaderTest {
+
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private val sampleRate = 44100
+    private val channelCount = 2
+
+    private fun header(totalAudioLen: Long): ByteBuffer =
+        ByteBuffer.wrap(createRf64CapableWavHeader(totalAudioLen, sampleRate, channelCount))
+            .order(ByteOrder.LITTLE_ENDIAN)
+
+    private fun ByteBuffer.id(offset: Int): String = String(array(), offset, 4, Charsets.US_ASCII)
+
+    @Test
+    fun `small recording keeps RIFF with JUNK chunk`() {
+        val buf = header(1000)
+        assertEquals(RF64_CAPABLE_HEADER_SIZE, buf.capacity())
+        assertEquals("RIFF", buf.id(0))
+        assertEquals(1000 + RF64_CAPABLE_HEADER_SIZE - 8, buf.getInt(4))
+        assertEquals("JUNK", buf.id(RF64_RESERVED_CHUNK_OFFSET))
+        assertEquals("fmt ", buf.id(48))
+        assertEquals("data", buf.id(72))
+        assertEquals(1000, buf.getInt(76))
+    }
+
+    @Test
+    fun `recording over 4 GB switches to RF64 with ds64 sizes`() {
+        val totalAudioLen = 5L * 1024 * 1024 * 1024
+        val buf = header(totalAudioLen)
+        assertEquals("RF64", buf.id(0))
+        assertEquals(-1, buf.getInt(4))
+        assertEquals("ds64", buf.id(RF64_RESERVED_CHUNK_OFFSET))
+        assertEquals(totalAudioLen + RF64_CAPABLE_HEADER_SIZE - 8, buf.getLong(20))
+        assertEquals(totalAudioLen, buf.getLong(28))
+        assertEquals(totalAudioLen / 4, buf.getLong(36))
+        assertEquals(-1, buf.getInt(76))
+    }
+
+    @Test
+    fun `createWavHeader saturates sizes instead of wrapping`() {
+        val totalAudioLen = 5L * 1024 * 1024 * 1024
+        val buf = ByteBuffer.wrap(
+            createWavHeader(totalAudioLen, totalAudioLen + 36, sampleRate, channelCount, sampleRate * 4L)
+        ).order(ByteOrder.LITTLE_ENDIAN)
+        assertEquals(-1, buf.getInt(4))
+        assertEquals(-1, buf.getInt(40))
+    }
+
+    @Test
+    fun `parser skips JUNK chunk of RF64 capable sink output`() {
+        val file = tempFolder.newFile("out.wav")
+        val sink = WavFileSink(file, sampleRate, channelCount, isRf64Capable = true) { _: FileDescriptor, _: Long, _: Long -> false }
+        val data = ByteArray(4410 * 4) { it.toByte() }
+        sink.write(data, 0, data.size)
+        sink.close()
+
+        assertEquals(RF64_CAPABLE_HEADER_SIZE + data.size.toLong(), file.length())
+        assertTrue(hasRf64CapableLayout(file))
+        val info = WavHeaderParser.parse(file)
+        assertNotNull(info)
+        info!!
+        assertFalse(info.isRf64)
+        assertEquals(RF64_CAPABLE_HEADER_SIZE.toLong(), info.dataOffset)
+        assertEquals(data.size.toLong(), info.dataSize)
+        assertEquals(100_000L, info.durationMicros)
+        assertArrayEquals(data, file.readBytes().copyOfRange(RF64_CAPABLE_HEADER_SIZE, file.length().toInt()))
+    }
+
+    @Test
+    fun `parser reads ds64 data size and clamps it to the file length`() {
+        val file = tempFolder.newFile("big.wav")
+        RandomAccessFile(file, "rw").use {
+            it.write(createRf64CapableWavHeader(5L * 1024 * 1024 * 1024, sampleRate, channelCount))
+            it.write(ByteArray(400))
+        }
+        val info = WavHeaderParser.parse(file)!!
+        assertTrue(info.isRf64)
+        assertTrue(WavHeaderParser.isRf64File(file))
+        assertEquals(channelCount, info.channelCount)
+        assertEquals(sampleRate, info.sampleRate)
+        assertEquals(16, info.bitsPerSample)
+        assertEquals(400L, info.dataSize)
+    }
+
+    @Test
+    fun `plain 44 byte header is parsed and not RF64 capable`() {
+        val file = tempFolder.newFile("plain.wav")
+        val sink = WavFileSink(file, sampleRate, channelCount, isRf64Capable = false) { _: FileDescriptor, _: Long, _: Long -> false }
+        sink.write(ByteArray(400), 0, 400)
+        sink.close()
+        assertFalse(hasRf64CapableLayout(file))
+        val info = WavHeaderParser.parse(file)!!
+        assertEquals(WavFileSink.WAV_HEADER_SIZE.toLong(), info.dataOffset)
+        assertEquals(400L, info.dataSize)
+    }
+}
@@ -19,6 +19,7 @@ package com.dimowner.audiorecorder.v2.data
 import com.dimowner.audiorecorder.data.database.Record as OldRecord
 import com.dimowner.audiorecorder.v2.data.model.Record
 import com.dimowner.audiorecorder.v2.data.room.RecordEntity
+import com.dimowner.audiorecorder.v2.data.room.RecordListRow
 import org.junit.Assert.assertEquals
 import org.junit.Test
 
@@ -112,6 +113,50 @@ class MappersTest {
         assertEquals(amps, result.amps)
     }
 
+    @Test
+    fun test_loudnessFields_roundTrip() {
+        val record = Record(
+            1L, "TestName", 15000L, 123456788L, 123456789L, 0L,
+            "path/to/record", "wav", 1024L, 48000, 2,
+            1536000, false, true,
+            false, intArrayOf(), "",
+            loudness = -23.4,
+            loudnessRange = 6.2,
+            truePeak = -1.1,
+            clippedSamples = 42L,
+        )
+        val entity = record.toRecordEntity()
+        assertEquals(-23.4, entity.loudness!!, 0.0)
+        assertEquals(6.2, entity.loudnessRange!!, 0.0)
+        assertEquals(-1.1, entity.truePeak!!, 0.0)
+        assertEquals(42L, entity.clippedSamples)
+        assertEquals(record, entity.toRecord())
+    }
+
+    @Test
+    fun test_listRowToRecord_hasNoAmps() {
+        val row = RecordListRow(
+            7L, "TestName", 15000L, 123456788L, 123456789L, 0L,
+            "path/to/record", "wav", 1024L, 48000, 2,
+            1536000, true, true, false,
+            "note", 3L, intArrayOf(0, 1000),
+            -23.4, 6.2, -1.1, 0L,
+        )
+        val expected = Record(
+            7L, "TestName", 15000L, 123456788L, 123456789L, 0L,
+            "path/to/record", "wav", 1024L, 48000, 2,
+            1536000, true, true,
+            false, intArrayOf(), "note",
+            linkedRecordId = 3L,
+            keptSegments = intArrayOf(0, 1000),
+            loudness = -23.4,
+            loudnessRange = 6.2,
+            truePeak = -1.1,
+            clippedSamples = 0L,
+        )
+        assertEquals(expected, row.toRecord())
+    }
+
     @Test
     fun test_OldRecordToRecordV2() {
         val id = 1
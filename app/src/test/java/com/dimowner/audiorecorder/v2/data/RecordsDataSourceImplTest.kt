@@ -15,12 +15,17 @@
 */
 package com.dimowner.audiorecorder.v2.data
 
+import androidx.sqlite.db.SupportSQLiteProgram
 import androidx.sqlite.db.SupportSQLiteQuery
 import com.dimowner.audiorecorder.v2.app.records.models.RecordsFilter
 import com.dimowner.audiorecorder.v2.audio.BrokenRecordRestorer
 import com.dimowner.audiorecorder.v2.data.model.SortOrder
+import com.dimowner.audiorecorder.v2.data.model.toRecordsCursor
+import com.dimowner.audiorecorder.v2.data.room.RECORD_LIST_COLUMNS
 import com.dimowner.audiorecorder.v2.data.room.RecordDao
 import com.dimowner.audiorecorder.v2.data.room.RecordEntity
+import com.dimowner.audiorecorder.v2.data.room.RecordListRow
+import com.dimowner.audiorecorder.v2.data.room.RecordSearchMatch
 import io.mockk.MockKAnnotations
 import io.mockk.Runs
 import io.mockk.every
@@ -46,6 +51,8 @@ import org.junit.Rule
 import org.junit.Test
 import org.junit.rules.TemporaryFolder
 import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
 
 class RecordsDataSourceImplTest {
 
@@ -95,6 +102,8 @@ class RecordsDataSourceImplTest {
             fileDataSource,
             brokenRecordRestorer
         )
+        every { fileDataSource.deleteWaveformPyramid(any()) } returns true
+        every { fileDataSource.deleteAudioAnalysis(any()) } returns true
     }
 
     @Test
@@ -421,6 +430,8 @@ class RecordsDataSourceImplTest {
         assertTrue(result)
         verify(exactly = 1) { recordDao.deleteRecordById(recordId) }
         verify(exactly = 1) { fileDataSource.deleteRecordFile(testRecordEntity.path) }
+        verify(exactly = 1) { fileDataSource.deleteWaveformPyramid(recordId) }
+        verify(exactly = 1) { fileDataSource.deleteAudioAnalysis(recordId) }
     }
 
     @Test
@@ -699,9 +710,11 @@ class RecordsDataSourceImplTest {
         val entity1 = testRecordEntity.copy(id = 1, name = "recycled_1", isMovedToRecycle = true)
         val entity2 = testRecordEntity.copy(id = 2, name = "recycled_2", isMovedToRecycle = true)
 
-        every { recordDao.getMovedToRecycleRecordsByPage(10, 0) } returns listOf(entity1, entity2)
+        every {
+            recordDao.getMovedToRecycleRecordsFirstPage(10)
+        } returns listOf(entity1.toListRow(), entity2.toListRow())
 
-        val result = recordsDataSourceImpl.getMovedToRecycleRecords(page = 1, pageSize = 10)
+        val result = recordsDataSourceImpl.getMovedToRecycleRecords(after = null, pageSize = 10)
 
         assertEquals(2, result.size)
         assertEquals(1L, result[0].id)
@@ -711,43 +724,45 @@ class RecordsDataSourceImplTest {
         assertEquals("recycled_2", result[1].name)
         assertTrue(result[1].isMovedToRecycle)
 
-        verify(exactly = 1) { recordDao.getMovedToRecycleRecordsByPage(10, 0) }
+        verify(exactly = 1) { recordDao.getMovedToRecycleRecordsFirstPage(10) }
+        verify(exactly = 0) { recordDao.getMovedToRecycleRecordsAfter(any(), any(), any()) }
     }
 
     @Test
-    fun test_getMovedToRecycleRecords_paged_secondPage_usesCorrectOffset() = runBlocking {
+    fun test_getMovedToRecycleRecords_paged_afterCursor_usesRemovedAndId() = runBlocking {
+        val last = testRecordEntity.copy(id = 12, removed = 3000L, isMovedToRecycle = true).toRecord()
         val entity = testRecordEntity.copy(id = 11, name = "recycled_11", isMovedToRecycle = true)
 
-        // page=2, pageSize=10 → offset = (2-1)*10 = 10
-        every { recordDao.getMovedToRecycleRecordsByPage(10, 10) } returns listOf(entity)
+        every { recordDao.getMovedToRecycleRecordsAfter(3000L, 12L, 10) } returns listOf(entity.toListRow())
 
-        val result = recordsDataSourceImpl.getMovedToRecycleRecords(page = 2, pageSize = 10)
+        val result = recordsDataSourceImpl.getMovedToRecycleRecords(after = last.toRecordsCursor(), pageSize = 10)
 
         assertEquals(1, result.size)
         assertEquals(11L, result[0].id)
 
-        verify(exactly = 1) { recordDao.getMovedToRecycleRecordsByPage(10, 10) }
+        verify(exactly = 1) { recordDao.getMovedToRecycleRecordsAfter(3000L, 12L, 10) }
+        verify(exactly = 0) { recordDao.getMovedToRecycleRecordsFirstPage(any()) }
     }
 
     @Test
-    fun test_getMovedToRecycleRecords_paged_thirdPage_usesCorrectOffset() = runBlocking {
-        // page=3, pageSize=5 → offset = (3-1)*5 = 10
-        every { recordDao.getMovedToRecycleRecordsByPage(5, 10) } returns emptyList()
+    fun test_getMovedToRecycleRecords_paged_afterLastRecord_returnsEmpty() = runBlocking {
+        val last = testRecordEntity.copy(id = 1, removed = 1000L, isMovedToRecycle = true).toRecord()
+        every { recordDao.getMovedToRecycleRecordsAfter(1000L, 1L, 5) } returns emptyList()
 
-        val result = recordsDataSourceImpl.getMovedToRecycleRecords(page = 3, pageSize = 5)
+        val result = recordsDataSourceImpl.getMovedToRecycleRecords(after = last.toRecordsCursor(), pageSize = 5)
 
         assertTrue(result.isEmpty())
-        verify(exactly = 1) { recordDao.getMovedToRecycleRecordsByPage(5, 10) }
+        verify(exactly = 1) { recordDao.getMovedToRecycleRecordsAfter(1000L, 1L, 5) }
     }
 
     @Test
     fun test_getMovedToRecycleRecords_paged_emptyList() = runBlocking {
-        every { recordDao.getMovedToRecycleRecordsByPage(10, 0) } returns emptyList()
+        every { recordDao.getMovedToRecycleRecordsFirstPage(10) } returns emptyList()
 
-        val result = recordsDataSourceImpl.getMovedToRecycleRecords(page = 1, pageSize = 10)
+        val result = recordsDataSourceImpl.getMovedToRecycleRecords(after = null, pageSize = 10)
 
         assertTrue(result.isEmpty())
-        verify(exactly = 1) { recordDao.getMovedToRecycleRecordsByPage(10, 0) }
+        verify(exactly = 1) { recordDao.getMovedToRecycleRecordsFirstPage(10) }
     }
 
     @Test
@@ -756,9 +771,9 @@ class RecordsDataSourceImplTest {
             testRecordEntity.copy(id = i.toLong(), name = "recycled_$i", isMovedToRecycle = true)
         }
 
-        every { recordDao.getMovedToRecycleRecordsByPage(10, 0) } returns entities
+        every { recordDao.getMovedToRecycleRecordsFirstPage(10) } returns entities.map { it.toListRow() }
 
-        val result = recordsDataSourceImpl.getMovedToRecycleRecords(page = 1, pageSize = 10)
+        val result = recordsDataSourceImpl.getMovedToRecycleRecords(after = null, pageSize = 10)
 
         assertEquals(10, result.size)
         result.forEachIndexed { index, record ->
@@ -770,14 +785,13 @@ class RecordsDataSourceImplTest {
     @Test
     fun test_getMovedToRecycleRecords_paged_pageSizeOne_firstPage() = runBlocking {
         val entity = testRecordEntity.copy(id = 99, name = "recycled_99", isMovedToRecycle = true)
-        // page=1, pageSize=1 → offset=0
-        every { recordDao.getMovedToRecycleRecordsByPage(1, 0) } returns listOf(entity)
+        every { recordDao.getMovedToRecycleRecordsFirstPage(1) } returns listOf(entity.toListRow())
 
-        val result = recordsDataSourceImpl.getMovedToRecycleRecords(page = 1, pageSize = 1)
+        val result = recordsDataSourceImpl.getMovedToRecycleRecords(after = null, pageSize = 1)
 
         assertEquals(1, result.size)
         assertEquals(99L, result[0].id)
-        verify(exactly = 1) { recordDao.getMovedToRecycleRecordsByPage(1, 0) }
+        verify(exactly = 1) { recordDao.getMovedToRecycleRecordsFirstPage(1) }
     }
 
     // ==================== getMovedToRecycleRecordsCount ====================
@@ -807,25 +821,39 @@ class RecordsDataSourceImplTest {
         val entity1 = testRecordEntity.copy(id = 1, name = "record_1")
         val entity2 = testRecordEntity.copy(id = 2, name = "record_2")
 
-        every { recordDao.getRecordsRewQuery(any()) } returns listOf(entity1, entity2)
+        every { recordDao.getRecordListRawQuery(any()) } returns listOf(entity1.toListRow(), entity2.toListRow())
 
-        val result = recordsDataSourceImpl.getRecords(page = 1, pageSize = 10)
+        val result = recordsDataSourceImpl.getRecords(after = null, pageSize = 10)
 
         assertEquals(2, result.size)
         assertEquals(1L, result[0].id)
         assertEquals(2L, result[1].id)
 
-        verify(exactly = 1) { recordDao.getRecordsRewQuery(any()) }
+        verify(exactly = 1) { recordDao.getRecordListRawQuery(any()) }
+    }
+
+    @Test
+    fun test_getRecords_paged_selectsListColumnsWithoutAmps() = runBlocking {
+        val querySlot = slot<SupportSQLiteQuery>()
+        every { recordDao.getRecordListRawQuery(capture(querySlot)) } returns listOf(testRecordEntity.toListRow())
+
+        val result = recordsDataSourceImpl.getRecords(after = null, pageSize = 10)
+
+        val sql = querySlot.captured.sql
+        assertTrue(sql.startsWith("SELECT $RECORD_LIST_COLUMNS FROM records"))
+        assertFalse(sql.contains("amps"))
+        assertEquals(0, result[0].amps.size)
+        verify(exactly = 0) { recordDao.getRecordsRewQuery(any()) }
     }
 
     @Test
     fun test_getRecords_paged_withBookmarked() = runBlocking {
         val entity1 = testRecordEntity.copy(id = 1, name = "bookmarked_1", isBookmarked = true)
 
-        every { recordDao.getRecordsRewQuery(any()) } returns listOf(entity1)
+        every { recordDao.getRecordListRawQuery(any()) } returns listOf(entity1.toListRow())
 
         val result = recordsDataSourceImpl.getRecords(
-            page = 1,
+            after = null,
             pageSize = 10,
             isBookmarked = true
         )
@@ -839,9 +867,10 @@ class RecordsDataSourceImplTest {
     fun test_getRecords_paged_secondPage() = runBlocking {
         val entity1 = testRecordEntity.copy(id = 11, name = "record_11")
 
-        every { recordDao.getRecordsRewQuery(any()) } returns listOf(entity1)
+        every { recordDao.getRecordListRawQuery(any()) } returns listOf(entity1.toListRow())
 
-        val result = recordsDataSourceImpl.getRecords(page = 2, pageSize = 10)
+        val cursor = testRecordEntity.copy(id = 10).toRecord().toRecordsCursor()
+        val result = recordsDataSourceImpl.getRecords(after = cursor, pageSize = 10)
 
         assertEquals(1, result.size)
         assertEquals(11L, result[0].id)
@@ -849,19 +878,19 @@ class RecordsDataSourceImplTest {
 
     @Test
     fun test_getRecords_paged_emptyResult() = runBlocking {
-        every { recordDao.getRecordsRewQuery(any()) } returns emptyList()
+        every { recordDao.getRecordListRawQuery(any()) } returns emptyList()
 
-        val result = recordsDataSourceImpl.getRecords(page = 1, pageSize = 10)
+        val result = recordsDataSourceImpl.getRecords(after = null, pageSize = 10)
 
         assertTrue(result.isEmpty())
     }
 
     @Test
     fun test_getRecords_paged_nameSortOrder() = runBlocking {
-        every { recordDao.getRecordsRewQuery(any()) } returns listOf(testRecordEntity)
+        every { recordDao.getRecordListRawQuery(any()) } returns listOf(testRecordEntity.toListRow())
 
         val result = recordsDataSourceImpl.getRecords(
-            page = 1,
+            after = null,
             pageSize = 20,
             sortOrder = SortOrder.NameAsc
         )
@@ -872,9 +901,9 @@ class RecordsDataSourceImplTest {
     @Test
     fun test_getRecords_paged_noFilter_buildsQueryWithoutInClause() = runBlocking {
         val querySlot = slot<SupportSQLiteQuery>()
-        every { recordDao.getRecordsRewQuery(capture(querySlot)) } returns listOf(testRecordEntity)
+        every { recordDao.getRecordListRawQuery(capture(querySlot)) } returns listOf(testRecordEntity.toListRow())
 
-        recordsDataSourceImpl.getRecords(page = 1, pageSize = 10)
+        recordsDataSourceImpl.getRecords(after = null, pageSize = 10)
 
         val sql = querySlot.captured.sql
         assertTrue(sql.contains("WHERE isMovedToRecycle = 0"))
@@ -885,7 +914,7 @@ class RecordsDataSourceImplTest {
     @Test
     fun test_getRecords_paged_withFilter_buildsInClausesAndBindsArgs() = runBlocking {
         val querySlot = slot<SupportSQLiteQuery>()
-        every { recordDao.getRecordsRewQuery(capture(querySlot)) } returns listOf(testRecordEntity)
+        every { recordDao.getRecordListRawQuery(capture(querySlot)) } returns listOf(testRecordEntity.toListRow())
 
         val filter = RecordsFilter(
             formats = setOf("mp3", "wav"),
@@ -895,7 +924,7 @@ class RecordsDataSourceImplTest {
         )
 
         val result = recordsDataSourceImpl.getRecords(
-            page = 1,
+            after = null,
             pageSize = 10,
             filter = filter
         )
@@ -914,10 +943,10 @@ class RecordsDataSourceImplTest {
     @Test
     fun test_getRecords_paged_emptyFilter_addsNoInClause() = runBlocking {
         val querySlot = slot<SupportSQLiteQuery>()
-        every { recordDao.getRecordsRewQuery(capture(querySlot)) } returns emptyList()
+        every { recordDao.getRecordListRawQuery(capture(querySlot)) } returns emptyList()
 
         recordsDataSourceImpl.getRecords(
-            page = 1,
+            after = null,
             pageSize = 10,
             filter = RecordsFilter()
         )
@@ -930,10 +959,10 @@ class RecordsDataSourceImplTest {
     @Test
     fun test_getRecords_paged_partialFilter_onlyFiltersProvidedDimensions() = runBlocking {
         val querySlot = slot<SupportSQLiteQuery>()
-        every { recordDao.getRecordsRewQuery(capture(querySlot)) } returns listOf(testRecordEntity)
+        every { recordDao.getRecordListRawQuery(capture(querySlot)) } returns listOf(testRecordEntity.toListRow())
 
         recordsDataSourceImpl.getRecords(
-            page = 1,
+            after = null,
             pageSize = 10,
             filter = RecordsFilter(formats = setOf("m4a"))
         )
@@ -946,6 +975,182 @@ class RecordsDataSourceImplTest {
         assertEquals(1, querySlot.captured.argCount)
     }
 
+    @Test
+    fun test_getRecords_paged_onlyClipped_filtersOnClippedSamples() = runBlocking {
+        val querySlot = slot<SupportSQLiteQuery>()
+        every { recordDao.getRecordListRawQuery(capture(querySlot)) } returns listOf(testRecordEntity.toListRow())
+
+        recordsDataSourceImpl.getRecords(
+            after = null,
+            pageSize = 10,
+            filter = RecordsFilter(onlyClipped = true)
+        )
+
+        val sql = querySlot.captured.sql
+        assertTrue(sql.contains("AND clippedSamples > 0"))
+        assertEquals(0, querySlot.captured.argCount)
+    }
+
+    @Test
+    fun test_getRecords_paged_firstPage_ordersBySortColumnAndIdWithoutOffset() = runBlocking {
+        val querySlot = slot<SupportSQLiteQuery>()
+        every { recordDao.getRecordListRawQuery(capture(querySlot)) } returns listOf(testRecordEntity.toListRow())
+
+        recordsDataSourceImpl.getRecords(after = null, pageSize = 10)
+
+        val sql = querySlot.captured.sql
+        assertTrue(sql.endsWith(" ORDER BY added DESC, id DESC LIMIT 10"))
+        assertFalse(sql.contains("OFFSET"))
+        assertEquals(0, querySlot.captured.argCount)
+    }
+
+    @Test
+    fun test_getRecords_paged_afterCursor_descending_seeksBelowCursor() = runBlocking {
+        val querySlot = slot<SupportSQLiteQuery>()
+        every { recordDao.getRecordListRawQuery(capture(querySlot)) } returns emptyList()
+        val cursor = testRecordEntity.toRecord().toRecordsCursor()
+
+        recordsDataSourceImpl.getRecords(after = cursor, pageSize = 10, sortOrder = SortOrder.DateDesc)
+
+        val sql = querySlot.captured.sql
+        assertTrue(sql.contains(" AND added <= ? AND (added < ? OR id < ?) ORDER BY added DESC, id DESC LIMIT 10"))
+        assertEquals(3, querySlot.captured.argCount)
+        val program = mockk<SupportSQLiteProgram>(relaxed = true)
+        querySlot.captured.bindTo(program)
+        verify { program.bindLong(1, 500100L) }
+        verify { program.bindLong(2, 500100L) }
+        verify { program.bindLong(3, 101L) }
+    }
+
+    @Test
+    fun test_getRecords_paged_afterCursor_ascending_seeksAboveCursorAfterFilter() = runBlocking {
+        val querySlot = slot<SupportSQLiteQuery>()
+        every { recordDao.getRecordListRawQuery(capture(querySlot)) } returns emptyList()
+        val cursor = testRecordEntity.toRecord().toRecordsCursor()
+
+        recordsDataSourceImpl.getRecords(
+            after = cursor,
+            pageSize = 10,
+            sortOrder = SortOrder.NameAsc,
+            isBookmarked = true,
+            filter = RecordsFilter(formats = setOf("m4a")),
+        )
+
+        val sql = querySlot.captured.sql
+        assertTrue(sql.contains("AND isBookmarked = 1 AND format IN (?)"))
+        assertTrue(sql.contains(" AND name >= ? AND (name > ? OR id > ?) ORDER BY name ASC, id ASC LIMIT 10"))
+        assertEquals(4, querySlot.captured.argCount)
+        val program = mockk<SupportSQLiteProgram>(relaxed = true)
+        querySlot.captured.bindTo(program)
+        verify { program.bindString(1, "m4a") }
+        verify { program.bindString(2, "name") }
+        verify { program.bindString(3, "name") }
+        verify { program.bindLong(4, 101L) }
+    }
+
+    @Test
+    fun test_getRecords_paged_loudness_fullPage_readsOnlyAnalysedRecords() = runBlocking {
+        val queries = mutableListOf<SupportSQLiteQuery>()
+        every { recordDao.getRecordListRawQuery(capture(queries)) } returns listOf(testRecordEntity.toListRow())
+
+        val result = recordsDataSourceImpl.getRecords(
+            after = null,
+            pageSize = 1,
+            sortOrder = SortOrder.LoudnessQuietest,
+        )
+
+        assertEquals(1, result.size)
+        assertEquals(1, queries.size)
+        assertTrue(queries[0].sql.contains(" AND loudness IS NOT NULL ORDER BY loudness ASC, id ASC LIMIT 1"))
+    }
+
+    @Test
+    fun test_getRecords_paged_loudness_ordersNotAnalysedLast() = runBlocking {
+        val analysed = testRecordEntity.copy(id = 1, loudness = -23.0)
+        val notAnalysed = testRecordEntity.copy(id = 2, loudness = null)
+        val queries = mutableListOf<SupportSQLiteQuery>()
+        every { recordDao.getRecordListRawQuery(capture(queries)) } returnsMany listOf(
+            listOf(analysed.toListRow()),
+            listOf(notAnalysed.toListRow()),
+        )
+
+        val result = recordsDataSourceImpl.getRecords(
+            after = null,
+            pageSize = 10,
+            sortOrder = SortOrder.LoudnessLoudest,
+        )
+
+        assertEquals(listOf(1L, 2L), result.map { it.id })
+        assertEquals(2, queries.size)
+        assertTrue(queries[0].sql.contains(" AND loudness IS NOT NULL ORDER BY loudness DESC, id DESC LIMIT 10"))
+        assertTrue(queries[1].sql.contains(" AND loudness IS NULL ORDER BY id DESC LIMIT 9"))
+        assertEquals(0, queries[1].argCount)
+    }
+
+    @Test
+    fun test_getRecords_paged_loudness_afterNotAnalysedCursor_seeksById() = runBlocking {
+        val queries = mutableListOf<SupportSQLiteQuery>()
+        every { recordDao.getRecordListRawQuery(capture(queries)) } returns emptyList()
+        val cursor = testRecordEntity.copy(loudness = null).toRecord().toRecordsCursor()
+
+        recordsDataSourceImpl.getRecords(after = cursor, pageSize = 10, sortOrder = SortOrder.LoudnessQuietest)
+
+        assertEquals(1, queries.size)
+        assertTrue(queries[0].sql.contains(" AND loudness IS NULL AND id > ? ORDER BY id ASC LIMIT 10"))
+        assertEquals(1, queries[0].argCount)
+    }
+
+    // ==================== searchRecords ====================
+
+    @Test
+    fun test_searchRecords_noWords_doesNotQuery() = runBlocking {
+        val result = recordsDataSourceImpl.searchRecords(query = " - ", limit = 10)
+
+        assertTrue(result.isEmpty())
+        verify(exactly = 0) { recordDao.searchRecordsRawQuery(any()) }
+    }
+
+    @Test
+    fun test_searchRecords_matchesPrefixesWithFilter() = runBlocking {
+        val querySlot = slot<SupportSQLiteQuery>()
+        every { recordDao.searchRecordsRawQuery(capture(querySlot)) } returns emptyList()
+
+        val result = recordsDataSourceImpl.searchRecords(
+            query = "meet no",
+            limit = 10,
+            isBookmarked = true,
+            filter = RecordsFilter(formats = setOf("m4a")),
+        )
+
+        assertTrue(result.isEmpty())
+        val sql = querySlot.captured.sql
+        assertTrue(sql.contains("FROM records_fts CROSS JOIN records ON records.id = records_fts.docid"))
+        assertTrue(sql.contains("WHERE records_fts MATCH ? AND isMovedToRecycle = 0 AND isBookmarked = 1 AND format IN (?)"))
+        val program = mockk<SupportSQLiteProgram>(relaxed = true)
+        querySlot.captured.bindTo(program)
+        verify { program.bindString(1, "\"meet*\" \"no*\"") }
+        verify { program.bindString(2, "m4a") }
+        verify(exactly = 0) { recordDao.getRecordListRowsByIds(any()) }
+    }
+
+    @Test
+    fun test_searchRecords_returnsBestMatchesFirstUpToLimit() = runBlocking {
+        every { recordDao.searchRecordsRawQuery(any()) } returns listOf(
+            searchMatch(id = 1, nameHits = 0, descriptionHits = 1),
+            searchMatch(id = 2, nameHits = 1, descriptionHits = 0),
+            searchMatch(id = 3, nameHits = 1, descriptionHits = 1),
+        )
+        every { recordDao.getRecordListRowsByIds(listOf(3L, 2L)) } returns listOf(
+            testRecordEntity.copy(id = 2).toListRow(),
+            testRecordEntity.copy(id = 3).toListRow(),
+        )
+
+        val result = recordsDataSourceImpl.searchRecords(query = "name", limit = 2)
+
+        assertEquals(listOf(3L, 2L), result.map { it.id })
+        assertTrue(result.all { it.amps.isEmpty() })
+    }
+
     // ==================== getFilterOptions ====================
 
     @Test
@@ -954,6 +1159,7 @@ class RecordsDataSourceImplTest {
         every { recordDao.getDistinctSampleRates() } returns listOf(8000, 16000, 44100)
         every { recordDao.getDistinctChannelCounts() } returns listOf(1, 2)
         every { recordDao.getDistinctBitrates() } returns listOf(64, 128, 192)
+        every { recordDao.hasClippedRecords() } returns true
 
         val result = recordsDataSourceImpl.getFilterOptions()
 
@@ -961,6 +1167,7 @@ class RecordsDataSourceImplTest {
         assertEquals(listOf(8000, 16000, 44100), result.sampleRates)
         assertEquals(listOf(1, 2), result.channelCounts)
         assertEquals(listOf(64, 128, 192), result.bitrates)
+        assertTrue(result.hasClippedRecords)
         assertFalse(result.isEmpty)
     }
 
@@ -970,6 +1177,7 @@ class RecordsDataSourceImplTest {
         every { recordDao.getDistinctSampleRates() } returns emptyList()
         every { recordDao.getDistinctChannelCounts() } returns emptyList()
         every { recordDao.getDistinctBitrates() } returns emptyList()
+        every { recordDao.hasClippedRecords() } returns false
 
         val result = recordsDataSourceImpl.getFilterOptions()
 
@@ -1135,4 +1343,39 @@ class RecordsDataSourceImplTest {
         assertFalse(result)
         verify(exactly = 0) { recordDao.deleteRecordById(any()) }
     }
+
+    /** Match of a one word search, with the hits of the word in each column of the record. */
+    private fun searchMatch(id: Long, nameHits: Int, descriptionHits: Int): RecordSearchMatch {
+        val info = intArrayOf(1, 2, nameHits, 2, 2, descriptionHits, 2, 2)
+        val buffer = ByteBuffer.allocate(4 * info.size).order(ByteOrder.nativeOrder())
+        info.forEach { buffer.putInt(it) }
+        return RecordSearchMatch(id, buffer.array())
+    }
+
+    private fun RecordEntity.toListRow(): RecordListRow {
+        return RecordListRow(
+            id = id,
+            name = name,
+            duration = duration,
+            created = created,
+            added = added,
+            removed = removed,
+            path = path,
+            format = format,
+            size = size,
+            sampleRate = sampleRate,
+            channelCount = channelCount,
+            bitrate = bitrate,
+            isBookmarked = isBookmarked,
+            isWaveformProcessed = isWaveformProcessed,
+            isMovedToRecycle = isMovedToRecycle,
+            description = description,
+            linkedRecordId = linkedRecordId,
+            keptSegments = keptSegments,
+            loudness = loudness,
+            loudnessRange = loudnessRange,
+            truePeak = truePeak,
+            clippedSamples = clippedSamples,
+        )
+    }
 }
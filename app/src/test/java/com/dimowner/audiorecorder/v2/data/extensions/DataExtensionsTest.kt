@@ -45,6 +45,8 @@ class DataExtensionsTest {
         assertEquals("DESC", SortOrder.NameDesc.toSqlSortOrder())
         assertEquals("ASC", SortOrder.DurationShortest.toSqlSortOrder())
         assertEquals("DESC", SortOrder.DurationLongest.toSqlSortOrder())
+        assertEquals("DESC", SortOrder.LoudnessLoudest.toSqlSortOrder())
+        assertEquals("ASC", SortOrder.LoudnessQuietest.toSqlSortOrder())
     }
 
     @Test
@@ -55,6 +57,8 @@ class DataExtensionsTest {
         assertEquals(RECORDS_COLUMN_NAME, SortOrder.NameDesc.toRecordsSortColumnName())
         assertEquals(RECORDS_COLUMN_DURATION, SortOrder.DurationShortest.toRecordsSortColumnName())
         assertEquals(RECORDS_COLUMN_DURATION, SortOrder.DurationLongest.toRecordsSortColumnName())
+        assertEquals(RECORDS_COLUMN_LOUDNESS, SortOrder.LoudnessLoudest.toRecordsSortColumnName())
+        assertEquals(RECORDS_COLUMN_LOUDNESS, SortOrder.LoudnessQuietest.toRecordsSortColumnName())
     }
 
     @Test
@@ -62,6 +66,25 @@ class DataExtensionsTest {
         assertEquals(RECORDS_COLUMN_ADDED, RecordEntity::added.name)
         assertEquals(RECORDS_COLUMN_NAME, RecordEntity::name.name)
         assertEquals(RECORDS_COLUMN_DURATION, RecordEntity::duration.name)
+        assertEquals(RECORDS_COLUMN_LOUDNESS, RecordEntity::loudness.name)
+    }
+
+    @Test
+    fun test_toFtsPrefixQuery_quotesEveryWordAsPrefix() {
+        assertEquals("\"Meeting*\" \"no*\"", "Meeting no".toFtsPrefixQuery())
+        assertEquals("\"Лекція*\" \"2*\"", "Лекція 2".toFtsPrefixQuery())
+    }
+
+    @Test
+    fun test_toFtsPrefixQuery_dropsPunctuationAndOperators() {
+        assertEquals("\"lec*\" \"3*\" \"OR*\" \"x*\"", "  lec-3 OR \"x\"* ".toFtsPrefixQuery())
+        assertEquals("\"don*\" \"t*\"", "don't".toFtsPrefixQuery())
+    }
+
+    @Test
+    fun test_toFtsPrefixQuery_emptyWithoutWords() {
+        assertEquals("", "".toFtsPrefixQuery())
+        assertEquals("", " ,.* \"".toFtsPrefixQuery())
     }
 
     @Test
@@ -15,6 +15,8 @@ class ModelTest {
         assertEquals(SortOrder.NameDesc, SortOrder.NameDesc.toString().convertToSortOrder())
         assertEquals(SortOrder.DurationShortest, SortOrder.DurationShortest.toString().convertToSortOrder())
         assertEquals(SortOrder.DurationLongest, SortOrder.DurationLongest.toString().convertToSortOrder())
+        assertEquals(SortOrder.LoudnessLoudest, SortOrder.LoudnessLoudest.toString().convertToSortOrder())
+        assertEquals(SortOrder.LoudnessQuietest, SortOrder.LoudnessQuietest.toString().convertToSortOrder())
 
         //Fail cases
         assertNull("".convertToSortOrder())
@@ -0,0 +1,54 @@
+package com.dimowner.audiorecorder.v2.data.room
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.abs
+import kotlin.math.sin
+
+class AmpsConverterTest {
+
+    private val converter = AmpsConverter()
+
+    @Test
+    fun `amps survive a round trip`() {
+        val amps = intArrayOf(0, 1, 127, 128, 32767, -32768, 5, Int.MAX_VALUE, Int.MIN_VALUE, 0)
+
+        assertArrayEquals(amps, converter.toIntArray(converter.fromIntArray(amps)))
+    }
+
+    @Test
+    fun `empty amps survive a round trip`() {
+        assertArrayEquals(intArrayOf(), converter.toIntArray(converter.fromIntArray(intArrayOf())))
+    }
+
+    @Test
+    fun `empty blob holds no amps`() {
+        assertArrayEquals(intArrayOf(), converter.toIntArray(ByteArray(0)))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `unknown format is rejected`() {
+        converter.toIntArray(byteArrayOf(99, 0))
+    }
+
+    @Test
+    fun `waveform takes about a byte per amplitude`() {
+        // Gains of a decoded record are 0..181 and change slowly.
+        val amps = IntArray(10_000) { (abs(sin(it / 50.0)) * 181).toInt() }
+
+        val blob = converter.fromIntArray(amps)
+
+        assertArrayEquals(amps, converter.toIntArray(blob))
+        assertTrue("blob size ${blob.size}", blob.size < amps.size * 1.1)
+        assertTrue(blob.size * 3 < Converters().fromIntArray(amps).length)
+    }
+
+    @Test
+    fun `blob size is exact`() {
+        val amps = intArrayOf(300, 0, 70000)
+        // Format byte, count, then zigzag deltas 600, -300 and 70000.
+        assertEquals(1 + 1 + 2 + 2 + 3, converter.fromIntArray(amps).size)
+    }
+}
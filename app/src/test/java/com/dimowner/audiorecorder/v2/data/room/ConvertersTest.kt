@@ -60,4 +60,16 @@ class ConvertersTest {
 
         assertArrayEquals(expectedIntArray, result)
     }
+
+    @Test
+    fun test_toIntArray_withNegativeValues() {
+        val result = Converters().toIntArray("-1,0,2147483647,-2147483648")
+
+        assertArrayEquals(intArrayOf(-1, 0, Int.MAX_VALUE, Int.MIN_VALUE), result)
+    }
+
+    @Test(expected = NumberFormatException::class)
+    fun test_toIntArray_withInvalidValue() {
+        Converters().toIntArray("1,,3")
+    }
 }
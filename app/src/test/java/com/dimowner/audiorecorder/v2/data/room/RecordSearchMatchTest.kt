@@ -0,0 +1,50 @@
+package com.dimowner.audiorecorder.v2.data.room
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class RecordSearchMatchTest {
+
+    /** Builds `matchinfo(..., 'pcx')` of a match, [hits] holds (in record, in all records, records) per phrase and column. */
+    private fun match(phrases: Int, vararg hits: Int): RecordSearchMatch {
+        val columns = 2
+        val buffer = ByteBuffer.allocate(4 * (2 + hits.size)).order(ByteOrder.nativeOrder())
+        buffer.putInt(phrases)
+        buffer.putInt(columns)
+        hits.forEach { buffer.putInt(it) }
+        return RecordSearchMatch(1L, buffer.array())
+    }
+
+    @Test
+    fun test_rank_nameHitRanksAboveDescriptionHit() {
+        val inName = match(1, 1, 1, 1, 0, 1, 1)
+        val inDescription = match(1, 0, 1, 1, 1, 1, 1)
+
+        assertTrue(inName.rank() > inDescription.rank())
+    }
+
+    @Test
+    fun test_rank_rareWordRanksAboveCommonWord() {
+        val rare = match(1, 1, 2, 2, 0, 0, 0)
+        val common = match(1, 1, 20, 20, 0, 0, 0)
+
+        assertTrue(rare.rank() > common.rank())
+    }
+
+    @Test
+    fun test_rank_sumsEveryPhrase() {
+        val one = match(1, 1, 4, 4, 0, 0, 0)
+        val two = match(2, 1, 4, 4, 0, 0, 0, 1, 4, 4, 0, 0, 0)
+
+        assertEquals(2 * one.rank(), two.rank(), 1e-9)
+    }
+
+    @Test
+    fun test_rank_zeroForEmptyOrShortMatchInfo() {
+        assertEquals(0.0, RecordSearchMatch(1L, ByteArray(0)).rank(), 0.0)
+        assertEquals(0.0, match(2, 1, 1, 1).rank(), 0.0)
+    }
+}